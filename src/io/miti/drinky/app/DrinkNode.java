@@ -46,6 +46,12 @@ public final class DrinkNode implements Comparable<DrinkNode>, java.io.Serializa
    */
   private int glass;
   
+  /**
+   * The ingredients as a single string, built when first
+   * asked for.  Cleared when the ingredients change.
+   */
+  private transient String ingredientsString = null;
+  
   
   /**
    * Default constructor.
@@ -87,6 +93,17 @@ public final class DrinkNode implements Comparable<DrinkNode>, java.io.Serializa
   }
   
   
+  /**
+   * Set the alcohol type, by ID.
+   * 
+   * @param nAlcohol the alcohol ID
+   */
+  public void setAlcohol(final int nAlcohol)
+  {
+    alcohol = nAlcohol;
+  }
+  
+  
   /**
    * Return the category.
    * 
@@ -120,6 +137,17 @@ public final class DrinkNode implements Comparable<DrinkNode>, java.io.Serializa
   }
   
   
+  /**
+   * Set the category, by ID.
+   * 
+   * @param nCategory the category ID
+   */
+  public void setCategory(final int nCategory)
+  {
+    category = nCategory;
+  }
+  
+  
   /**
    * Get the glass ID.
    * 
@@ -153,6 +181,17 @@ public final class DrinkNode implements Comparable<DrinkNode>, java.io.Serializa
   }
   
   
+  /**
+   * Set the glass ID.
+   * 
+   * @param nGlass the glass ID
+   */
+  public void setGlass(final int nGlass)
+  {
+    glass = nGlass;
+  }
+  
+  
   /**
    * Get the list of ingredients.
    * 
@@ -165,11 +204,29 @@ public final class DrinkNode implements Comparable<DrinkNode>, java.io.Serializa
   
   
   /**
-   * Return the list of ingredients as a single string.
+   * Return the list of ingredients as a single string.  The
+   * string is cached until the ingredients are changed with
+   * setIngredients() or addIngredient().
    * 
    * @return the ingredients as a string
    */
   public String getIngredientsString()
+  {
+    if (ingredientsString == null)
+    {
+      ingredientsString = buildIngredientsString();
+    }
+    
+    return ingredientsString;
+  }
+  
+  
+  /**
+   * Build the list of ingredients as a single string.
+   * 
+   * @return the ingredients as a string
+   */
+  private String buildIngredientsString()
   {
     // Check the ingredients
     if ((ingredients == null) || (ingredients.size() < 1))
@@ -205,6 +262,7 @@ public final class DrinkNode implements Comparable<DrinkNode>, java.io.Serializa
   public void addIngredient(final String ing)
   {
     ingredients.add(ing);
+    clearIngredientsString();
   }
   
   
@@ -216,6 +274,16 @@ public final class DrinkNode implements Comparable<DrinkNode>, java.io.Serializa
   public void setIngredients(final List<String> ings)
   {
     ingredients = ings;
+    clearIngredientsString();
+  }
+  
+  
+  /**
+   * Clear the cached ingredient string.
+   */
+  private void clearIngredientsString()
+  {
+    ingredientsString = null;
   }
   
   
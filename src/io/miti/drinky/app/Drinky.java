@@ -1,6 +1,7 @@
 package io.miti.drinky.app;
 
 import java.awt.BorderLayout;
+import java.awt.CardLayout;
 import java.awt.Dimension;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
@@ -13,14 +14,17 @@ import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.awt.event.KeyEvent;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.PatternSyntaxException;
 
 import javax.swing.BorderFactory;
 import javax.swing.ButtonGroup;
@@ -32,6 +36,7 @@ import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JRadioButton;
 import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
@@ -40,15 +45,23 @@ import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.ListSelectionModel;
 import javax.swing.SwingConstants;
+import javax.swing.Timer;
 import javax.swing.border.TitledBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 
-import io.miti.drinky.filter.ContainsAllFilter;
+import io.miti.drinky.data.Corpus;
+import io.miti.drinky.data.CorpusLoader;
+import io.miti.drinky.filter.FilterCache;
+import io.miti.drinky.filter.RefinableFilter;
 import io.miti.drinky.filter.RegexFilter;
-import io.miti.drinky.filter.SoundFilter;
 import io.miti.drinky.filter.TermFilter;
-import io.miti.drinky.filter.WildcardFilter;
+import io.miti.drinky.index.CancelToken;
+import io.miti.drinky.index.FmIndex;
+import io.miti.drinky.index.ResultCache;
+import io.miti.drinky.index.SearchEngine;
 import io.miti.drinky.gui.component.Factory;
 import io.miti.drinky.gui.panel.SimpleInternalFrame;
 
@@ -65,9 +78,11 @@ public final class Drinky implements ComponentListener, ItemListener
   private JFrame m_appFrame = null;
   
   /**
-   * This is the root name of the input file.
+   * These are the root names of the input file, in order of
+   * preference.  The format of the file is picked from its
+   * header, not its name.
    */
-  private static final String INPUT_FILE = "drinks.ser";
+  private static final String[] INPUT_FILES = {"drinks.dky", "drinks.ser"};
   
   /**
    * This is the name of the input file as accessed by the program.
@@ -96,6 +111,21 @@ public final class Drinky implements ComponentListener, ItemListener
    */
   private JRadioButton btnContains = null;
   
+  /**
+   * Radio button for a starts-with search.
+   */
+  private JRadioButton btnStartsWith = null;
+  
+  /**
+   * Radio button for an ends-with search.
+   */
+  private JRadioButton btnEndsWith = null;
+  
+  /**
+   * Radio button for an exact-match search.
+   */
+  private JRadioButton btnExact = null;
+  
   /**
    * Radio button for a Wildcard search.
    */
@@ -111,6 +141,36 @@ public final class Drinky implements ComponentListener, ItemListener
    */
   private JRadioButton btnSoundex = null;
   
+  /**
+   * Radio button for a Metaphone search.
+   */
+  private JRadioButton btnMetaphone = null;
+  
+  /**
+   * Radio button for a Double Metaphone search.
+   */
+  private JRadioButton btnDoubleMetaphone = null;
+  
+  /**
+   * Radio button for a NYSIIS search.
+   */
+  private JRadioButton btnNysiis = null;
+  
+  /**
+   * Radio button for a Similar search.
+   */
+  private JRadioButton btnSimilar = null;
+  
+  /**
+   * Radio button for an anagram search.
+   */
+  private JRadioButton btnAnagram = null;
+  
+  /**
+   * Radio button for a sub-anagram search.
+   */
+  private JRadioButton btnSubAnagram = null;
+  
   /**
    * Checkbox to limit the number of matches.
    */
@@ -121,6 +181,27 @@ public final class Drinky implements ComponentListener, ItemListener
    */
   private JCheckBox cbCase = null;
   
+  /**
+   * Checkbox to match regular expressions with the
+   * linear-time engine.
+   */
+  private JCheckBox cbLinearRegex = null;
+  
+  /**
+   * Checkbox to search as the user types.
+   */
+  private JCheckBox cbLiveSearch = null;
+  
+  /**
+   * Checkbox to check the drinks on several threads.
+   */
+  private JCheckBox cbParallel = null;
+  
+  /**
+   * Timer that runs a live search once the user stops typing.
+   */
+  private Timer liveSearchTimer = null;
+  
   /**
    * Text field that has the maximum number of matches
    * to return (enabled if cbLimit is checked).
@@ -139,6 +220,36 @@ public final class Drinky implements ComponentListener, ItemListener
    */
   private static final boolean bInitialSetLimitValue = true;
   
+  /**
+   * This is the initial value for whether to match regular
+   * expressions with the linear-time engine.
+   */
+  private static final boolean bInitialLinearRegexValue = true;
+  
+  /**
+   * This is the initial value for whether to search as
+   * the user types.
+   */
+  private static final boolean bInitialLiveSearchValue = true;
+  
+  /**
+   * This is the initial value for whether to check the drinks
+   * on several threads (only worth it with more than one).
+   */
+  private static final boolean bInitialParallelValue =
+    (Runtime.getRuntime().availableProcessors() > 1);
+  
+  /**
+   * How long to wait after the last keystroke before running
+   * a live search, in milliseconds.
+   */
+  private static final int LIVE_SEARCH_DELAY_MS = 250;
+  
+  /**
+   * The most memory the cached search results may use, in bytes.
+   */
+  private static final long RESULT_CACHE_BYTES = 4L * 1024L * 1024L;
+  
   /**
    * This is the initial value for the maximum number
    * of matches to return.
@@ -178,12 +289,135 @@ public final class Drinky implements ComponentListener, ItemListener
   /**
    * The data to search.
    */
-  private List<DrinkNode> listData = null;
+  private Corpus corpus = null;
+  
+  /**
+   * The search engine for the data.
+   */
+  private SearchEngine engine = null;
+  
+  /**
+   * The results of recent searches.
+   */
+  private final ResultCache resultCache =
+    new ResultCache(RESULT_CACHE_BYTES);
   
   /**
-   * The search results.
+   * The engine that ran the last search.
    */
-  private List<DrinkNode> listResults = null;
+  private SearchEngine lastEngine = null;
+  
+  /**
+   * The name filter of the last search.
+   */
+  private TermFilter lastNameFilter = null;
+  
+  /**
+   * The ingredient filter of the last search.
+   */
+  private TermFilter lastIngFilter = null;
+  
+  /**
+   * The results of the last search (null if they may be
+   * incomplete).
+   */
+  private int[] lastResults = null;
+  
+  /**
+   * The limit on the number of results of the last search.
+   */
+  private int lastLimit = 0;
+  
+  /**
+   * The search results (drink IDs in the corpus).
+   */
+  private int[] listResults = null;
+  
+  /**
+   * Whether the data is still being loaded in the background.
+   */
+  private boolean bDataLoading = false;
+  
+  /**
+   * Searches submitted while the data was loading, run
+   * in order once the data is ready.
+   */
+  private final List<Runnable> pendingSearches = new ArrayList<Runnable>(4);
+  
+  /**
+   * The panel that switches between the results table and
+   * the loading indicator.
+   */
+  private JPanel panelResultCards = null;
+  
+  /**
+   * The status shown while the data is loading.
+   */
+  private JLabel lblLoadStatus = null;
+  
+  /**
+   * The progress bar shown while the data is loading.
+   */
+  private JProgressBar progressLoad = null;
+  
+  /**
+   * The name of the card holding the results table.
+   */
+  private static final String CARD_TABLE = "table";
+  
+  /**
+   * The name of the card holding the loading indicator.
+   */
+  private static final String CARD_LOADING = "loading";
+  
+  /**
+   * The name of the card holding the searching indicator.
+   */
+  private static final String CARD_SEARCHING = "searching";
+  
+  /**
+   * How long a search runs before the searching indicator
+   * (and its Cancel button) is shown, in milliseconds.
+   */
+  private static final int SEARCHING_DELAY_MS = 200;
+  
+  /**
+   * The cancel token of the running search (null if none).
+   */
+  private CancelToken searchToken = null;
+  
+  /**
+   * Timer that shows the searching indicator.
+   */
+  private Timer searchingTimer = null;
+  
+  /**
+   * The threads that run the searches, so the event thread
+   * stays free.  A new search doesn't wait for a cancelled one
+   * to notice that it was cancelled.
+   */
+  private final ExecutorService searchExecutor =
+    Executors.newCachedThreadPool(new ThreadFactory()
+  {
+    public Thread newThread(final Runnable r)
+    {
+      Thread thread = new Thread(r, "Drinky search");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+  
+  /**
+   * Whether to log the startup timings on System.out, set with
+   * the drinky.timings system property (-Ddrinky.timings=true).
+   */
+  private static final boolean LOG_TIMINGS =
+    Boolean.getBoolean("drinky.timings");
+  
+  /**
+   * The time the application was started (from System.nanoTime()).
+   */
+  private static long startTime = 0L;
   
   
   /**
@@ -214,13 +448,41 @@ public final class Drinky implements ComponentListener, ItemListener
     // Generate the GUI and add it to the frame
     buildUI();
     
-    // Save information about how the input file is read
-    checkInputFileSource();
-    
     // Display the window
     m_appFrame.pack();
     m_appFrame.setVisible(true);
     tfTitle.requestFocusInWindow();
+    logTiming("Time to first frame: " + getElapsedMillis(startTime) + " ms");
+    
+    // Save information about how the input file is read,
+    // and start reading it in the background
+    checkInputFileSource();
+  }
+  
+  
+  /**
+   * Returns the number of milliseconds since a start time.
+   * 
+   * @param start the start time (from System.nanoTime())
+   * @return the elapsed time, in milliseconds
+   */
+  private static long getElapsedMillis(final long start)
+  {
+    return ((System.nanoTime() - start) / 1000000L);
+  }
+  
+  
+  /**
+   * Print a startup timing, if the timings are being logged.
+   * 
+   * @param msg the message to print
+   */
+  private static void logTiming(final String msg)
+  {
+    if (LOG_TIMINGS)
+    {
+      System.out.println(msg);
+    }
   }
   
   
@@ -230,23 +492,136 @@ public final class Drinky implements ComponentListener, ItemListener
    */
   private void checkInputFileSource()
   {
-    // See if we can find the input file at the root
-    final URL url = getClass().getResource("/" + INPUT_FILE);
-    if (url != null)
+    // Default to the last input file outside the jar
+    inputDataFile = "data/" + INPUT_FILES[INPUT_FILES.length - 1];
+    bOpenDataFromJar = false;
+    
+    for (String name : INPUT_FILES)
     {
-      // We're running in a jar file
-      inputDataFile = "/" + INPUT_FILE;
-      bOpenDataFromJar = true;
+      // See if we can find the input file at the root
+      final URL url = getClass().getResource("/" + name);
+      if (url != null)
+      {
+        // We're running in a jar file
+        inputDataFile = "/" + name;
+        bOpenDataFromJar = true;
+        break;
+      }
+      else if (new File("data/" + name).exists())
+      {
+        // We're not running in a jar file
+        inputDataFile = "data/" + name;
+        bOpenDataFromJar = false;
+        break;
+      }
+    }
+    
+    // Read the input file
+    startDataLoad();
+  }
+  
+  
+  /**
+   * Read the input file on a background thread, and hand the
+   * data to the event thread when it's ready.
+   */
+  private void startDataLoad()
+  {
+    bDataLoading = true;
+    stopSearch();
+    showLoadingCard("Loading drinks...");
+    
+    Thread loader = new Thread(new Runnable()
+    {
+      public void run()
+      {
+        // Always hand a result to the event thread, so a failed
+        // load shows an error instead of leaving the indicator up
+        final long loadStart = System.nanoTime();
+        SearchEngine result = null;
+        try
+        {
+          final Corpus data = getInputData();
+          if (data != null)
+          {
+            result = SearchEngine.build(data, getTextIndex());
+          }
+        }
+        catch (RuntimeException re)
+        {
+          System.err.println("Exception loading the data: " +
+              re.getMessage());
+        }
+        catch (OutOfMemoryError oom)
+        {
+          System.err.println("Out of memory loading the data");
+        }
+        
+        final SearchEngine loaded = result;
+        final long loadMillis = getElapsedMillis(loadStart);
+        javax.swing.SwingUtilities.invokeLater(new Runnable()
+        {
+          public void run()
+          {
+            dataLoaded(loaded, loadMillis);
+          }
+        });
+      }
+    }, "Drinky data loader");
+    loader.setDaemon(true);
+    loader.start();
+  }
+  
+  
+  /**
+   * Save the loaded data and run any searches that were
+   * submitted while it was loading.  Called on the event thread.
+   * 
+   * @param loaded the search engine for the loaded data
+   *        (null if the load failed)
+   * @param loadMillis how long the load took, in milliseconds
+   */
+  private void dataLoaded(final SearchEngine loaded, final long loadMillis)
+  {
+    engine = loaded;
+    corpus = ((loaded == null) ? null : loaded.getCorpus());
+    bDataLoading = false;
+    logTiming("Time to data ready: " + getElapsedMillis(startTime) +
+        " ms (load took " + loadMillis + " ms)");
+    
+    if (corpus == null)
+    {
+      // Leave the message up so the user knows why there are no matches
+      progressLoad.setVisible(false);
+      lblLoadStatus.setText("Unable to load the drink data");
     }
     else
     {
-      // We're not running in a jar file
-      inputDataFile = "data/" + INPUT_FILE;
-      bOpenDataFromJar = false;
+      ((CardLayout) panelResultCards.getLayout()).show(panelResultCards,
+                                                       CARD_TABLE);
     }
     
-    // Read the input file
-    getInputData();
+    // Run the queued searches, in the order they were submitted
+    final List<Runnable> searches = new ArrayList<Runnable>(pendingSearches);
+    pendingSearches.clear();
+    for (Runnable search : searches)
+    {
+      search.run();
+    }
+  }
+  
+  
+  /**
+   * Show the loading indicator in the results panel.
+   * 
+   * @param msg the status message
+   */
+  private void showLoadingCard(final String msg)
+  {
+    progressLoad.setVisible(true);
+    lblLoadStatus.setText(msg);
+    ((CardLayout) panelResultCards.getLayout()).show(panelResultCards,
+                                                     CARD_LOADING);
   }
   
   
@@ -333,7 +708,36 @@ public final class Drinky implements ComponentListener, ItemListener
     c.gridy = 1;
     c.gridwidth = 1;
     
+    // Search again when the user stops typing
+    liveSearchTimer = new Timer(LIVE_SEARCH_DELAY_MS,
+                                new java.awt.event.ActionListener()
+    {
+      public void actionPerformed(final java.awt.event.ActionEvent evt)
+      {
+        runLiveSearch();
+      }
+    });
+    liveSearchTimer.setRepeats(false);
+    DocumentListener typingListener = new DocumentListener()
+    {
+      public void insertUpdate(final DocumentEvent evt)
+      {
+        scheduleLiveSearch();
+      }
+      
+      public void removeUpdate(final DocumentEvent evt)
+      {
+        scheduleLiveSearch();
+      }
+      
+      public void changedUpdate(final DocumentEvent evt)
+      {
+        scheduleLiveSearch();
+      }
+    };
+    
     tfTitle = new JTextField(12);
+    tfTitle.getDocument().addDocumentListener(typingListener);
     panel.add(tfTitle, c);
     
     c.insets = new Insets(2, 3, 3, 3);
@@ -376,6 +780,7 @@ public final class Drinky implements ComponentListener, ItemListener
     c.gridwidth = 1;
     
     tfIngredient = new JTextField(12);
+    tfIngredient.getDocument().addDocumentListener(typingListener);
     panel.add(tfIngredient, c);
     
     c.insets = new Insets(2, 3, 3, 3);
@@ -461,6 +866,9 @@ public final class Drinky implements ComponentListener, ItemListener
      *   Match Case?
      *   Regular Expression?
      *   Limit Matches? Number?
+     *   Avoid Regex Backtracking?
+     *   Live Search?
+     *   Parallelize Scans?
      */
     cbCase = new JCheckBox("Match Case?");
     cbCase.setMnemonic(KeyEvent.VK_M);
@@ -514,6 +922,40 @@ public final class Drinky implements ComponentListener, ItemListener
     panelMaxValue.add(tfMaxValue);
     panel.add(panelMaxValue, c);
     
+    c.insets = new Insets(3, 20, 0, 3);
+    c.gridx = 0;
+    c.gridy = 3;
+    c.gridwidth = 1;
+    c.anchor = GridBagConstraints.WEST;
+    
+    // Add a checkbox for the linear-time regex engine
+    cbLinearRegex = new JCheckBox("Avoid Regex Backtracking?");
+    cbLinearRegex.setMnemonic(KeyEvent.VK_K);
+    cbLinearRegex.setToolTipText("<html>Whether to match regular expressions " +
+            "in linear time,<br>with a time limit for those that need " +
+            "backtracking");
+    cbLinearRegex.setSelected(bInitialLinearRegexValue);
+    panel.add(cbLinearRegex, c);
+    
+    c.gridy = 4;
+    
+    // Add a checkbox to search as the user types
+    cbLiveSearch = new JCheckBox("Live Search?");
+    cbLiveSearch.setMnemonic(KeyEvent.VK_V);
+    cbLiveSearch.setToolTipText("Whether to search as you type");
+    cbLiveSearch.setSelected(bInitialLiveSearchValue);
+    panel.add(cbLiveSearch, c);
+    
+    c.gridy = 5;
+    
+    // Add a checkbox to check the drinks on several threads
+    cbParallel = new JCheckBox("Parallelize Scans?");
+    cbParallel.setMnemonic(KeyEvent.VK_Z);
+    cbParallel.setToolTipText("Whether to check the drinks on " +
+        "several threads, when there are many to check");
+    cbParallel.setSelected(bInitialParallelValue);
+    panel.add(cbParallel, c);
+    
     // Add the Search Options group box
     JPanel subPanel = new JPanel(new GridLayout(0, 1));
     TitledBorder titledBorder =
@@ -523,13 +965,34 @@ public final class Drinky implements ComponentListener, ItemListener
     subPanel.setBorder(titledBorder);
     ButtonGroup bgOptions = new ButtonGroup();
     btnContains = new JRadioButton("Contains");
+    btnStartsWith = new JRadioButton("Begins with");
+    btnEndsWith = new JRadioButton("Ends with");
+    btnExact = new JRadioButton("Exactly");
     btnWildcard = new JRadioButton("Wildcard (*, ?)");
     btnRegex = new JRadioButton("Regular Expression");
     btnSoundex = new JRadioButton("Soundex");
+    btnMetaphone = new JRadioButton("Metaphone");
+    btnDoubleMetaphone = new JRadioButton("Double Metaphone");
+    btnNysiis = new JRadioButton("NYSIIS");
+    btnSimilar = new JRadioButton("Similar");
+    btnAnagram = new JRadioButton("Full anagram");
+    btnSubAnagram = new JRadioButton("Sub-anagram");
     
     btnContains.setMnemonic(KeyEvent.VK_C);
     btnContains.setToolTipText("Match on a drink name containing the search term");
     
+    btnStartsWith.setMnemonic(KeyEvent.VK_B);
+    btnStartsWith.setToolTipText("Match on a drink name starting with " +
+            "the search term");
+    
+    btnEndsWith.setMnemonic(KeyEvent.VK_H);
+    btnEndsWith.setToolTipText("Match on a drink name ending with " +
+            "the search term");
+    
+    btnExact.setMnemonic(KeyEvent.VK_Y);
+    btnExact.setToolTipText("Match on a drink name that is exactly " +
+            "the search term");
+    
     btnWildcard.setMnemonic(KeyEvent.VK_W);
     btnWildcard.setToolTipText("<html>Match on the search term using any combination " +
             "of '?'<br>(any one character) and '*' (any number of characters)");
@@ -540,22 +1003,64 @@ public final class Drinky implements ComponentListener, ItemListener
     btnSoundex.setMnemonic(KeyEvent.VK_S);
     btnSoundex.setToolTipText("Match on the search term for words that sound similar");
     
+    btnMetaphone.setMnemonic(KeyEvent.VK_T);
+    btnMetaphone.setToolTipText("Match on words that sound similar, " +
+            "using the rules of English spelling");
+    
+    btnDoubleMetaphone.setMnemonic(KeyEvent.VK_D);
+    btnDoubleMetaphone.setToolTipText("Match on words that sound similar, " +
+            "allowing for other ways to pronounce them");
+    
+    btnNysiis.setMnemonic(KeyEvent.VK_N);
+    btnNysiis.setToolTipText("Match on words that sound similar, " +
+            "using the NYSIIS algorithm for names");
+    
+    btnSimilar.setMnemonic(KeyEvent.VK_I);
+    btnSimilar.setToolTipText("Match on drink names that are spelled " +
+            "almost the same as the search term");
+    
+    btnAnagram.setMnemonic(KeyEvent.VK_F);
+    btnAnagram.setToolTipText("Match on drink names that use exactly " +
+            "the letters of the search term");
+    
+    btnSubAnagram.setMnemonic(KeyEvent.VK_U);
+    btnSubAnagram.setToolTipText("Match on drink names that can be " +
+            "spelled from the letters of the search term");
+    
     // Set the default (wildcard)
     btnContains.setSelected(true);
     
     bgOptions.add(btnContains);
+    bgOptions.add(btnStartsWith);
+    bgOptions.add(btnEndsWith);
+    bgOptions.add(btnExact);
     bgOptions.add(btnWildcard);
     bgOptions.add(btnRegex);
     bgOptions.add(btnSoundex);
+    bgOptions.add(btnMetaphone);
+    bgOptions.add(btnDoubleMetaphone);
+    bgOptions.add(btnNysiis);
+    bgOptions.add(btnSimilar);
+    bgOptions.add(btnAnagram);
+    bgOptions.add(btnSubAnagram);
     
     subPanel.add(btnContains);
+    subPanel.add(btnStartsWith);
+    subPanel.add(btnEndsWith);
+    subPanel.add(btnExact);
     subPanel.add(btnWildcard);
     subPanel.add(btnRegex);
     subPanel.add(btnSoundex);
+    subPanel.add(btnMetaphone);
+    subPanel.add(btnDoubleMetaphone);
+    subPanel.add(btnNysiis);
+    subPanel.add(btnSimilar);
+    subPanel.add(btnAnagram);
+    subPanel.add(btnSubAnagram);
     
     c.insets = new Insets(11, 25, 11, 3);
     c.gridx = 0;
-    c.gridy = 3;
+    c.gridy = 6;
     c.gridwidth = 1;
     c.anchor = GridBagConstraints.NORTHWEST;
     c.weighty = 1.0;
@@ -653,7 +1158,59 @@ public final class Drinky implements ComponentListener, ItemListener
 
     // Put the Results panel in a scroll pane
     JScrollPane scrollPane = new JScrollPane(tableResults);
-    results.add(scrollPane);
+    
+    // Build the loading indicator, shown until the data is ready
+    JPanel loading = new JPanel(new GridBagLayout());
+    GridBagConstraints c = new GridBagConstraints();
+    c.gridx = 0;
+    c.gridy = 0;
+    c.insets = new Insets(3, 3, 3, 3);
+    lblLoadStatus = new JLabel("Loading drinks...");
+    loading.add(lblLoadStatus, c);
+    
+    c.gridy = 1;
+    progressLoad = new JProgressBar();
+    progressLoad.setIndeterminate(true);
+    loading.add(progressLoad, c);
+    
+    // Build the searching indicator, shown while a slow search runs
+    JPanel searching = new JPanel(new GridBagLayout());
+    c.gridy = 0;
+    searching.add(new JLabel("Searching..."), c);
+    
+    c.gridy = 1;
+    JProgressBar progressSearch = new JProgressBar();
+    progressSearch.setIndeterminate(true);
+    searching.add(progressSearch, c);
+    
+    c.gridy = 2;
+    JButton btnCancel = new JButton("Cancel");
+    btnCancel.setToolTipText("Stop the search");
+    btnCancel.addActionListener(new java.awt.event.ActionListener()
+    {
+      public void actionPerformed(final java.awt.event.ActionEvent evt)
+      {
+        cancelSearch();
+      }
+    });
+    searching.add(btnCancel, c);
+    
+    searchingTimer = new Timer(SEARCHING_DELAY_MS,
+                               new java.awt.event.ActionListener()
+    {
+      public void actionPerformed(final java.awt.event.ActionEvent evt)
+      {
+        showSearching();
+      }
+    });
+    searchingTimer.setRepeats(false);
+    
+    // Switch between the table and the indicators
+    panelResultCards = new JPanel(new CardLayout());
+    panelResultCards.add(scrollPane, CARD_TABLE);
+    panelResultCards.add(loading, CARD_LOADING);
+    panelResultCards.add(searching, CARD_SEARCHING);
+    results.add(panelResultCards);
     
     // Create the frame, set the size and add the results
     SimpleInternalFrame sif = new SimpleInternalFrame("Results");
@@ -708,7 +1265,7 @@ public final class Drinky implements ComponentListener, ItemListener
       return;
     }
     
-    final int nSize = listResults.size();
+    final int nSize = listResults.length;
     if (nRow >= nSize)
     {
       paneDetails.setText("");
@@ -716,7 +1273,7 @@ public final class Drinky implements ComponentListener, ItemListener
     }
     
     // Grab the current drink
-    final DrinkNode drink = listResults.get(nRow); 
+    final DrinkNode drink = corpus.getDrink(listResults[nRow]);
     
     // Finish this later
     showData(drink);
@@ -751,7 +1308,7 @@ public final class Drinky implements ComponentListener, ItemListener
    */
   private void searchByName(final ActionEvent evt)
   {
-    generateFiltersAndSearch(tfTitle.getText(), null);
+    generateFiltersAndSearch(tfTitle.getText(), null, true);
   }
   
   
@@ -760,29 +1317,59 @@ public final class Drinky implements ComponentListener, ItemListener
    * 
    * @param name the drink name to search for
    * @param ing the ingredient to search for
+   * @param focusResults whether to move the focus to the results
    */
   private void generateFiltersAndSearch(final String name,
-                                        final String ing)
+                                        final String ing,
+                                        final boolean focusResults)
   {
-    // Declare the filters
+    // Declare the filters, and their keys for the result cache
     TermFilter nameFilter = null;
     TermFilter ingFilter = null;
+    String nameKey = null;
+    String ingKey = null;
+    final boolean ignoreCase = !getCaseMatching();
     
     // Check the name
     if ((name != null) && (name.length() > 0))
     {
       nameFilter = getSearchFilter(name, getCaseMatching());
+      nameKey = FilterCache.getKey(getSearchMode(), name, ignoreCase,
+                                   cbLinearRegex.isSelected());
     }
     
     // Check the ingredient
     if ((ing != null) && (ing.length() > 0))
     {
       // The ingredient filter is always a Contains All filter
-      ingFilter = new ContainsAllFilter(ing, !getCaseMatching());
+      ingFilter = FilterCache.getShared().getFilter(
+                      FilterCache.MODE_CONTAINS, ing, ignoreCase);
+      ingKey = FilterCache.getKey(FilterCache.MODE_CONTAINS, ing,
+                                  ignoreCase, false);
+    }
+    
+    final String queryKey = ResultCache.getQueryKey(nameKey, ingKey);
+    
+    // If the data is still loading, run the search when it's ready
+    if (bDataLoading)
+    {
+      final TermFilter queuedNameFilter = nameFilter;
+      final TermFilter queuedIngFilter = ingFilter;
+      pendingSearches.add(new Runnable()
+      {
+        public void run()
+        {
+          performSearch(queuedNameFilter, queuedIngFilter, queryKey,
+                        focusResults);
+        }
+      });
+      
+      showLoadingCard("Loading drinks... the search will run when they're ready");
+      return;
     }
     
     // Perform the search
-    performSearch(nameFilter, ingFilter);
+    performSearch(nameFilter, ingFilter, queryKey, focusResults);
   }
   
   
@@ -793,60 +1380,193 @@ public final class Drinky implements ComponentListener, ItemListener
    */
   private void searchByIngredient(final ActionEvent evt)
   {
-    generateFiltersAndSearch(tfTitle.getText(), tfIngredient.getText());
+    generateFiltersAndSearch(tfTitle.getText(), tfIngredient.getText(),
+                             true);
   }
   
   
   /**
-   * Perform a search.
+   * Perform a search.  The search runs on a background thread, and
+   * the results are shown when it's done, unless a newer search was
+   * started (or the search was cancelled) in the meantime.
    * 
    * @param nameFilter the filter for the name
    * @param ingFilter the filter for the ingredient
+   * @param queryKey the key of the search in the result cache
+   * @param focusResults whether to move the focus to the results
    */
   private void performSearch(final TermFilter nameFilter,
-                             final TermFilter ingFilter)
+                             final TermFilter ingFilter,
+                             final String queryKey,
+                             final boolean focusResults)
   {
-    // Clear the list of results
-    resultsModel.setRowData(null);
-    resultsModel.fireTableDataChanged();
+    // Stop the last search, if it's still running
+    stopSearch();
     
-    if (listResults != null)
+    // Get the search parameters
+    final boolean bLimitCap = getMatchLimiting();
+    final int nLimitCap = getMatchLimit();
+    
+    // Check for no data, or a return limit less than one
+    // (only if the checkbox is selected)
+    if ((engine == null) || ((bLimitCap) && (nLimitCap < 1)))
     {
-      listResults.clear();
-      listResults = null;
+      clearResults();
+      return;
     }
     
-    // Clear the detail pane
-    updateDetailsPane(0);
-    
-    // Get the current cursor
-    java.awt.Cursor currCursor = m_appFrame.getCursor();
-    
-    // Set the Wait cursor
-    m_appFrame.setCursor(java.awt.Cursor.getPredefinedCursor(
-        java.awt.Cursor.WAIT_CURSOR));
+    // Read everything the search needs on this thread
+    final int limit = (bLimitCap ? nLimitCap : Integer.MAX_VALUE);
+    final SearchEngine searchEngine = engine;
+    searchEngine.setParallel(cbParallel.isSelected());
+    final int[] previous = ((isRefinement(nameFilter, ingFilter))
+                            ? lastResults : null);
+    final CancelToken token = new CancelToken();
+    searchToken = token;
     
-    // Do the search
-    searchMatches(nameFilter, ingFilter);
+    // Show the Cancel button if the search takes a while
+    searchingTimer.restart();
     
-    // Restore the cursor
-    m_appFrame.setCursor(currCursor);
+    searchExecutor.execute(new Runnable()
+    {
+      public void run()
+      {
+        try
+        {
+          final int[] ids = searchMatches(searchEngine, nameFilter,
+                               ingFilter, queryKey, limit, previous, token);
+          javax.swing.SwingUtilities.invokeLater(new Runnable()
+          {
+            public void run()
+            {
+              searchFinished(token, searchEngine, nameFilter, ingFilter,
+                             limit, ids, focusResults);
+            }
+          });
+        }
+        catch (CancellationException ce)
+        {
+          // A newer search (or the Cancel button) stopped this one
+        }
+        catch (RuntimeException re)
+        {
+          reportSearchFailure(token, re);
+        }
+        catch (Error err)
+        {
+          // Such as a stack overflow in java.util.regex
+          reportSearchFailure(token, err);
+        }
+      }
+    });
+  }
+  
+  
+  /**
+   * Hand a search that failed to the event thread, to stop
+   * the search and tell the user.  Called on the search thread.
+   * 
+   * @param token the search's cancel token
+   * @param cause what the search threw
+   */
+  private void reportSearchFailure(final CancelToken token,
+                                   final Throwable cause)
+  {
+    System.err.println("Exception during the search: " + cause);
+    javax.swing.SwingUtilities.invokeLater(new Runnable()
+    {
+      public void run()
+      {
+        searchFailed(token, cause);
+      }
+    });
+  }
+  
+  
+  /**
+   * Stop a search that failed, and tell the user, if it's still
+   * the current search.  Called on the event thread.
+   * 
+   * @param token the search's cancel token
+   * @param cause what the search threw
+   */
+  private void searchFailed(final CancelToken token, final Throwable cause)
+  {
+    // Ignore a search that was replaced
+    if (token != searchToken)
+    {
+      return;
+    }
     
-    // Check for no data
-    if (listResults == null)
+    stopSearch();
+    clearResults();
+    JOptionPane.showMessageDialog(m_appFrame,
+        "The search failed: " + cause, "Search Error",
+        JOptionPane.ERROR_MESSAGE);
+  }
+  
+  
+  /**
+   * Show the results of a search, if it's still the current one.
+   * Called on the event thread.
+   * 
+   * @param token the search's cancel token
+   * @param searchEngine the engine that ran the search
+   * @param nameFilter the filter for the name
+   * @param ingFilter the filter for the ingredient
+   * @param limit the maximum number of results
+   * @param ids the IDs of the matching drinks
+   * @param focusResults whether to move the focus to the results
+   */
+  private void searchFinished(final CancelToken token,
+                              final SearchEngine searchEngine,
+                              final TermFilter nameFilter,
+                              final TermFilter ingFilter,
+                              final int limit,
+                              final int[] ids,
+                              final boolean focusResults)
+  {
+    // Discard the results of a search that was replaced
+    if (token != searchToken)
     {
       return;
     }
     
+    searchToken = null;
+    hideSearching();
+    
+    // Save the search, so the next one can refine it if the
+    // results are complete
+    final boolean complete = ((!isTimedOut(nameFilter)) &&
+                              (!isTimedOut(ingFilter)));
+    lastEngine = searchEngine;
+    lastNameFilter = nameFilter;
+    lastIngFilter = ingFilter;
+    lastResults = ((complete) ? ids : null);
+    lastLimit = limit;
+    
+    // Warn if a regular expression ran out of time
+    if (!complete)
+    {
+      JOptionPane.showMessageDialog(m_appFrame,
+          "The regular expression took too long to match, so some " +
+          "matches may be missing.", "Search Incomplete",
+          JOptionPane.WARNING_MESSAGE);
+    }
+    
+    // Clear the list of results
+    clearResults();
+    listResults = ids;
+    
     // Check the size and return if the data set is empty
-    final int nSize = listResults.size();
+    final int nSize = listResults.length;
     if (nSize < 1)
     {
       return;
     }
     
     // Populate the listbox
-    resultsModel.setRowData(listResults);
+    resultsModel.setRowData(searchEngine.getCorpus(), listResults);
     resultsModel.fireTableDataChanged();
     
     // Select the first item and update the detail pane
@@ -857,33 +1577,94 @@ public final class Drinky implements ComponentListener, ItemListener
     // Make sure the first row is visible
     tableResults.scrollRectToVisible(tableResults.getCellRect(0, 0, true));
     
-    // Set the focus on the table
-    tableResults.requestFocusInWindow();
+    // Set the focus on the table, unless the user is typing
+    if (focusResults)
+    {
+      tableResults.requestFocusInWindow();
+    }
+  }
+  
+  
+  /**
+   * Empty the results table and the detail pane.
+   */
+  private void clearResults()
+  {
+    resultsModel.setRowData(null, null);
+    resultsModel.fireTableDataChanged();
+    listResults = null;
+    updateDetailsPane(0);
+  }
+  
+  
+  /**
+   * Stop the running search, if there is one; its results
+   * are discarded.
+   */
+  private void stopSearch()
+  {
+    if (searchToken != null)
+    {
+      searchToken.cancel();
+      searchToken = null;
+    }
+    hideSearching();
+  }
+  
+  
+  /**
+   * Cancel the running search, at the user's request.
+   */
+  private void cancelSearch()
+  {
+    stopSearch();
+    clearResults();
+  }
+  
+  
+  /**
+   * Show the searching indicator and the Cancel button, if the
+   * search is still running.
+   */
+  private void showSearching()
+  {
+    if (searchToken != null)
+    {
+      ((CardLayout) panelResultCards.getLayout()).show(panelResultCards,
+                                                       CARD_SEARCHING);
+    }
+  }
+  
+  
+  /**
+   * Hide the searching indicator, if it's showing.
+   */
+  private void hideSearching()
+  {
+    searchingTimer.stop();
+    if (!bDataLoading)
+    {
+      ((CardLayout) panelResultCards.getLayout()).show(panelResultCards,
+                                                       CARD_TABLE);
+    }
   }
   
   
   /**
    * Read the contents of a file.
+   * 
+   * @return the data, or null on error
    */
-  @SuppressWarnings("unchecked")
-  private void loadFromFile()
+  private Corpus loadFromFile()
   {
     // Declare the input file
     final File inFile = new File(inputDataFile);
     
     // Read the file
-    ObjectInputStream os = null;
+    Corpus data = null;
     try
     {
-      // Create the output stream
-      os = new ObjectInputStream(new FileInputStream(inFile));
-      
-      // Read the data
-      listData = (List<DrinkNode>) os.readObject();
-      
-      // Clear the stream
-      os.close();
-      os = null;
+      data = CorpusLoader.open(inFile);
     }
     catch (ClassNotFoundException cnfe)
     {
@@ -897,22 +1678,8 @@ public final class Drinky implements ComponentListener, ItemListener
     {
       System.err.println("IOException: " + ioe.getMessage());
     }
-    finally
-    {
-      if (os != null)
-      {
-        try
-        {
-          os.close();
-        }
-        catch (IOException ioe)
-        {
-          System.err.println("IOException: " + ioe.getMessage());
-        }
-        
-        os = null;
-      }
-    }
+    
+    return data;
   }
   
   
@@ -920,160 +1687,265 @@ public final class Drinky implements ComponentListener, ItemListener
    * Read the contents of a file from a stream.
    * 
    * @param is the input stream
+   * @return the data, or null on error
    */
-  @SuppressWarnings("unchecked")
-  private void loadFromFileStream(final InputStream is)
+  private Corpus loadFromFileStream(final InputStream is)
   {
     // Read the file
-    ObjectInputStream os = null;
+    Corpus data = null;
     try
     {
-      // Create the output stream
-      os = new ObjectInputStream(is);
-      
-      // Read the data
-      listData = (List<DrinkNode>) os.readObject();
-      
-      // Clear the stream
-      os.close();
-      os = null;
+      data = CorpusLoader.open(is);
+      is.close();
     }
     catch (ClassNotFoundException cnfe)
     {
       System.err.println("Class not found: " + cnfe.getMessage());
     }
-    catch (FileNotFoundException fnfe)
-    {
-      System.err.println("File not found: " + fnfe.getMessage());
-    }
     catch (IOException ioe)
     {
       System.err.println("IOException: " + ioe.getMessage());
     }
-    finally
-    {
-      if (os != null)
-      {
-        try
-        {
-          os.close();
-        }
-        catch (IOException ioe)
-        {
-          System.err.println("IOException: " + ioe.getMessage());
-        }
-        
-        os = null;
-      }
-    }
+    
+    return data;
+  }
+  
+  
+  /**
+   * Returns whether a filter is a regular expression
+   * that ran out of time.
+   * 
+   * @param filter the filter (may be null)
+   * @return whether the filter timed out
+   */
+  private static boolean isTimedOut(final TermFilter filter)
+  {
+    return ((filter instanceof RegexFilter) &&
+            (((RegexFilter) filter).isTimedOut()));
   }
   
   
   /**
-   * Search for matches against the user's search criteria.
+   * Search for matches against the user's search criteria.  This
+   * runs on the search thread, so it doesn't touch the UI.
    * 
+   * @param searchEngine the engine to search
    * @param nameFilter the user's input name filter
    * @param ingFilter the user's input ingredient filter
+   * @param queryKey the key of the search in the result cache
+   * @param limit the maximum number of results
+   * @param previous the last search's results, if this search
+   *        refines it (null otherwise)
+   * @param token the token to check for cancellation
+   * @return the IDs of the matching drinks
+   * @throws CancellationException if the search is cancelled
    */
-  private void searchMatches(final TermFilter nameFilter,
-                             final TermFilter ingFilter)
+  private int[] searchMatches(final SearchEngine searchEngine,
+                              final TermFilter nameFilter,
+                              final TermFilter ingFilter,
+                              final String queryKey,
+                              final int limit,
+                              final int[] previous,
+                              final CancelToken token)
   {
-    // Get the search parameters
-    final boolean bLimitCap = getMatchLimiting();
-    final int nLimitCap = getMatchLimit();
-    
-    // Declare the results list
-    listResults = new ArrayList<DrinkNode>(100);
-    
-    // Check the return limit (only if the checkbox
-    // is selected)
-    if ((bLimitCap) && (nLimitCap < 1))
+    // Use the results of the same search if it was run recently
+    final int[] cached = resultCache.get(searchEngine, queryKey, limit);
+    if (cached != null)
     {
-      // The user entered a limit less than one, so return
-      return;
+      return cached;
     }
     
-    // Set up a counter to record how many hits we have so far
-    int nCount = 0;
+    int[] ids = null;
+    if (previous != null)
+    {
+      // The matches are all in the last search's results
+      ids = searchEngine.refine(previous, nameFilter, ingFilter, limit, token);
+    }
+    else
+    {
+      // Run the search, using the indexes where possible
+      ids = searchEngine.search(nameFilter, ingFilter, limit, token);
+    }
     
-    // Iterate over the list
-    final int size = listData.size();
-    for (int i = 0; i < size; ++i)
+    // Save the results, unless a regular expression ran out
+    // of time (so they may be incomplete)
+    if ((!isTimedOut(nameFilter)) && (!isTimedOut(ingFilter)))
     {
-      // Save the drink
-      final DrinkNode drink = listData.get(i);
-      
-      // Check for a match
-      if (matchOnSearch(nameFilter, ingFilter, drink))
-      {
-        // Add the match
-        listResults.add(drink);
-        ++nCount;
-        
-        // Check if we exceeded the limit
-        if ((bLimitCap) && (nCount >= nLimitCap))
-        {
-          break;
-        }
-      }
+      resultCache.put(searchEngine, queryKey, limit, ids);
     }
+    
+    return ids;
+  }
+  
+  
+  /**
+   * Returns whether a search is a refinement of the last one: the
+   * last search found all its matches, and each filter only accepts
+   * what the last search's filter accepted.
+   * 
+   * @param nameFilter the filter for the name
+   * @param ingFilter the filter for the ingredient
+   * @return whether the search can just check the last results
+   */
+  private boolean isRefinement(final TermFilter nameFilter,
+                               final TermFilter ingFilter)
+  {
+    return ((lastResults != null) && (lastEngine == engine) &&
+            (lastResults.length < lastLimit) &&
+            (refines(nameFilter, lastNameFilter)) &&
+            (refines(ingFilter, lastIngFilter)));
   }
   
   
   /**
-   * Returns whether the two terms match.
+   * Returns whether a filter only accepts what an earlier
+   * filter accepted.
    * 
-   * @param nameFilter the filter for the search word
-   * @param ingFilter the filter for the search definition
-   * @param term the term from the data source
-   * @return whether the term matches the user's search criteria
-   */
-  private boolean matchOnSearch(final TermFilter nameFilter,
-                                final TermFilter ingFilter,
-                                final DrinkNode term)
+   * @param filter the filter (null for none)
+   * @param previous the earlier filter (null for none)
+   * @return whether the filter refines the earlier one
+   */
+  private static boolean refines(final TermFilter filter,
+                                 final TermFilter previous)
   {
-    // Strip out any non-ASCII characters
-    final String targetTerm = Utility.updateBytes(term.getName());
+    if (previous == null)
+    {
+      // Any filter narrows no filter
+      return true;
+    }
+    else if (filter == null)
+    {
+      return false;
+    }
+    else if (filter == previous)
+    {
+      return true;
+    }
     
-    // Check the drink name filter
-    boolean result = true;
-    if (nameFilter != null)
+    return ((filter instanceof RefinableFilter) &&
+            (((RefinableFilter) filter).refines(previous)));
+  }
+  
+  
+  /**
+   * Start (or restart) the wait for the user to stop typing,
+   * if live search is on.
+   */
+  private void scheduleLiveSearch()
+  {
+    if ((cbLiveSearch != null) && (cbLiveSearch.isSelected()))
+    {
+      liveSearchTimer.restart();
+    }
+  }
+  
+  
+  /**
+   * Search on the contents of the name and ingredient fields,
+   * after the user stops typing.
+   */
+  private void runLiveSearch()
+  {
+    // While the data loads, only the Go buttons queue searches
+    if ((bDataLoading) || (engine == null))
     {
-      result = nameFilter.accept(targetTerm);
+      return;
     }
     
-    // Check the ingredient filter, if the current result is true
-    if ((result) && (ingFilter != null))
+    final String name = tfTitle.getText();
+    final String ing = tfIngredient.getText();
+    if ((name.length() < 1) && (ing.length() < 1))
     {
-      result = ingFilter.accept(term.getIngredientsString());
+      // Nothing to search for, so clear the results
+      stopSearch();
+      clearResults();
+      return;
     }
     
-    // Return the result
-    return result;
+    try
+    {
+      generateFiltersAndSearch(name, ing, false);
+    }
+    catch (PatternSyntaxException pse)
+    {
+      // The user is probably still typing the expression,
+      // so keep the last results
+    }
   }
   
   
   /**
-   * Returns a reader for the input file.
+   * Reads the input file.  This is called on the loader thread.
+   * 
+   * @return the data, or null on error
    */
-  @SuppressWarnings("unchecked")
-  private void getInputData()
+  private Corpus getInputData()
   {
     // Check how to read the input file
     if (bOpenDataFromJar)
     {
       // Read the drink file from the jar file
       InputStream is = getClass().getResourceAsStream(inputDataFile);
-      loadFromFileStream(is);
+      return loadFromFileStream(is);
     }
     else
     {
       // Open the input file (that's outside the jar file)
-      loadFromFile();
+      return loadFromFile();
     }
   }
   
   
+  /**
+   * Reads the FM-index of the drink text, from the file next
+   * to the input file.  This is called on the loader thread.
+   * 
+   * @return the index, or null if there's none or on error
+   */
+  private FmIndex getTextIndex()
+  {
+    final String indexFile = FmIndex.getIndexFileName(inputDataFile);
+    try
+    {
+      if (bOpenDataFromJar)
+      {
+        // Read the index from the jar file
+        InputStream is = getClass().getResourceAsStream(indexFile);
+        if (is == null)
+        {
+          return null;
+        }
+        
+        try
+        {
+          return FmIndex.read(is);
+        }
+        finally
+        {
+          is.close();
+        }
+      }
+      
+      // Read the index file (that's outside the jar file)
+      final File inFile = new File(indexFile);
+      return ((inFile.isFile()) ? FmIndex.readFile(inFile) : null);
+    }
+    catch (IOException ioe)
+    {
+      System.err.println("IOException reading the text index: " +
+                         ioe.getMessage());
+    }
+    catch (RuntimeException re)
+    {
+      // The index is optional, so carry on without it
+      System.err.println("Exception reading the text index: " +
+                         re.getMessage());
+    }
+    
+    return null;
+  }
+  
+  
   
   
   /**
@@ -1086,26 +1958,72 @@ public final class Drinky implements ComponentListener, ItemListener
   private TermFilter getSearchFilter(final String term,
                                      final boolean matchCase)
   {
-    TermFilter tf = null;
+    // Reuse the filter if the same search was run recently
+    return FilterCache.getShared().getFilter(getSearchMode(), term,
+                                             !matchCase,
+                                             cbLinearRegex.isSelected());
+  }
+  
+  
+  /**
+   * Returns the selected search mode.
+   * 
+   * @return the mode (one of the FilterCache MODE constants)
+   */
+  private int getSearchMode()
+  {
+    int mode = FilterCache.MODE_CONTAINS;
     
     if (btnRegex.isSelected())
     {
-      tf = new RegexFilter(term, !matchCase);
+      mode = FilterCache.MODE_REGEX;
     }
     else if (btnSoundex.isSelected())
     {
-      tf = new SoundFilter(term, !matchCase);
+      mode = FilterCache.MODE_SOUNDEX;
+    }
+    else if (btnMetaphone.isSelected())
+    {
+      mode = FilterCache.MODE_METAPHONE;
+    }
+    else if (btnDoubleMetaphone.isSelected())
+    {
+      mode = FilterCache.MODE_DOUBLE_METAPHONE;
+    }
+    else if (btnNysiis.isSelected())
+    {
+      mode = FilterCache.MODE_NYSIIS;
+    }
+    else if (btnSimilar.isSelected())
+    {
+      mode = FilterCache.MODE_SIMILAR;
+    }
+    else if (btnAnagram.isSelected())
+    {
+      mode = FilterCache.MODE_ANAGRAM;
+    }
+    else if (btnSubAnagram.isSelected())
+    {
+      mode = FilterCache.MODE_SUB_ANAGRAM;
     }
     else if (btnWildcard.isSelected())
     {
-      tf = new WildcardFilter(term, !matchCase);
+      mode = FilterCache.MODE_WILDCARD;
+    }
+    else if (btnStartsWith.isSelected())
+    {
+      mode = FilterCache.MODE_STARTS_WITH;
     }
-    else if (btnContains.isSelected())
+    else if (btnEndsWith.isSelected())
     {
-      tf = new ContainsAllFilter(term, !matchCase);
+      mode = FilterCache.MODE_ENDS_WITH;
+    }
+    else if (btnExact.isSelected())
+    {
+      mode = FilterCache.MODE_EXACT;
     }
     
-    return tf;
+    return mode;
   }
   
   
@@ -1296,6 +2214,13 @@ public final class Drinky implements ComponentListener, ItemListener
     buf.append("Released under the MIT license. Free for any use.\n");
     buf.append("Portions of the source code copyright JGoodies Karsten Lentzsch.\n");
     
+    // Show how often searches reused a filter
+    final FilterCache cache = FilterCache.getShared();
+    buf.append("\nSearch filter cache: ").append(cache.getHits())
+       .append(" hits, ").append(cache.getMisses()).append(" misses.\n");
+    buf.append("Search result cache: ").append(resultCache.getHits())
+       .append(" hits, ").append(resultCache.getMisses()).append(" misses.\n");
+    
     return buf.toString();
   }
   
@@ -1352,6 +2277,9 @@ public final class Drinky implements ComponentListener, ItemListener
    */
   public static void main(final String[] args)
   {
+    // Save the start time, to log the startup timings
+    startTime = System.nanoTime();
+    
     // Set up the Mac-related properties
     makeMacCompatible("Drinky");
     
@@ -1,7 +1,8 @@
 package io.miti.drinky.app;
 
 import javax.swing.table.AbstractTableModel;
-import java.util.List;
+
+import io.miti.drinky.data.Corpus;
 
 /**
  * The model for drawing the results table.
@@ -22,9 +23,14 @@ public final class ResultsTableModel extends AbstractTableModel
   private static final String[] columnNames = {"Name", "Type"};
   
   /**
-   * The data stored in each row.
+   * The corpus holding the drinks.
+   */
+  private Corpus corpus = null;
+  
+  /**
+   * The ID of the drink shown in each row.
    */
-  private List<DrinkNode> rowData = null;
+  private int[] rowData = null;
   
   /**
    * The current row count.
@@ -76,14 +82,14 @@ public final class ResultsTableModel extends AbstractTableModel
   public Object getValueAt(final int rowIndex,
                            final int columnIndex)
   {
-    DrinkNode drink = rowData.get(rowIndex);
+    final int id = rowData[rowIndex];
     switch (columnIndex)
     {
       case 0:
-        return drink.getName();
+        return corpus.getName(id);
       
       case 1:
-        return drink.getCategoryString();
+        return Utility.getCategoryString(corpus.getCategory(id));
       
       default:
         return "x";
@@ -92,25 +98,29 @@ public final class ResultsTableModel extends AbstractTableModel
   
   
   /**
-   * Set the row data.
+   * Set the row data.  Drinks are only read from the corpus
+   * when their row is drawn.
    * 
-   * @param listData the data to fill in a row
+   * @param data the corpus holding the drinks
+   * @param ids the IDs of the drinks to show, one per row
    */
-  public void setRowData(final List<DrinkNode> listData)
+  public void setRowData(final Corpus data, final int[] ids)
   {
     // Empty the previous data
     rowData = null;
+    corpus = null;
     
-    if (listData == null)
+    if ((data == null) || (ids == null))
     {
       nRowCount = 0;
     }
     else
     {
-      nRowCount = listData.size();
+      nRowCount = ids.length;
       if (nRowCount > 0)
       {
-        rowData = listData;
+        rowData = ids;
+        corpus = data;
       }
     }
   }
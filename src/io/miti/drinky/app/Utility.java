@@ -28,6 +28,27 @@ public final class Utility
   private static String[] saXmlEntities =
     new String[] {"&lt;", "&gt;", "&amp;", "&quot;", "&apos;"};
   
+  /**
+   * The first character in FOLD_TABLE.
+   */
+  private static final char FOLD_START = '\u00C0';
+  
+  /**
+   * The unaccented form of each character from U+00C0 (the start
+   * of the letters in Latin-1 Supplement) to U+017F (the end of
+   * Latin Extended-A).  Characters without an unaccented form
+   * (e.g., the multiplication sign) map to themselves.
+   */
+  private static final char[] FOLD_TABLE = (
+      // U+00C0 - U+00FF (Latin-1 Supplement)
+      "AAAAAAACEEEEIIII" + "DNOOOOO\u00D7OUUUUY\u00DEs" +
+      "aaaaaaaceeeeiiii" + "dnooooo\u00F7ouuuuy\u00FEy" +
+      // U+0100 - U+017F (Latin Extended-A)
+      "AaAaAaCcCcCcCcDd" + "DdEeEeEeEeEeGgGg" +
+      "GgGgHhHhIiIiIiIi" + "IiIiJjKkkLlLlLlL" +
+      "lLlNnNnNnnNnOoOo" + "OoOoRrRrRrSsSsSs" +
+      "SsTtTtTtUuUuUuUu" + "UuUuWwYyYZzZzZzs").toCharArray();
+  
   
   /**
    * Default constructor.  Make it private so the class cannot
@@ -203,12 +224,41 @@ public final class Utility
   
   
   /**
-   * Update non-Western characters with the closest version.
+   * Fold an accented character to its unaccented ASCII form.
+   * Covers the Latin-1 Supplement and Latin Extended-A blocks;
+   * other characters are returned unchanged.  Each character
+   * folds to exactly one character (e.g., the German sharp s
+   * folds to 's'), so a folded string has the same length as
+   * the original and positions in the two line up.
+   * 
+   * @param ch the character to fold
+   * @return the folded character
+   */
+  public static char foldAccent(final char ch)
+  {
+    if (ch < FOLD_START)
+    {
+      // The acute accent is used as an apostrophe in some names
+      return ((ch == '\u00B4') ? '\'' : ch);
+    }
+    else if (ch < (FOLD_START + FOLD_TABLE.length))
+    {
+      return FOLD_TABLE[ch - FOLD_START];
+    }
+    
+    return ch;
+  }
+  
+  
+  /**
+   * Fold the accented characters in a string to their unaccented
+   * ASCII forms (see foldAccent(char)).  If nothing needs to be
+   * folded, the original string is returned without allocating.
    * 
-   * @param line the string to check and modify
+   * @param line the string to fold
    * @return the (possibly modified) string
    */
-  public static String updateBytes(final String line)
+  public static String foldAccents(final String line)
   {
     // Check the input parameter
     if (line == null)
@@ -216,99 +266,89 @@ public final class Utility
       return line;
     }
     
-    // Get the line as a series of bytes
-    byte[] data = line.getBytes();
+    final int first = findFold(line);
+    if (first < 0)
+    {
+      // Nothing to fold, so return the original string
+      return line;
+    }
     
-    // Record whether any international characters were found
-    boolean bInternationalCharsFound = false;
-
-    // Iterate through the bytes to update the binary characters
-    final int nSize = data.length;
-    for (int nIndex = 0; nIndex < nSize; ++nIndex)
+    return fold(line, first);
+  }
+  
+  
+  /**
+   * Fold the accented characters in a sequence of characters to
+   * their unaccented ASCII forms (see foldAccent(char)).
+   * 
+   * @param seq the characters to fold
+   * @return the folded string
+   */
+  public static String foldAccents(final CharSequence seq)
+  {
+    // Check the input parameter
+    if (seq == null)
     {
-      // Convert the byte to an integer
-      final int i = (int) data[nIndex];
-
-      // If it's not binary, skip to the next byte
-      if ((i >= 0) && (i <= 127))
-      {
-        continue;
-      }
-      
-      // We hit one
-      bInternationalCharsFound = true;
-
-      // Check the character
-      switch (i)
+      return null;
+    }
+    
+    final int first = findFold(seq);
+    if (first < 0)
+    {
+      // Nothing to fold
+      return seq.toString();
+    }
+    
+    return fold(seq, first);
+  }
+  
+  
+  /**
+   * Returns the index of the first character that needs
+   * to be folded.
+   * 
+   * @param seq the characters to check
+   * @return the index of the first character to fold, or -1
+   */
+  private static int findFold(final CharSequence seq)
+  {
+    final int len = seq.length();
+    for (int i = 0; i < len; ++i)
+    {
+      final char ch = seq.charAt(i);
+      if ((ch > 127) && (foldAccent(ch) != ch))
       {
-        case -28:    // a w/umlaut
-        case -32:    // a w/`
-        case -31:    // a w/' (forward accent)
-          data[nIndex] = 'a';
-          break;
-
-        case -64:    // A w/accent
-          data[nIndex] = 'A';
-          break;
-
-        case -23:    // e w/'
-        case -22:    // e w/^
-        case -21:    // e w/umlaut
-        case -24:    // e w/`
-          data[nIndex] = 'e';
-          break;
-
-        case -55:    // E w/'
-          data[nIndex] = 'E';
-          break;
-
-        case -17:    // i w/umlaut
-        case -20:    // i w/`
-        case -19:    // i w/'
-          data[nIndex] = 'i';
-          break;
-
-        case -50:    // I w/^
-          data[nIndex] = 'I';
-          break;
-
-        case -79:    // +/-
-        case -15:    // n w/tilda
-          data[nIndex] = 'n';
-          break;
-
-        case -10:    // o w/umlaut
-        case -13:    // o w/'
-          data[nIndex] = 'o';
-          break;
-
-        case -42:    // O w/umlaut
-          data[nIndex] = 'O';
-          break;
-
-        case -4:    // u w/umlaut
-          data[nIndex] = 'u';
-          break;
-        
-        case -76:    // '
-          data[nIndex] = '\'';
-          break;
-        
-        // Currently not handling -123 (ellipses)
-        default:     // it's some other binary character
-          break;
+        return i;
       }
     }
     
-    // Check for international characters
-    if (!bInternationalCharsFound)
+    return -1;
+  }
+  
+  
+  /**
+   * Fold the characters in a sequence, starting at the
+   * first character that changes.
+   * 
+   * @param seq the characters to fold
+   * @param first the index of the first character to fold
+   * @return the folded string
+   */
+  private static String fold(final CharSequence seq, final int first)
+  {
+    final int len = seq.length();
+    char[] data = new char[len];
+    for (int i = 0; i < first; ++i)
     {
-      // None found, so return the original string
-      return line;
+      data[i] = seq.charAt(i);
+    }
+    
+    for (int i = first; i < len; ++i)
+    {
+      data[i] = foldAccent(seq.charAt(i));
     }
     
-    // Return a string from the set of bytes
-    return (new String(data));
+    return new String(data);
   }
   
   
@@ -0,0 +1,131 @@
+package io.miti.drinky.bench;
+
+import java.io.File;
+import java.util.Arrays;
+
+import io.miti.drinky.data.Corpus;
+import io.miti.drinky.data.CorpusLoader;
+import io.miti.drinky.data.SearchText;
+import io.miti.drinky.index.FmIndex;
+
+/**
+ * Compare the time to find the drinks whose ingredients contain a
+ * string with the FM-index to the time taken by scanning the
+ * ingredients with indexOf(), and check that both find the same
+ * drinks.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class FmIndexBenchmark
+{
+  /**
+   * The number of timed runs per search.
+   */
+  private static final int RUNS = 20;
+  
+  /**
+   * The search strings.
+   */
+  private static final String[] SEARCHES = {
+    "rum", "lime juice", "oz vodka", "triple sec", "grenadine",
+    "1/2 oz", "xyzzy"
+  };
+  
+  
+  /**
+   * Default constructor.
+   */
+  private FmIndexBenchmark()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Returns the drinks whose ingredients contain a string,
+   * by scanning them all.
+   * 
+   * @param text the search text
+   * @param lowerTerm the lower-case string
+   * @return the drink IDs, in ascending order
+   */
+  private static int[] scan(final SearchText text, final String lowerTerm)
+  {
+    final int size = text.size();
+    int[] ids = new int[size];
+    int count = 0;
+    for (int id = 0; id < size; ++id)
+    {
+      final String ing = text.getLowerText(SearchText.FIELD_INGREDIENTS, id);
+      if ((ing != null) && (ing.indexOf(lowerTerm) >= 0))
+      {
+        ids[count++] = id;
+      }
+    }
+    
+    return Arrays.copyOf(ids, count);
+  }
+  
+  
+  /**
+   * Time the searches on a data file.
+   * 
+   * @param args the data file
+   * @throws Exception on a load error
+   */
+  public static void main(final String[] args) throws Exception
+  {
+    if (args.length != 1)
+    {
+      System.err.println("Usage: FmIndexBenchmark <data file>");
+      System.exit(1);
+    }
+    
+    final Corpus corpus = CorpusLoader.open(new File(args[0]));
+    final SearchText text = SearchText.build(corpus);
+    long start = System.nanoTime();
+    final FmIndex index = FmIndex.build(text, corpus);
+    System.out.println("Built the index of " + index.getLength() +
+        " characters in " + ((System.nanoTime() - start) / 1000000L) + " ms");
+    
+    for (String term : SEARCHES)
+    {
+      // Check the results, and warm up the JIT
+      final int[] expected = scan(text, term);
+      for (int i = 0; i < 5; ++i)
+      {
+        if (!Arrays.equals(expected, index.findDrinks(term,
+            SearchText.FIELD_INGREDIENTS, 1)))
+        {
+          System.err.println("Result mismatch for " + term);
+          System.exit(1);
+        }
+      }
+      
+      // Time both ways
+      long bestScan = Long.MAX_VALUE;
+      long bestCount = Long.MAX_VALUE;
+      long bestIndex = Long.MAX_VALUE;
+      for (int i = 0; i < RUNS; ++i)
+      {
+        start = System.nanoTime();
+        scan(text, term);
+        bestScan = Math.min(bestScan, System.nanoTime() - start);
+        
+        start = System.nanoTime();
+        index.count(term);
+        bestCount = Math.min(bestCount, System.nanoTime() - start);
+        
+        start = System.nanoTime();
+        index.findDrinks(term, SearchText.FIELD_INGREDIENTS, 1);
+        bestIndex = Math.min(bestIndex, System.nanoTime() - start);
+      }
+      
+      System.out.println("'" + term + "': " + expected.length +
+          " drinks, " + index.count(term) + " occurrences; scan " +
+          (bestScan / 1000L) + " us, count " + (bestCount / 1000L) +
+          " us, index " + (bestIndex / 1000L) + " us");
+    }
+  }
+}
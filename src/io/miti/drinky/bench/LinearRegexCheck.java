@@ -0,0 +1,230 @@
+package io.miti.drinky.bench;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import io.miti.drinky.filter.LinearRegex;
+
+/**
+ * Check LinearRegex against java.util.regex on random patterns
+ * (literals, escapes, classes, groups, alternation, greedy and lazy
+ * quantifiers, anchors, quoting and the 'i' flag) and random short
+ * strings, with and without ignoring case.  Patterns that LinearRegex
+ * doesn't support are skipped.  The strings are kept short, since
+ * java.util.regex can take exponential time on some of these
+ * patterns.  Exits with status 1 if any result differs.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class LinearRegexCheck
+{
+  /**
+   * The default number of random patterns.
+   */
+  private static final int DEFAULT_PATTERNS = 20000;
+  
+  /**
+   * The number of strings each pattern is checked against.
+   */
+  private static final int STRINGS_PER_PATTERN = 30;
+  
+  /**
+   * The single atoms used in patterns.
+   */
+  private static final String[] ATOMS = {"a", "b", "A", "B", "c", ".",
+    "\\d", "\\w", "\\s", "[ab]", "[^a]", "[a-c]", "[A-Z]", "[]a]", "[^]b]",
+    "x", "\\.", "\u00e9", "\\x41", "\\Q.*\\E", "-", " ", "[a-]", "\\W",
+    "[\\dab]"};
+  
+  /**
+   * The quantifiers used in patterns.
+   */
+  private static final String[] QUANTIFIERS = {"*", "+", "?", "{2}",
+    "{1,3}", "{0,}", "*?", "+?"};
+  
+  /**
+   * The inline flag that turns on ignoring case.
+   */
+  private static final String CASE_FLAG = "(?i)";
+  
+  /**
+   * The characters used in strings.
+   */
+  private static final String STRING_CHARS = "abABcx1 .-\u00e9\n_";
+  
+  /**
+   * The deepest nesting of groups.
+   */
+  private static final int MAX_DEPTH = 2;
+  
+  /**
+   * The longest string to generate.
+   */
+  private static final int MAX_STRING_LENGTH = 11;
+  
+  /**
+   * The most mismatches to print.
+   */
+  private static final int MAX_REPORTED = 10;
+  
+  
+  /**
+   * Default constructor.
+   */
+  private LinearRegexCheck()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Returns a random pattern.
+   * 
+   * @param rand the random number generator
+   * @param depth the nesting depth of the pattern
+   * @return the pattern
+   */
+  private static String getPattern(final Random rand, final int depth)
+  {
+    StringBuilder sb = new StringBuilder(20);
+    final int numAtoms = 1 + rand.nextInt(4);
+    for (int i = 0; i < numAtoms; ++i)
+    {
+      final int kind = rand.nextInt(12);
+      String atom = null;
+      if ((kind < 7) || (depth >= MAX_DEPTH))
+      {
+        atom = ATOMS[rand.nextInt(ATOMS.length)];
+      }
+      else if (kind < 9)
+      {
+        atom = "(" + getPattern(rand, depth + 1) + "|" +
+          getPattern(rand, depth + 1) + ")";
+      }
+      else if (kind == 9)
+      {
+        atom = "(?:" + getPattern(rand, depth + 1) + ")";
+      }
+      else if (kind == 10)
+      {
+        atom = "(?i:" + getPattern(rand, depth + 1) + ")";
+      }
+      else
+      {
+        atom = CASE_FLAG;
+      }
+      
+      sb.append(atom);
+      if (!atom.equals(CASE_FLAG))
+      {
+        // Add a quantifier two times out of three
+        final int quant = rand.nextInt(12);
+        if (quant < QUANTIFIERS.length)
+        {
+          sb.append(QUANTIFIERS[quant]);
+        }
+      }
+    }
+    
+    if (rand.nextInt(10) == 0)
+    {
+      sb.insert(0, '^');
+    }
+    if (rand.nextInt(10) == 0)
+    {
+      sb.append('$');
+    }
+    
+    return sb.toString();
+  }
+  
+  
+  /**
+   * Returns a random string.
+   * 
+   * @param rand the random number generator
+   * @return the string
+   */
+  private static String getString(final Random rand)
+  {
+    final int len = rand.nextInt(MAX_STRING_LENGTH + 1);
+    StringBuilder sb = new StringBuilder(len);
+    for (int i = 0; i < len; ++i)
+    {
+      sb.append(STRING_CHARS.charAt(rand.nextInt(STRING_CHARS.length())));
+    }
+    
+    return sb.toString();
+  }
+  
+  
+  /**
+   * Run the check.
+   * 
+   * @param args optionally, the number of patterns and the random seed
+   */
+  public static void main(final String[] args)
+  {
+    if (args.length > 2)
+    {
+      System.err.println("Usage: LinearRegexCheck [patterns [seed]]");
+      System.exit(1);
+    }
+    
+    final int numPatterns = ((args.length > 0) ? Integer.parseInt(args[0])
+                                               : DEFAULT_PATTERNS);
+    final long seed = ((args.length > 1) ? Long.parseLong(args[1]) : 7L);
+    final Random rand = new Random(seed);
+    
+    int checks = 0;
+    int unsupported = 0;
+    int mismatches = 0;
+    for (int i = 0; i < numPatterns; ++i)
+    {
+      final String regex = getPattern(rand, 0);
+      final boolean ignoreCase = rand.nextBoolean();
+      Pattern pattern = null;
+      try
+      {
+        pattern = Pattern.compile(regex,
+            ((ignoreCase) ? Pattern.CASE_INSENSITIVE : 0));
+      }
+      catch (RuntimeException re)
+      {
+        // Not a valid pattern
+        continue;
+      }
+      
+      final LinearRegex linear = LinearRegex.compile(regex, ignoreCase);
+      if (linear == null)
+      {
+        ++unsupported;
+        continue;
+      }
+      
+      for (int s = 0; s < STRINGS_PER_PATTERN; ++s)
+      {
+        final String str = getString(rand);
+        final boolean expected = pattern.matcher(str).matches();
+        ++checks;
+        if (linear.matches(str) != expected)
+        {
+          if (++mismatches <= MAX_REPORTED)
+          {
+            System.out.println("Mismatch: pattern '" + regex + "', string '" +
+                str + "', ignore case " + ignoreCase + ", expected " +
+                expected);
+          }
+        }
+      }
+    }
+    
+    System.out.println(checks + " checks, " + unsupported +
+        " unsupported patterns, " + mismatches + " mismatches");
+    if (mismatches > 0)
+    {
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,202 @@
+package io.miti.drinky.bench;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.miti.drinky.app.DrinkNode;
+import io.miti.drinky.data.Corpus;
+import io.miti.drinky.data.CorpusLoader;
+
+/**
+ * Compare the load time and the heap used after loading for
+ * one or more data files (e.g., drinks.ser and drinks.dky).
+ * Given more than one file, each is measured in a new JVM (with
+ * the same JVM options), since whatever an earlier file left on
+ * the heap throws off the numbers for the next.  The heap is
+ * measured after the timed runs, with the loaded data held across
+ * the measurement.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class LoadBenchmark
+{
+  /**
+   * The number of timed loads per file.
+   */
+  private static final int RUNS = 10;
+  
+  /**
+   * The most garbage collections to wait for the heap to settle.
+   */
+  private static final int MAX_COLLECTIONS = 10;
+  
+  /**
+   * Holds the loaded data so it stays reachable while
+   * the heap is measured.
+   */
+  private static List<DrinkNode> retained = null;
+  
+  /**
+   * Holds the opened corpus so it stays reachable while
+   * the heap is measured.
+   */
+  private static Corpus retainedCorpus = null;
+  
+  
+  /**
+   * Default constructor.
+   */
+  private LoadBenchmark()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Return the heap currently in use, after running the garbage
+   * collector until the number stops going down.
+   * 
+   * @return the used heap, in bytes
+   * @throws InterruptedException if interrupted while waiting
+   */
+  private static long usedHeap() throws InterruptedException
+  {
+    final Runtime rt = Runtime.getRuntime();
+    long used = Long.MAX_VALUE;
+    for (int i = 0; i < MAX_COLLECTIONS; ++i)
+    {
+      System.gc();
+      Thread.sleep(50L);
+      final long current = rt.totalMemory() - rt.freeMemory();
+      if (current >= used)
+      {
+        break;
+      }
+      
+      used = current;
+    }
+    
+    return used;
+  }
+  
+  
+  /**
+   * Measure one file in a new JVM, with the same class path and
+   * JVM options as this one.
+   * 
+   * @param arg the data file
+   * @return whether the measurement succeeded
+   * @throws Exception if the JVM can't be run
+   */
+  private static boolean runInNewJvm(final String arg) throws Exception
+  {
+    List<String> cmd = new ArrayList<String>(10);
+    cmd.add(System.getProperty("java.home") + File.separator + "bin" +
+            File.separator + "java");
+    cmd.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+    cmd.add("-cp");
+    cmd.add(System.getProperty("java.class.path"));
+    cmd.add(LoadBenchmark.class.getName());
+    cmd.add(arg);
+    
+    Process process = new ProcessBuilder(cmd).inheritIO().start();
+    return (process.waitFor() == 0);
+  }
+  
+  
+  /**
+   * Load each file and report the timings.  More than one file
+   * are measured in a new JVM each.
+   * 
+   * @param args the data files to compare
+   * @throws Exception on a load error
+   */
+  public static void main(final String[] args) throws Exception
+  {
+    if (args.length < 1)
+    {
+      System.err.println("Usage: LoadBenchmark <data file>...");
+      System.exit(1);
+    }
+    else if (args.length == 1)
+    {
+      measure(new File(args[0]));
+      return;
+    }
+    
+    boolean ok = true;
+    for (String arg : args)
+    {
+      ok = ((runInNewJvm(arg)) && (ok));
+    }
+    
+    if (!ok)
+    {
+      System.exit(1);
+    }
+  }
+  
+  
+  /**
+   * Load a file and report the timings and the heap used.
+   * 
+   * @param file the data file
+   * @throws Exception on a load error
+   */
+  private static void measure(final File file) throws Exception
+  {
+    // Warm up the JIT
+    for (int i = 0; i < 3; ++i)
+    {
+      CorpusLoader.load(file);
+    }
+    
+    // Time the loads
+    long best = Long.MAX_VALUE;
+    long total = 0L;
+    for (int i = 0; i < RUNS; ++i)
+    {
+      final long start = System.nanoTime();
+      List<DrinkNode> list = CorpusLoader.load(file);
+      final long elapsed = System.nanoTime() - start;
+      best = Math.min(best, elapsed);
+      total += elapsed;
+      list = null;
+    }
+    
+    // Measure the heap held by one loaded copy
+    retained = null;
+    final long before = usedHeap();
+    retained = CorpusLoader.load(file);
+    final long after = usedHeap();
+    
+    System.out.println(file.getName() + ": " + retained.size() + " drinks, " +
+        "best " + (best / 1000000L) + " ms, " +
+        "mean " + (total / RUNS / 1000000L) + " ms, " +
+        "heap after load " + ((after - before) / 1024L) + " KB");
+    retained = null;
+    
+    // Time opening the corpus (mapped, if the format allows it)
+    best = Long.MAX_VALUE;
+    for (int i = 0; i < RUNS; ++i)
+    {
+      final long start = System.nanoTime();
+      retainedCorpus = CorpusLoader.open(file);
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    
+    retainedCorpus = null;
+    final long beforeOpen = usedHeap();
+    retainedCorpus = CorpusLoader.open(file);
+    final long afterOpen = usedHeap();
+    
+    System.out.println(file.getName() + ": open as " +
+        retainedCorpus.getClass().getSimpleName() + ", " +
+        "best " + (best / 1000L) + " us, " +
+        "heap after open " + ((afterOpen - beforeOpen) / 1024L) + " KB");
+    retainedCorpus = null;
+  }
+}
@@ -0,0 +1,285 @@
+package io.miti.drinky.bench;
+
+import java.io.File;
+import java.util.Arrays;
+
+import io.miti.drinky.app.DrinkNode;
+import io.miti.drinky.data.Corpus;
+import io.miti.drinky.data.CorpusLoader;
+import io.miti.drinky.data.IngredientDictionary;
+import io.miti.drinky.filter.ContainsAllFilter;
+import io.miti.drinky.filter.RegexFilter;
+import io.miti.drinky.filter.SimilarFilter;
+import io.miti.drinky.filter.TermFilter;
+import io.miti.drinky.index.SearchEngine;
+
+/**
+ * Compare the time to scan every drink on one thread against
+ * scanning in parallel, on a large corpus made by repeating the
+ * drinks in a data file, and check that both return the same
+ * drinks (with and without a limit on the number of matches).
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class ParallelScanBenchmark
+{
+  /**
+   * The number of timed runs per search.
+   */
+  private static final int RUNS = 10;
+  
+  /**
+   * The default number of copies of the drinks in the corpus.
+   */
+  private static final int DEFAULT_COPIES = 50;
+  
+  /**
+   * The limits on the number of matches to time.
+   */
+  private static final int[] LIMITS = {Integer.MAX_VALUE, 100};
+  
+  
+  /**
+   * Default constructor.
+   */
+  private ParallelScanBenchmark()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Returns the searches to run, as pairs of a label and
+   * the name and ingredient filters.
+   * 
+   * @return the searches
+   */
+  private static Object[][] getSearches()
+  {
+    return new Object[][] {
+      {"ingredients contain 'lemon juice'",
+        null, new ContainsAllFilter("lemon juice", true)},
+      {"name regex '.*(berry|cherry).*'",
+        new RegexFilter(".*(berry|cherry).*", true), null},
+      {"name similar to 'margarita'",
+        new SimilarFilter("margarita", true, 2), null}
+    };
+  }
+  
+  
+  /**
+   * Time the scans on a data file.
+   * 
+   * @param args the data file, and optionally the number of copies
+   *        of its drinks in the corpus
+   * @throws Exception on a load error
+   */
+  public static void main(final String[] args) throws Exception
+  {
+    if ((args.length < 1) || (args.length > 2))
+    {
+      System.err.println("Usage: ParallelScanBenchmark <data file> " +
+          "[copies]");
+      System.exit(1);
+    }
+    
+    final int copies = ((args.length > 1) ? Integer.parseInt(args[1])
+                                          : DEFAULT_COPIES);
+    final Corpus corpus = new RepeatedCorpus(
+        CorpusLoader.open(new File(args[0])), copies);
+    final SearchEngine engine = SearchEngine.build(corpus);
+    System.out.println(corpus.size() + " drinks, " +
+        Runtime.getRuntime().availableProcessors() + " processors");
+    
+    for (Object[] search : getSearches())
+    {
+      final String label = (String) search[0];
+      final TermFilter nameFilter = (TermFilter) search[1];
+      final TermFilter ingFilter = (TermFilter) search[2];
+      for (int limit : LIMITS)
+      {
+        // Check the results, and warm up the JIT
+        engine.setParallel(false);
+        final int[] expected = engine.scan(nameFilter, ingFilter, limit);
+        engine.setParallel(true);
+        if (!Arrays.equals(expected,
+                           engine.scan(nameFilter, ingFilter, limit)))
+        {
+          System.err.println("Result mismatch for " + label);
+          System.exit(1);
+        }
+        
+        // Time both ways
+        long bestSerial = Long.MAX_VALUE;
+        long bestParallel = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; ++i)
+        {
+          engine.setParallel(false);
+          long start = System.nanoTime();
+          engine.scan(nameFilter, ingFilter, limit);
+          bestSerial = Math.min(bestSerial, System.nanoTime() - start);
+          
+          engine.setParallel(true);
+          start = System.nanoTime();
+          engine.scan(nameFilter, ingFilter, limit);
+          bestParallel = Math.min(bestParallel, System.nanoTime() - start);
+        }
+        
+        System.out.println(label + ((limit == Integer.MAX_VALUE) ? ""
+            : " (limit " + limit + ")") + ": " + expected.length +
+            " matches, serial " + (bestSerial / 1000L) + " us, parallel " +
+            (bestParallel / 1000L) + " us");
+      }
+    }
+  }
+  
+  
+  /**
+   * A corpus that holds the drinks of another corpus several
+   * times over.
+   */
+  private static final class RepeatedCorpus implements Corpus
+  {
+    /**
+     * The corpus being repeated.
+     */
+    private final Corpus source;
+    
+    /**
+     * The number of copies of the drinks.
+     */
+    private final int copies;
+    
+    
+    /**
+     * Create a corpus.
+     * 
+     * @param base the corpus to repeat
+     * @param nCopies the number of copies of its drinks
+     */
+    RepeatedCorpus(final Corpus base, final int nCopies)
+    {
+      super();
+      source = base;
+      copies = nCopies;
+    }
+    
+    
+    /**
+     * Returns the number of drinks.
+     * 
+     * @return the number of drinks
+     */
+    @Override
+    public int size()
+    {
+      return (source.size() * copies);
+    }
+    
+    
+    /**
+     * Returns the name of a drink.
+     * 
+     * @param id the drink ID
+     * @return the name of the drink
+     */
+    @Override
+    public String getName(final int id)
+    {
+      return source.getName(id % source.size());
+    }
+    
+    
+    /**
+     * Returns the ingredients of a drink as a single string.
+     * 
+     * @param id the drink ID
+     * @return the ingredients as a string
+     */
+    @Override
+    public String getIngredientsString(final int id)
+    {
+      return source.getIngredientsString(id % source.size());
+    }
+    
+    
+    /**
+     * Returns the number of ingredients of a drink.
+     * 
+     * @param id the drink ID
+     * @return the number of ingredients
+     */
+    @Override
+    public int getIngredientCount(final int id)
+    {
+      return source.getIngredientCount(id % source.size());
+    }
+    
+    
+    /**
+     * Returns the ingredient name ID of one ingredient of a drink.
+     * 
+     * @param id the drink ID
+     * @param index the index of the ingredient in the drink
+     * @return the ingredient name ID
+     */
+    @Override
+    public int getIngredientId(final int id, final int index)
+    {
+      return source.getIngredientId(id % source.size(), index);
+    }
+    
+    
+    /**
+     * Returns the measure ID of one ingredient of a drink.
+     * 
+     * @param id the drink ID
+     * @param index the index of the ingredient in the drink
+     * @return the measure ID
+     */
+    @Override
+    public int getMeasureId(final int id, final int index)
+    {
+      return source.getMeasureId(id % source.size(), index);
+    }
+    
+    
+    /**
+     * Returns the dictionary of the ingredient and measure IDs.
+     * 
+     * @return the ingredient dictionary
+     */
+    @Override
+    public IngredientDictionary getIngredientDictionary()
+    {
+      return source.getIngredientDictionary();
+    }
+    
+    
+    /**
+     * Returns the category of a drink.
+     * 
+     * @param id the drink ID
+     * @return the category
+     */
+    @Override
+    public int getCategory(final int id)
+    {
+      return source.getCategory(id % source.size());
+    }
+    
+    
+    /**
+     * Returns a drink.
+     * 
+     * @param id the drink ID
+     * @return the drink
+     */
+    @Override
+    public DrinkNode getDrink(final int id)
+    {
+      return source.getDrink(id % source.size());
+    }
+  }
+}
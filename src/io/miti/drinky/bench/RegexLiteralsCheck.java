@@ -0,0 +1,222 @@
+package io.miti.drinky.bench;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import io.miti.drinky.data.CorpusLoader;
+import io.miti.drinky.data.SearchText;
+import io.miti.drinky.filter.RegexFilter;
+import io.miti.drinky.index.SearchEngine;
+
+/**
+ * Check that the literal text prefilter in RegexFilter (and the
+ * index lookups built on it) never changes which names match.
+ * Each expression is built from a drink name: pieces of the name as
+ * literal text, with random regex fragments (groups, classes,
+ * quantifiers, anchors, flags, quoting) mixed in.  The filter uses
+ * java.util.regex here, so only the prefilter is being checked.  For
+ * each expression, with and without ignoring case:
+ * 
+ * - the filter is compared with Pattern.matches() on the name it
+ *   came from and on random other names;
+ * - an indexed search is compared with a scan of every drink.
+ * 
+ * Exits with status 1 if any result differs.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class RegexLiteralsCheck
+{
+  /**
+   * The default number of expressions.
+   */
+  private static final int DEFAULT_EXPRESSIONS = 4000;
+  
+  /**
+   * The number of names each expression is checked against.
+   */
+  private static final int NAMES_PER_EXPRESSION = 50;
+  
+  /**
+   * The fragments mixed into the literal text.
+   */
+  private static final String[] FRAGMENTS = {".*", ".", " ", "a+",
+    "(rum|gin)", "[aeiou]", "\\s", "\\.", "x?", "\\Qo'\\E", "(?i)", "\\b",
+    "e{2}", "[^a]*", "(?:ta)+", "$", "^", "\\w+", "s*", "\\d"};
+  
+  /**
+   * The characters that have to be escaped in literal text.
+   */
+  private static final String META_CHARS = "\\.[]()*+?{}|^$";
+  
+  /**
+   * The most mismatches to print.
+   */
+  private static final int MAX_REPORTED = 10;
+  
+  
+  /**
+   * Default constructor.
+   */
+  private RegexLiteralsCheck()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Returns literal text with the regex metacharacters escaped.
+   * 
+   * @param text the text
+   * @return the escaped text
+   */
+  private static String escape(final String text)
+  {
+    StringBuilder sb = new StringBuilder(text.length() * 2);
+    for (int i = 0; i < text.length(); ++i)
+    {
+      final char ch = text.charAt(i);
+      if (META_CHARS.indexOf(ch) >= 0)
+      {
+        sb.append('\\');
+      }
+      sb.append(ch);
+    }
+    
+    return sb.toString();
+  }
+  
+  
+  /**
+   * Returns a random expression built from a name.
+   * 
+   * @param rand the random number generator
+   * @param name the name
+   * @return the expression
+   */
+  private static String getExpression(final Random rand, final String name)
+  {
+    StringBuilder sb = new StringBuilder(name.length() * 2);
+    int pos = 0;
+    while (pos < name.length())
+    {
+      final int end = Math.min(name.length(), pos + 1 + rand.nextInt(4));
+      if (rand.nextInt(3) > 0)
+      {
+        sb.append(escape(name.substring(pos, end)));
+      }
+      if (rand.nextInt(3) == 0)
+      {
+        sb.append(FRAGMENTS[rand.nextInt(FRAGMENTS.length)]);
+      }
+      pos = end;
+    }
+    
+    // Sometimes change the case of the literal text (and of the
+    // escapes, which changes their meaning too)
+    final String expr = sb.toString();
+    return ((rand.nextInt(5) == 0) ? expr.toUpperCase() : expr);
+  }
+  
+  
+  /**
+   * Run the check on a data file.
+   * 
+   * @param args the data file, and optionally the number of
+   *        expressions and the random seed
+   * @throws Exception on a load error
+   */
+  public static void main(final String[] args) throws Exception
+  {
+    if ((args.length < 1) || (args.length > 3))
+    {
+      System.err.println("Usage: RegexLiteralsCheck <data file> " +
+          "[expressions [seed]]");
+      System.exit(1);
+    }
+    
+    final int numExpressions = ((args.length > 1)
+        ? Integer.parseInt(args[1]) : DEFAULT_EXPRESSIONS);
+    final long seed = ((args.length > 2) ? Long.parseLong(args[2]) : 7L);
+    final Random rand = new Random(seed);
+    
+    final SearchEngine engine =
+      SearchEngine.build(CorpusLoader.open(new File(args[0])));
+    final SearchText text = engine.getSearchText();
+    final int size = text.size();
+    
+    int pairs = 0;
+    int searches = 0;
+    int mismatches = 0;
+    for (int i = 0; i < numExpressions; ++i)
+    {
+      final String source = text.getName(rand.nextInt(size));
+      if ((source == null) || (source.length() < 4))
+      {
+        continue;
+      }
+      
+      final String expr = getExpression(rand, source);
+      for (int c = 0; c < 2; ++c)
+      {
+        final boolean ignoreCase = (c == 0);
+        RegexFilter filter = null;
+        try
+        {
+          filter = new RegexFilter(expr, ignoreCase, false);
+        }
+        catch (RuntimeException re)
+        {
+          // Not a valid expression
+          continue;
+        }
+        
+        // Compare the filter with the regex package
+        final Pattern pattern = filter.getPattern();
+        for (int n = 0; n < NAMES_PER_EXPRESSION; ++n)
+        {
+          final String name = ((n == 0) ? source
+                               : text.getName(rand.nextInt(size)));
+          if (name == null)
+          {
+            continue;
+          }
+          
+          ++pairs;
+          final boolean expected = pattern.matcher(name).matches();
+          if (filter.accept(name) != expected)
+          {
+            if (++mismatches <= MAX_REPORTED)
+            {
+              System.out.println("Filter mismatch: '" + expr + "' on '" +
+                  name + "', ignore case " + ignoreCase + ", expected " +
+                  expected);
+            }
+          }
+        }
+        
+        // Compare the indexed search with a scan
+        ++searches;
+        if (!Arrays.equals(engine.scan(filter, null, Integer.MAX_VALUE),
+                           engine.search(filter, null, Integer.MAX_VALUE)))
+        {
+          if (++mismatches <= MAX_REPORTED)
+          {
+            System.out.println("Search mismatch: '" + expr +
+                "', ignore case " + ignoreCase);
+          }
+        }
+      }
+    }
+    
+    System.out.println(pairs + " expression/name pairs, " + searches +
+        " searches, " + mismatches + " mismatches");
+    if (mismatches > 0)
+    {
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,213 @@
+package io.miti.drinky.bench;
+
+import java.io.File;
+import java.util.Arrays;
+
+import io.miti.drinky.data.CorpusLoader;
+import io.miti.drinky.filter.AnagramFilter;
+import io.miti.drinky.filter.ContainsAllFilter;
+import io.miti.drinky.filter.ContainsSomeFilter;
+import io.miti.drinky.filter.DoubleMetaphone;
+import io.miti.drinky.filter.EndsWithFilter;
+import io.miti.drinky.filter.ExactMatchFilter;
+import io.miti.drinky.filter.FilterCache;
+import io.miti.drinky.filter.Metaphone;
+import io.miti.drinky.filter.Nysiis;
+import io.miti.drinky.filter.RegexFilter;
+import io.miti.drinky.filter.SimilarFilter;
+import io.miti.drinky.filter.SoundFilter;
+import io.miti.drinky.filter.StartsWithFilter;
+import io.miti.drinky.filter.SubAnagramFilter;
+import io.miti.drinky.filter.TermFilter;
+import io.miti.drinky.filter.WildcardFilter;
+import io.miti.drinky.index.SearchEngine;
+
+/**
+ * Compare the time to run a set of searches with the indexes
+ * against a scan of every drink, and check that both return
+ * the same drinks.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class SearchBenchmark
+{
+  /**
+   * The number of timed runs per search.
+   */
+  private static final int RUNS = 50;
+  
+  
+  /**
+   * Default constructor.
+   */
+  private SearchBenchmark()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Returns the searches to run, as pairs of a label and
+   * the name and ingredient filters.
+   * 
+   * @return the searches
+   */
+  private static Object[][] getSearches()
+  {
+    return new Object[][] {
+      {"name contains 'tini'", new ContainsAllFilter("tini", true), null},
+      {"name contains 'blue lagoon'",
+        new ContainsAllFilter("blue lagoon", true), null},
+      {"ingredients contain 'vodka lime'",
+        null, new ContainsAllFilter("vodka lime", true)},
+      {"ingredients contain \"orange juice\"",
+        null, new ContainsAllFilter("\"orange juice\"", true)},
+      {"ingredients contain 'Rum' (match case)",
+        null, new ContainsAllFilter("Rum", false)},
+      {"ingredients contain some of 'gin tequila'",
+        null, new ContainsSomeFilter("gin tequila", true)},
+      {"name 'punch', ingredients 'rum'",
+        new ContainsAllFilter("punch", true), new ContainsAllFilter("rum", true)},
+      {"name wildcard '*tini'", new WildcardFilter("*tini", true), null},
+      {"name wildcard 'blue*'", new WildcardFilter("blue*", true), null},
+      {"name wildcard '*a*e*i*o*'", new WildcardFilter("*a*e*i*o*", true),
+        null},
+      {"name wildcard 'mar*a'", new WildcardFilter("mar*a", true), null},
+      {"name starts with 'Mar'", new StartsWithFilter("Mar", true), null},
+      {"name ends with 'tini'", new EndsWithFilter("tini", true), null},
+      {"name is 'Margarita'", new ExactMatchFilter("Margarita", true), null},
+      {"name is 'Margarita' (match case)",
+        new ExactMatchFilter("Margarita", false), null},
+      {"name regex '.*(rum|gin) punch.*'",
+        new RegexFilter(".*(rum|gin) punch.*", true), null},
+      {"name regex '.*tequila\\s+sunrise.*'",
+        new RegexFilter(".*tequila\\s+sunrise.*", true), null},
+      {"name regex 'blue .*'", new RegexFilter("blue .*", true), null},
+      {"ingredients regex '.*\\d oz gin.*'",
+        null, new RegexFilter(".*\\d oz gin.*", true)},
+      {"ingredients regex '(.*[aeiou]){3}[xq]' (linear)",
+        null, new RegexFilter("(.*[aeiou]){3}[xq]", true)},
+      {"ingredients regex '(.*[aeiou]){3}[xq]' (backtracking)",
+        null, new RegexFilter("(.*[aeiou]){3}[xq]", true, false)},
+      {"name sounds like 'marguerita'",
+        new SoundFilter("marguerita", true), null},
+      {"name Metaphone 'kozmopolitan'",
+        new SoundFilter("kozmopolitan", true, Metaphone.INSTANCE), null},
+      {"name Double Metaphone 'wiskey sour'",
+        new SoundFilter("wiskey sour", true, DoubleMetaphone.INSTANCE), null},
+      {"name NYSIIS 'manhatan'",
+        new SoundFilter("manhatan", true, Nysiis.INSTANCE), null},
+      {"name similar to 'tequila sunrize' (2 edits)",
+        new SimilarFilter("tequila sunrize", true, 2), null},
+      {"name anagram of 'ratigaram'",
+        new AnagramFilter("ratigaram", true), null},
+      {"name spelled from 'the long island tequila'",
+        new SubAnagramFilter("the long island tequila", true), null}
+    };
+  }
+  
+  
+  /**
+   * Time the searches on a data file.
+   * 
+   * @param args the data file
+   * @throws Exception on a load error
+   */
+  public static void main(final String[] args) throws Exception
+  {
+    if (args.length != 1)
+    {
+      System.err.println("Usage: SearchBenchmark <data file>");
+      System.exit(1);
+    }
+    
+    long start = System.nanoTime();
+    final SearchEngine engine = SearchEngine.build(
+        CorpusLoader.open(new File(args[0])));
+    System.out.println("Built the search engine for " +
+        engine.getCorpus().size() + " drinks in " +
+        ((System.nanoTime() - start) / 1000000L) + " ms");
+    
+    for (Object[] search : getSearches())
+    {
+      final TermFilter nameFilter = (TermFilter) search[1];
+      final TermFilter ingFilter = (TermFilter) search[2];
+      
+      // Check the results, and warm up the JIT
+      final int[] expected = engine.scan(nameFilter, ingFilter,
+                                         Integer.MAX_VALUE);
+      for (int i = 0; i < 5; ++i)
+      {
+        final int[] actual = engine.search(nameFilter, ingFilter,
+                                           Integer.MAX_VALUE);
+        if (!Arrays.equals(expected, actual))
+        {
+          System.err.println("Result mismatch for " + search[0]);
+          System.exit(1);
+        }
+      }
+      
+      // Time both ways
+      long bestScan = Long.MAX_VALUE;
+      long bestSearch = Long.MAX_VALUE;
+      for (int i = 0; i < RUNS; ++i)
+      {
+        start = System.nanoTime();
+        engine.scan(nameFilter, ingFilter, Integer.MAX_VALUE);
+        bestScan = Math.min(bestScan, System.nanoTime() - start);
+        
+        start = System.nanoTime();
+        engine.search(nameFilter, ingFilter, Integer.MAX_VALUE);
+        bestSearch = Math.min(bestSearch, System.nanoTime() - start);
+      }
+      
+      System.out.println(search[0] + ": " + expected.length + " matches, " +
+          "scan " + (bestScan / 1000L) + " us, " +
+          "search " + (bestSearch / 1000L) + " us");
+    }
+    
+    timeFilterCache();
+  }
+  
+  
+  /**
+   * Time building the filters for some repeated searches,
+   * with and without the shared filter cache.
+   */
+  private static void timeFilterCache()
+  {
+    final int[] modes = {FilterCache.MODE_REGEX, FilterCache.MODE_REGEX,
+                         FilterCache.MODE_WILDCARD, FilterCache.MODE_CONTAINS,
+                         FilterCache.MODE_METAPHONE, FilterCache.MODE_SIMILAR};
+    final String[] terms = {".*(rum|gin) punch.*", ".*\\d oz gin.*",
+                            "*a*e*i*o*", "\"orange juice\" vodka",
+                            "kozmopolitan", "tequila sunrize"};
+    final FilterCache cache = FilterCache.getShared();
+    cache.clear();
+    
+    long bestBuild = Long.MAX_VALUE;
+    long bestCached = Long.MAX_VALUE;
+    for (int run = 0; run < RUNS; ++run)
+    {
+      long start = System.nanoTime();
+      for (int i = 0; i < modes.length; ++i)
+      {
+        new FilterCache(1).getFilter(modes[i], terms[i], true);
+      }
+      bestBuild = Math.min(bestBuild, System.nanoTime() - start);
+      
+      start = System.nanoTime();
+      for (int i = 0; i < modes.length; ++i)
+      {
+        cache.getFilter(modes[i], terms[i], true);
+      }
+      bestCached = Math.min(bestCached, System.nanoTime() - start);
+    }
+    
+    System.out.println("Building " + modes.length + " filters: " +
+        (bestBuild / 1000L) + " us, from the cache " +
+        (bestCached / 1000L) + " us (" + cache.getHits() + " hits, " +
+        cache.getMisses() + " misses)");
+  }
+}
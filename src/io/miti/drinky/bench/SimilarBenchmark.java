@@ -0,0 +1,200 @@
+package io.miti.drinky.bench;
+
+import java.io.File;
+
+import io.miti.drinky.data.Corpus;
+import io.miti.drinky.data.CorpusLoader;
+import io.miti.drinky.filter.SimilarFilter;
+
+/**
+ * Compare the time to check every drink name against a search
+ * term with SimilarFilter to the time taken by the full edit
+ * distance table it used to compute, and check that both accept
+ * the same names.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class SimilarBenchmark
+{
+  /**
+   * The number of timed runs per search.
+   */
+  private static final int RUNS = 20;
+  
+  /**
+   * The search terms and maximum distances.
+   */
+  private static final Object[][] SEARCHES = {
+    {"margarita", Integer.valueOf(2)},
+    {"tequila sunrize", Integer.valueOf(2)},
+    {"blue lagon", Integer.valueOf(1)},
+    {"long island iced tea", Integer.valueOf(4)},
+    {"the quick brown fox jumps over the lazy dog while drinking a very" +
+     " large margarita", Integer.valueOf(8)}
+  };
+  
+  
+  /**
+   * Default constructor.
+   */
+  private SimilarBenchmark()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Computes the Levenshtein distance between two strings with
+   * the full table, as SimilarFilter used to.
+   * 
+   * @param s First string to compare
+   * @param t Second string to compare
+   * @return the Levenshtein distance
+   */
+  private static int getMatrixScore(final String s, final String t)
+  {
+    final int n = s.length();
+    final int m = t.length();
+    if (n == 0)
+    {
+      return m;
+    }
+    if (m == 0)
+    {
+      return n;
+    }
+    
+    int[][] d = new int[n + 1][m + 1];
+    for (int i = 0; i <= n; i++)
+    {
+      d[i][0] = i;
+    }
+    for (int j = 0; j <= m; j++)
+    {
+      d[0][j] = j;
+    }
+    
+    for (int i = 1; i <= n; i++)
+    {
+      final char si = s.charAt(i - 1);
+      for (int j = 1; j <= m; j++)
+      {
+        final int cost = ((si == t.charAt(j - 1)) ? 0 : 1);
+        d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1),
+                           d[i - 1][j - 1] + cost);
+      }
+    }
+    
+    return d[n][m];
+  }
+  
+  
+  /**
+   * Returns the number of names within a distance of a term,
+   * using the full table.
+   * 
+   * @param names the lower-case names
+   * @param term the lower-case term
+   * @param maxDistance the maximum distance
+   * @return the number of matches
+   */
+  private static int countMatrix(final String[] names,
+                                 final String term,
+                                 final int maxDistance)
+  {
+    int count = 0;
+    for (String name : names)
+    {
+      if (getMatrixScore(term, name) <= maxDistance)
+      {
+        ++count;
+      }
+    }
+    
+    return count;
+  }
+  
+  
+  /**
+   * Returns the number of names accepted by a filter.
+   * 
+   * @param names the lower-case names
+   * @param filter the filter
+   * @return the number of matches
+   */
+  private static int countFilter(final String[] names,
+                                 final SimilarFilter filter)
+  {
+    int count = 0;
+    for (String name : names)
+    {
+      if (filter.acceptLowerCase(name))
+      {
+        ++count;
+      }
+    }
+    
+    return count;
+  }
+  
+  
+  /**
+   * Time the searches on a data file.
+   * 
+   * @param args the data file
+   * @throws Exception on a load error
+   */
+  public static void main(final String[] args) throws Exception
+  {
+    if (args.length != 1)
+    {
+      System.err.println("Usage: SimilarBenchmark <data file>");
+      System.exit(1);
+    }
+    
+    final Corpus corpus = CorpusLoader.open(new File(args[0]));
+    String[] names = new String[corpus.size()];
+    for (int i = 0; i < names.length; ++i)
+    {
+      final String name = corpus.getName(i);
+      names[i] = ((name == null) ? "" : name.toLowerCase());
+    }
+    
+    for (Object[] search : SEARCHES)
+    {
+      final String term = (String) search[0];
+      final int maxDistance = ((Integer) search[1]).intValue();
+      final SimilarFilter filter = new SimilarFilter(term, true, maxDistance);
+      
+      // Check the results, and warm up the JIT
+      final int expected = countMatrix(names, term, maxDistance);
+      for (int i = 0; i < 5; ++i)
+      {
+        if (countFilter(names, filter) != expected)
+        {
+          System.err.println("Result mismatch for " + term);
+          System.exit(1);
+        }
+      }
+      
+      // Time both ways
+      long bestMatrix = Long.MAX_VALUE;
+      long bestFilter = Long.MAX_VALUE;
+      for (int i = 0; i < RUNS; ++i)
+      {
+        long start = System.nanoTime();
+        countMatrix(names, term, maxDistance);
+        bestMatrix = Math.min(bestMatrix, System.nanoTime() - start);
+        
+        start = System.nanoTime();
+        countFilter(names, filter);
+        bestFilter = Math.min(bestFilter, System.nanoTime() - start);
+      }
+      
+      System.out.println("'" + term + "' within " + maxDistance + ": " +
+          expected + " matches, table " + (bestMatrix / 1000L) + " us, " +
+          "filter " + (bestFilter / 1000L) + " us");
+    }
+  }
+}
@@ -0,0 +1,185 @@
+package io.miti.drinky.bench;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import io.miti.drinky.filter.WildcardFilter;
+
+/**
+ * Check WildcardFilter against a regular expression translation of
+ * the same pattern ('*' becomes ".*" and '?' becomes "."), on random
+ * short patterns and names, with and without ignoring case.  The
+ * alphabet is small, so the patterns often nearly match, which is
+ * where a matcher that doesn't backtrack could go wrong.  Exits
+ * with status 1 if any result differs.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class WildcardCheck
+{
+  /**
+   * The default number of random cases.
+   */
+  private static final int DEFAULT_CASES = 300000;
+  
+  /**
+   * The characters used in patterns.
+   */
+  private static final String PATTERN_CHARS = "abAB*?";
+  
+  /**
+   * The characters used in names.
+   */
+  private static final String NAME_CHARS = "abAB";
+  
+  /**
+   * The longest pattern to generate.
+   */
+  private static final int MAX_PATTERN_LENGTH = 8;
+  
+  /**
+   * The longest name to generate.
+   */
+  private static final int MAX_NAME_LENGTH = 10;
+  
+  /**
+   * The most mismatches to print.
+   */
+  private static final int MAX_REPORTED = 10;
+  
+  
+  /**
+   * Default constructor.
+   */
+  private WildcardCheck()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Returns whether a name matches a pattern, using a regular
+   * expression translation of the pattern.
+   * 
+   * @param pattern the wildcard pattern
+   * @param name the name
+   * @param ignoreCase whether to ignore case
+   * @return whether the name matches
+   */
+  private static boolean referenceMatch(final String pattern,
+                                        final String name,
+                                        final boolean ignoreCase)
+  {
+    // An empty pattern matches anything, and an empty name
+    // matches no other pattern
+    if (pattern.length() == 0)
+    {
+      return true;
+    }
+    else if (name.length() == 0)
+    {
+      return false;
+    }
+    
+    StringBuilder sb = new StringBuilder(pattern.length() * 4);
+    for (int i = 0; i < pattern.length(); ++i)
+    {
+      final char ch = pattern.charAt(i);
+      if (ch == '*')
+      {
+        sb.append(".*");
+      }
+      else if (ch == '?')
+      {
+        sb.append('.');
+      }
+      else
+      {
+        sb.append(Pattern.quote(String.valueOf(ch)));
+      }
+    }
+    
+    final int flags = (Pattern.DOTALL |
+                       ((ignoreCase) ? Pattern.CASE_INSENSITIVE : 0));
+    return Pattern.compile(sb.toString(), flags).matcher(name).matches();
+  }
+  
+  
+  /**
+   * Returns a random string.
+   * 
+   * @param rand the random number generator
+   * @param chars the characters to use
+   * @param maxLength the longest string to return
+   * @return the string
+   */
+  private static String getRandomString(final Random rand,
+                                        final String chars,
+                                        final int maxLength)
+  {
+    final int len = rand.nextInt(maxLength + 1);
+    StringBuilder sb = new StringBuilder(len);
+    for (int i = 0; i < len; ++i)
+    {
+      sb.append(chars.charAt(rand.nextInt(chars.length())));
+    }
+    
+    return sb.toString();
+  }
+  
+  
+  /**
+   * Run the check.
+   * 
+   * @param args optionally, the number of cases and the random seed
+   */
+  public static void main(final String[] args)
+  {
+    if (args.length > 2)
+    {
+      System.err.println("Usage: WildcardCheck [cases [seed]]");
+      System.exit(1);
+    }
+    
+    final int cases = ((args.length > 0) ? Integer.parseInt(args[0])
+                                         : DEFAULT_CASES);
+    final long seed = ((args.length > 1) ? Long.parseLong(args[1]) : 1L);
+    final Random rand = new Random(seed);
+    
+    int mismatches = 0;
+    for (int i = 0; i < cases; ++i)
+    {
+      final String pattern = getRandomString(rand, PATTERN_CHARS,
+                                             MAX_PATTERN_LENGTH);
+      final String name = getRandomString(rand, NAME_CHARS, MAX_NAME_LENGTH);
+      final boolean ignoreCase = rand.nextBoolean();
+      
+      final boolean expected = referenceMatch(pattern, name, ignoreCase);
+      final WildcardFilter filter = new WildcardFilter(pattern, ignoreCase);
+      boolean ok = (filter.accept(name) == expected);
+      if (ignoreCase)
+      {
+        ok &= (filter.acceptLowerCase(name.toLowerCase(Locale.ENGLISH))
+               == expected);
+      }
+      
+      if (!ok)
+      {
+        if (++mismatches <= MAX_REPORTED)
+        {
+          System.out.println("Mismatch: pattern '" + pattern + "', name '" +
+              name + "', ignore case " + ignoreCase + ", expected " +
+              expected);
+        }
+      }
+    }
+    
+    System.out.println(cases + " cases, " + mismatches + " mismatches");
+    if (mismatches > 0)
+    {
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,302 @@
+package io.miti.drinky.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.miti.drinky.app.DrinkNode;
+
+/**
+ * A corpus held on the heap in columns rather than one object per
+ * drink.  The names and instructions are packed into single byte
+ * arrays with an offset array each (see PackedText), one byte per
+ * character when the text allows it, the category, glass and alcohol
+ * IDs are byte columns, and the ingredients are kept as a measure ID
+ * and an ingredient name ID each, in an IngredientTable.
+ * 
+ * The corpus is read-only once built, so it is safe to share
+ * between threads.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class ColumnarCorpus implements Corpus
+{
+  /**
+   * The number of drinks.
+   */
+  private final int numDrinks;
+  
+  /**
+   * The packed drink names.
+   */
+  private final PackedText names;
+  
+  /**
+   * The packed mixing instructions.
+   */
+  private final PackedText instructions;
+  
+  /**
+   * The category of each drink.
+   */
+  private final byte[] category;
+  
+  /**
+   * The glass type of each drink.
+   */
+  private final byte[] glass;
+  
+  /**
+   * The alcohol type of each drink.
+   */
+  private final byte[] alcohol;
+  
+  /**
+   * The ingredients of each drink.
+   */
+  private final IngredientTable ingredients;
+  
+  
+  /**
+   * Build the columns from another corpus.
+   * 
+   * @param source the source of the drinks
+   */
+  private ColumnarCorpus(final Corpus source)
+  {
+    super();
+    numDrinks = source.size();
+    
+    // Copy each drink into the columns
+    category = new byte[numDrinks];
+    glass = new byte[numDrinks];
+    alcohol = new byte[numDrinks];
+    String[] nameList = new String[numDrinks];
+    String[] instrList = new String[numDrinks];
+    List<List<String>> ingList = new ArrayList<List<String>>(numDrinks);
+    for (int i = 0; i < numDrinks; ++i)
+    {
+      final DrinkNode drink = source.getDrink(i);
+      nameList[i] = drink.getName();
+      instrList[i] = drink.getInstructions();
+      category[i] = toByte(drink.getCategory());
+      glass[i] = toByte(drink.getGlass());
+      alcohol[i] = toByte(drink.getAlcohol());
+      ingList.add(drink.getIngredients());
+    }
+    
+    names = PackedText.build(nameList);
+    instructions = PackedText.build(instrList);
+    ingredients = IngredientTable.build(ingList);
+  }
+  
+  
+  /**
+   * Build a columnar copy of a corpus.
+   * 
+   * @param source the source of the drinks
+   * @return the columnar corpus
+   */
+  public static ColumnarCorpus build(final Corpus source)
+  {
+    return new ColumnarCorpus(source);
+  }
+  
+  
+  /**
+   * Narrow an ID to a byte column value.
+   * 
+   * @param id the ID
+   * @return the ID as a byte
+   */
+  private static byte toByte(final int id)
+  {
+    if ((id < 0) || (id > 255))
+    {
+      throw new IllegalArgumentException("ID out of range for a byte column: " + id);
+    }
+    
+    return (byte) id;
+  }
+  
+  
+  /**
+   * Returns the number of drinks.
+   * 
+   * @return the number of drinks
+   */
+  @Override
+  public int size()
+  {
+    return numDrinks;
+  }
+  
+  
+  /**
+   * Returns the name of a drink.
+   * 
+   * @param id the drink ID
+   * @return the name of the drink
+   */
+  @Override
+  public String getName(final int id)
+  {
+    return names.get(id);
+  }
+  
+  
+  /**
+   * Returns the mixing instructions of a drink.
+   * 
+   * @param id the drink ID
+   * @return the instructions
+   */
+  public String getInstructions(final int id)
+  {
+    return instructions.get(id);
+  }
+  
+  
+  /**
+   * Returns the number of ingredients of a drink.
+   * 
+   * @param id the drink ID
+   * @return the number of ingredients
+   */
+  @Override
+  public int getIngredientCount(final int id)
+  {
+    return ingredients.getIngredientCount(id);
+  }
+  
+  
+  /**
+   * Returns the ingredient name ID of one ingredient of a drink.
+   * 
+   * @param id the drink ID
+   * @param index the index of the ingredient in the drink
+   * @return the ingredient name ID
+   */
+  @Override
+  public int getIngredientId(final int id, final int index)
+  {
+    return ingredients.getIngredientId(id, index);
+  }
+  
+  
+  /**
+   * Returns the measure ID of one ingredient of a drink.
+   * 
+   * @param id the drink ID
+   * @param index the index of the ingredient in the drink
+   * @return the measure ID (0 if there is no measure)
+   */
+  @Override
+  public int getMeasureId(final int id, final int index)
+  {
+    return ingredients.getMeasureId(id, index);
+  }
+  
+  
+  /**
+   * Returns the dictionary of the ingredient and measure IDs.
+   * 
+   * @return the ingredient dictionary
+   */
+  @Override
+  public IngredientDictionary getIngredientDictionary()
+  {
+    return ingredients.getDictionary();
+  }
+  
+  
+  /**
+   * Returns one ingredient of a drink.
+   * 
+   * @param id the drink ID
+   * @param index the index of the ingredient in the drink
+   * @return the ingredient
+   */
+  public String getIngredient(final int id, final int index)
+  {
+    return ingredients.getIngredient(id, index);
+  }
+  
+  
+  /**
+   * Returns the ingredients of a drink as a single string.
+   * 
+   * @param id the drink ID
+   * @return the ingredients as a string
+   */
+  @Override
+  public String getIngredientsString(final int id)
+  {
+    return ingredients.getIngredientsString(id);
+  }
+  
+  
+  /**
+   * Returns the category of a drink.
+   * 
+   * @param id the drink ID
+   * @return the category
+   */
+  @Override
+  public int getCategory(final int id)
+  {
+    return (category[id] & 0xFF);
+  }
+  
+  
+  /**
+   * Returns the glass type of a drink.
+   * 
+   * @param id the drink ID
+   * @return the glass type
+   */
+  public int getGlass(final int id)
+  {
+    return (glass[id] & 0xFF);
+  }
+  
+  
+  /**
+   * Returns the alcohol type of a drink.
+   * 
+   * @param id the drink ID
+   * @return the alcohol type
+   */
+  public int getAlcohol(final int id)
+  {
+    return (alcohol[id] & 0xFF);
+  }
+  
+  
+  /**
+   * Returns a new drink object holding the data for a drink.
+   * 
+   * @param id the drink ID
+   * @return the drink
+   */
+  @Override
+  public DrinkNode getDrink(final int id)
+  {
+    DrinkNode drink = new DrinkNode();
+    drink.setName(getName(id));
+    drink.setInstructions(getInstructions(id));
+    drink.setCategory(getCategory(id));
+    drink.setGlass(getGlass(id));
+    drink.setAlcohol(getAlcohol(id));
+    
+    final int numIngs = getIngredientCount(id);
+    List<String> ings = new ArrayList<String>(numIngs);
+    for (int i = 0; i < numIngs; ++i)
+    {
+      ings.add(getIngredient(id, i));
+    }
+    drink.setIngredients(ings);
+    
+    return drink;
+  }
+}
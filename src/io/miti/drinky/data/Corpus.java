@@ -0,0 +1,91 @@
+package io.miti.drinky.data;
+
+import io.miti.drinky.app.DrinkNode;
+
+/**
+ * This defines the Corpus interface, used to access the drink
+ * data by drink ID (0 to size() - 1), so the data does not need
+ * to be held as a list of DrinkNode objects.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public interface Corpus
+{
+  /**
+   * Returns the number of drinks.
+   * 
+   * @return the number of drinks
+   */
+  int size();
+  
+  /**
+   * Returns the name of a drink.
+   * 
+   * @param id the drink ID
+   * @return the name of the drink
+   */
+  String getName(int id);
+  
+  /**
+   * Returns the ingredients of a drink as a single string,
+   * separated by spaces.
+   * 
+   * @param id the drink ID
+   * @return the ingredients as a string
+   */
+  String getIngredientsString(int id);
+  
+  /**
+   * Returns the number of ingredients of a drink.
+   * 
+   * @param id the drink ID
+   * @return the number of ingredients
+   */
+  int getIngredientCount(int id);
+  
+  /**
+   * Returns the ID of the ingredient name (without the measure)
+   * of one ingredient of a drink, in getIngredientDictionary().
+   * Drinks with the same ingredient name have the same ID.
+   * 
+   * @param id the drink ID
+   * @param index the index of the ingredient in the drink
+   * @return the ingredient name ID
+   */
+  int getIngredientId(int id, int index);
+  
+  /**
+   * Returns the ID of the measure of one ingredient of a drink,
+   * in getIngredientDictionary().
+   * 
+   * @param id the drink ID
+   * @param index the index of the ingredient in the drink
+   * @return the measure ID (0 if there is no measure)
+   */
+  int getMeasureId(int id, int index);
+  
+  /**
+   * Returns the dictionary of the ingredient and measure IDs.
+   * 
+   * @return the ingredient dictionary
+   */
+  IngredientDictionary getIngredientDictionary();
+  
+  /**
+   * Returns the category of a drink.
+   * 
+   * @param id the drink ID
+   * @return the category
+   */
+  int getCategory(int id);
+  
+  /**
+   * Returns a drink.  Depending on the implementation, this may
+   * create a new object on each call.
+   * 
+   * @param id the drink ID
+   * @return the drink
+   */
+  DrinkNode getDrink(int id);
+}
@@ -0,0 +1,91 @@
+package io.miti.drinky.data;
+
+import java.io.File;
+import java.util.List;
+
+import io.miti.drinky.app.DrinkNode;
+
+/**
+ * Command-line tool to convert a data file (usually the serialized
+ * drinks.ser) into the binary corpus format.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class CorpusConverter
+{
+  /**
+   * Default constructor.
+   */
+  private CorpusConverter()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Convert the input file to the output file.
+   * 
+   * @param args the input file and the output file
+   */
+  public static void main(final String[] args)
+  {
+    if (args.length != 2)
+    {
+      System.err.println("Usage: CorpusConverter <input file> <output file>");
+      System.exit(1);
+    }
+    
+    try
+    {
+      final File inFile = new File(args[0]);
+      final File outFile = new File(args[1]);
+      List<DrinkNode> drinks = CorpusLoader.load(inFile);
+      CorpusWriter.writeFile(drinks, outFile);
+      
+      // Read it back to make sure it round-trips
+      List<DrinkNode> check = CorpusLoader.load(outFile);
+      if (check.size() != drinks.size())
+      {
+        System.err.println("Verification failed: drink count differs");
+        System.exit(1);
+      }
+      
+      final int size = drinks.size();
+      for (int i = 0; i < size; ++i)
+      {
+        if (!sameDrink(drinks.get(i), check.get(i)))
+        {
+          System.err.println("Verification failed at drink #" + i);
+          System.exit(1);
+        }
+      }
+      
+      System.out.println("Wrote " + drinks.size() + " drinks to " +
+          outFile.getPath() + " (" + outFile.length() + " bytes, was " +
+          inFile.length() + ")");
+    }
+    catch (Exception e)
+    {
+      System.err.println("Exception: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+  
+  
+  /**
+   * Returns whether two drinks hold the same data.
+   * 
+   * @param d1 the first drink
+   * @param d2 the second drink
+   * @return whether the drinks are the same
+   */
+  private static boolean sameDrink(final DrinkNode d1, final DrinkNode d2)
+  {
+    return ((d1.compareTo(d2) == 0) &&
+            (d1.getCategory() == d2.getCategory()) &&
+            (d1.getGlass() == d2.getGlass()) &&
+            (d1.getAlcohol() == d2.getAlcohol()) &&
+            (d1.getIngredients().equals(d2.getIngredients())));
+  }
+}
@@ -0,0 +1,224 @@
+package io.miti.drinky.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Constants and low-level helpers for the Drinky binary corpus
+ * format.  A corpus file is laid out as a fixed-size header
+ * followed by the payload:
+ * 
+ * <pre>
+ *   magic          4 bytes  'D' 'R' 'K' 'Y'
+ *   version        2 bytes
+ *   flags          2 bytes
+ *   drink count    4 bytes
+ *   string count   4 bytes
+ *   payload length 4 bytes
+ *   checksum       4 bytes  (CRC-32 of the payload)
+ *   payload:
+ *     string table  (varint byte length, UTF-8 bytes) per string
+ *     drinks        (varint name, varint instructions,
+ *                    varint category, varint glass, varint alcohol,
+ *                    varint ingredient count, varint ingredient...)
+ *     string offsets (4 bytes per string, version 2 and later)
+ *     drink offsets  (4 bytes per drink, version 2 and later)
+ * </pre>
+ * 
+ * String references are the index into the string table plus one,
+ * so a reference of zero means a null string.  All fixed-width
+ * values are big-endian.  The offset tables at the end of the payload
+ * hold the file offset of each string and each drink record, so a
+ * version 2 file can be read in place (see MappedCorpus) without
+ * decoding the records that come before the one needed.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class CorpusFormat
+{
+  /**
+   * The magic number at the start of every corpus file ("DRKY").
+   */
+  public static final int MAGIC = 0x44524B59;
+  
+  /**
+   * The current version of the format.
+   */
+  public static final int VERSION = 2;
+  
+  /**
+   * The first version that has the offset tables.
+   */
+  public static final int VERSION_OFFSETS = 2;
+  
+  /**
+   * The size of the header, in bytes.
+   */
+  public static final int HEADER_SIZE = 24;
+  
+  /**
+   * The first two bytes of a Java serialization stream.
+   */
+  public static final int SERIAL_MAGIC = 0xACED;
+  
+  /**
+   * The character set used for strings.
+   */
+  public static final Charset UTF8 = Charset.forName("UTF-8");
+  
+  
+  /**
+   * Default constructor.
+   */
+  private CorpusFormat()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Returns whether the first bytes of a file are the
+   * corpus magic number.
+   * 
+   * @param header the first four (or more) bytes of the file
+   * @return whether this is a binary corpus file
+   */
+  public static boolean isCorpusHeader(final byte[] header)
+  {
+    if ((header == null) || (header.length < 4))
+    {
+      return false;
+    }
+    
+    return (readInt(header, 0) == MAGIC);
+  }
+  
+  
+  /**
+   * Returns whether the first bytes of a file are the
+   * Java serialization magic number.
+   * 
+   * @param header the first two (or more) bytes of the file
+   * @return whether this is a serialized Java object stream
+   */
+  public static boolean isSerializedHeader(final byte[] header)
+  {
+    if ((header == null) || (header.length < 2))
+    {
+      return false;
+    }
+    
+    return ((((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) == SERIAL_MAGIC);
+  }
+  
+  
+  /**
+   * Read a big-endian integer from a byte array.
+   * 
+   * @param data the byte array
+   * @param offset the offset of the first byte
+   * @return the integer
+   */
+  public static int readInt(final byte[] data, final int offset)
+  {
+    return (((data[offset] & 0xFF) << 24) |
+            ((data[offset + 1] & 0xFF) << 16) |
+            ((data[offset + 2] & 0xFF) << 8) |
+             (data[offset + 3] & 0xFF));
+  }
+  
+  
+  /**
+   * Write an unsigned variable-length integer (7 bits per byte,
+   * low-order group first, high bit set on all but the last byte).
+   * 
+   * @param out the output stream
+   * @param value the value to write (must not be negative)
+   */
+  public static void writeVarInt(final ByteArrayOutputStream out,
+                                 final int value)
+  {
+    int v = value;
+    while ((v & ~0x7F) != 0)
+    {
+      out.write((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    
+    out.write(v);
+  }
+  
+  
+  /**
+   * Read an unsigned variable-length integer from the buffer's
+   * current position.
+   * 
+   * @param buf the buffer
+   * @return the value
+   * @throws IOException if the value is malformed
+   */
+  public static int readVarInt(final ByteBuffer buf) throws IOException
+  {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7)
+    {
+      final int b = buf.get();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0)
+      {
+        return value;
+      }
+    }
+    
+    throw new IOException("Malformed varint in corpus file");
+  }
+  
+  
+  /**
+   * Read an unsigned variable-length integer at an absolute
+   * position, without moving the buffer's position.
+   * 
+   * @param buf the buffer
+   * @param pos the position of the first byte
+   * @return the value
+   */
+  public static int readVarInt(final ByteBuffer buf, final int pos)
+  {
+    int value = 0;
+    int p = pos;
+    for (int shift = 0; shift < 35; shift += 7)
+    {
+      final int b = buf.get(p++);
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0)
+      {
+        break;
+      }
+    }
+    
+    return value;
+  }
+  
+  
+  /**
+   * Return the position after the variable-length integer
+   * starting at an absolute position.
+   * 
+   * @param buf the buffer
+   * @param pos the position of the first byte
+   * @return the position of the next value
+   */
+  public static int skipVarInt(final ByteBuffer buf, final int pos)
+  {
+    int p = pos;
+    while ((buf.get(p++) & 0x80) != 0)
+    {
+      // Keep going until the last byte of the value
+    }
+    
+    return p;
+  }
+}
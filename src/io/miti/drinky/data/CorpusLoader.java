@@ -0,0 +1,224 @@
+package io.miti.drinky.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import io.miti.drinky.app.DrinkNode;
+
+/**
+ * Load the drink data, picking the format (binary corpus
+ * or serialized Java list) from the header of the data.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class CorpusLoader
+{
+  /**
+   * Default constructor.
+   */
+  private CorpusLoader()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Load the drinks from a file.
+   * 
+   * @param inFile the input file
+   * @return the list of drinks
+   * @throws IOException on a read error or unknown format
+   * @throws ClassNotFoundException if a serialized class is missing
+   */
+  public static List<DrinkNode> load(final File inFile)
+    throws IOException, ClassNotFoundException
+  {
+    InputStream is = null;
+    try
+    {
+      is = new FileInputStream(inFile);
+      return load(is);
+    }
+    finally
+    {
+      if (is != null)
+      {
+        is.close();
+      }
+    }
+  }
+  
+  
+  /**
+   * Load the drinks from a stream.  The stream is read to
+   * the end but not closed.
+   * 
+   * @param is the input stream
+   * @return the list of drinks
+   * @throws IOException on a read error or unknown format
+   * @throws ClassNotFoundException if a serialized class is missing
+   */
+  public static List<DrinkNode> load(final InputStream is)
+    throws IOException, ClassNotFoundException
+  {
+    if (is == null)
+    {
+      throw new IOException("The input stream is null");
+    }
+    
+    // Read the whole file, then check the header
+    return load(readFully(is));
+  }
+  
+  
+  /**
+   * Load the drinks from the contents of a data file.
+   * 
+   * @param data the contents of the data file
+   * @return the list of drinks
+   * @throws IOException on a read error or unknown format
+   * @throws ClassNotFoundException if a serialized class is missing
+   */
+  @SuppressWarnings("unchecked")
+  private static List<DrinkNode> load(final byte[] data)
+    throws IOException, ClassNotFoundException
+  {
+    if (CorpusFormat.isCorpusHeader(data))
+    {
+      return CorpusReader.read(data);
+    }
+    else if (CorpusFormat.isSerializedHeader(data))
+    {
+      ObjectInputStream os = new ObjectInputStream(
+          new ByteArrayInputStream(data));
+      try
+      {
+        return (List<DrinkNode>) os.readObject();
+      }
+      finally
+      {
+        os.close();
+      }
+    }
+    
+    throw new IOException("Unrecognized data file format");
+  }
+  
+  
+  /**
+   * Open the corpus in a file.  A binary corpus that has the
+   * offset tables is mapped into memory and read in place; any
+   * other data file is loaded onto the heap in columns.
+   * 
+   * @param inFile the input file
+   * @return the corpus
+   * @throws IOException on a read error or unknown format
+   * @throws ClassNotFoundException if a serialized class is missing
+   */
+  public static Corpus open(final File inFile)
+    throws IOException, ClassNotFoundException
+  {
+    // Read just the header
+    byte[] header = new byte[CorpusFormat.HEADER_SIZE];
+    int len = 0;
+    InputStream is = new FileInputStream(inFile);
+    try
+    {
+      int n;
+      while ((len < header.length) &&
+             ((n = is.read(header, len, header.length - len)) > 0))
+      {
+        len += n;
+      }
+    }
+    finally
+    {
+      is.close();
+    }
+    
+    if ((len == header.length) && (isMappable(header)))
+    {
+      return MappedCorpus.open(inFile);
+    }
+    
+    return ColumnarCorpus.build(new ListCorpus(load(inFile)));
+  }
+  
+  
+  /**
+   * Open the corpus in a stream.  The stream is read to the end
+   * but not closed.  The data has to be on the heap anyway, so
+   * it is loaded in columns.
+   * 
+   * @param is the input stream
+   * @return the corpus
+   * @throws IOException on a read error or unknown format
+   * @throws ClassNotFoundException if a serialized class is missing
+   */
+  public static Corpus open(final InputStream is)
+    throws IOException, ClassNotFoundException
+  {
+    if (is == null)
+    {
+      throw new IOException("The input stream is null");
+    }
+    
+    final byte[] data = readFully(is);
+    if ((data.length >= CorpusFormat.HEADER_SIZE) && (isMappable(data)))
+    {
+      return ColumnarCorpus.build(MappedCorpus.wrap(ByteBuffer.wrap(data)));
+    }
+    
+    return ColumnarCorpus.build(new ListCorpus(load(data)));
+  }
+  
+  
+  /**
+   * Returns whether the header is for a binary corpus that can
+   * be read in place.
+   * 
+   * @param header the first bytes of the data file
+   * @return whether the data can be read by MappedCorpus
+   */
+  private static boolean isMappable(final byte[] header)
+  {
+    if (!CorpusFormat.isCorpusHeader(header))
+    {
+      return false;
+    }
+    
+    final int version = ((header[4] & 0xFF) << 8) | (header[5] & 0xFF);
+    return ((version >= CorpusFormat.VERSION_OFFSETS) &&
+            (version <= CorpusFormat.VERSION));
+  }
+  
+  
+  /**
+   * Read the rest of a stream into a byte array.
+   * 
+   * @param is the input stream
+   * @return the contents of the stream
+   * @throws IOException on a read error
+   */
+  public static byte[] readFully(final InputStream is) throws IOException
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(
+        Math.max(8192, is.available()));
+    byte[] buffer = new byte[8192];
+    int len;
+    while ((len = is.read(buffer)) >= 0)
+    {
+      out.write(buffer, 0, len);
+    }
+    
+    return out.toByteArray();
+  }
+}
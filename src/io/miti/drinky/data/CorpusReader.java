@@ -0,0 +1,128 @@
+package io.miti.drinky.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import io.miti.drinky.app.DrinkNode;
+
+/**
+ * Read a binary corpus file into a list of drinks.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class CorpusReader
+{
+  /**
+   * Default constructor.
+   */
+  private CorpusReader()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Read the corpus stored in a byte array.
+   * 
+   * @param data the complete contents of the corpus file
+   * @return the list of drinks
+   * @throws IOException if the data is not a valid corpus
+   */
+  public static List<DrinkNode> read(final byte[] data) throws IOException
+  {
+    // Check the header
+    if ((data == null) || (data.length < CorpusFormat.HEADER_SIZE) ||
+        (!CorpusFormat.isCorpusHeader(data)))
+    {
+      throw new IOException("Not a Drinky corpus file");
+    }
+    
+    ByteBuffer buf = ByteBuffer.wrap(data);
+    buf.getInt();
+    final int version = buf.getShort() & 0xFFFF;
+    buf.getShort();
+    if (version > CorpusFormat.VERSION)
+    {
+      throw new IOException("Unsupported corpus version " + version);
+    }
+    
+    final int numDrinks = buf.getInt();
+    final int numStrings = buf.getInt();
+    final int payloadLen = buf.getInt();
+    final int checksum = buf.getInt();
+    if ((numDrinks < 0) || (numStrings < 0) || (payloadLen < 0) ||
+        (payloadLen > (data.length - CorpusFormat.HEADER_SIZE)))
+    {
+      throw new IOException("Corrupt corpus header");
+    }
+    
+    // Verify the checksum
+    CRC32 crc = new CRC32();
+    crc.update(data, CorpusFormat.HEADER_SIZE, payloadLen);
+    if ((int) crc.getValue() != checksum)
+    {
+      throw new IOException("Corpus checksum mismatch");
+    }
+    
+    // Read the string table
+    String[] strings = new String[numStrings];
+    for (int i = 0; i < numStrings; ++i)
+    {
+      final int len = CorpusFormat.readVarInt(buf);
+      strings[i] = new String(data, buf.position(), len, CorpusFormat.UTF8);
+      buf.position(buf.position() + len);
+    }
+    
+    // Read the drinks
+    List<DrinkNode> list = new ArrayList<DrinkNode>(numDrinks);
+    for (int i = 0; i < numDrinks; ++i)
+    {
+      DrinkNode drink = new DrinkNode();
+      drink.setName(getString(strings, CorpusFormat.readVarInt(buf)));
+      drink.setInstructions(getString(strings, CorpusFormat.readVarInt(buf)));
+      drink.setCategory(CorpusFormat.readVarInt(buf));
+      drink.setGlass(CorpusFormat.readVarInt(buf));
+      drink.setAlcohol(CorpusFormat.readVarInt(buf));
+      
+      final int numIngs = CorpusFormat.readVarInt(buf);
+      List<String> ings = new ArrayList<String>(numIngs);
+      for (int j = 0; j < numIngs; ++j)
+      {
+        ings.add(getString(strings, CorpusFormat.readVarInt(buf)));
+      }
+      drink.setIngredients(ings);
+      
+      list.add(drink);
+    }
+    
+    return list;
+  }
+  
+  
+  /**
+   * Look up a string reference.
+   * 
+   * @param strings the string table
+   * @param ref the reference (index plus one, or zero for null)
+   * @return the string
+   * @throws IOException if the reference is out of range
+   */
+  private static String getString(final String[] strings, final int ref)
+    throws IOException
+  {
+    if (ref == 0)
+    {
+      return null;
+    }
+    else if ((ref < 0) || (ref > strings.length))
+    {
+      throw new IOException("Bad string reference in corpus file");
+    }
+    
+    return strings[ref - 1];
+  }
+}
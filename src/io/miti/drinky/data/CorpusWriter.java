@@ -0,0 +1,230 @@
+package io.miti.drinky.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import io.miti.drinky.app.DrinkNode;
+
+/**
+ * Write a list of drinks in the binary corpus format.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class CorpusWriter
+{
+  /**
+   * The strings in the string table, in order of first use.
+   */
+  private final List<String> strings = new ArrayList<String>(2000);
+  
+  /**
+   * Map of each string to its reference (index plus one).
+   */
+  private final HashMap<String, Integer> stringRefs =
+    new HashMap<String, Integer>(2000);
+  
+  
+  /**
+   * Default constructor.
+   */
+  public CorpusWriter()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Write the drinks to a file.
+   * 
+   * @param drinks the drinks to write
+   * @param outFile the output file
+   * @throws IOException on a write error
+   */
+  public static void writeFile(final List<DrinkNode> drinks,
+                               final File outFile)
+    throws IOException
+  {
+    OutputStream os = null;
+    try
+    {
+      os = new FileOutputStream(outFile);
+      new CorpusWriter().write(drinks, os);
+      os.close();
+      os = null;
+    }
+    finally
+    {
+      if (os != null)
+      {
+        os.close();
+      }
+    }
+  }
+  
+  
+  /**
+   * Write the drinks to an output stream.  The stream
+   * is not closed.
+   * 
+   * @param drinks the drinks to write
+   * @param os the output stream
+   * @throws IOException on a write error
+   */
+  public void write(final List<DrinkNode> drinks,
+                    final OutputStream os)
+    throws IOException
+  {
+    // Encode the drink records first, which also builds
+    // the string table
+    strings.clear();
+    stringRefs.clear();
+    ByteArrayOutputStream records = new ByteArrayOutputStream(
+        Math.max(1024, drinks.size() * 32));
+    final int size = drinks.size();
+    int[] drinkOffsets = new int[size];
+    for (int i = 0; i < size; ++i)
+    {
+      drinkOffsets[i] = records.size();
+      writeDrink(drinks.get(i), records);
+    }
+    
+    // Encode the string table
+    ByteArrayOutputStream payload = new ByteArrayOutputStream(
+        records.size() * 4);
+    final int numStrings = strings.size();
+    int[] stringOffsets = new int[numStrings];
+    for (int i = 0; i < numStrings; ++i)
+    {
+      stringOffsets[i] = CorpusFormat.HEADER_SIZE + payload.size();
+      final byte[] data = strings.get(i).getBytes(CorpusFormat.UTF8);
+      CorpusFormat.writeVarInt(payload, data.length);
+      payload.write(data, 0, data.length);
+    }
+    
+    // The payload is the string table followed by the records
+    final int recordBase = CorpusFormat.HEADER_SIZE + payload.size();
+    records.writeTo(payload);
+    
+    // Add the offset tables
+    byte[] offsets = new byte[4 * (numStrings + size)];
+    int pos = 0;
+    for (int i = 0; i < numStrings; ++i, pos += 4)
+    {
+      putInt(offsets, pos, stringOffsets[i]);
+    }
+    for (int i = 0; i < size; ++i, pos += 4)
+    {
+      putInt(offsets, pos, recordBase + drinkOffsets[i]);
+    }
+    payload.write(offsets, 0, offsets.length);
+    final byte[] body = payload.toByteArray();
+    
+    // Compute the checksum of the payload
+    CRC32 crc = new CRC32();
+    crc.update(body, 0, body.length);
+    
+    // Write the header and the payload
+    byte[] header = new byte[CorpusFormat.HEADER_SIZE];
+    putInt(header, 0, CorpusFormat.MAGIC);
+    putShort(header, 4, CorpusFormat.VERSION);
+    putShort(header, 6, 0);
+    putInt(header, 8, size);
+    putInt(header, 12, numStrings);
+    putInt(header, 16, body.length);
+    putInt(header, 20, (int) crc.getValue());
+    os.write(header);
+    os.write(body);
+    os.flush();
+  }
+  
+  
+  /**
+   * Encode one drink.
+   * 
+   * @param drink the drink
+   * @param out the output buffer
+   */
+  private void writeDrink(final DrinkNode drink,
+                          final ByteArrayOutputStream out)
+  {
+    CorpusFormat.writeVarInt(out, getStringRef(drink.getName()));
+    CorpusFormat.writeVarInt(out, getStringRef(drink.getInstructions()));
+    CorpusFormat.writeVarInt(out, drink.getCategory());
+    CorpusFormat.writeVarInt(out, drink.getGlass());
+    CorpusFormat.writeVarInt(out, drink.getAlcohol());
+    
+    final List<String> ings = drink.getIngredients();
+    final int numIngs = ((ings == null) ? 0 : ings.size());
+    CorpusFormat.writeVarInt(out, numIngs);
+    for (int i = 0; i < numIngs; ++i)
+    {
+      CorpusFormat.writeVarInt(out, getStringRef(ings.get(i)));
+    }
+  }
+  
+  
+  /**
+   * Return the reference for a string, adding it to the
+   * string table if this is the first use.
+   * 
+   * @param str the string
+   * @return the string reference (0 for null)
+   */
+  private int getStringRef(final String str)
+  {
+    if (str == null)
+    {
+      return 0;
+    }
+    
+    Integer ref = stringRefs.get(str);
+    if (ref == null)
+    {
+      strings.add(str);
+      ref = Integer.valueOf(strings.size());
+      stringRefs.put(str, ref);
+    }
+    
+    return ref.intValue();
+  }
+  
+  
+  /**
+   * Store a big-endian integer in a byte array.
+   * 
+   * @param data the array
+   * @param offset the offset of the first byte
+   * @param value the value
+   */
+  private static void putInt(final byte[] data, final int offset,
+                             final int value)
+  {
+    data[offset] = (byte) (value >>> 24);
+    data[offset + 1] = (byte) (value >>> 16);
+    data[offset + 2] = (byte) (value >>> 8);
+    data[offset + 3] = (byte) value;
+  }
+  
+  
+  /**
+   * Store a big-endian short in a byte array.
+   * 
+   * @param data the array
+   * @param offset the offset of the first byte
+   * @param value the value
+   */
+  private static void putShort(final byte[] data, final int offset,
+                               final int value)
+  {
+    data[offset] = (byte) (value >>> 8);
+    data[offset + 1] = (byte) value;
+  }
+}
@@ -0,0 +1,273 @@
+package io.miti.drinky.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The vocabulary of ingredients in a corpus.  Each ingredient line
+ * (e.g., "1 oz Vodka") is split into a measure ("1 oz") and an
+ * ingredient name ("Vodka"), and each distinct measure and name
+ * is given an integer ID, so a drink only needs to keep the IDs.
+ * The lines repeat a lot across drinks, so this keeps one copy of
+ * each name and measure on the heap.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class IngredientDictionary
+{
+  /**
+   * Words that are part of a measure.  Used to split lines
+   * where the ingredient name is not capitalized.  This list
+   * must be sorted, for the binary search.
+   */
+  private static final String[] UNITS = {"bag", "bags", "bar", "bars",
+    "bottle", "bottles", "can", "cans", "cl", "cup", "cups", "dash",
+    "dashes", "drop", "drops", "fifth", "g", "gal", "glass", "glasses",
+    "jigger", "jiggers", "kg", "l", "lb", "lbs", "ml", "oz", "package",
+    "part", "parts", "pinch", "pint", "pints", "qt", "shot", "shots",
+    "slice", "slices", "splash", "splashes", "sprig", "sprigs", "tblsp",
+    "tbsp", "tsp", "twist", "whole"};
+  
+  /**
+   * The ingredient names, indexed by ID.
+   */
+  private final List<String> names = new ArrayList<String>(1000);
+  
+  /**
+   * Map of ingredient name to ID.
+   */
+  private final HashMap<String, Integer> nameIds =
+    new HashMap<String, Integer>(1000);
+  
+  /**
+   * The measures, indexed by ID.  ID 0 is the empty measure.
+   */
+  private final List<String> measures = new ArrayList<String>(500);
+  
+  /**
+   * Map of measure to ID.
+   */
+  private final HashMap<String, Integer> measureIds =
+    new HashMap<String, Integer>(500);
+  
+  
+  /**
+   * Default constructor.
+   */
+  IngredientDictionary()
+  {
+    super();
+    addMeasure("");
+  }
+  
+  
+  /**
+   * Returns the number of ingredient names.
+   * 
+   * @return the number of names
+   */
+  public int getNameCount()
+  {
+    return names.size();
+  }
+  
+  
+  /**
+   * Returns the number of measures, including the empty one.
+   * 
+   * @return the number of measures
+   */
+  public int getMeasureCount()
+  {
+    return measures.size();
+  }
+  
+  
+  /**
+   * Returns an ingredient name.
+   * 
+   * @param id the name ID
+   * @return the ingredient name
+   */
+  public String getName(final int id)
+  {
+    return names.get(id);
+  }
+  
+  
+  /**
+   * Returns a measure.
+   * 
+   * @param id the measure ID
+   * @return the measure (empty if there is none)
+   */
+  public String getMeasure(final int id)
+  {
+    return measures.get(id);
+  }
+  
+  
+  /**
+   * Add an ingredient name, if it's new.
+   * 
+   * @param name the ingredient name
+   * @return the ID of the name
+   */
+  int addName(final String name)
+  {
+    Integer id = nameIds.get(name);
+    if (id == null)
+    {
+      id = Integer.valueOf(names.size());
+      names.add(name);
+      nameIds.put(name, id);
+    }
+    
+    return id.intValue();
+  }
+  
+  
+  /**
+   * Add a measure, if it's new.
+   * 
+   * @param measure the measure
+   * @return the ID of the measure
+   */
+  int addMeasure(final String measure)
+  {
+    Integer id = measureIds.get(measure);
+    if (id == null)
+    {
+      id = Integer.valueOf(measures.size());
+      measures.add(measure);
+      measureIds.put(measure, id);
+    }
+    
+    return id.intValue();
+  }
+  
+  
+  /**
+   * Rebuild an ingredient line from its measure and name.
+   * 
+   * @param measureId the measure ID
+   * @param nameId the name ID
+   * @return the ingredient line
+   */
+  public String getLine(final int measureId, final int nameId)
+  {
+    final String measure = measures.get(measureId);
+    final String name = names.get(nameId);
+    if (measure.length() == 0)
+    {
+      return name;
+    }
+    
+    return (measure + " " + name);
+  }
+  
+  
+  /**
+   * Returns the index in an ingredient line where the ingredient
+   * name starts.  The name starts at the first word that begins
+   * with a capital letter; if there is none, the leading numbers
+   * and units are taken as the measure.  The split is always at a
+   * single space, so the line can be rebuilt exactly.
+   * 
+   * @param line the ingredient line
+   * @return the index of the start of the name (0 if there is
+   *         no measure)
+   */
+  public static int findNameStart(final String line)
+  {
+    if (line == null)
+    {
+      return 0;
+    }
+    
+    // Look for the first capitalized word
+    final int len = line.length();
+    for (int i = 0; i < len; ++i)
+    {
+      if (((i == 0) || (line.charAt(i - 1) == ' ')) &&
+          (Character.isUpperCase(line.charAt(i))))
+      {
+        return checkSplit(line, i);
+      }
+    }
+    
+    // Skip the leading numbers and units
+    int start = 0;
+    while (start < len)
+    {
+      int end = line.indexOf(' ', start);
+      if (end < 0)
+      {
+        break;
+      }
+      
+      final String word = line.substring(start, end);
+      if (!isMeasureWord(word))
+      {
+        break;
+      }
+      
+      start = end + 1;
+    }
+    
+    return checkSplit(line, start);
+  }
+  
+  
+  /**
+   * Make sure the line can be split at an index.
+   * 
+   * @param line the ingredient line
+   * @param index the proposed start of the name
+   * @return the index, or 0 if the split would lose characters
+   */
+  private static int checkSplit(final String line, final int index)
+  {
+    if ((index < 2) || (index >= line.length()) ||
+        (line.charAt(index - 1) != ' ') || (line.charAt(index - 2) == ' '))
+    {
+      return 0;
+    }
+    
+    return index;
+  }
+  
+  
+  /**
+   * Returns whether a word is part of a measure (a number,
+   * a fraction, a range or a unit).
+   * 
+   * @param word the word
+   * @return whether the word belongs to the measure
+   */
+  private static boolean isMeasureWord(final String word)
+  {
+    if (word.length() < 1)
+    {
+      return false;
+    }
+    
+    boolean numeric = true;
+    final int len = word.length();
+    for (int i = 0; (i < len) && (numeric); ++i)
+    {
+      final char ch = word.charAt(i);
+      numeric = (Character.isDigit(ch) || (ch == '/') || (ch == '-') ||
+                 (ch == '.'));
+    }
+    
+    if (numeric)
+    {
+      return true;
+    }
+    
+    return (java.util.Arrays.binarySearch(UNITS, word.toLowerCase()) >= 0);
+  }
+}
@@ -0,0 +1,212 @@
+package io.miti.drinky.data;
+
+import java.util.List;
+
+/**
+ * The ingredients of every drink in a corpus, as IDs in an
+ * IngredientDictionary.  The ingredients are stored in compressed
+ * sparse row (CSR) form: the ingredients of drink i are entries
+ * ingStart[i] to ingStart[i + 1] - 1 of the ID columns.  A null
+ * ingredient line is stored as an empty one.
+ * 
+ * The table is read-only once built, so it is safe to share
+ * between threads.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+final class IngredientTable
+{
+  /**
+   * The index of the first ingredient of each drink
+   * (one extra entry at the end).
+   */
+  private final int[] ingStart;
+  
+  /**
+   * The ingredient name ID of each ingredient.
+   */
+  private final int[] ingNameIds;
+  
+  /**
+   * The measure ID of each ingredient.
+   */
+  private final int[] ingMeasureIds;
+  
+  /**
+   * The ingredient vocabulary.
+   */
+  private final IngredientDictionary dictionary;
+  
+  
+  /**
+   * Build the table.
+   * 
+   * @param drinks the ingredient lines of each drink (entries
+   *        may be null)
+   */
+  private IngredientTable(final List<List<String>> drinks)
+  {
+    super();
+    final int numDrinks = drinks.size();
+    int numIngs = 0;
+    for (List<String> ings : drinks)
+    {
+      if (ings != null)
+      {
+        numIngs += ings.size();
+      }
+    }
+    
+    ingStart = new int[numDrinks + 1];
+    ingNameIds = new int[numIngs];
+    ingMeasureIds = new int[numIngs];
+    dictionary = new IngredientDictionary();
+    
+    int ingIndex = 0;
+    for (int i = 0; i < numDrinks; ++i)
+    {
+      ingStart[i] = ingIndex;
+      final List<String> ings = drinks.get(i);
+      if (ings == null)
+      {
+        continue;
+      }
+      
+      for (String ing : ings)
+      {
+        // Split the line into the measure and the name
+        final String line = ((ing == null) ? "" : ing);
+        final int nameStart = IngredientDictionary.findNameStart(line);
+        if (nameStart == 0)
+        {
+          ingMeasureIds[ingIndex] = 0;
+          ingNameIds[ingIndex] = dictionary.addName(line);
+        }
+        else
+        {
+          ingMeasureIds[ingIndex] = dictionary.addMeasure(
+              line.substring(0, nameStart - 1));
+          ingNameIds[ingIndex] = dictionary.addName(
+              line.substring(nameStart));
+        }
+        
+        ++ingIndex;
+      }
+    }
+    
+    ingStart[numDrinks] = ingIndex;
+  }
+  
+  
+  /**
+   * Build the table for the ingredient lines of each drink.
+   * 
+   * @param drinks the ingredient lines of each drink (entries
+   *        may be null)
+   * @return the table
+   */
+  static IngredientTable build(final List<List<String>> drinks)
+  {
+    return new IngredientTable(drinks);
+  }
+  
+  
+  /**
+   * Returns the ingredient vocabulary.
+   * 
+   * @return the dictionary
+   */
+  IngredientDictionary getDictionary()
+  {
+    return dictionary;
+  }
+  
+  
+  /**
+   * Returns the number of ingredients of a drink.
+   * 
+   * @param id the drink ID
+   * @return the number of ingredients
+   */
+  int getIngredientCount(final int id)
+  {
+    return (ingStart[id + 1] - ingStart[id]);
+  }
+  
+  
+  /**
+   * Returns the ingredient name ID of one ingredient of a drink.
+   * 
+   * @param id the drink ID
+   * @param index the index of the ingredient in the drink
+   * @return the ingredient name ID
+   */
+  int getIngredientId(final int id, final int index)
+  {
+    return ingNameIds[ingStart[id] + index];
+  }
+  
+  
+  /**
+   * Returns the measure ID of one ingredient of a drink.
+   * 
+   * @param id the drink ID
+   * @param index the index of the ingredient in the drink
+   * @return the measure ID (0 if there is no measure)
+   */
+  int getMeasureId(final int id, final int index)
+  {
+    return ingMeasureIds[ingStart[id] + index];
+  }
+  
+  
+  /**
+   * Returns one ingredient line of a drink.
+   * 
+   * @param id the drink ID
+   * @param index the index of the ingredient in the drink
+   * @return the ingredient line
+   */
+  String getIngredient(final int id, final int index)
+  {
+    final int ing = ingStart[id] + index;
+    return dictionary.getLine(ingMeasureIds[ing], ingNameIds[ing]);
+  }
+  
+  
+  /**
+   * Returns the ingredients of a drink as a single string,
+   * separated by spaces.
+   * 
+   * @param id the drink ID
+   * @return the ingredients as a string
+   */
+  String getIngredientsString(final int id)
+  {
+    final int first = ingStart[id];
+    final int last = ingStart[id + 1];
+    if (first == last)
+    {
+      return "";
+    }
+    
+    StringBuilder sb = new StringBuilder(200);
+    for (int i = first; i < last; ++i)
+    {
+      if (i > first)
+      {
+        sb.append(' ');
+      }
+      
+      final String measure = dictionary.getMeasure(ingMeasureIds[i]);
+      if (measure.length() > 0)
+      {
+        sb.append(measure).append(' ');
+      }
+      sb.append(dictionary.getName(ingNameIds[i]));
+    }
+    
+    return sb.toString();
+  }
+}
@@ -0,0 +1,177 @@
+package io.miti.drinky.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.miti.drinky.app.DrinkNode;
+
+/**
+ * A corpus backed by a list of drinks held on the heap.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class ListCorpus implements Corpus
+{
+  /**
+   * The list of drinks.
+   */
+  private final List<DrinkNode> drinks;
+  
+  /**
+   * The ingredient IDs of each drink (null until first used).
+   */
+  private IngredientTable ingredients = null;
+  
+  
+  /**
+   * Create a corpus for a list of drinks.
+   * 
+   * @param list the list of drinks
+   */
+  public ListCorpus(final List<DrinkNode> list)
+  {
+    super();
+    drinks = list;
+  }
+  
+  
+  /**
+   * Returns the number of drinks.
+   * 
+   * @return the number of drinks
+   */
+  @Override
+  public int size()
+  {
+    return drinks.size();
+  }
+  
+  
+  /**
+   * Returns the name of a drink.
+   * 
+   * @param id the drink ID
+   * @return the name of the drink
+   */
+  @Override
+  public String getName(final int id)
+  {
+    return drinks.get(id).getName();
+  }
+  
+  
+  /**
+   * Returns the ingredients of a drink as a single string.
+   * 
+   * @param id the drink ID
+   * @return the ingredients as a string
+   */
+  @Override
+  public String getIngredientsString(final int id)
+  {
+    return drinks.get(id).getIngredientsString();
+  }
+  
+  
+  /**
+   * Returns the number of ingredients of a drink.
+   * 
+   * @param id the drink ID
+   * @return the number of ingredients
+   */
+  @Override
+  public int getIngredientCount(final int id)
+  {
+    return getIngredientTable().getIngredientCount(id);
+  }
+  
+  
+  /**
+   * Returns the ingredient name ID of one ingredient of a drink.
+   * 
+   * @param id the drink ID
+   * @param index the index of the ingredient in the drink
+   * @return the ingredient name ID
+   */
+  @Override
+  public int getIngredientId(final int id, final int index)
+  {
+    return getIngredientTable().getIngredientId(id, index);
+  }
+  
+  
+  /**
+   * Returns the measure ID of one ingredient of a drink.
+   * 
+   * @param id the drink ID
+   * @param index the index of the ingredient in the drink
+   * @return the measure ID (0 if there is no measure)
+   */
+  @Override
+  public int getMeasureId(final int id, final int index)
+  {
+    return getIngredientTable().getMeasureId(id, index);
+  }
+  
+  
+  /**
+   * Returns the dictionary of the ingredient and measure IDs.
+   * 
+   * @return the ingredient dictionary
+   */
+  @Override
+  public IngredientDictionary getIngredientDictionary()
+  {
+    return getIngredientTable().getDictionary();
+  }
+  
+  
+  /**
+   * Returns the ingredient IDs of the drinks, building them the
+   * first time they're asked for.
+   * 
+   * @return the ingredient table
+   */
+  private synchronized IngredientTable getIngredientTable()
+  {
+    if (ingredients == null)
+    {
+      final int size = drinks.size();
+      List<List<String>> ings = new ArrayList<List<String>>(size);
+      for (int i = 0; i < size; ++i)
+      {
+        ings.add(drinks.get(i).getIngredients());
+      }
+      ingredients = IngredientTable.build(ings);
+    }
+    
+    return ingredients;
+  }
+  
+  
+  /**
+   * Returns the category of a drink.
+   * 
+   * @param id the drink ID
+   * @return the category
+   */
+  @Override
+  public int getCategory(final int id)
+  {
+    return drinks.get(id).getCategory();
+  }
+  
+  
+  /**
+   * Returns a drink.
+   * 
+   * @param id the drink ID
+   * @return the drink
+   */
+  @Override
+  public DrinkNode getDrink(final int id)
+  {
+    return drinks.get(id);
+  }
+}
@@ -0,0 +1,400 @@
+package io.miti.drinky.data;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.miti.drinky.app.DrinkNode;
+
+/**
+ * A corpus read in place from a binary corpus file (version 2
+ * or later), normally mapped into memory with FileChannel.map.
+ * Opening the corpus only reads the header, and nothing is decoded
+ * until a drink is asked for, so the data stays off the heap and
+ * the pages are shared with any other process mapping the file.
+ * 
+ * The checksum is not verified when the file is opened, since that
+ * would mean reading the whole file.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class MappedCorpus implements Corpus
+{
+  /**
+   * The corpus data.
+   */
+  private final ByteBuffer buf;
+  
+  /**
+   * The number of drinks.
+   */
+  private final int numDrinks;
+  
+  /**
+   * The number of strings in the string table.
+   */
+  private final int numStrings;
+  
+  /**
+   * The position of the string offset table.
+   */
+  private final int stringOffsetBase;
+  
+  /**
+   * The position of the drink offset table.
+   */
+  private final int drinkOffsetBase;
+  
+  /**
+   * The ingredient IDs of each drink (null until first used).
+   */
+  private IngredientTable ingredients = null;
+  
+  
+  /**
+   * Create a corpus for the data in a buffer.
+   * 
+   * @param buffer the corpus data
+   * @throws IOException if the data is not a version 2 corpus
+   */
+  private MappedCorpus(final ByteBuffer buffer) throws IOException
+  {
+    super();
+    buf = buffer;
+    
+    // Check the header
+    if (buf.limit() < CorpusFormat.HEADER_SIZE)
+    {
+      throw new IOException("Not a Drinky corpus file");
+    }
+    
+    if (buf.getInt(0) != CorpusFormat.MAGIC)
+    {
+      throw new IOException("Not a Drinky corpus file");
+    }
+    
+    final int version = buf.getShort(4) & 0xFFFF;
+    if ((version < CorpusFormat.VERSION_OFFSETS) ||
+        (version > CorpusFormat.VERSION))
+    {
+      throw new IOException("Corpus version " + version +
+                            " cannot be read in place");
+    }
+    
+    numDrinks = buf.getInt(8);
+    numStrings = buf.getInt(12);
+    final long payloadEnd = (long) CorpusFormat.HEADER_SIZE + buf.getInt(16);
+    final long tableSize = 4L * ((long) numDrinks + (long) numStrings);
+    if ((numDrinks < 0) || (numStrings < 0) ||
+        (payloadEnd > buf.limit()) ||
+        (tableSize > (payloadEnd - CorpusFormat.HEADER_SIZE)))
+    {
+      throw new IOException("Corrupt corpus header");
+    }
+    
+    stringOffsetBase = (int) (payloadEnd - tableSize);
+    drinkOffsetBase = stringOffsetBase + (4 * numStrings);
+  }
+  
+  
+  /**
+   * Map a corpus file into memory.
+   * 
+   * @param file the corpus file
+   * @return the corpus
+   * @throws IOException if the file cannot be mapped or is not
+   *         a version 2 corpus
+   */
+  public static MappedCorpus open(final File file) throws IOException
+  {
+    FileInputStream fis = new FileInputStream(file);
+    try
+    {
+      // The mapping stays valid after the channel is closed
+      final FileChannel channel = fis.getChannel();
+      return new MappedCorpus(
+          channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size()));
+    }
+    finally
+    {
+      fis.close();
+    }
+  }
+  
+  
+  /**
+   * Create a corpus for data already in memory (e.g., read
+   * from the jar file).
+   * 
+   * @param buffer the complete contents of the corpus file
+   * @return the corpus
+   * @throws IOException if the data is not a version 2 corpus
+   */
+  public static MappedCorpus wrap(final ByteBuffer buffer) throws IOException
+  {
+    return new MappedCorpus(buffer);
+  }
+  
+  
+  /**
+   * Returns the number of drinks.
+   * 
+   * @return the number of drinks
+   */
+  @Override
+  public int size()
+  {
+    return numDrinks;
+  }
+  
+  
+  /**
+   * Returns the position of a drink record.
+   * 
+   * @param id the drink ID
+   * @return the position of the record
+   */
+  private int getRecord(final int id)
+  {
+    if ((id < 0) || (id >= numDrinks))
+    {
+      throw new IndexOutOfBoundsException("Drink ID: " + id);
+    }
+    
+    return buf.getInt(drinkOffsetBase + (4 * id));
+  }
+  
+  
+  /**
+   * Decode a string from the string table.
+   * 
+   * @param ref the string reference (index plus one, or zero for null)
+   * @return the string
+   */
+  private String getString(final int ref)
+  {
+    if ((ref <= 0) || (ref > numStrings))
+    {
+      return null;
+    }
+    
+    int pos = buf.getInt(stringOffsetBase + (4 * (ref - 1)));
+    final int len = CorpusFormat.readVarInt(buf, pos);
+    pos = CorpusFormat.skipVarInt(buf, pos);
+    
+    // Use a duplicate so concurrent readers don't share a position
+    byte[] data = new byte[len];
+    ByteBuffer dup = buf.duplicate();
+    dup.position(pos);
+    dup.get(data);
+    return new String(data, CorpusFormat.UTF8);
+  }
+  
+  
+  /**
+   * Returns the name of a drink.
+   * 
+   * @param id the drink ID
+   * @return the name of the drink
+   */
+  @Override
+  public String getName(final int id)
+  {
+    return getString(CorpusFormat.readVarInt(buf, getRecord(id)));
+  }
+  
+  
+  /**
+   * Returns the ingredients of a drink as a single string.
+   * 
+   * @param id the drink ID
+   * @return the ingredients as a string
+   */
+  @Override
+  public String getIngredientsString(final int id)
+  {
+    // Skip the name, instructions, category, glass and alcohol
+    int pos = getRecord(id);
+    for (int i = 0; i < 5; ++i)
+    {
+      pos = CorpusFormat.skipVarInt(buf, pos);
+    }
+    
+    final int numIngs = CorpusFormat.readVarInt(buf, pos);
+    pos = CorpusFormat.skipVarInt(buf, pos);
+    if (numIngs < 1)
+    {
+      return "";
+    }
+    else if (numIngs == 1)
+    {
+      return getString(CorpusFormat.readVarInt(buf, pos));
+    }
+    
+    StringBuilder sb = new StringBuilder(200);
+    for (int i = 0; i < numIngs; ++i)
+    {
+      if (i > 0)
+      {
+        sb.append(' ');
+      }
+      
+      sb.append(getString(CorpusFormat.readVarInt(buf, pos)));
+      pos = CorpusFormat.skipVarInt(buf, pos);
+    }
+    
+    return sb.toString();
+  }
+  
+  
+  /**
+   * Returns the number of ingredients of a drink.
+   * 
+   * @param id the drink ID
+   * @return the number of ingredients
+   */
+  @Override
+  public int getIngredientCount(final int id)
+  {
+    return getIngredientTable().getIngredientCount(id);
+  }
+  
+  
+  /**
+   * Returns the ingredient name ID of one ingredient of a drink.
+   * 
+   * @param id the drink ID
+   * @param index the index of the ingredient in the drink
+   * @return the ingredient name ID
+   */
+  @Override
+  public int getIngredientId(final int id, final int index)
+  {
+    return getIngredientTable().getIngredientId(id, index);
+  }
+  
+  
+  /**
+   * Returns the measure ID of one ingredient of a drink.
+   * 
+   * @param id the drink ID
+   * @param index the index of the ingredient in the drink
+   * @return the measure ID (0 if there is no measure)
+   */
+  @Override
+  public int getMeasureId(final int id, final int index)
+  {
+    return getIngredientTable().getMeasureId(id, index);
+  }
+  
+  
+  /**
+   * Returns the dictionary of the ingredient and measure IDs.
+   * 
+   * @return the ingredient dictionary
+   */
+  @Override
+  public IngredientDictionary getIngredientDictionary()
+  {
+    return getIngredientTable().getDictionary();
+  }
+  
+  
+  /**
+   * Returns the ingredient IDs of the drinks, building them the
+   * first time they're asked for.  This is the only part of the
+   * corpus kept on the heap.
+   * 
+   * @return the ingredient table
+   */
+  private synchronized IngredientTable getIngredientTable()
+  {
+    if (ingredients == null)
+    {
+      List<List<String>> ings = new ArrayList<List<String>>(numDrinks);
+      for (int i = 0; i < numDrinks; ++i)
+      {
+        ings.add(getIngredients(getRecord(i)));
+      }
+      ingredients = IngredientTable.build(ings);
+    }
+    
+    return ingredients;
+  }
+  
+  
+  /**
+   * Decode the ingredient lines of a drink record.
+   * 
+   * @param record the position of the drink record
+   * @return the ingredient lines
+   */
+  private List<String> getIngredients(final int record)
+  {
+    // Skip the name, instructions, category, glass and alcohol
+    int pos = record;
+    for (int i = 0; i < 5; ++i)
+    {
+      pos = CorpusFormat.skipVarInt(buf, pos);
+    }
+    
+    final int numIngs = CorpusFormat.readVarInt(buf, pos);
+    pos = CorpusFormat.skipVarInt(buf, pos);
+    List<String> ings = new ArrayList<String>(numIngs);
+    for (int i = 0; i < numIngs; ++i)
+    {
+      ings.add(getString(CorpusFormat.readVarInt(buf, pos)));
+      pos = CorpusFormat.skipVarInt(buf, pos);
+    }
+    
+    return ings;
+  }
+  
+  
+  /**
+   * Returns the category of a drink.
+   * 
+   * @param id the drink ID
+   * @return the category
+   */
+  @Override
+  public int getCategory(final int id)
+  {
+    int pos = getRecord(id);
+    pos = CorpusFormat.skipVarInt(buf, pos);
+    pos = CorpusFormat.skipVarInt(buf, pos);
+    return CorpusFormat.readVarInt(buf, pos);
+  }
+  
+  
+  /**
+   * Returns a new drink object holding the data for a drink.
+   * 
+   * @param id the drink ID
+   * @return the drink
+   */
+  @Override
+  public DrinkNode getDrink(final int id)
+  {
+    int pos = getRecord(id);
+    
+    DrinkNode drink = new DrinkNode();
+    drink.setName(getString(CorpusFormat.readVarInt(buf, pos)));
+    pos = CorpusFormat.skipVarInt(buf, pos);
+    drink.setInstructions(getString(CorpusFormat.readVarInt(buf, pos)));
+    pos = CorpusFormat.skipVarInt(buf, pos);
+    drink.setCategory(CorpusFormat.readVarInt(buf, pos));
+    pos = CorpusFormat.skipVarInt(buf, pos);
+    drink.setGlass(CorpusFormat.readVarInt(buf, pos));
+    pos = CorpusFormat.skipVarInt(buf, pos);
+    drink.setAlcohol(CorpusFormat.readVarInt(buf, pos));
+    drink.setIngredients(getIngredients(getRecord(id)));
+    
+    return drink;
+  }
+}
@@ -0,0 +1,216 @@
+package io.miti.drinky.data;
+
+import java.nio.charset.Charset;
+import java.util.BitSet;
+
+/**
+ * A column of strings packed into a single byte array, with an
+ * offset array giving where each one starts.  If every character
+ * fits in ISO-8859-1 the text is stored one byte per character,
+ * which covers all the text in the drink data; otherwise it's
+ * stored as UTF-8.  Either way it takes much less heap than one
+ * String object per entry, at the cost of decoding a new String
+ * each time an entry is read.  One-byte text can be read in lower
+ * case in the same pass.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+final class PackedText
+{
+  /**
+   * The one-byte character set.
+   */
+  private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+  
+  /**
+   * The lower-case form of each ISO-8859-1 character, as
+   * String.toLowerCase() gives it, or null if that takes one
+   * of them out of ISO-8859-1 (as with a Turkish locale).
+   */
+  private static final byte[] LOWER_LATIN1 = getLowerCaseTable();
+  
+  /**
+   * The character set of the packed text.
+   */
+  private final Charset charset;
+  
+  /**
+   * The packed strings.
+   */
+  private final byte[] text;
+  
+  /**
+   * The start of each string in text (one extra entry at the end).
+   */
+  private final int[] offsets;
+  
+  /**
+   * Marks the entries that are null.
+   */
+  private final BitSet nulls;
+  
+  
+  /**
+   * Pack a list of strings.
+   * 
+   * @param strings the strings (entries may be null)
+   */
+  private PackedText(final String[] strings)
+  {
+    super();
+    charset = (isLatin1(strings) ? LATIN1 : CorpusFormat.UTF8);
+    offsets = new int[strings.length + 1];
+    nulls = new BitSet(strings.length);
+    
+    // Encode the strings, then copy them into one array
+    byte[][] encoded = new byte[strings.length][];
+    int len = 0;
+    for (int i = 0; i < strings.length; ++i)
+    {
+      if (strings[i] == null)
+      {
+        nulls.set(i);
+        encoded[i] = new byte[0];
+      }
+      else
+      {
+        encoded[i] = strings[i].getBytes(charset);
+      }
+      
+      offsets[i] = len;
+      len += encoded[i].length;
+    }
+    offsets[strings.length] = len;
+    
+    text = new byte[len];
+    for (int i = 0; i < strings.length; ++i)
+    {
+      System.arraycopy(encoded[i], 0, text, offsets[i], encoded[i].length);
+    }
+  }
+  
+  
+  /**
+   * Pack a list of strings.
+   * 
+   * @param strings the strings (entries may be null)
+   * @return the packed strings
+   */
+  static PackedText build(final String[] strings)
+  {
+    return new PackedText(strings);
+  }
+  
+  
+  /**
+   * Returns the lower-case form of each ISO-8859-1 character.
+   * 
+   * @return the table, or null if some character's lower-case
+   *         form is not in ISO-8859-1
+   */
+  private static byte[] getLowerCaseTable()
+  {
+    byte[] table = new byte[256];
+    for (int i = 0; i < table.length; ++i)
+    {
+      final String lower = String.valueOf((char) i).toLowerCase();
+      if ((lower.length() != 1) || (lower.charAt(0) > 0xFF))
+      {
+        return null;
+      }
+      
+      table[i] = (byte) lower.charAt(0);
+    }
+    
+    return table;
+  }
+  
+  
+  /**
+   * Returns whether every character of the strings is in
+   * ISO-8859-1.
+   * 
+   * @param strings the strings (entries may be null)
+   * @return whether one byte per character is enough
+   */
+  private static boolean isLatin1(final String[] strings)
+  {
+    for (String str : strings)
+    {
+      if (str == null)
+      {
+        continue;
+      }
+      
+      for (int i = 0; i < str.length(); ++i)
+      {
+        if (str.charAt(i) > 0xFF)
+        {
+          return false;
+        }
+      }
+    }
+    
+    return true;
+  }
+  
+  
+  /**
+   * Returns the number of strings.
+   * 
+   * @return the number of strings
+   */
+  int size()
+  {
+    return (offsets.length - 1);
+  }
+  
+  
+  /**
+   * Returns one of the strings.
+   * 
+   * @param index the index of the string
+   * @return a new copy of the string (null if it was null)
+   */
+  String get(final int index)
+  {
+    if (nulls.get(index))
+    {
+      return null;
+    }
+    
+    return new String(text, offsets[index],
+                      offsets[index + 1] - offsets[index], charset);
+  }
+  
+  
+  /**
+   * Returns one of the strings in lower case, the same as
+   * calling toLowerCase() on it.
+   * 
+   * @param index the index of the string
+   * @return the lower-case string (null if it was null)
+   */
+  String getLowerCase(final int index)
+  {
+    if ((charset != LATIN1) || (LOWER_LATIN1 == null))
+    {
+      final String str = get(index);
+      return ((str == null) ? null : str.toLowerCase());
+    }
+    else if (nulls.get(index))
+    {
+      return null;
+    }
+    
+    final int start = offsets[index];
+    byte[] lower = new byte[offsets[index + 1] - start];
+    for (int i = 0; i < lower.length; ++i)
+    {
+      lower[i] = LOWER_LATIN1[text[start + i] & 0xFF];
+    }
+    
+    return new String(lower, LATIN1);
+  }
+}
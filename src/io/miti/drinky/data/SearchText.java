@@ -0,0 +1,166 @@
+package io.miti.drinky.data;
+
+import io.miti.drinky.app.Utility;
+
+/**
+ * The search forms of the drinks, computed once when the corpus
+ * is loaded: each name with its accented characters folded to
+ * ASCII, and the ingredients joined into a single string.  Searches
+ * read these instead of normalizing or joining the text of every
+ * drink on every query.
+ * 
+ * The text is packed into a byte array per field (see PackedText)
+ * rather than held as a String per drink, so it costs little more
+ * heap than the characters themselves.  The lower-case forms are
+ * made from it when asked for.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class SearchText
+{
+  /**
+   * The field ID for the drink names.
+   */
+  public static final int FIELD_NAME = 0;
+  
+  /**
+   * The field ID for the ingredients.
+   */
+  public static final int FIELD_INGREDIENTS = 1;
+  
+  /**
+   * The accent-folded names, indexed by drink ID.
+   */
+  private final PackedText names;
+  
+  /**
+   * The joined ingredients, indexed by drink ID.
+   */
+  private final PackedText ingredients;
+  
+  
+  /**
+   * Build the search text for a corpus.
+   * 
+   * @param corpus the corpus
+   */
+  private SearchText(final Corpus corpus)
+  {
+    super();
+    
+    // Only one field's strings are on the heap at a time
+    final int size = corpus.size();
+    String[] strings = new String[size];
+    for (int i = 0; i < size; ++i)
+    {
+      strings[i] = Utility.foldAccents(corpus.getName(i));
+    }
+    names = PackedText.build(strings);
+    
+    for (int i = 0; i < size; ++i)
+    {
+      strings[i] = corpus.getIngredientsString(i);
+    }
+    ingredients = PackedText.build(strings);
+  }
+  
+  
+  /**
+   * Build the search text for a corpus.
+   * 
+   * @param corpus the corpus
+   * @return the search text
+   */
+  public static SearchText build(final Corpus corpus)
+  {
+    return new SearchText(corpus);
+  }
+  
+  
+  /**
+   * Returns the number of drinks.
+   * 
+   * @return the number of drinks
+   */
+  public int size()
+  {
+    return names.size();
+  }
+  
+  
+  /**
+   * Returns the accent-folded name of a drink.
+   * 
+   * @param id the drink ID
+   * @return the folded name
+   */
+  public String getName(final int id)
+  {
+    return names.get(id);
+  }
+  
+  
+  /**
+   * Returns the accent-folded name of a drink, in lower case.
+   * 
+   * @param id the drink ID
+   * @return the folded, lower-case name
+   */
+  public String getLowerName(final int id)
+  {
+    return names.getLowerCase(id);
+  }
+  
+  
+  /**
+   * Returns the ingredients of a drink as a single string.
+   * 
+   * @param id the drink ID
+   * @return the ingredients
+   */
+  public String getIngredients(final int id)
+  {
+    return ingredients.get(id);
+  }
+  
+  
+  /**
+   * Returns the ingredients of a drink as a single string,
+   * in lower case.
+   * 
+   * @param id the drink ID
+   * @return the lower-case ingredients
+   */
+  public String getLowerIngredients(final int id)
+  {
+    return ingredients.getLowerCase(id);
+  }
+  
+  
+  /**
+   * Returns the text of one field of a drink.
+   * 
+   * @param field the field ID (FIELD_NAME or FIELD_INGREDIENTS)
+   * @param id the drink ID
+   * @return the text
+   */
+  public String getText(final int field, final int id)
+  {
+    return ((field == FIELD_NAME) ? getName(id) : getIngredients(id));
+  }
+  
+  
+  /**
+   * Returns the lower-case text of one field of a drink.
+   * 
+   * @param field the field ID (FIELD_NAME or FIELD_INGREDIENTS)
+   * @param id the drink ID
+   * @return the lower-case text
+   */
+  public String getLowerText(final int field, final int id)
+  {
+    return ((field == FIELD_NAME) ? getLowerName(id)
+                                  : getLowerIngredients(id));
+  }
+}
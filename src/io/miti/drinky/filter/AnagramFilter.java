@@ -9,13 +9,18 @@ package io.miti.drinky.filter;
  * @author mwallace
  * @version 1.0
  */
-public final class AnagramFilter implements TermFilter
+public final class AnagramFilter implements FoldedTermFilter
 {
   /**
-   * The source term.
+   * The sorted characters of the source term.
    */
   private final String term;
   
+  /**
+   * The sorted characters of the source term in lower case.
+   */
+  private final String lowerTerm;
+  
   /**
    * Whether to ignore the case.
    */
@@ -29,6 +34,7 @@ public final class AnagramFilter implements TermFilter
   {
     super();
     term = null;
+    lowerTerm = null;
     ignoreCase = false;
   }
   
@@ -49,6 +55,31 @@ public final class AnagramFilter implements TermFilter
     
     // Save the String parameter, after processing
     term = buildData(word, ignoreCase);
+    lowerTerm = buildData(word, true);
+  }
+  
+  
+  /**
+   * Returns the sorted characters of the source term in lower
+   * case, as used for the anagram index.
+   * 
+   * @return the lower-case signature of the source term
+   */
+  public String getLowerSignature()
+  {
+    return lowerTerm;
+  }
+  
+  
+  /**
+   * Returns whether the filter ignores case.
+   * 
+   * @return whether the filter ignores case
+   */
+  @Override
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
   }
   
   
@@ -69,15 +100,30 @@ public final class AnagramFilter implements TermFilter
   }
   
   
+  /**
+   * Determines if the term matches the source term, where the
+   * term is already in lower case.
+   * 
+   * @param lowerWord the lower-case term to compare to the source term
+   * @return whether the terms match
+   */
+  @Override
+  public boolean acceptLowerCase(final String lowerWord)
+  {
+    return (lowerTerm.equals(buildData(lowerWord, false)));
+  }
+  
+  
   /**
    * Convert the argument into a String of the non-space
    * characters in the term, with the characters sorted.
+   * Two terms are anagrams if they give the same string.
    * 
    * @param term the string to sort
    * @param ignoreCase whether to ignore the string's case
    * @return the normalized string
    */
-  private static String buildData(final String term,
+  public static String buildData(final String term,
                                   final boolean ignoreCase)
   {
     // Check the term
@@ -14,7 +14,8 @@ import java.util.List;
  * @author mwallace
  * @version 1.0
  */
-public final class ContainsAllFilter implements TermFilter
+public final class ContainsAllFilter
+  implements FoldedTermFilter, RefinableFilter
 {
   /**
    * Whether to ignore the case.
@@ -22,9 +23,14 @@ public final class ContainsAllFilter implements TermFilter
   private final boolean ignoreCase;
   
   /**
-   * The list of terms.
+   * The distinct phrases.
    */
-  private final HashMap<String, Integer> terms;
+  private final String[] phrases;
+  
+  /**
+   * The number of times each phrase must occur.
+   */
+  private final int[] counts;
   
   
   /**
@@ -34,7 +40,8 @@ public final class ContainsAllFilter implements TermFilter
   {
     super();
     ignoreCase = false;
-    terms = new HashMap<String, Integer>(0);
+    phrases = new String[0];
+    counts = new int[0];
   }
   
   
@@ -58,11 +65,13 @@ public final class ContainsAllFilter implements TermFilter
     final int size = strings.size();
     
     // Build the hashmap
-    terms = new HashMap<String, Integer>(size);
+    HashMap<String, Integer> terms = new HashMap<String, Integer>(size);
     for (int i = 0; i < size; ++i)
     {
-      // Save the current string
-      final String term = strings.get(i);
+      // Save the current string, in lower case if we're ignoring
+      // case (the target is converted to lower case in accept())
+      final String term = ((ignoreCase) ? strings.get(i).toLowerCase()
+                                        : strings.get(i));
       
       // See if the hashmap contains the string
       if (!terms.containsKey(term))
@@ -76,6 +85,18 @@ public final class ContainsAllFilter implements TermFilter
         terms.put(term, count);
       }
     }
+    
+    // Copy the phrases and counts into arrays, so accept()
+    // doesn't allocate an iterator or unbox the counts
+    phrases = new String[terms.size()];
+    counts = new int[terms.size()];
+    int index = 0;
+    for (String key : terms.keySet())
+    {
+      phrases[index] = key;
+      counts[index] = terms.get(key).intValue();
+      ++index;
+    }
   }
   
   
@@ -96,14 +117,47 @@ public final class ContainsAllFilter implements TermFilter
     
     // See if we need to ignore case
     final String target = ((ignoreCase) ? word.toLowerCase() : word);
+    return containsAll(target);
+  }
+  
+  
+  /**
+   * Determines if the term matches the source term, where the
+   * term is already in lower case.
+   * 
+   * @param lowerWord the lower-case term to compare to the source term
+   * @return whether the terms match
+   */
+  @Override
+  public boolean acceptLowerCase(final String lowerWord)
+  {
+    // Check the input
+    if (lowerWord == null)
+    {
+      return false;
+    }
     
+    return containsAll(lowerWord);
+  }
+  
+  
+  /**
+   * Returns whether the target contains all of the phrases.
+   * 
+   * @param target the string to search
+   * @return whether all phrases were found
+   */
+  private boolean containsAll(final String target)
+  {
     // Iterate over the list of phrases to see if target
     // contains all of them
     boolean found = true;
-    for (String key : terms.keySet())
+    final int size = phrases.length;
+    for (int j = 0; j < size; ++j)
     {
-      // Get the number of occurrences
-      final int count = terms.get(key);
+      // Get the phrase and the number of occurrences
+      final String key = phrases[j];
+      final int count = counts[j];
       
       // See if it exists
       int index = target.indexOf(key);
@@ -137,4 +191,97 @@ public final class ContainsAllFilter implements TermFilter
     // Return whether we found one of the strings
     return found;
   }
+  
+  
+  /**
+   * Returns whether every term this filter accepts is also
+   * accepted by another Contains All filter.  That's true if each
+   * of the other filter's phrases is part of one of this filter's
+   * phrases that must occur at least as often, such as after
+   * typing more of a word or adding a word.
+   * 
+   * @param previous the other filter
+   * @return whether this filter is a refinement of the other one
+   */
+  @Override
+  public boolean refines(final TermFilter previous)
+  {
+    if (!(previous instanceof ContainsAllFilter))
+    {
+      return false;
+    }
+    
+    final ContainsAllFilter other = (ContainsAllFilter) previous;
+    if (ignoreCase != other.ignoreCase)
+    {
+      return false;
+    }
+    
+    // Each occurrence of a longer phrase holds an occurrence
+    // of the shorter one, at a different position
+    for (int i = 0; i < other.phrases.length; ++i)
+    {
+      boolean covered = false;
+      for (int j = 0; (j < phrases.length) && (!covered); ++j)
+      {
+        covered = ((counts[j] >= other.counts[i]) &&
+                   (phrases[j].contains(other.phrases[i])));
+      }
+      
+      if (!covered)
+      {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  
+  /**
+   * Returns whether the filter ignores case.
+   * 
+   * @return whether the filter ignores case
+   */
+  @Override
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
+  }
+  
+  
+  /**
+   * Returns the number of distinct phrases.
+   * 
+   * @return the number of phrases
+   */
+  public int getPhraseCount()
+  {
+    return phrases.length;
+  }
+  
+  
+  /**
+   * Returns one of the phrases (in lower case if the
+   * filter ignores case).
+   * 
+   * @param index the index of the phrase
+   * @return the phrase
+   */
+  public String getPhrase(final int index)
+  {
+    return phrases[index];
+  }
+  
+  
+  /**
+   * Returns the number of times a phrase must occur.
+   * 
+   * @param index the index of the phrase
+   * @return the number of occurrences
+   */
+  public int getOccurrences(final int index)
+  {
+    return counts[index];
+  }
 }
@@ -9,13 +9,18 @@ package io.miti.drinky.filter;
  * @author mwallace
  * @version 1.0
  */
-public final class ContainsFilter implements TermFilter
+public final class ContainsFilter implements FoldedTermFilter
 {
   /**
    * The source term.
    */
   private String term = null;
   
+  /**
+   * The source term in lower case.
+   */
+  private String lowerTerm = null;
+  
   /**
    * Whether to ignore the case.
    */
@@ -41,6 +46,7 @@ public final class ContainsFilter implements TermFilter
   public ContainsFilter(final String word, final boolean bIgnoreCase)
   {
     term = word;
+    lowerTerm = ((word == null) ? null : word.toLowerCase());
     ignoreCase = bIgnoreCase;
   }
   
@@ -77,4 +83,45 @@ public final class ContainsFilter implements TermFilter
       return (word.indexOf(term) >= 0);
     }
   }
+  
+  
+  /**
+   * Returns whether the filter ignores case.
+   * 
+   * @return whether the filter ignores case
+   */
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
+  }
+  
+  
+  /**
+   * Determines if the term matches the source term, where the
+   * term is already in lower case.
+   * 
+   * @param lowerWord the lower-case term to compare to the source term
+   * @return whether the terms match
+   */
+  public boolean acceptLowerCase(final String lowerWord)
+  {
+    // Check the two terms for nullness
+    if ((lowerWord == null) || (lowerTerm == null))
+    {
+      return ((lowerWord == null) && (lowerTerm == null));
+    }
+    
+    return (lowerWord.indexOf(lowerTerm) >= 0);
+  }
+  
+  
+  /**
+   * Returns the source term.
+   * 
+   * @return the source term
+   */
+  public String getTerm()
+  {
+    return term;
+  }
 }
@@ -14,7 +14,7 @@ import java.util.List;
  * @author mwallace
  * @version 1.0
  */
-public final class ContainsSomeFilter implements TermFilter
+public final class ContainsSomeFilter implements FoldedTermFilter
 {
   /**
    * Whether to ignore the case.
@@ -53,8 +53,17 @@ public final class ContainsSomeFilter implements TermFilter
     // Save whether to ignore the case
     ignoreCase = bIgnoreCase;
     
-    // Save the String parameter, after processing
+    // Save the String parameter, after processing.  If we're
+    // ignoring case, the phrases are saved in lower case.
     terms = FilterUtility.parseIntoPhrases(word);
+    if (ignoreCase)
+    {
+      final int size = terms.size();
+      for (int i = 0; i < size; ++i)
+      {
+        terms.set(i, terms.get(i).toLowerCase());
+      }
+    }
   }
   
   
@@ -75,7 +84,38 @@ public final class ContainsSomeFilter implements TermFilter
     
     // See if we need to ignore case
     final String target = ((ignoreCase) ? word.toLowerCase() : word);
+    return containsSome(target);
+  }
+  
+  
+  /**
+   * Determines if the term matches the source term, where the
+   * term is already in lower case.
+   * 
+   * @param lowerWord the lower-case term to compare to the source term
+   * @return whether the terms match
+   */
+  @Override
+  public boolean acceptLowerCase(final String lowerWord)
+  {
+    // Check the input
+    if (lowerWord == null)
+    {
+      return false;
+    }
     
+    return containsSome(lowerWord);
+  }
+  
+  
+  /**
+   * Returns whether the target contains any of the phrases.
+   * 
+   * @param target the string to search
+   * @return whether any phrase was found
+   */
+  private boolean containsSome(final String target)
+  {
     // Iterate over the list of phrases to see if target
     // contains any of them
     boolean found = false;
@@ -92,4 +132,40 @@ public final class ContainsSomeFilter implements TermFilter
     // Return whether we found one of the strings
     return found;
   }
+  
+  
+  /**
+   * Returns whether the filter ignores case.
+   * 
+   * @return whether the filter ignores case
+   */
+  @Override
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
+  }
+  
+  
+  /**
+   * Returns the number of distinct phrases.
+   * 
+   * @return the number of phrases
+   */
+  public int getPhraseCount()
+  {
+    return terms.size();
+  }
+  
+  
+  /**
+   * Returns one of the phrases (in lower case if the
+   * filter ignores case).
+   * 
+   * @param index the index of the phrase
+   * @return the phrase
+   */
+  public String getPhrase(final int index)
+  {
+    return terms.get(index);
+  }
 }
@@ -0,0 +1,1325 @@
+package io.miti.drinky.filter;
+
+/**
+ * Compute Double Metaphone codes.  Double Metaphone (Lawrence
+ * Philips, 2000) extends Metaphone with rules for names from other
+ * languages, and gives a word an alternate code where there are two
+ * common ways to pronounce it (e.g., "Schmidt" encodes as "XMT" and
+ * "SMT").  Codes are up to four characters long.  The code ignores
+ * case.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class DoubleMetaphone implements PhoneticEncoder
+{
+  /**
+   * The maximum length of a code.
+   */
+  private static final int MAX_CODE_LENGTH = 4;
+  
+  /**
+   * The vowels, as Double Metaphone defines them.
+   */
+  private static final String VOWELS = "AEIOUY";
+  
+  /**
+   * The one instance of the encoder.
+   */
+  public static final DoubleMetaphone INSTANCE = new DoubleMetaphone();
+  
+  
+  /**
+   * Default constructor.
+   */
+  private DoubleMetaphone()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Returns the name of the algorithm.
+   * 
+   * @return the name of the algorithm
+   */
+  public String getName()
+  {
+    return "Double Metaphone";
+  }
+  
+  
+  /**
+   * Returns the primary Double Metaphone code for part of a string.
+   * 
+   * @param str the string
+   * @param start the index of the first character of the word
+   * @param end the index after the last character of the word
+   * @param ignoreCase not used, since the code always ignores case
+   * @return the packed code, or 0 if the word has no code
+   */
+  public int encode(final CharSequence str,
+                    final int start,
+                    final int end,
+                    final boolean ignoreCase)
+  {
+    final Code code = getCode(PhoneticKey.getLetters(str, start, end));
+    return PhoneticKey.pack(code.primary);
+  }
+  
+  
+  /**
+   * Returns whether the algorithm gives words an alternate code.
+   * 
+   * @return true
+   */
+  public boolean hasAlternate()
+  {
+    return true;
+  }
+  
+  
+  /**
+   * Returns the alternate Double Metaphone code for part of a string.
+   * 
+   * @param str the string
+   * @param start the index of the first character of the word
+   * @param end the index after the last character of the word
+   * @param ignoreCase not used, since the code always ignores case
+   * @return the packed code, or 0 if the word has no code
+   */
+  public int encodeAlternate(final CharSequence str,
+                             final int start,
+                             final int end,
+                             final boolean ignoreCase)
+  {
+    // A word with no alternate sound uses the primary code
+    final Code code = getCode(PhoneticKey.getLetters(str, start, end));
+    final int alternate = PhoneticKey.pack(code.alternate);
+    return ((alternate != 0) ? alternate : PhoneticKey.pack(code.primary));
+  }
+  
+  
+  /**
+   * Returns the primary Double Metaphone code for a word.
+   * 
+   * @param letters the upper-case letters of the word
+   * @return the code
+   */
+  public static String getPrimaryCode(final String letters)
+  {
+    return getCode(letters).primary.toString();
+  }
+  
+  
+  /**
+   * Returns the alternate Double Metaphone code for a word.
+   * 
+   * @param letters the upper-case letters of the word
+   * @return the code
+   */
+  public static String getAlternateCode(final String letters)
+  {
+    return getCode(letters).alternate.toString();
+  }
+  
+  
+  /**
+   * Compute both codes for a word.
+   * 
+   * @param value the upper-case letters of the word
+   * @return the codes
+   */
+  private static Code getCode(final String value)
+  {
+    Code code = new Code();
+    final boolean slavoGermanic = isSlavoGermanic(value);
+    int index = (isSilentStart(value) ? 1 : 0);
+    final int len = value.length();
+    while ((!code.isComplete()) && (index < len))
+    {
+      switch (value.charAt(index))
+      {
+        case 'A':
+        case 'E':
+        case 'I':
+        case 'O':
+        case 'U':
+        case 'Y':
+          // Vowels are only kept at the start
+          if (index == 0)
+          {
+            code.append('A');
+          }
+          ++index;
+          break;
+        
+        case 'B':
+          code.append('P');
+          index = skipDouble(value, index, 'B');
+          break;
+        
+        case 'C':
+          index = handleC(value, code, index);
+          break;
+        
+        case 'D':
+          index = handleD(value, code, index);
+          break;
+        
+        case 'F':
+          code.append('F');
+          index = skipDouble(value, index, 'F');
+          break;
+        
+        case 'G':
+          index = handleG(value, code, index, slavoGermanic);
+          break;
+        
+        case 'H':
+          // Only kept at the start or after a vowel, and before a vowel
+          if (((index == 0) || (isVowel(charAt(value, index - 1)))) &&
+              (isVowel(charAt(value, index + 1))))
+          {
+            code.append('H');
+            index += 2;
+          }
+          else
+          {
+            ++index;
+          }
+          break;
+        
+        case 'J':
+          index = handleJ(value, code, index, slavoGermanic);
+          break;
+        
+        case 'K':
+          code.append('K');
+          index = skipDouble(value, index, 'K');
+          break;
+        
+        case 'L':
+          index = handleL(value, code, index);
+          break;
+        
+        case 'M':
+          code.append('M');
+          index = ((conditionM0(value, index)) ? index + 2 : index + 1);
+          break;
+        
+        case 'N':
+          code.append('N');
+          index = skipDouble(value, index, 'N');
+          break;
+        
+        case 'P':
+          if (charAt(value, index + 1) == 'H')
+          {
+            code.append('F');
+            index += 2;
+          }
+          else
+          {
+            code.append('P');
+            index = ((contains(value, index + 1, "P", "B")) ? index + 2
+                     : index + 1);
+          }
+          break;
+        
+        case 'Q':
+          code.append('K');
+          index = skipDouble(value, index, 'Q');
+          break;
+        
+        case 'R':
+          index = handleR(value, code, index, slavoGermanic);
+          break;
+        
+        case 'S':
+          index = handleS(value, code, index, slavoGermanic);
+          break;
+        
+        case 'T':
+          index = handleT(value, code, index);
+          break;
+        
+        case 'V':
+          code.append('F');
+          index = skipDouble(value, index, 'V');
+          break;
+        
+        case 'W':
+          index = handleW(value, code, index);
+          break;
+        
+        case 'X':
+          index = handleX(value, code, index);
+          break;
+        
+        case 'Z':
+          index = handleZ(value, code, index, slavoGermanic);
+          break;
+        
+        default:
+          ++index;
+          break;
+      }
+    }
+    
+    return code;
+  }
+  
+  
+  /**
+   * Handle a 'C'.
+   * 
+   * @param value the word
+   * @param code the codes
+   * @param index the index of the letter
+   * @return the index of the next letter to handle
+   */
+  private static int handleC(final String value,
+                             final Code code,
+                             final int index)
+  {
+    if (conditionC0(value, index))
+    {
+      // Various Germanic words
+      code.append('K');
+      return (index + 2);
+    }
+    else if ((index == 0) && (contains(value, index, "CAESAR")))
+    {
+      code.append('S');
+      return (index + 2);
+    }
+    else if (contains(value, index, "CH"))
+    {
+      return handleCH(value, code, index);
+    }
+    else if ((contains(value, index, "CZ")) &&
+             (!contains(value, index - 2, "WICZ")))
+    {
+      // "Czerny"
+      code.append('S', 'X');
+      return (index + 2);
+    }
+    else if (contains(value, index + 1, "CIA"))
+    {
+      // "focaccia"
+      code.append('X');
+      return (index + 3);
+    }
+    else if ((contains(value, index, "CC")) &&
+             (!((index == 1) && (charAt(value, 0) == 'M'))))
+    {
+      // A double 'C', but not "McClelland"
+      return handleCC(value, code, index);
+    }
+    else if (contains(value, index, "CK", "CG", "CQ"))
+    {
+      code.append('K');
+      return (index + 2);
+    }
+    else if (contains(value, index, "CI", "CE", "CY"))
+    {
+      // Italian vs. English
+      if (contains(value, index, "CIO", "CIE", "CIA"))
+      {
+        code.append('S', 'X');
+      }
+      else
+      {
+        code.append('S');
+      }
+      return (index + 2);
+    }
+    
+    code.append('K');
+    if ((contains(value, index + 1, "C", "K", "Q")) &&
+        (!contains(value, index + 1, "CE", "CI")))
+    {
+      return (index + 2);
+    }
+    
+    return (index + 1);
+  }
+  
+  
+  /**
+   * Handle a "CC".
+   * 
+   * @param value the word
+   * @param code the codes
+   * @param index the index of the first 'C'
+   * @return the index of the next letter to handle
+   */
+  private static int handleCC(final String value,
+                              final Code code,
+                              final int index)
+  {
+    if ((contains(value, index + 2, "I", "E", "H")) &&
+        (!contains(value, index + 2, "HU")))
+    {
+      // "bellocchio" but not "bacchus"
+      if (((index == 1) && (charAt(value, index - 1) == 'A')) ||
+          (contains(value, index - 1, "UCCEE", "UCCES")))
+      {
+        // "accident", "accede", "succeed"
+        code.append("KS");
+      }
+      else
+      {
+        // "bacci", "bertucci", other Italian
+        code.append('X');
+      }
+      return (index + 3);
+    }
+    
+    // Pierce's rule
+    code.append('K');
+    return (index + 2);
+  }
+  
+  
+  /**
+   * Handle a "CH".
+   * 
+   * @param value the word
+   * @param code the codes
+   * @param index the index of the 'C'
+   * @return the index of the next letter to handle
+   */
+  private static int handleCH(final String value,
+                              final Code code,
+                              final int index)
+  {
+    if ((index > 0) && (contains(value, index, "CHAE")))
+    {
+      // "Michael"
+      code.append('K', 'X');
+    }
+    else if ((conditionCH0(value, index)) || (conditionCH1(value, index)))
+    {
+      // Greek roots ("chemistry", "chorus") and Germanic words
+      code.append('K');
+    }
+    else if (index > 0)
+    {
+      if (contains(value, 0, "MC"))
+      {
+        code.append('K');
+      }
+      else
+      {
+        code.append('X', 'K');
+      }
+    }
+    else
+    {
+      code.append('X');
+    }
+    
+    return (index + 2);
+  }
+  
+  
+  /**
+   * Handle a 'D'.
+   * 
+   * @param value the word
+   * @param code the codes
+   * @param index the index of the letter
+   * @return the index of the next letter to handle
+   */
+  private static int handleD(final String value,
+                             final Code code,
+                             final int index)
+  {
+    if (contains(value, index, "DG"))
+    {
+      if (contains(value, index + 2, "I", "E", "Y"))
+      {
+        // "edge"
+        code.append('J');
+        return (index + 3);
+      }
+      
+      // "Edgar"
+      code.append("TK");
+      return (index + 2);
+    }
+    else if (contains(value, index, "DT", "DD"))
+    {
+      code.append('T');
+      return (index + 2);
+    }
+    
+    code.append('T');
+    return (index + 1);
+  }
+  
+  
+  /**
+   * Handle a 'G'.
+   * 
+   * @param value the word
+   * @param code the codes
+   * @param index the index of the letter
+   * @param slavoGermanic whether the word looks Slavic or Germanic
+   * @return the index of the next letter to handle
+   */
+  private static int handleG(final String value,
+                             final Code code,
+                             final int index,
+                             final boolean slavoGermanic)
+  {
+    final char next = charAt(value, index + 1);
+    if (next == 'H')
+    {
+      return handleGH(value, code, index);
+    }
+    else if (next == 'N')
+    {
+      if ((index == 1) && (isVowel(charAt(value, 0))) && (!slavoGermanic))
+      {
+        code.append("KN", "N");
+      }
+      else if ((!contains(value, index + 2, "EY")) && (!slavoGermanic))
+      {
+        code.append("N", "KN");
+      }
+      else
+      {
+        code.append("KN");
+      }
+      return (index + 2);
+    }
+    else if ((contains(value, index + 1, "LI")) && (!slavoGermanic))
+    {
+      // "tagliaro"
+      code.append("KL", "L");
+      return (index + 2);
+    }
+    else if ((index == 0) &&
+             ((next == 'Y') ||
+              (contains(value, index + 1, "ES", "EP", "EB", "EL", "EY",
+                        "IB", "IL", "IN", "IE", "EI", "ER"))))
+    {
+      // "-ges-", "-gep-", "-gel-", "-gie-" at the start
+      code.append('K', 'J');
+      return (index + 2);
+    }
+    else if (((contains(value, index + 1, "ER")) || (next == 'Y')) &&
+             (!contains(value, 0, "DANGER", "RANGER", "MANGER")) &&
+             (!contains(value, index - 1, "E", "I")) &&
+             (!contains(value, index - 1, "RGY", "OGY")))
+    {
+      // "-ger-", "-gy-"
+      code.append('K', 'J');
+      return (index + 2);
+    }
+    else if ((contains(value, index + 1, "E", "I", "Y")) ||
+             (contains(value, index - 1, "AGGI", "OGGI")))
+    {
+      // Italian "biaggi"
+      if ((contains(value, 0, "SCH")) || (contains(value, index + 1, "ET")))
+      {
+        // Obviously Germanic
+        code.append('K');
+      }
+      else if (contains(value, index + 1, "IER"))
+      {
+        code.append('J');
+      }
+      else
+      {
+        code.append('J', 'K');
+      }
+      return (index + 2);
+    }
+    else if (next == 'G')
+    {
+      code.append('K');
+      return (index + 2);
+    }
+    
+    code.append('K');
+    return (index + 1);
+  }
+  
+  
+  /**
+   * Handle a "GH".
+   * 
+   * @param value the word
+   * @param code the codes
+   * @param index the index of the 'G'
+   * @return the index of the next letter to handle
+   */
+  private static int handleGH(final String value,
+                              final Code code,
+                              final int index)
+  {
+    if ((index > 0) && (!isVowel(charAt(value, index - 1))))
+    {
+      code.append('K');
+    }
+    else if (index == 0)
+    {
+      // "ghislane", "ghiradelli"
+      code.append((charAt(value, index + 2) == 'I') ? 'J' : 'K');
+    }
+    else if (((index > 1) && (contains(value, index - 2, "B", "H", "D"))) ||
+             ((index > 2) && (contains(value, index - 3, "B", "H", "D"))) ||
+             ((index > 3) && (contains(value, index - 4, "B", "H"))))
+    {
+      // Parker's rule, e.g. "hugh"
+      return (index + 2);
+    }
+    else if ((index > 2) && (charAt(value, index - 1) == 'U') &&
+             (contains(value, index - 3, "C", "G", "L", "R", "T")))
+    {
+      // "laugh", "McLaughlin", "cough", "gough", "rough", "tough"
+      code.append('F');
+    }
+    else if ((index > 0) && (charAt(value, index - 1) != 'I'))
+    {
+      code.append('K');
+    }
+    
+    return (index + 2);
+  }
+  
+  
+  /**
+   * Handle a 'J'.
+   * 
+   * @param value the word
+   * @param code the codes
+   * @param index the index of the letter
+   * @param slavoGermanic whether the word looks Slavic or Germanic
+   * @return the index of the next letter to handle
+   */
+  private static int handleJ(final String value,
+                             final Code code,
+                             final int index,
+                             final boolean slavoGermanic)
+  {
+    if (contains(value, index, "JOSE"))
+    {
+      // Obviously Spanish, "Jose"
+      if ((index == 0) && (value.length() == 4))
+      {
+        code.append('H');
+      }
+      else
+      {
+        code.append('J', 'H');
+      }
+      return (index + 1);
+    }
+    
+    if (index == 0)
+    {
+      code.append('J', 'A');
+    }
+    else if ((isVowel(charAt(value, index - 1))) && (!slavoGermanic) &&
+             ((charAt(value, index + 1) == 'A') ||
+              (charAt(value, index + 1) == 'O')))
+    {
+      code.append('J', 'H');
+    }
+    else if (index == value.length() - 1)
+    {
+      code.append('J', ' ');
+    }
+    else if ((!contains(value, index + 1,
+                        "L", "T", "K", "S", "N", "M", "B", "Z")) &&
+             (!contains(value, index - 1, "S", "K", "L")))
+    {
+      code.append('J');
+    }
+    
+    return skipDouble(value, index, 'J');
+  }
+  
+  
+  /**
+   * Handle an 'L'.
+   * 
+   * @param value the word
+   * @param code the codes
+   * @param index the index of the letter
+   * @return the index of the next letter to handle
+   */
+  private static int handleL(final String value,
+                             final Code code,
+                             final int index)
+  {
+    if (charAt(value, index + 1) != 'L')
+    {
+      code.append('L');
+      return (index + 1);
+    }
+    
+    // Spanish, e.g. "cabrillo", "gallegos"
+    final int len = value.length();
+    if (((index == len - 3) &&
+         (contains(value, index - 1, "ILLO", "ILLA", "ALLE"))) ||
+        (((contains(value, len - 2, "AS", "OS")) ||
+          (contains(value, len - 1, "A", "O"))) &&
+         (contains(value, index - 1, "ALLE"))))
+    {
+      code.appendPrimary('L');
+    }
+    else
+    {
+      code.append('L');
+    }
+    
+    return (index + 2);
+  }
+  
+  
+  /**
+   * Handle an 'R'.
+   * 
+   * @param value the word
+   * @param code the codes
+   * @param index the index of the letter
+   * @param slavoGermanic whether the word looks Slavic or Germanic
+   * @return the index of the next letter to handle
+   */
+  private static int handleR(final String value,
+                             final Code code,
+                             final int index,
+                             final boolean slavoGermanic)
+  {
+    if ((index == value.length() - 1) && (!slavoGermanic) &&
+        (contains(value, index - 2, "IE")) &&
+        (!contains(value, index - 4, "ME", "MA")))
+    {
+      // French, e.g. "rogier", but not "hochmeier"
+      code.appendAlternate('R');
+    }
+    else
+    {
+      code.append('R');
+    }
+    
+    return skipDouble(value, index, 'R');
+  }
+  
+  
+  /**
+   * Handle an 'S'.
+   * 
+   * @param value the word
+   * @param code the codes
+   * @param index the index of the letter
+   * @param slavoGermanic whether the word looks Slavic or Germanic
+   * @return the index of the next letter to handle
+   */
+  private static int handleS(final String value,
+                             final Code code,
+                             final int index,
+                             final boolean slavoGermanic)
+  {
+    if (contains(value, index - 1, "ISL", "YSL"))
+    {
+      // "island", "isle", "carlisle", "carlysle"
+      return (index + 1);
+    }
+    else if ((index == 0) && (contains(value, index, "SUGAR")))
+    {
+      code.append('X', 'S');
+      return (index + 1);
+    }
+    else if (contains(value, index, "SH"))
+    {
+      if (contains(value, index + 1, "HEIM", "HOEK", "HOLM", "HOLZ"))
+      {
+        // Germanic
+        code.append('S');
+      }
+      else
+      {
+        code.append('X');
+      }
+      return (index + 2);
+    }
+    else if ((contains(value, index, "SIO", "SIA")) ||
+             (contains(value, index, "SIAN")))
+    {
+      // Italian and Armenian
+      if (slavoGermanic)
+      {
+        code.append('S');
+      }
+      else
+      {
+        code.append('S', 'X');
+      }
+      return (index + 3);
+    }
+    else if (((index == 0) &&
+              (contains(value, index + 1, "M", "N", "L", "W"))) ||
+             (contains(value, index + 1, "Z")))
+    {
+      // German and anglicized forms, e.g. "smith" and "schmidt",
+      // "snider" and "schneider", and the Slavic "-sz-"
+      code.append('S', 'X');
+      return ((contains(value, index + 1, "Z")) ? index + 2 : index + 1);
+    }
+    else if (contains(value, index, "SC"))
+    {
+      return handleSC(value, code, index);
+    }
+    
+    if ((index == value.length() - 1) &&
+        (contains(value, index - 2, "AI", "OI")))
+    {
+      // French, e.g. "resnais", "artois"
+      code.appendAlternate('S');
+    }
+    else
+    {
+      code.append('S');
+    }
+    
+    return ((contains(value, index + 1, "S", "Z")) ? index + 2 : index + 1);
+  }
+  
+  
+  /**
+   * Handle an "SC".
+   * 
+   * @param value the word
+   * @param code the codes
+   * @param index the index of the 'S'
+   * @return the index of the next letter to handle
+   */
+  private static int handleSC(final String value,
+                              final Code code,
+                              final int index)
+  {
+    if (charAt(value, index + 2) == 'H')
+    {
+      // Schlesinger's rule
+      if (contains(value, index + 3, "OO", "ER", "EN", "UY", "ED", "EM"))
+      {
+        // Dutch origin, e.g. "school", "schooner"
+        if (contains(value, index + 3, "ER", "EN"))
+        {
+          // "schermerhorn", "schenker"
+          code.append("X", "SK");
+        }
+        else
+        {
+          code.append("SK");
+        }
+      }
+      else if ((index == 0) && (!isVowel(charAt(value, 3))) &&
+               (charAt(value, 3) != 'W'))
+      {
+        code.append('X', 'S');
+      }
+      else
+      {
+        code.append('X');
+      }
+    }
+    else if (contains(value, index + 2, "I", "E", "Y"))
+    {
+      code.append('S');
+    }
+    else
+    {
+      code.append("SK");
+    }
+    
+    return (index + 3);
+  }
+  
+  
+  /**
+   * Handle a 'T'.
+   * 
+   * @param value the word
+   * @param code the codes
+   * @param index the index of the letter
+   * @return the index of the next letter to handle
+   */
+  private static int handleT(final String value,
+                             final Code code,
+                             final int index)
+  {
+    if ((contains(value, index, "TION")) ||
+        (contains(value, index, "TIA", "TCH")))
+    {
+      code.append('X');
+      return (index + 3);
+    }
+    else if ((contains(value, index, "TH")) || (contains(value, index, "TTH")))
+    {
+      if ((contains(value, index + 2, "OM", "AM")) ||
+          (contains(value, 0, "SCH")))
+      {
+        // "thomas", "thames", or Germanic
+        code.append('T');
+      }
+      else
+      {
+        code.append('0', 'T');
+      }
+      return (index + 2);
+    }
+    
+    code.append('T');
+    return ((contains(value, index + 1, "T", "D")) ? index + 2 : index + 1);
+  }
+  
+  
+  /**
+   * Handle a 'W'.
+   * 
+   * @param value the word
+   * @param code the codes
+   * @param index the index of the letter
+   * @return the index of the next letter to handle
+   */
+  private static int handleW(final String value,
+                             final Code code,
+                             final int index)
+  {
+    if (contains(value, index, "WR"))
+    {
+      // Can also be in the middle of a word
+      code.append('R');
+      return (index + 2);
+    }
+    
+    final boolean nextVowel = isVowel(charAt(value, index + 1));
+    if ((index == 0) && ((nextVowel) || (contains(value, index, "WH"))))
+    {
+      // "Wasserman" should match "Vasserman", and "Uomo" "Womo"
+      if (nextVowel)
+      {
+        code.append('A', 'F');
+      }
+      else
+      {
+        code.append('A');
+      }
+    }
+    else if (((index == value.length() - 1) &&
+              (isVowel(charAt(value, index - 1)))) ||
+             (contains(value, index - 1,
+                       "EWSKI", "EWSKY", "OWSKI", "OWSKY")) ||
+             (contains(value, 0, "SCH")))
+    {
+      // "Arnow" should match "Arnoff"
+      code.appendAlternate('F');
+    }
+    else if (contains(value, index, "WICZ", "WITZ"))
+    {
+      // Polish, e.g. "filipowicz"
+      code.append("TS", "FX");
+      return (index + 4);
+    }
+    
+    return (index + 1);
+  }
+  
+  
+  /**
+   * Handle an 'X'.
+   * 
+   * @param value the word
+   * @param code the codes
+   * @param index the index of the letter
+   * @return the index of the next letter to handle
+   */
+  private static int handleX(final String value,
+                             final Code code,
+                             final int index)
+  {
+    if (index == 0)
+    {
+      code.append('S');
+      return (index + 1);
+    }
+    
+    if (!((index == value.length() - 1) &&
+          ((contains(value, index - 3, "IAU", "EAU")) ||
+           (contains(value, index - 2, "AU", "OU")))))
+    {
+      // Not French, e.g. "breaux"
+      code.append("KS");
+    }
+    
+    return ((contains(value, index + 1, "C", "X")) ? index + 2 : index + 1);
+  }
+  
+  
+  /**
+   * Handle a 'Z'.
+   * 
+   * @param value the word
+   * @param code the codes
+   * @param index the index of the letter
+   * @param slavoGermanic whether the word looks Slavic or Germanic
+   * @return the index of the next letter to handle
+   */
+  private static int handleZ(final String value,
+                             final Code code,
+                             final int index,
+                             final boolean slavoGermanic)
+  {
+    if (charAt(value, index + 1) == 'H')
+    {
+      // Chinese pinyin, e.g. "zhao"
+      code.append('J');
+      return (index + 2);
+    }
+    
+    if ((contains(value, index + 1, "ZO", "ZI", "ZA")) ||
+        ((slavoGermanic) && (index > 0) && (charAt(value, index - 1) != 'T')))
+    {
+      code.append("S", "TS");
+    }
+    else
+    {
+      code.append('S');
+    }
+    
+    return skipDouble(value, index, 'Z');
+  }
+  
+  
+  /**
+   * Returns whether a 'C' is hard in a Germanic word, as in "bacher"
+   * and "macher".
+   * 
+   * @param value the word
+   * @param index the index of the 'C'
+   * @return whether the 'C' sounds like 'K'
+   */
+  private static boolean conditionC0(final String value, final int index)
+  {
+    if (contains(value, index, "CHIA"))
+    {
+      return true;
+    }
+    else if (index <= 1)
+    {
+      return false;
+    }
+    else if (isVowel(charAt(value, index - 2)))
+    {
+      return false;
+    }
+    else if (!contains(value, index - 1, "ACH"))
+    {
+      return false;
+    }
+    
+    final char ch = charAt(value, index + 2);
+    return (((ch != 'I') && (ch != 'E')) ||
+            (contains(value, index - 2, "BACHER", "MACHER")));
+  }
+  
+  
+  /**
+   * Returns whether a "CH" at the start of a word has a Greek
+   * root, as in "character" and "chorus".
+   * 
+   * @param value the word
+   * @param index the index of the 'C'
+   * @return whether the "CH" sounds like 'K'
+   */
+  private static boolean conditionCH0(final String value, final int index)
+  {
+    if (index != 0)
+    {
+      return false;
+    }
+    else if ((!contains(value, index + 1, "HARAC", "HARIS")) &&
+             (!contains(value, index + 1, "HOR", "HYM", "HIA", "HEM")))
+    {
+      return false;
+    }
+    
+    return (!contains(value, 0, "CHORE"));
+  }
+  
+  
+  /**
+   * Returns whether a "CH" is Germanic, Greek or otherwise sounds
+   * like "KH".
+   * 
+   * @param value the word
+   * @param index the index of the 'C'
+   * @return whether the "CH" sounds like 'K'
+   */
+  private static boolean conditionCH1(final String value, final int index)
+  {
+    return ((contains(value, 0, "SCH")) ||
+            (contains(value, index - 2, "ORCHES", "ARCHIT", "ORCHID")) ||
+            (contains(value, index + 2, "T", "S")) ||
+            (((contains(value, index - 1, "A", "O", "U", "E")) ||
+              (index == 0)) &&
+             ((contains(value, index + 2,
+                        "L", "R", "N", "M", "B", "H", "F", "V", "W")) ||
+              (index + 1 == value.length() - 1))));
+  }
+  
+  
+  /**
+   * Returns whether an 'M' is followed by a silent letter, as in
+   * "dumb" and "thumb".
+   * 
+   * @param value the word
+   * @param index the index of the 'M'
+   * @return whether to skip the next letter
+   */
+  private static boolean conditionM0(final String value, final int index)
+  {
+    if (charAt(value, index + 1) == 'M')
+    {
+      return true;
+    }
+    
+    return ((contains(value, index - 1, "UMB")) &&
+            (((index + 1) == value.length() - 1) ||
+             (contains(value, index + 2, "ER"))));
+  }
+  
+  
+  /**
+   * Returns whether a word looks Slavic or Germanic.
+   * 
+   * @param value the word
+   * @return whether the word has a 'W', 'K', "CZ" or "WITZ"
+   */
+  private static boolean isSlavoGermanic(final String value)
+  {
+    return ((value.indexOf('W') >= 0) || (value.indexOf('K') >= 0) ||
+            (value.indexOf("CZ") >= 0) || (value.indexOf("WITZ") >= 0));
+  }
+  
+  
+  /**
+   * Returns whether a word starts with a silent letter.
+   * 
+   * @param value the word
+   * @return whether the first letter should be skipped
+   */
+  private static boolean isSilentStart(final String value)
+  {
+    return ((value.startsWith("GN")) || (value.startsWith("KN")) ||
+            (value.startsWith("PN")) || (value.startsWith("WR")) ||
+            (value.startsWith("PS")));
+  }
+  
+  
+  /**
+   * Returns whether a character is a vowel.
+   * 
+   * @param ch the character
+   * @return whether the character is a vowel
+   */
+  private static boolean isVowel(final char ch)
+  {
+    return ((ch != 0) && (VOWELS.indexOf(ch) >= 0));
+  }
+  
+  
+  /**
+   * Returns the character at an index, or 0 if the index is
+   * outside the word.
+   * 
+   * @param value the word
+   * @param index the index
+   * @return the character
+   */
+  private static char charAt(final String value, final int index)
+  {
+    return (((index < 0) || (index >= value.length())) ? 0
+            : value.charAt(index));
+  }
+  
+  
+  /**
+   * Returns the index after a letter, skipping the next
+   * letter if it's the same.
+   * 
+   * @param value the word
+   * @param index the index of the letter
+   * @param ch the letter
+   * @return the index of the next letter to handle
+   */
+  private static int skipDouble(final String value,
+                                final int index,
+                                final char ch)
+  {
+    return ((charAt(value, index + 1) == ch) ? index + 2 : index + 1);
+  }
+  
+  
+  /**
+   * Returns whether one of some strings occurs in a word at an
+   * index.  The strings must all be the same length.
+   * 
+   * @param value the word
+   * @param start the index
+   * @param criteria the strings to look for
+   * @return whether the word has one of the strings at the index
+   */
+  private static boolean contains(final String value,
+                                  final int start,
+                                  final String... criteria)
+  {
+    final int length = criteria[0].length();
+    if ((start < 0) || (start + length > value.length()))
+    {
+      return false;
+    }
+    
+    for (String str : criteria)
+    {
+      if (value.startsWith(str, start))
+      {
+        return true;
+      }
+    }
+    
+    return false;
+  }
+  
+  
+  /**
+   * The primary and alternate codes for a word, as they're built.
+   * Each is cut off at the maximum length.
+   */
+  private static final class Code
+  {
+    /**
+     * The primary code.
+     */
+    private final StringBuilder primary =
+      new StringBuilder(MAX_CODE_LENGTH);
+    
+    /**
+     * The alternate code.
+     */
+    private final StringBuilder alternate =
+      new StringBuilder(MAX_CODE_LENGTH);
+    
+    
+    /**
+     * Default constructor.
+     */
+    public Code()
+    {
+      super();
+    }
+    
+    
+    /**
+     * Add a character to both codes.
+     * 
+     * @param ch the character
+     */
+    public void append(final char ch)
+    {
+      appendPrimary(ch);
+      appendAlternate(ch);
+    }
+    
+    
+    /**
+     * Add a different character to each code.
+     * 
+     * @param primaryCh the character for the primary code
+     * @param alternateCh the character for the alternate code
+     */
+    public void append(final char primaryCh, final char alternateCh)
+    {
+      appendPrimary(primaryCh);
+      appendAlternate(alternateCh);
+    }
+    
+    
+    /**
+     * Add a string to both codes.
+     * 
+     * @param str the string
+     */
+    public void append(final String str)
+    {
+      append(str, str);
+    }
+    
+    
+    /**
+     * Add a different string to each code.
+     * 
+     * @param primaryStr the string for the primary code
+     * @param alternateStr the string for the alternate code
+     */
+    public void append(final String primaryStr, final String alternateStr)
+    {
+      for (int i = 0; i < primaryStr.length(); ++i)
+      {
+        appendPrimary(primaryStr.charAt(i));
+      }
+      for (int i = 0; i < alternateStr.length(); ++i)
+      {
+        appendAlternate(alternateStr.charAt(i));
+      }
+    }
+    
+    
+    /**
+     * Add a character to the primary code.
+     * 
+     * @param ch the character
+     */
+    public void appendPrimary(final char ch)
+    {
+      if (primary.length() < MAX_CODE_LENGTH)
+      {
+        primary.append(ch);
+      }
+    }
+    
+    
+    /**
+     * Add a character to the alternate code.
+     * 
+     * @param ch the character
+     */
+    public void appendAlternate(final char ch)
+    {
+      if (alternate.length() < MAX_CODE_LENGTH)
+      {
+        alternate.append(ch);
+      }
+    }
+    
+    
+    /**
+     * Returns whether both codes are full.
+     * 
+     * @return whether both codes are at the maximum length
+     */
+    public boolean isComplete()
+    {
+      return ((primary.length() >= MAX_CODE_LENGTH) &&
+              (alternate.length() >= MAX_CODE_LENGTH));
+    }
+  }
+}
@@ -9,13 +9,18 @@ package io.miti.drinky.filter;
  * @author mwallace
  * @version 1.0
  */
-public final class EndsWithFilter implements TermFilter
+public final class EndsWithFilter implements FoldedTermFilter, RefinableFilter
 {
   /**
    * The source term.
    */
   private String term = null;
   
+  /**
+   * The source term in lower case.
+   */
+  private String lowerTerm = null;
+  
   /**
    * Whether to ignore the case.
    */
@@ -41,6 +46,7 @@ public final class EndsWithFilter implements TermFilter
   public EndsWithFilter(final String word, final boolean bIgnoreCase)
   {
     term = word;
+    lowerTerm = ((word == null) ? null : word.toLowerCase());
     ignoreCase = bIgnoreCase;
   }
   
@@ -77,4 +83,77 @@ public final class EndsWithFilter implements TermFilter
       return (word.endsWith(term));
     }
   }
+  
+  
+  /**
+   * Returns the source term in lower case.
+   * 
+   * @return the lower-case source term (null if there's none)
+   */
+  public String getLowerTerm()
+  {
+    return lowerTerm;
+  }
+  
+  
+  /**
+   * Returns whether the filter ignores case.
+   * 
+   * @return whether the filter ignores case
+   */
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
+  }
+  
+  
+  /**
+   * Determines if the term matches the source term, where the
+   * term is already in lower case.
+   * 
+   * @param lowerWord the lower-case term to compare to the source term
+   * @return whether the terms match
+   */
+  public boolean acceptLowerCase(final String lowerWord)
+  {
+    // Check the two terms for nullness
+    if ((lowerWord == null) || (lowerTerm == null))
+    {
+      return ((lowerWord == null) && (lowerTerm == null));
+    }
+    
+    return lowerWord.endsWith(lowerTerm);
+  }
+  
+  
+  /**
+   * Returns whether every term this filter accepts is also
+   * accepted by another filter, which is true if the other is
+   * the same kind of filter and this term ends with its term.
+   * 
+   * @param previous the other filter
+   * @return whether this filter is a refinement of the other one
+   */
+  public boolean refines(final TermFilter previous)
+  {
+    if (!(previous instanceof EndsWithFilter))
+    {
+      return false;
+    }
+    
+    final EndsWithFilter other = (EndsWithFilter) previous;
+    if ((term == null) || (other.term == null) ||
+        (ignoreCase != other.ignoreCase))
+    {
+      return false;
+    }
+    else if (!ignoreCase)
+    {
+      return term.endsWith(other.term);
+    }
+    
+    // Check both ways of ignoring case, since either may be used
+    return ((term.toUpperCase().endsWith(other.term.toUpperCase())) &&
+            (lowerTerm.endsWith(other.lowerTerm)));
+  }
 }
@@ -7,13 +7,18 @@ package io.miti.drinky.filter;
  * @author mwallace
  * @version 1.0
  */
-public final class ExactMatchFilter implements TermFilter
+public final class ExactMatchFilter implements FoldedTermFilter
 {
   /**
    * The source term.
    */
   private String term = null;
   
+  /**
+   * The source term in lower case.
+   */
+  private String lowerTerm = null;
+  
   /**
    * Whether to ignore the case.
    */
@@ -39,6 +44,7 @@ public final class ExactMatchFilter implements TermFilter
   public ExactMatchFilter(final String word, final boolean bIgnoreCase)
   {
     term = word;
+    lowerTerm = ((word == null) ? null : word.toLowerCase());
     ignoreCase = bIgnoreCase;
   }
   
@@ -75,4 +81,45 @@ public final class ExactMatchFilter implements TermFilter
       return (term.equals(word));
     }
   }
+  
+  
+  /**
+   * Returns the source term in lower case.
+   * 
+   * @return the lower-case source term (null if there's none)
+   */
+  public String getLowerTerm()
+  {
+    return lowerTerm;
+  }
+  
+  
+  /**
+   * Returns whether the filter ignores case.
+   * 
+   * @return whether the filter ignores case
+   */
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
+  }
+  
+  
+  /**
+   * Determines if the term matches the source term, where the
+   * term is already in lower case.
+   * 
+   * @param lowerWord the lower-case term to compare to the source term
+   * @return whether the terms match
+   */
+  public boolean acceptLowerCase(final String lowerWord)
+  {
+    // Check the two terms for nullness
+    if ((lowerWord == null) || (lowerTerm == null))
+    {
+      return ((lowerWord == null) && (lowerTerm == null));
+    }
+    
+    return lowerWord.equals(lowerTerm);
+  }
 }
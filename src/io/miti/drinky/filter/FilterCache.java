@@ -0,0 +1,388 @@
+package io.miti.drinky.filter;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A cache of the filters built for search terms, so repeating a
+ * search doesn't compile its regular expression, parse its wildcards
+ * or split its phrases again.  Filters are keyed by the search mode,
+ * whether case is ignored and the term (in lower case when case is
+ * ignored, except for regular expressions, where case changes the
+ * meaning).  The least recently used filter is dropped when the
+ * cache is full.
+ * 
+ * The filters don't change once built, so one can be used by any
+ * number of searches.  The exception is a regular expression that
+ * needs java.util.regex with a time budget, since the budget is
+ * used up by the search; those filters aren't cached.
+ * 
+ * One cache is shared by the application and any other code that
+ * searches; it's safe to use from several threads.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class FilterCache
+{
+  /**
+   * Search mode: the term contains all the words (ContainsAllFilter).
+   */
+  public static final int MODE_CONTAINS = 0;
+  
+  /**
+   * Search mode: the term starts with a string.
+   */
+  public static final int MODE_STARTS_WITH = 1;
+  
+  /**
+   * Search mode: the term ends with a string.
+   */
+  public static final int MODE_ENDS_WITH = 2;
+  
+  /**
+   * Search mode: the term is a string.
+   */
+  public static final int MODE_EXACT = 3;
+  
+  /**
+   * Search mode: the term matches a wildcard pattern.
+   */
+  public static final int MODE_WILDCARD = 4;
+  
+  /**
+   * Search mode: the term matches a regular expression.
+   */
+  public static final int MODE_REGEX = 5;
+  
+  /**
+   * Search mode: the term sounds like a string (Soundex).
+   */
+  public static final int MODE_SOUNDEX = 6;
+  
+  /**
+   * Search mode: the term sounds like a string (Metaphone).
+   */
+  public static final int MODE_METAPHONE = 7;
+  
+  /**
+   * Search mode: the term sounds like a string (Double Metaphone).
+   */
+  public static final int MODE_DOUBLE_METAPHONE = 8;
+  
+  /**
+   * Search mode: the term sounds like a string (NYSIIS).
+   */
+  public static final int MODE_NYSIIS = 9;
+  
+  /**
+   * Search mode: the term is spelled almost the same as a string.
+   */
+  public static final int MODE_SIMILAR = 10;
+  
+  /**
+   * Search mode: the term is an anagram of a string.
+   */
+  public static final int MODE_ANAGRAM = 11;
+  
+  /**
+   * Search mode: the term can be spelled from the letters of a string.
+   */
+  public static final int MODE_SUB_ANAGRAM = 12;
+  
+  /**
+   * The number of characters in a search term for each
+   * edit allowed in a Similar search.
+   */
+  public static final int SIMILAR_CHARS_PER_EDIT = 5;
+  
+  /**
+   * The number of filters kept by the shared cache.
+   */
+  private static final int SHARED_CAPACITY = 64;
+  
+  /**
+   * The shared cache.
+   */
+  private static final FilterCache SHARED = new FilterCache(SHARED_CAPACITY);
+  
+  /**
+   * The filters, least recently used first.
+   */
+  private final Map<String, TermFilter> filters;
+  
+  /**
+   * The number of requests for a filter that was in the cache.
+   */
+  private long hits = 0L;
+  
+  /**
+   * The number of requests for a filter that had to be built.
+   */
+  private long misses = 0L;
+  
+  
+  /**
+   * Create a cache.
+   * 
+   * @param capacity the most filters to keep
+   */
+  public FilterCache(final int capacity)
+  {
+    super();
+    final int maxSize = Math.max(1, capacity);
+    filters = new LinkedHashMap<String, TermFilter>(maxSize * 2, 0.75f, true)
+    {
+      /**
+       * Default serial version ID.
+       */
+      private static final long serialVersionUID = 1L;
+      
+      @Override
+      protected boolean removeEldestEntry(
+                          final Map.Entry<String, TermFilter> eldest)
+      {
+        return (size() > maxSize);
+      }
+    };
+  }
+  
+  
+  /**
+   * Returns the shared cache.
+   * 
+   * @return the cache
+   */
+  public static FilterCache getShared()
+  {
+    return SHARED;
+  }
+  
+  
+  /**
+   * Returns the filter for a search term, using the linear-time
+   * engine for a regular expression.
+   * 
+   * @param mode the search mode (one of the MODE constants)
+   * @param term the search term
+   * @param ignoreCase whether to ignore case
+   * @return the filter
+   */
+  public TermFilter getFilter(final int mode,
+                              final String term,
+                              final boolean ignoreCase)
+  {
+    return getFilter(mode, term, ignoreCase, true);
+  }
+  
+  
+  /**
+   * Returns the filter for a search term, from the cache if
+   * it's there, or else built (and added to the cache).
+   * 
+   * @param mode the search mode (one of the MODE constants)
+   * @param term the search term
+   * @param ignoreCase whether to ignore case
+   * @param linearRegex whether to use the linear-time engine
+   *        for a regular expression
+   * @return the filter
+   * @throws java.util.regex.PatternSyntaxException if the term is
+   *         an invalid regular expression
+   */
+  public TermFilter getFilter(final int mode,
+                              final String term,
+                              final boolean ignoreCase,
+                              final boolean linearRegex)
+  {
+    final String key = getKey(mode, term, ignoreCase, linearRegex);
+    synchronized (filters)
+    {
+      final TermFilter filter = filters.get(key);
+      if (filter != null)
+      {
+        ++hits;
+        return filter;
+      }
+      
+      ++misses;
+    }
+    
+    // Build the filter outside the lock, since compiling a
+    // regular expression may take a while
+    final TermFilter filter =
+      createFilter(mode, term, ignoreCase, linearRegex);
+    if ((filter instanceof RegexFilter) &&
+        (((RegexFilter) filter).hasTimeBudget()))
+    {
+      return filter;
+    }
+    
+    synchronized (filters)
+    {
+      filters.put(key, filter);
+    }
+    
+    return filter;
+  }
+  
+  
+  /**
+   * Returns the number of requests for a filter that was
+   * in the cache.
+   * 
+   * @return the number of hits
+   */
+  public long getHits()
+  {
+    synchronized (filters)
+    {
+      return hits;
+    }
+  }
+  
+  
+  /**
+   * Returns the number of requests for a filter that had
+   * to be built.
+   * 
+   * @return the number of misses
+   */
+  public long getMisses()
+  {
+    synchronized (filters)
+    {
+      return misses;
+    }
+  }
+  
+  
+  /**
+   * Returns the number of filters in the cache.
+   * 
+   * @return the number of filters
+   */
+  public int size()
+  {
+    synchronized (filters)
+    {
+      return filters.size();
+    }
+  }
+  
+  
+  /**
+   * Remove all the filters, and reset the counters.
+   */
+  public void clear()
+  {
+    synchronized (filters)
+    {
+      filters.clear();
+      hits = 0L;
+      misses = 0L;
+    }
+  }
+  
+  
+  /**
+   * Returns the maximum edit distance for a Similar search: one
+   * typo for every five characters in the term, and at least one.
+   * 
+   * @param term the search term
+   * @return the maximum distance
+   */
+  public static int getSimilarDistance(final String term)
+  {
+    return Math.max(1, term.length() / SIMILAR_CHARS_PER_EDIT);
+  }
+  
+  
+  /**
+   * Returns the cache key for a search term, which is the same
+   * for any two terms that get the same filter.
+   * 
+   * @param mode the search mode
+   * @param term the search term
+   * @param ignoreCase whether to ignore case
+   * @param linearRegex whether to use the linear-time engine
+   * @return the key
+   */
+  public static String getKey(final int mode,
+                               final String term,
+                               final boolean ignoreCase,
+                               final boolean linearRegex)
+  {
+    // Case changes the meaning of a regular expression (\d and
+    // \D, for instance), so only other terms are normalized
+    final String normalized = (((ignoreCase) && (mode != MODE_REGEX))
+                               ? term.toLowerCase(Locale.ENGLISH) : term);
+    
+    StringBuilder sb = new StringBuilder(normalized.length() + 8);
+    sb.append(mode).append(ignoreCase ? 'i' : 'c');
+    if (mode == MODE_REGEX)
+    {
+      sb.append(linearRegex ? 'l' : 'b');
+    }
+    sb.append(':').append(normalized);
+    return sb.toString();
+  }
+  
+  
+  /**
+   * Build the filter for a search term.
+   * 
+   * @param mode the search mode
+   * @param term the search term
+   * @param ignoreCase whether to ignore case
+   * @param linearRegex whether to use the linear-time engine
+   * @return the filter
+   */
+  private static TermFilter createFilter(final int mode,
+                                         final String term,
+                                         final boolean ignoreCase,
+                                         final boolean linearRegex)
+  {
+    switch (mode)
+    {
+      case MODE_STARTS_WITH:
+        return new StartsWithFilter(term, ignoreCase);
+      
+      case MODE_ENDS_WITH:
+        return new EndsWithFilter(term, ignoreCase);
+      
+      case MODE_EXACT:
+        return new ExactMatchFilter(term, ignoreCase);
+      
+      case MODE_WILDCARD:
+        return new WildcardFilter(term, ignoreCase);
+      
+      case MODE_REGEX:
+        return new RegexFilter(term, ignoreCase, linearRegex);
+      
+      case MODE_SOUNDEX:
+        return new SoundFilter(term, ignoreCase);
+      
+      case MODE_METAPHONE:
+        return new SoundFilter(term, ignoreCase, Metaphone.INSTANCE);
+      
+      case MODE_DOUBLE_METAPHONE:
+        return new SoundFilter(term, ignoreCase, DoubleMetaphone.INSTANCE);
+      
+      case MODE_NYSIIS:
+        return new SoundFilter(term, ignoreCase, Nysiis.INSTANCE);
+      
+      case MODE_SIMILAR:
+        return new SimilarFilter(term, ignoreCase, getSimilarDistance(term));
+      
+      case MODE_ANAGRAM:
+        return new AnagramFilter(term, ignoreCase);
+      
+      case MODE_SUB_ANAGRAM:
+        return new SubAnagramFilter(term, ignoreCase);
+      
+      default:
+        return new ContainsAllFilter(term, ignoreCase);
+    }
+  }
+}
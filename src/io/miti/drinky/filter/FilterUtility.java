@@ -69,6 +69,21 @@ public final class FilterUtility
   }
   
   
+  /**
+   * Returns whether a filter should be run on the lower-case form
+   * of a term, with acceptLowerCase(), rather than on the term: it
+   * ignores case and supports it.
+   * 
+   * @param filter the filter
+   * @return whether to pass the filter the lower-case term
+   */
+  public static boolean takesLowerCase(final TermFilter filter)
+  {
+    return ((filter instanceof FoldedTermFilter) &&
+            (((FoldedTermFilter) filter).isIgnoreCase()));
+  }
+  
+  
   /**
    * Parse the string into a list of phrases.  A phrase
    * is either a standalone word from the input string,
@@ -0,0 +1,30 @@
+package io.miti.drinky.filter;
+
+/**
+ * This defines the FoldedTermFilter interface, for filters that
+ * can take a term that is already in lower case when they ignore
+ * case, so the caller can pass a precomputed lower-case form
+ * instead of the filter converting the term on every call.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public interface FoldedTermFilter extends TermFilter
+{
+  /**
+   * Returns whether the filter ignores case.  The caller may
+   * only use acceptLowerCase() if this returns true.
+   * 
+   * @return whether the filter ignores case
+   */
+  boolean isIgnoreCase();
+  
+  /**
+   * Determines if the term matches the source term, where the
+   * term is already in lower case.
+   * 
+   * @param lowerWord the lower-case term to compare to the source term
+   * @return whether the terms match
+   */
+  boolean acceptLowerCase(String lowerWord);
+}
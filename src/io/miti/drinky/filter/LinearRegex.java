@@ -0,0 +1,1908 @@
+package io.miti.drinky.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A regular expression matcher that takes time linear in the length
+ * of the text, whatever the pattern, so a pattern like "(a+)+b" can't
+ * freeze a search the way it can with java.util.regex.  The pattern
+ * is compiled into a Thompson NFA, and the NFA is simulated by
+ * following all of its states at once.  Each set of states it reaches
+ * becomes a state of a DFA, built lazily as the text needs it and
+ * kept for later strings, so after a few strings most characters
+ * cost one array lookup.
+ * 
+ * It supports the common subset of the java.util.regex syntax, with
+ * the same meaning: literals and escapes, '.', character classes
+ * (without intersections or nested classes), \d \s \w and their
+ * negations, groups (capturing, non-capturing and named), alternation,
+ * greedy and lazy quantifiers, '^' and '$', \Q...\E quoting, and the
+ * 'i' flag.  Like RegexFilter, it matches the whole string.  For
+ * anything else (back references, look-around, possessive quantifiers,
+ * boundaries, Unicode properties, other flags) compile() returns null,
+ * and the caller uses java.util.regex instead.
+ * 
+ * A compiled pattern can be shared between threads; each thread
+ * builds its own DFA.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class LinearRegex
+{
+  /**
+   * NFA state: consume a character in a class.
+   */
+  private static final int OP_CHAR = 0;
+  
+  /**
+   * NFA state: continue at both next states.
+   */
+  private static final int OP_SPLIT = 1;
+  
+  /**
+   * NFA state: continue only at the start of the text.
+   */
+  private static final int OP_BEGIN = 2;
+  
+  /**
+   * NFA state: continue only at the end of the text.
+   */
+  private static final int OP_END = 3;
+  
+  /**
+   * NFA state: the pattern has matched.
+   */
+  private static final int OP_MATCH = 4;
+  
+  /**
+   * The most NFA states a pattern may compile to (counted
+   * repeats copy their contents).
+   */
+  private static final int MAX_STATES = 10000;
+  
+  /**
+   * The most DFA states to keep per thread before starting over.
+   */
+  private static final int MAX_DFA_STATES = 2000;
+  
+  /**
+   * The DFA state with no NFA states, which never matches.
+   */
+  private static final int DEAD = 0;
+  
+  /**
+   * The characters '.' doesn't match: the line terminators.
+   */
+  private static final int[] LINE_TERMINATORS = {
+    0x0A, 0x0A, 0x0D, 0x0D, 0x85, 0x85, 0x2028, 0x2029};
+  
+  /**
+   * The ranges of \d.
+   */
+  private static final int[] DIGITS = {'0', '9'};
+  
+  /**
+   * The ranges of \s.
+   */
+  private static final int[] SPACES = {0x09, 0x0D, ' ', ' '};
+  
+  /**
+   * The ranges of \w.
+   */
+  private static final int[] WORD_CHARS = {'0', '9', 'A', 'Z', '_', '_',
+                                           'a', 'z'};
+  
+  /**
+   * The operation of each NFA state.
+   */
+  private final int[] ops;
+  
+  /**
+   * The next state of each NFA state.
+   */
+  private final int[] outs;
+  
+  /**
+   * The other next state of each OP_SPLIT state.
+   */
+  private final int[] altOuts;
+  
+  /**
+   * The character class of each OP_CHAR state.
+   */
+  private final int[] charClasses;
+  
+  /**
+   * The first NFA state.
+   */
+  private final int start;
+  
+  /**
+   * Whether the pattern matches an empty string.
+   */
+  private final boolean matchesEmpty;
+  
+  /**
+   * The first character of each partition of the characters.
+   * The characters in a partition are in the same character
+   * classes, so the DFA treats them all the same.
+   */
+  private final int[] partitions;
+  
+  /**
+   * The partition of each ASCII character.
+   */
+  private final int[] asciiPartitions;
+  
+  /**
+   * Whether each character class includes each partition.
+   */
+  private final boolean[][] classPartitions;
+  
+  /**
+   * The DFA built by each thread.
+   */
+  private final ThreadLocal<Dfa> dfas = new ThreadLocal<Dfa>()
+  {
+    @Override
+    protected Dfa initialValue()
+    {
+      return new Dfa();
+    }
+  };
+  
+  
+  /**
+   * Create the matcher for a compiled NFA.
+   * 
+   * @param nfa the NFA
+   * @param first the first state
+   */
+  private LinearRegex(final Nfa nfa, final int first)
+  {
+    super();
+    final int size = nfa.size;
+    ops = Arrays.copyOf(nfa.ops, size);
+    outs = Arrays.copyOf(nfa.outs, size);
+    altOuts = Arrays.copyOf(nfa.altOuts, size);
+    charClasses = Arrays.copyOf(nfa.charClasses, size);
+    start = first;
+    
+    // Split the characters at the ends of every class's ranges
+    final List<int[]> classes = nfa.classes;
+    List<Integer> bounds = new ArrayList<Integer>(64);
+    bounds.add(Integer.valueOf(0));
+    for (int[] ranges : classes)
+    {
+      for (int i = 0; i < ranges.length; i += 2)
+      {
+        bounds.add(Integer.valueOf(ranges[i]));
+        if (ranges[i + 1] < Character.MAX_CODE_POINT)
+        {
+          bounds.add(Integer.valueOf(ranges[i + 1] + 1));
+        }
+      }
+    }
+    int[] sorted = new int[bounds.size()];
+    for (int i = 0; i < sorted.length; ++i)
+    {
+      sorted[i] = bounds.get(i).intValue();
+    }
+    Arrays.sort(sorted);
+    int count = 0;
+    for (int i = 0; i < sorted.length; ++i)
+    {
+      if ((i == 0) || (sorted[i] != sorted[i - 1]))
+      {
+        sorted[count++] = sorted[i];
+      }
+    }
+    partitions = Arrays.copyOf(sorted, count);
+    
+    asciiPartitions = new int[128];
+    for (int ch = 0; ch < 128; ++ch)
+    {
+      asciiPartitions[ch] = findPartition(ch);
+    }
+    
+    classPartitions = new boolean[classes.size()][count];
+    for (int c = 0; c < classes.size(); ++c)
+    {
+      for (int p = 0; p < count; ++p)
+      {
+        classPartitions[c][p] = contains(classes.get(c), partitions[p]);
+      }
+    }
+    
+    matchesEmpty = isMatch(closure(new int[] {start}, true, true));
+  }
+  
+  
+  /**
+   * Compile a pattern.
+   * 
+   * @param regex the regular expression
+   * @param ignoreCase whether to ignore case, as
+   *        Pattern.CASE_INSENSITIVE does
+   * @return the compiled pattern, or null if the pattern uses
+   *         something this matcher doesn't support (or is invalid)
+   */
+  public static LinearRegex compile(final String regex,
+                                    final boolean ignoreCase)
+  {
+    if (regex == null)
+    {
+      return null;
+    }
+    
+    try
+    {
+      final Node root = new Parser(removeQuoting(regex), ignoreCase).parse();
+      Nfa nfa = new Nfa();
+      final int match = nfa.add(OP_MATCH, -1, -1, -1);
+      final int first = nfa.emit(root, match);
+      if (nfa.isConsumingAfterEnd())
+      {
+        // A '$' before a line terminator at the end of the text
+        // could still match, so leave that to java.util.regex
+        return null;
+      }
+      
+      return new LinearRegex(nfa, first);
+    }
+    catch (UnsupportedPatternException upe)
+    {
+      return null;
+    }
+  }
+  
+  
+  /**
+   * Returns whether a string matches the pattern.
+   * 
+   * @param text the string
+   * @return whether the whole string matches
+   */
+  public boolean matches(final CharSequence text)
+  {
+    final int len = text.length();
+    if (len == 0)
+    {
+      return matchesEmpty;
+    }
+    
+    final Dfa dfa = dfas.get();
+    int state = dfa.getStart();
+    int i = 0;
+    while (i < len)
+    {
+      // Step over a whole code point, as java.util.regex does
+      int ch = text.charAt(i++);
+      if ((Character.isHighSurrogate((char) ch)) && (i < len) &&
+          (Character.isLowSurrogate(text.charAt(i))))
+      {
+        ch = Character.toCodePoint((char) ch, text.charAt(i++));
+      }
+      
+      final int partition = ((ch < 128) ? asciiPartitions[ch]
+                             : findPartition(ch));
+      state = dfa.step(state, partition);
+      if (state == DEAD)
+      {
+        return false;
+      }
+    }
+    
+    return dfa.acceptsAtEnd(state);
+  }
+  
+  
+  /**
+   * Returns the partition of a character.
+   * 
+   * @param ch the character (a code point)
+   * @return the index of its partition
+   */
+  private int findPartition(final int ch)
+  {
+    final int index = Arrays.binarySearch(partitions, ch);
+    return ((index >= 0) ? index : (-index - 2));
+  }
+  
+  
+  /**
+   * Returns whether a list of ranges contains a character.
+   * 
+   * @param ranges the sorted, non-overlapping ranges, as pairs
+   *        of first and last characters
+   * @param ch the character
+   * @return whether a range contains the character
+   */
+  private static boolean contains(final int[] ranges, final int ch)
+  {
+    for (int i = 0; (i < ranges.length) && (ranges[i] <= ch); i += 2)
+    {
+      if (ch <= ranges[i + 1])
+      {
+        return true;
+      }
+    }
+    
+    return false;
+  }
+  
+  
+  /**
+   * Returns the NFA states reachable from some states without
+   * consuming a character.  The result holds the OP_CHAR and
+   * OP_MATCH states, and the OP_END states if not at the end.
+   * 
+   * @param from the states to start from
+   * @param atStart whether this is the start of the text
+   * @param atEnd whether this is the end of the text
+   * @return the states, sorted
+   */
+  private int[] closure(final int[] from,
+                        final boolean atStart,
+                        final boolean atEnd)
+  {
+    boolean[] seen = new boolean[ops.length];
+    int[] stack = new int[ops.length];
+    int[] result = new int[ops.length];
+    int top = 0;
+    int count = 0;
+    for (int state : from)
+    {
+      if (!seen[state])
+      {
+        seen[state] = true;
+        stack[top++] = state;
+      }
+    }
+    
+    while (top > 0)
+    {
+      final int state = stack[--top];
+      int next = -1;
+      int alt = -1;
+      switch (ops[state])
+      {
+        case OP_SPLIT:
+          next = outs[state];
+          alt = altOuts[state];
+          break;
+        
+        case OP_BEGIN:
+          next = ((atStart) ? outs[state] : -1);
+          break;
+        
+        case OP_END:
+          if (atEnd)
+          {
+            next = outs[state];
+          }
+          else
+          {
+            result[count++] = state;
+          }
+          break;
+        
+        default:
+          result[count++] = state;
+          break;
+      }
+      
+      if ((alt >= 0) && (!seen[alt]))
+      {
+        seen[alt] = true;
+        stack[top++] = alt;
+      }
+      if ((next >= 0) && (!seen[next]))
+      {
+        seen[next] = true;
+        stack[top++] = next;
+      }
+    }
+    
+    int[] states = Arrays.copyOf(result, count);
+    Arrays.sort(states);
+    return states;
+  }
+  
+  
+  /**
+   * Returns whether a set of NFA states includes the match state.
+   * 
+   * @param states the states
+   * @return whether the set has matched
+   */
+  private boolean isMatch(final int[] states)
+  {
+    for (int state : states)
+    {
+      if (ops[state] == OP_MATCH)
+      {
+        return true;
+      }
+    }
+    
+    return false;
+  }
+  
+  
+  /**
+   * Returns the NFA states after consuming a character.
+   * 
+   * @param states the current states
+   * @param partition the partition of the character
+   * @return the next states (after their closure)
+   */
+  private int[] next(final int[] states, final int partition)
+  {
+    int[] targets = new int[states.length];
+    int count = 0;
+    for (int state : states)
+    {
+      if ((ops[state] == OP_CHAR) &&
+          (classPartitions[charClasses[state]][partition]))
+      {
+        targets[count++] = outs[state];
+      }
+    }
+    
+    return closure(Arrays.copyOf(targets, count), false, false);
+  }
+  
+  
+  /**
+   * Remove \Q...\E quoting from a pattern, by escaping each quoted
+   * character that isn't a letter or digit (as java.util.regex does
+   * before parsing).
+   * 
+   * @param regex the pattern
+   * @return the pattern without quoting
+   */
+  private static String removeQuoting(final String regex)
+  {
+    if (regex.indexOf("\\Q") < 0)
+    {
+      return regex;
+    }
+    
+    StringBuilder sb = new StringBuilder(regex.length() + 16);
+    final int len = regex.length();
+    int i = 0;
+    while (i < len)
+    {
+      final char ch = regex.charAt(i);
+      if ((ch == '\\') && (i + 1 < len) && (regex.charAt(i + 1) == 'Q'))
+      {
+        int end = regex.indexOf("\\E", i + 2);
+        if (end < 0)
+        {
+          end = len;
+        }
+        
+        for (int j = i + 2; j < end; ++j)
+        {
+          final char quoted = regex.charAt(j);
+          if (!(((quoted >= 'a') && (quoted <= 'z')) ||
+                ((quoted >= 'A') && (quoted <= 'Z')) ||
+                ((quoted >= '0') && (quoted <= '9'))))
+          {
+            sb.append('\\');
+          }
+          sb.append(quoted);
+        }
+        i = Math.min(end + 2, len);
+      }
+      else if (ch == '\\')
+      {
+        sb.append(ch);
+        if (i + 1 < len)
+        {
+          sb.append(regex.charAt(i + 1));
+        }
+        i += 2;
+      }
+      else
+      {
+        sb.append(ch);
+        ++i;
+      }
+    }
+    
+    return sb.toString();
+  }
+  
+  
+  /**
+   * Thrown when a pattern uses something the matcher doesn't support.
+   */
+  private static final class UnsupportedPatternException extends Exception
+  {
+    /**
+     * Default serial version ID.
+     */
+    private static final long serialVersionUID = 1L;
+    
+    
+    /**
+     * Create the exception.
+     */
+    public UnsupportedPatternException()
+    {
+      super();
+    }
+  }
+  
+  
+  /**
+   * A node of the parsed pattern.
+   */
+  private static final class Node
+  {
+    /**
+     * Node type: a character class.
+     */
+    public static final int CLASS = 0;
+    
+    /**
+     * Node type: a sequence of nodes.
+     */
+    public static final int CONCAT = 1;
+    
+    /**
+     * Node type: alternatives.
+     */
+    public static final int ALT = 2;
+    
+    /**
+     * Node type: a repeated node.
+     */
+    public static final int REPEAT = 3;
+    
+    /**
+     * Node type: the start of the text.
+     */
+    public static final int BEGIN = 4;
+    
+    /**
+     * Node type: the end of the text.
+     */
+    public static final int END = 5;
+    
+    /**
+     * The type of the node.
+     */
+    public final int type;
+    
+    /**
+     * The ranges of a CLASS node.
+     */
+    public final int[] ranges;
+    
+    /**
+     * The children of a CONCAT or ALT node, or the
+     * repeated node of a REPEAT node.
+     */
+    public final List<Node> children;
+    
+    /**
+     * The minimum number of repeats.
+     */
+    public final int min;
+    
+    /**
+     * The maximum number of repeats (-1 for no limit).
+     */
+    public final int max;
+    
+    
+    /**
+     * Create a node.
+     * 
+     * @param nType the type
+     * @param nRanges the ranges
+     * @param list the children
+     * @param nMin the minimum number of repeats
+     * @param nMax the maximum number of repeats
+     */
+    private Node(final int nType,
+                 final int[] nRanges,
+                 final List<Node> list,
+                 final int nMin,
+                 final int nMax)
+    {
+      super();
+      type = nType;
+      ranges = nRanges;
+      children = list;
+      min = nMin;
+      max = nMax;
+    }
+    
+    
+    /**
+     * Create a node with no contents.
+     * 
+     * @param nType the type
+     * @return the node
+     */
+    public static Node simple(final int nType)
+    {
+      return new Node(nType, null, null, 0, 0);
+    }
+    
+    
+    /**
+     * Create a character class node.
+     * 
+     * @param nRanges the ranges
+     * @return the node
+     */
+    public static Node charClass(final int[] nRanges)
+    {
+      return new Node(CLASS, nRanges, null, 0, 0);
+    }
+    
+    
+    /**
+     * Create a sequence or alternatives node.
+     * 
+     * @param nType CONCAT or ALT
+     * @param list the children
+     * @return the node
+     */
+    public static Node list(final int nType, final List<Node> list)
+    {
+      return new Node(nType, null, list, 0, 0);
+    }
+    
+    
+    /**
+     * Create a repeat node.
+     * 
+     * @param node the repeated node
+     * @param nMin the minimum number of repeats
+     * @param nMax the maximum number of repeats (-1 for no limit)
+     * @return the node
+     */
+    public static Node repeat(final Node node, final int nMin, final int nMax)
+    {
+      List<Node> list = new ArrayList<Node>(1);
+      list.add(node);
+      return new Node(REPEAT, null, list, nMin, nMax);
+    }
+    
+    
+    /**
+     * Returns whether this node is or contains a '^' or '$'.
+     * 
+     * @return whether the node has an anchor
+     */
+    public boolean hasAnchor()
+    {
+      if ((type == BEGIN) || (type == END))
+      {
+        return true;
+      }
+      else if (children != null)
+      {
+        for (Node child : children)
+        {
+          if (child.hasAnchor())
+          {
+            return true;
+          }
+        }
+      }
+      
+      return false;
+    }
+  }
+  
+  
+  /**
+   * Parses a pattern into nodes.
+   */
+  private static final class Parser
+  {
+    /**
+     * The pattern.
+     */
+    private final String regex;
+    
+    /**
+     * The current position in the pattern.
+     */
+    private int pos = 0;
+    
+    /**
+     * Whether case is ignored at the current position.
+     */
+    private boolean ignoreCase;
+    
+    
+    /**
+     * Create a parser.
+     * 
+     * @param expr the pattern, without \Q...\E quoting
+     * @param bIgnoreCase whether case is ignored at the start
+     */
+    public Parser(final String expr, final boolean bIgnoreCase)
+    {
+      super();
+      regex = expr;
+      ignoreCase = bIgnoreCase;
+    }
+    
+    
+    /**
+     * Parse the pattern.
+     * 
+     * @return the root node
+     * @throws UnsupportedPatternException if the pattern can't be parsed
+     */
+    public Node parse() throws UnsupportedPatternException
+    {
+      final Node root = parseAlternation();
+      if (pos < regex.length())
+      {
+        // An unmatched ')'
+        throw new UnsupportedPatternException();
+      }
+      
+      return root;
+    }
+    
+    
+    /**
+     * Parse alternatives separated by '|', up to a ')' or the end.
+     * 
+     * @return the node
+     * @throws UnsupportedPatternException if the pattern can't be parsed
+     */
+    private Node parseAlternation() throws UnsupportedPatternException
+    {
+      List<Node> alts = new ArrayList<Node>(2);
+      alts.add(parseSequence());
+      while ((pos < regex.length()) && (regex.charAt(pos) == '|'))
+      {
+        ++pos;
+        alts.add(parseSequence());
+      }
+      
+      return ((alts.size() == 1) ? alts.get(0) : Node.list(Node.ALT, alts));
+    }
+    
+    
+    /**
+     * Parse a sequence of atoms, up to a '|', a ')' or the end.
+     * 
+     * @return the node
+     * @throws UnsupportedPatternException if the pattern can't be parsed
+     */
+    private Node parseSequence() throws UnsupportedPatternException
+    {
+      List<Node> items = new ArrayList<Node>(8);
+      final int len = regex.length();
+      while (pos < len)
+      {
+        final char ch = regex.charAt(pos);
+        if ((ch == '|') || (ch == ')'))
+        {
+          break;
+        }
+        
+        final Node atom = parseAtom();
+        if (atom != null)
+        {
+          items.add(parseQuantifier(atom));
+        }
+      }
+      
+      return ((items.size() == 1) ? items.get(0)
+              : Node.list(Node.CONCAT, items));
+    }
+    
+    
+    /**
+     * Parse the quantifier after an atom, if there is one.
+     * 
+     * @param atom the atom
+     * @return the atom, repeated if there's a quantifier
+     * @throws UnsupportedPatternException if the pattern can't be parsed
+     */
+    private Node parseQuantifier(final Node atom)
+      throws UnsupportedPatternException
+    {
+      final char ch = charAt(pos);
+      int min;
+      int max;
+      if (ch == '*')
+      {
+        min = 0;
+        max = -1;
+        ++pos;
+      }
+      else if (ch == '+')
+      {
+        min = 1;
+        max = -1;
+        ++pos;
+      }
+      else if (ch == '?')
+      {
+        min = 0;
+        max = 1;
+        ++pos;
+      }
+      else if (ch == '{')
+      {
+        ++pos;
+        min = parseNumber();
+        max = min;
+        if (charAt(pos) == ',')
+        {
+          ++pos;
+          max = ((charAt(pos) == '}') ? -1 : parseNumber());
+        }
+        if ((charAt(pos) != '}') || ((max >= 0) && (max < min)))
+        {
+          throw new UnsupportedPatternException();
+        }
+        ++pos;
+      }
+      else
+      {
+        return atom;
+      }
+      
+      // A lazy quantifier matches the same whole strings; a
+      // possessive one doesn't, so leave that to java.util.regex
+      if (charAt(pos) == '?')
+      {
+        ++pos;
+      }
+      else if (charAt(pos) == '+')
+      {
+        throw new UnsupportedPatternException();
+      }
+      
+      final char next = charAt(pos);
+      if ((next == '*') || (next == '+') || (next == '?') || (next == '{'))
+      {
+        throw new UnsupportedPatternException();
+      }
+      
+      return Node.repeat(atom, min, max);
+    }
+    
+    
+    /**
+     * Parse a number in a counted quantifier.
+     * 
+     * @return the number
+     * @throws UnsupportedPatternException if there's no number,
+     *         or it's too large
+     */
+    private int parseNumber() throws UnsupportedPatternException
+    {
+      final int begin = pos;
+      int value = 0;
+      while (Character.isDigit(charAt(pos)))
+      {
+        value = (value * 10) + (charAt(pos) - '0');
+        if (value > MAX_STATES)
+        {
+          throw new UnsupportedPatternException();
+        }
+        ++pos;
+      }
+      
+      if (pos == begin)
+      {
+        throw new UnsupportedPatternException();
+      }
+      
+      return value;
+    }
+    
+    
+    /**
+     * Parse an atom.
+     * 
+     * @return the node, or null if the atom only set flags
+     * @throws UnsupportedPatternException if the pattern can't be parsed
+     */
+    private Node parseAtom() throws UnsupportedPatternException
+    {
+      final int ch = regex.codePointAt(pos);
+      switch (ch)
+      {
+        case '(':
+          return parseGroup();
+        
+        case '[':
+          ++pos;
+          return Node.charClass(parseClass());
+        
+        case '.':
+          ++pos;
+          return Node.charClass(negate(LINE_TERMINATORS));
+        
+        case '^':
+          ++pos;
+          return Node.simple(Node.BEGIN);
+        
+        case '$':
+          ++pos;
+          return Node.simple(Node.END);
+        
+        case '\\':
+        {
+          final int[] predefined = parsePredefinedClass();
+          return Node.charClass((predefined != null) ? predefined
+                                : literal(parseEscapedChar()));
+        }
+        
+        case '*':
+        case '+':
+        case '?':
+        case '{':
+          // A quantifier with nothing to repeat
+          throw new UnsupportedPatternException();
+        
+        default:
+          pos += Character.charCount(ch);
+          return Node.charClass(literal(ch));
+      }
+    }
+    
+    
+    /**
+     * Parse a group, starting at the '('.
+     * 
+     * @return the node, or null if the group only set flags
+     * @throws UnsupportedPatternException if the pattern can't be parsed
+     */
+    private Node parseGroup() throws UnsupportedPatternException
+    {
+      ++pos;
+      final boolean saved = ignoreCase;
+      if (charAt(pos) == '?')
+      {
+        ++pos;
+        final char ch = charAt(pos);
+        if (ch == ':')
+        {
+          ++pos;
+        }
+        else if ((ch == '<') && (Character.isLetter(charAt(pos + 1))))
+        {
+          // A named group
+          final int end = regex.indexOf('>', pos);
+          if (end < 0)
+          {
+            throw new UnsupportedPatternException();
+          }
+          pos = end + 1;
+        }
+        else if ((ch == 'i') || (ch == '-'))
+        {
+          // Only the case flag is supported
+          boolean on = true;
+          while ((charAt(pos) == 'i') || (charAt(pos) == '-'))
+          {
+            if (charAt(pos) == '-')
+            {
+              on = false;
+            }
+            else
+            {
+              ignoreCase = on;
+            }
+            ++pos;
+          }
+          
+          final char end = charAt(pos++);
+          if (end == ')')
+          {
+            // The flags apply to the rest of the enclosing group
+            return null;
+          }
+          else if (end != ':')
+          {
+            throw new UnsupportedPatternException();
+          }
+        }
+        else
+        {
+          // Look-around, an independent group or other flags
+          throw new UnsupportedPatternException();
+        }
+      }
+      
+      final Node node = parseAlternation();
+      if (charAt(pos) != ')')
+      {
+        throw new UnsupportedPatternException();
+      }
+      ++pos;
+      ignoreCase = saved;
+      
+      return node;
+    }
+    
+    
+    /**
+     * Parse a character class, after the '['.
+     * 
+     * @return the ranges of the class
+     * @throws UnsupportedPatternException if the pattern can't be parsed
+     */
+    private int[] parseClass() throws UnsupportedPatternException
+    {
+      boolean negated = false;
+      if (charAt(pos) == '^')
+      {
+        negated = true;
+        ++pos;
+      }
+      
+      List<int[]> parts = new ArrayList<int[]>(4);
+      boolean first = true;
+      while (true)
+      {
+        if (pos >= regex.length())
+        {
+          throw new UnsupportedPatternException();
+        }
+        
+        final int ch = regex.codePointAt(pos);
+        if ((ch == ']') && (!first))
+        {
+          ++pos;
+          break;
+        }
+        else if ((ch == '[') ||
+                 ((ch == '&') && (charAt(pos + 1) == '&')))
+        {
+          // Nested classes and intersections
+          throw new UnsupportedPatternException();
+        }
+        first = false;
+        
+        // A predefined class, or a character that may start a range
+        int low;
+        if (ch == '\\')
+        {
+          final int[] predefined = parsePredefinedClass();
+          if (predefined != null)
+          {
+            parts.add(predefined);
+            continue;
+          }
+          low = parseEscapedChar();
+        }
+        else
+        {
+          low = ch;
+          pos += Character.charCount(ch);
+        }
+        
+        int high = low;
+        if ((charAt(pos) == '-') && (charAt(pos + 1) != ']') &&
+            (pos + 1 < regex.length()))
+        {
+          ++pos;
+          final int next = regex.codePointAt(pos);
+          if ((next == '[') || ((next == '\\') && (isClassEscape())))
+          {
+            throw new UnsupportedPatternException();
+          }
+          else if (next == '\\')
+          {
+            high = parseEscapedChar();
+          }
+          else
+          {
+            high = next;
+            pos += Character.charCount(next);
+          }
+          
+          if (high < low)
+          {
+            throw new UnsupportedPatternException();
+          }
+        }
+        parts.add(caseRanges(low, high));
+      }
+      
+      final int[] ranges = union(parts);
+      return ((negated) ? negate(ranges) : ranges);
+    }
+    
+    
+    /**
+     * Returns whether the escape at the current position
+     * is a predefined class.
+     * 
+     * @return whether the escape is \d, \s, \w or a negation
+     */
+    private boolean isClassEscape()
+    {
+      return ("dDsSwW".indexOf(charAt(pos + 1)) >= 0);
+    }
+    
+    
+    /**
+     * Parse a predefined class escape at the current position
+     * (which is a '\'), if it is one.
+     * 
+     * @return the ranges of the class, or null if it's not one
+     *         (and the position is unchanged)
+     */
+    private int[] parsePredefinedClass()
+    {
+      int[] ranges = null;
+      switch (charAt(pos + 1))
+      {
+        case 'd': ranges = DIGITS; break;
+        case 'D': ranges = negate(DIGITS); break;
+        case 's': ranges = SPACES; break;
+        case 'S': ranges = negate(SPACES); break;
+        case 'w': ranges = WORD_CHARS; break;
+        case 'W': ranges = negate(WORD_CHARS); break;
+        default: return null;
+      }
+      
+      pos += 2;
+      return ranges;
+    }
+    
+    
+    /**
+     * Parse an escaped character at the current position
+     * (which is a '\').
+     * 
+     * @return the character (a code point)
+     * @throws UnsupportedPatternException if the escape isn't a
+     *         character (or is invalid)
+     */
+    private int parseEscapedChar() throws UnsupportedPatternException
+    {
+      if (pos + 1 >= regex.length())
+      {
+        throw new UnsupportedPatternException();
+      }
+      
+      final int ch = regex.codePointAt(pos + 1);
+      pos += 1 + Character.charCount(ch);
+      switch (ch)
+      {
+        case 't': return '\t';
+        case 'n': return '\n';
+        case 'r': return '\r';
+        case 'f': return '\f';
+        case 'a': return 0x07;
+        case 'e': return 0x1B;
+        
+        case '0':
+        {
+          // One to three octal digits, up to \0377
+          int value = 0;
+          int digits = 0;
+          while ((digits < 3) && (charAt(pos) >= '0') && (charAt(pos) <= '7')
+                 && (((value * 8) + (charAt(pos) - '0')) <= 0377))
+          {
+            value = (value * 8) + (charAt(pos++) - '0');
+            ++digits;
+          }
+          if (digits == 0)
+          {
+            throw new UnsupportedPatternException();
+          }
+          return value;
+        }
+        
+        case 'x':
+          if (charAt(pos) == '{')
+          {
+            final int end = regex.indexOf('}', pos);
+            if (end < 0)
+            {
+              throw new UnsupportedPatternException();
+            }
+            final int value = parseHex(pos + 1, end);
+            pos = end + 1;
+            if (value > Character.MAX_CODE_POINT)
+            {
+              throw new UnsupportedPatternException();
+            }
+            return value;
+          }
+          pos += 2;
+          return parseHex(pos - 2, pos);
+        
+        case 'u':
+        {
+          pos += 4;
+          final int value = parseHex(pos - 4, pos);
+          if ((value >= Character.MIN_SURROGATE) &&
+              (value <= Character.MAX_SURROGATE))
+          {
+            // Escaped surrogate pairs are combined by java.util.regex
+            throw new UnsupportedPatternException();
+          }
+          return value;
+        }
+        
+        case 'c':
+          if (pos >= regex.length())
+          {
+            throw new UnsupportedPatternException();
+          }
+          return (regex.charAt(pos++) ^ 64);
+        
+        default:
+          if (((ch >= 'a') && (ch <= 'z')) || ((ch >= 'A') && (ch <= 'Z')) ||
+              ((ch >= '0') && (ch <= '9')))
+          {
+            // A boundary, back reference, property or the like
+            throw new UnsupportedPatternException();
+          }
+          
+          // An escaped symbol is a literal
+          return ch;
+      }
+    }
+    
+    
+    /**
+     * Parse hex digits.
+     * 
+     * @param from the index of the first digit
+     * @param to the index after the last digit
+     * @return the value
+     * @throws UnsupportedPatternException if there are no digits, or
+     *         one isn't a hex digit
+     */
+    private int parseHex(final int from, final int to)
+      throws UnsupportedPatternException
+    {
+      if ((from >= to) || (to > regex.length()) || ((to - from) > 8))
+      {
+        throw new UnsupportedPatternException();
+      }
+      
+      int value = 0;
+      for (int i = from; i < to; ++i)
+      {
+        final int digit = Character.digit(regex.charAt(i), 16);
+        if (digit < 0)
+        {
+          throw new UnsupportedPatternException();
+        }
+        value = (value * 16) + digit;
+      }
+      
+      return value;
+    }
+    
+    
+    /**
+     * Returns the ranges for a literal character.
+     * 
+     * @param ch the character
+     * @return the ranges
+     */
+    private int[] literal(final int ch)
+    {
+      return caseRanges(ch, ch);
+    }
+    
+    
+    /**
+     * Returns the ranges for a range of characters, with the other
+     * case of any ASCII letters in it if case is ignored (which is
+     * what Pattern.CASE_INSENSITIVE does).
+     * 
+     * @param low the first character
+     * @param high the last character
+     * @return the ranges
+     */
+    private int[] caseRanges(final int low, final int high)
+    {
+      List<int[]> parts = new ArrayList<int[]>(3);
+      parts.add(new int[] {low, high});
+      if (ignoreCase)
+      {
+        addShifted(parts, low, high, 'a', 'z', 'A' - 'a');
+        addShifted(parts, low, high, 'A', 'Z', 'a' - 'A');
+      }
+      
+      return union(parts);
+    }
+    
+    
+    /**
+     * Add the part of a range that's inside a block of letters,
+     * moved to the other case.
+     * 
+     * @param parts the list of ranges
+     * @param low the first character of the range
+     * @param high the last character of the range
+     * @param first the first letter of the block
+     * @param last the last letter of the block
+     * @param shift the distance to the other case
+     */
+    private static void addShifted(final List<int[]> parts,
+                                   final int low,
+                                   final int high,
+                                   final int first,
+                                   final int last,
+                                   final int shift)
+    {
+      final int from = Math.max(low, first);
+      final int to = Math.min(high, last);
+      if (from <= to)
+      {
+        parts.add(new int[] {from + shift, to + shift});
+      }
+    }
+    
+    
+    /**
+     * Returns the character at an index, or 0 past the end.
+     * 
+     * @param index the index
+     * @return the character
+     */
+    private char charAt(final int index)
+    {
+      return ((index < regex.length()) ? regex.charAt(index) : 0);
+    }
+  }
+  
+  
+  /**
+   * Returns the union of some lists of ranges.
+   * 
+   * @param parts the lists of ranges
+   * @return the sorted, non-overlapping ranges
+   */
+  private static int[] union(final List<int[]> parts)
+  {
+    int count = 0;
+    for (int[] part : parts)
+    {
+      count += part.length / 2;
+    }
+    
+    // Sort the ranges by their first character
+    long[] sorted = new long[count];
+    int index = 0;
+    for (int[] part : parts)
+    {
+      for (int i = 0; i < part.length; i += 2)
+      {
+        sorted[index++] = (((long) part[i]) << 32) | part[i + 1];
+      }
+    }
+    Arrays.sort(sorted);
+    
+    // Merge the ranges that overlap or touch
+    int[] ranges = new int[count * 2];
+    int size = 0;
+    for (long range : sorted)
+    {
+      final int low = (int) (range >>> 32);
+      final int high = (int) range;
+      if ((size > 0) && (low <= ranges[size - 1] + 1))
+      {
+        ranges[size - 1] = Math.max(ranges[size - 1], high);
+      }
+      else
+      {
+        ranges[size++] = low;
+        ranges[size++] = high;
+      }
+    }
+    
+    return Arrays.copyOf(ranges, size);
+  }
+  
+  
+  /**
+   * Returns the characters that aren't in some ranges.
+   * 
+   * @param ranges the sorted, non-overlapping ranges
+   * @return the other ranges
+   */
+  private static int[] negate(final int[] ranges)
+  {
+    int[] result = new int[ranges.length + 2];
+    int size = 0;
+    int next = 0;
+    for (int i = 0; i < ranges.length; i += 2)
+    {
+      if (ranges[i] > next)
+      {
+        result[size++] = next;
+        result[size++] = ranges[i] - 1;
+      }
+      next = ranges[i + 1] + 1;
+    }
+    
+    if (next <= Character.MAX_CODE_POINT)
+    {
+      result[size++] = next;
+      result[size++] = Character.MAX_CODE_POINT;
+    }
+    
+    return Arrays.copyOf(result, size);
+  }
+  
+  
+  /**
+   * The NFA being built.
+   */
+  private static final class Nfa
+  {
+    /**
+     * The operation of each state.
+     */
+    public int[] ops = new int[64];
+    
+    /**
+     * The next state of each state.
+     */
+    public int[] outs = new int[64];
+    
+    /**
+     * The other next state of each OP_SPLIT state.
+     */
+    public int[] altOuts = new int[64];
+    
+    /**
+     * The character class of each OP_CHAR state.
+     */
+    public int[] charClasses = new int[64];
+    
+    /**
+     * The number of states.
+     */
+    public int size = 0;
+    
+    /**
+     * The ranges of each character class.
+     */
+    public final List<int[]> classes = new ArrayList<int[]>(16);
+    
+    /**
+     * The index of each character class, by its ranges.
+     */
+    private final Map<String, Integer> classIndexes =
+      new HashMap<String, Integer>(16);
+    
+    
+    /**
+     * Default constructor.
+     */
+    public Nfa()
+    {
+      super();
+    }
+    
+    
+    /**
+     * Add a state.
+     * 
+     * @param op the operation
+     * @param out the next state
+     * @param altOut the other next state
+     * @param charClass the character class
+     * @return the new state
+     * @throws UnsupportedPatternException if there are too many states
+     */
+    public int add(final int op,
+                   final int out,
+                   final int altOut,
+                   final int charClass) throws UnsupportedPatternException
+    {
+      if (size >= MAX_STATES)
+      {
+        throw new UnsupportedPatternException();
+      }
+      else if (size == ops.length)
+      {
+        final int capacity = size * 2;
+        ops = Arrays.copyOf(ops, capacity);
+        outs = Arrays.copyOf(outs, capacity);
+        altOuts = Arrays.copyOf(altOuts, capacity);
+        charClasses = Arrays.copyOf(charClasses, capacity);
+      }
+      
+      ops[size] = op;
+      outs[size] = out;
+      altOuts[size] = altOut;
+      charClasses[size] = charClass;
+      return size++;
+    }
+    
+    
+    /**
+     * Add the states for a node, built backwards from the
+     * state that follows it.
+     * 
+     * @param node the node
+     * @param next the state after the node
+     * @return the first state of the node
+     * @throws UnsupportedPatternException if there are too many states
+     */
+    public int emit(final Node node, final int next)
+      throws UnsupportedPatternException
+    {
+      switch (node.type)
+      {
+        case Node.CLASS:
+          return add(OP_CHAR, next, -1, getClassIndex(node.ranges));
+        
+        case Node.BEGIN:
+          return add(OP_BEGIN, next, -1, -1);
+        
+        case Node.END:
+          return add(OP_END, next, -1, -1);
+        
+        case Node.CONCAT:
+        {
+          int first = next;
+          for (int i = node.children.size() - 1; i >= 0; --i)
+          {
+            first = emit(node.children.get(i), first);
+          }
+          return first;
+        }
+        
+        case Node.ALT:
+        {
+          final int count = node.children.size();
+          int first = emit(node.children.get(count - 1), next);
+          for (int i = count - 2; i >= 0; --i)
+          {
+            first = add(OP_SPLIT, emit(node.children.get(i), next), first, -1);
+          }
+          return first;
+        }
+        
+        default:
+          return emitRepeat(node, next);
+      }
+    }
+    
+    
+    /**
+     * Add the states for a repeat node: the required copies,
+     * then either a loop or the optional copies.
+     * 
+     * @param node the node
+     * @param next the state after the node
+     * @return the first state of the node
+     * @throws UnsupportedPatternException if there are too many states
+     */
+    private int emitRepeat(final Node node, final int next)
+      throws UnsupportedPatternException
+    {
+      final Node child = node.children.get(0);
+      if (child.hasAnchor())
+      {
+        // java.util.regex handles a repeated '^' or '$' in ways
+        // that depend on its backtracking order, so leave it alone
+        throw new UnsupportedPatternException();
+      }
+      
+      int first = next;
+      if (node.max < 0)
+      {
+        // A loop: the split goes to the child, which comes back
+        // (emit() may replace the arrays, so call it first)
+        final int loop = add(OP_SPLIT, -1, next, -1);
+        final int body = emit(child, loop);
+        outs[loop] = body;
+        first = loop;
+      }
+      else
+      {
+        for (int i = node.min; i < node.max; ++i)
+        {
+          first = add(OP_SPLIT, emit(child, first), next, -1);
+        }
+      }
+      
+      for (int i = 0; i < node.min; ++i)
+      {
+        first = emit(child, first);
+      }
+      
+      return first;
+    }
+    
+    
+    /**
+     * Returns the index of a character class, adding it if needed.
+     * 
+     * @param ranges the ranges of the class
+     * @return the index
+     */
+    private int getClassIndex(final int[] ranges)
+    {
+      final String key = Arrays.toString(ranges);
+      Integer index = classIndexes.get(key);
+      if (index == null)
+      {
+        index = Integer.valueOf(classes.size());
+        classes.add(ranges);
+        classIndexes.put(key, index);
+      }
+      
+      return index.intValue();
+    }
+    
+    
+    /**
+     * Returns whether a character can be consumed after an OP_END
+     * state, which only happens for a pattern like "a$\n".
+     * 
+     * @return whether any OP_CHAR state follows an OP_END state
+     */
+    public boolean isConsumingAfterEnd()
+    {
+      boolean[] seen = new boolean[size];
+      int[] stack = new int[size];
+      int top = 0;
+      for (int state = 0; state < size; ++state)
+      {
+        if ((ops[state] == OP_END) && (outs[state] >= 0) &&
+            (!seen[outs[state]]))
+        {
+          seen[outs[state]] = true;
+          stack[top++] = outs[state];
+        }
+      }
+      
+      while (top > 0)
+      {
+        final int state = stack[--top];
+        if (ops[state] == OP_CHAR)
+        {
+          return true;
+        }
+        
+        final int[] targets = {outs[state], altOuts[state]};
+        for (int target : targets)
+        {
+          if ((target >= 0) && (!seen[target]))
+          {
+            seen[target] = true;
+            stack[top++] = target;
+          }
+        }
+      }
+      
+      return false;
+    }
+  }
+  
+  
+  /**
+   * The DFA built by one thread: the sets of NFA states seen so
+   * far, and the transitions between them computed so far.
+   */
+  private final class Dfa
+  {
+    /**
+     * The ID of each set of NFA states.
+     */
+    private final Map<StateSet, Integer> ids =
+      new HashMap<StateSet, Integer>(64);
+    
+    /**
+     * The NFA states of each DFA state.
+     */
+    private final List<int[]> sets = new ArrayList<int[]>(64);
+    
+    /**
+     * The next DFA state for each partition, or -1 if it
+     * hasn't been computed yet.
+     */
+    private final List<int[]> transitions = new ArrayList<int[]>(64);
+    
+    /**
+     * Whether each DFA state matches at the end of the text:
+     * 0 if not known yet, 1 if not, 2 if it does.
+     */
+    private byte[] accepts = new byte[64];
+    
+    /**
+     * The start state.
+     */
+    private int startState = -1;
+    
+    
+    /**
+     * Create the DFA.
+     */
+    public Dfa()
+    {
+      super();
+    }
+    
+    
+    /**
+     * Returns the start state.
+     * 
+     * @return the ID of the start state
+     */
+    public int getStart()
+    {
+      if (startState < 0)
+      {
+        clear();
+      }
+      
+      return startState;
+    }
+    
+    
+    /**
+     * Returns the state after consuming a character.
+     * 
+     * @param state the current state
+     * @param partition the partition of the character
+     * @return the next state
+     */
+    public int step(final int state, final int partition)
+    {
+      final int[] row = transitions.get(state);
+      int next = row[partition];
+      if (next < 0)
+      {
+        final int[] target = next(sets.get(state), partition);
+        if (sets.size() >= MAX_DFA_STATES)
+        {
+          // Start over rather than keep growing
+          clear();
+          return intern(target);
+        }
+        
+        next = intern(target);
+        row[partition] = next;
+      }
+      
+      return next;
+    }
+    
+    
+    /**
+     * Returns whether a state matches at the end of the text.
+     * 
+     * @param state the state
+     * @return whether the text matches
+     */
+    public boolean acceptsAtEnd(final int state)
+    {
+      if (accepts[state] == 0)
+      {
+        accepts[state] = (byte) ((isMatch(closure(sets.get(state),
+                                                  false, true))) ? 2 : 1);
+      }
+      
+      return (accepts[state] == 2);
+    }
+    
+    
+    /**
+     * Remove all the states, and add the dead and start states.
+     */
+    private void clear()
+    {
+      ids.clear();
+      sets.clear();
+      transitions.clear();
+      Arrays.fill(accepts, (byte) 0);
+      intern(new int[0]);
+      startState = intern(closure(new int[] {start}, true, false));
+    }
+    
+    
+    /**
+     * Returns the ID of a set of NFA states, adding it if needed.
+     * 
+     * @param states the sorted NFA states
+     * @return the ID of the DFA state
+     */
+    private int intern(final int[] states)
+    {
+      final StateSet key = new StateSet(states);
+      Integer id = ids.get(key);
+      if (id == null)
+      {
+        id = Integer.valueOf(sets.size());
+        ids.put(key, id);
+        sets.add(states);
+        int[] row = new int[partitions.length];
+        Arrays.fill(row, -1);
+        transitions.add(row);
+        if (sets.size() > accepts.length)
+        {
+          accepts = Arrays.copyOf(accepts, accepts.length * 2);
+        }
+      }
+      
+      return id.intValue();
+    }
+  }
+  
+  
+  /**
+   * A set of NFA states, as a map key.
+   */
+  private static final class StateSet
+  {
+    /**
+     * The sorted NFA states.
+     */
+    private final int[] states;
+    
+    /**
+     * The hash code of the states.
+     */
+    private final int hash;
+    
+    
+    /**
+     * Create the key.
+     * 
+     * @param nStates the sorted NFA states
+     */
+    public StateSet(final int[] nStates)
+    {
+      super();
+      states = nStates;
+      hash = Arrays.hashCode(states);
+    }
+    
+    
+    /**
+     * Returns the hash code.
+     * 
+     * @return the hash code
+     */
+    @Override
+    public int hashCode()
+    {
+      return hash;
+    }
+    
+    
+    /**
+     * Returns whether another object is the same set of states.
+     * 
+     * @param obj the other object
+     * @return whether the sets are equal
+     */
+    @Override
+    public boolean equals(final Object obj)
+    {
+      return ((obj instanceof StateSet) &&
+              (Arrays.equals(states, ((StateSet) obj).states)));
+    }
+  }
+}
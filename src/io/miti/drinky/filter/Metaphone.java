@@ -0,0 +1,400 @@
+package io.miti.drinky.filter;
+
+/**
+ * Compute Metaphone codes.  Metaphone (Lawrence Philips, 1990)
+ * improves on Soundex by using the rules of English spelling, so
+ * "ph" sounds like "f", "kn" at the start like "n", and so on.
+ * Codes are up to four characters long, and only a vowel at the
+ * start of a word is kept.  The code ignores case.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class Metaphone implements PhoneticEncoder
+{
+  /**
+   * The maximum length of a code.
+   */
+  private static final int MAX_CODE_LENGTH = 4;
+  
+  /**
+   * The vowels that make a 'C' or 'G' soft.
+   */
+  private static final String FRONT_VOWELS = "EIY";
+  
+  /**
+   * The letters that make a following 'H' silent.
+   */
+  private static final String VARSON = "CSPTG";
+  
+  /**
+   * The one instance of the encoder.
+   */
+  public static final Metaphone INSTANCE = new Metaphone();
+  
+  
+  /**
+   * Default constructor.
+   */
+  private Metaphone()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Returns the name of the algorithm.
+   * 
+   * @return the name of the algorithm
+   */
+  public String getName()
+  {
+    return "Metaphone";
+  }
+  
+  
+  /**
+   * Returns the Metaphone code for part of a string.
+   * 
+   * @param str the string
+   * @param start the index of the first character of the word
+   * @param end the index after the last character of the word
+   * @param ignoreCase not used, since the code always ignores case
+   * @return the packed code, or 0 if the word has no code
+   */
+  public int encode(final CharSequence str,
+                    final int start,
+                    final int end,
+                    final boolean ignoreCase)
+  {
+    return PhoneticKey.pack(getCode(PhoneticKey.getLetters(str, start, end)));
+  }
+  
+  
+  /**
+   * Returns whether the algorithm gives words an alternate code.
+   * 
+   * @return false
+   */
+  public boolean hasAlternate()
+  {
+    return false;
+  }
+  
+  
+  /**
+   * Returns the alternate code for part of a string, which
+   * is the same as the code.
+   * 
+   * @param str the string
+   * @param start the index of the first character of the word
+   * @param end the index after the last character of the word
+   * @param ignoreCase not used, since the code always ignores case
+   * @return the packed code, or 0 if the word has no code
+   */
+  public int encodeAlternate(final CharSequence str,
+                             final int start,
+                             final int end,
+                             final boolean ignoreCase)
+  {
+    return encode(str, start, end, ignoreCase);
+  }
+  
+  
+  /**
+   * Returns the Metaphone code for a word.
+   * 
+   * @param letters the upper-case letters of the word
+   * @return the code
+   */
+  public static String getCode(final String letters)
+  {
+    if (letters.length() < 2)
+    {
+      return letters;
+    }
+    
+    // Handle the silent or changed letters at the start
+    StringBuilder word = new StringBuilder(letters);
+    final char first = letters.charAt(0);
+    final char second = letters.charAt(1);
+    if (((first == 'K') || (first == 'G') || (first == 'P')) &&
+        (second == 'N'))
+    {
+      word.deleteCharAt(0);
+    }
+    else if ((first == 'A') && (second == 'E'))
+    {
+      word.deleteCharAt(0);
+    }
+    else if ((first == 'W') && (second == 'R'))
+    {
+      word.deleteCharAt(0);
+    }
+    else if ((first == 'W') && (second == 'H'))
+    {
+      word.deleteCharAt(1);
+    }
+    else if (first == 'X')
+    {
+      word.setCharAt(0, 'S');
+    }
+    
+    StringBuilder code = new StringBuilder(MAX_CODE_LENGTH + 1);
+    final int len = word.length();
+    for (int n = 0; (n < len) && (code.length() < MAX_CODE_LENGTH); ++n)
+    {
+      final char ch = word.charAt(n);
+      
+      // Skip doubled letters, except for 'C'
+      if ((ch != 'C') && (charAt(word, n - 1) == ch))
+      {
+        continue;
+      }
+      
+      switch (ch)
+      {
+        case 'A':
+        case 'E':
+        case 'I':
+        case 'O':
+        case 'U':
+          // Vowels are only kept at the start
+          if (n == 0)
+          {
+            code.append(ch);
+          }
+          break;
+        
+        case 'B':
+          // Silent in a final "MB"
+          if ((charAt(word, n - 1) != 'M') || (n < len - 1))
+          {
+            code.append('B');
+          }
+          break;
+        
+        case 'C':
+          if ((charAt(word, n - 1) == 'S') &&
+              (isFrontVowel(charAt(word, n + 1))))
+          {
+            // Silent in "SCI", "SCE" and "SCY"
+            break;
+          }
+          else if (regionMatches(word, n, "CIA"))
+          {
+            code.append('X');
+          }
+          else if (isFrontVowel(charAt(word, n + 1)))
+          {
+            code.append('S');
+          }
+          else if ((charAt(word, n - 1) == 'S') &&
+                   (charAt(word, n + 1) == 'H'))
+          {
+            code.append('K');
+          }
+          else if (charAt(word, n + 1) == 'H')
+          {
+            code.append(((n == 0) && (len >= 3) &&
+                         (isVowel(charAt(word, 2)))) ? 'K' : 'X');
+          }
+          else
+          {
+            code.append('K');
+          }
+          break;
+        
+        case 'D':
+          if ((charAt(word, n + 1) == 'G') &&
+              (isFrontVowel(charAt(word, n + 2))))
+          {
+            // "DGE", "DGI" and "DGY" sound like 'J'
+            code.append('J');
+            n += 2;
+          }
+          else
+          {
+            code.append('T');
+          }
+          break;
+        
+        case 'G':
+          if ((charAt(word, n + 1) == 'H') &&
+              ((n + 2 >= len) || (!isVowel(charAt(word, n + 2)))))
+          {
+            // Silent in "GH" at the end or before a consonant
+            break;
+          }
+          else if ((n > 0) && ((regionMatches(word, n, "GN")) ||
+                               (regionMatches(word, n, "GNED"))))
+          {
+            break;
+          }
+          else if ((isFrontVowel(charAt(word, n + 1))) &&
+                   (charAt(word, n - 1) != 'G'))
+          {
+            code.append('J');
+          }
+          else
+          {
+            code.append('K');
+          }
+          break;
+        
+        case 'H':
+          // Only sounded after a vowel or at the start, and
+          // before a vowel
+          if ((n < len - 1) &&
+              ((n == 0) || (VARSON.indexOf(word.charAt(n - 1)) < 0)) &&
+              (isVowel(charAt(word, n + 1))))
+          {
+            code.append('H');
+          }
+          break;
+        
+        case 'K':
+          if (charAt(word, n - 1) != 'C')
+          {
+            code.append('K');
+          }
+          break;
+        
+        case 'P':
+          code.append((charAt(word, n + 1) == 'H') ? 'F' : 'P');
+          break;
+        
+        case 'Q':
+          code.append('K');
+          break;
+        
+        case 'S':
+          if ((regionMatches(word, n, "SH")) ||
+              (regionMatches(word, n, "SIO")) ||
+              (regionMatches(word, n, "SIA")))
+          {
+            code.append('X');
+          }
+          else
+          {
+            code.append('S');
+          }
+          break;
+        
+        case 'T':
+          if ((regionMatches(word, n, "TIA")) ||
+              (regionMatches(word, n, "TIO")))
+          {
+            code.append('X');
+          }
+          else if (regionMatches(word, n, "TCH"))
+          {
+            break;
+          }
+          else
+          {
+            code.append((charAt(word, n + 1) == 'H') ? '0' : 'T');
+          }
+          break;
+        
+        case 'V':
+          code.append('F');
+          break;
+        
+        case 'W':
+        case 'Y':
+          // Only sounded before a vowel
+          if (isVowel(charAt(word, n + 1)))
+          {
+            code.append(ch);
+          }
+          break;
+        
+        case 'X':
+          code.append("KS");
+          break;
+        
+        case 'Z':
+          code.append('S');
+          break;
+        
+        default:
+          // F, J, L, M, N and R sound like themselves
+          code.append(ch);
+          break;
+      }
+    }
+    
+    code.setLength(Math.min(code.length(), MAX_CODE_LENGTH));
+    return code.toString();
+  }
+  
+  
+  /**
+   * Returns the character at an index, or 0 if the index is
+   * outside the word.
+   * 
+   * @param word the word
+   * @param index the index
+   * @return the character
+   */
+  private static char charAt(final CharSequence word, final int index)
+  {
+    return (((index < 0) || (index >= word.length())) ? 0
+            : word.charAt(index));
+  }
+  
+  
+  /**
+   * Returns whether a string occurs in a word at an index.
+   * 
+   * @param word the word
+   * @param index the index
+   * @param str the string
+   * @return whether the word has the string at the index
+   */
+  private static boolean regionMatches(final CharSequence word,
+                                       final int index,
+                                       final String str)
+  {
+    if (index + str.length() > word.length())
+    {
+      return false;
+    }
+    
+    for (int i = 0; i < str.length(); ++i)
+    {
+      if (word.charAt(index + i) != str.charAt(i))
+      {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  
+  /**
+   * Returns whether a character is a vowel.
+   * 
+   * @param ch the character
+   * @return whether the character is a vowel
+   */
+  private static boolean isVowel(final char ch)
+  {
+    return ((ch != 0) && ("AEIOU".indexOf(ch) >= 0));
+  }
+  
+  
+  /**
+   * Returns whether a character is a vowel that makes
+   * a 'C' or 'G' before it soft.
+   * 
+   * @param ch the character
+   * @return whether the character is 'E', 'I' or 'Y'
+   */
+  private static boolean isFrontVowel(final char ch)
+  {
+    return ((ch != 0) && (FRONT_VOWELS.indexOf(ch) >= 0));
+  }
+}
@@ -0,0 +1,247 @@
+package io.miti.drinky.filter;
+
+/**
+ * Compute NYSIIS codes.  The New York State Identification and
+ * Intelligence System algorithm (1970) maps the start and end of
+ * a word to common sounds, folds the vowels together and drops
+ * repeated sounds, keeping the first letter.  Codes are cut off
+ * at six characters.  The code ignores case.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class Nysiis implements PhoneticEncoder
+{
+  /**
+   * The maximum length of a code.
+   */
+  private static final int MAX_CODE_LENGTH = 6;
+  
+  /**
+   * The one instance of the encoder.
+   */
+  public static final Nysiis INSTANCE = new Nysiis();
+  
+  
+  /**
+   * Default constructor.
+   */
+  private Nysiis()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Returns the name of the algorithm.
+   * 
+   * @return the name of the algorithm
+   */
+  public String getName()
+  {
+    return "NYSIIS";
+  }
+  
+  
+  /**
+   * Returns the NYSIIS code for part of a string.
+   * 
+   * @param str the string
+   * @param start the index of the first character of the word
+   * @param end the index after the last character of the word
+   * @param ignoreCase not used, since the code always ignores case
+   * @return the packed code, or 0 if the word has no code
+   */
+  public int encode(final CharSequence str,
+                    final int start,
+                    final int end,
+                    final boolean ignoreCase)
+  {
+    return PhoneticKey.pack(getCode(PhoneticKey.getLetters(str, start, end)));
+  }
+  
+  
+  /**
+   * Returns whether the algorithm gives words an alternate code.
+   * 
+   * @return false
+   */
+  public boolean hasAlternate()
+  {
+    return false;
+  }
+  
+  
+  /**
+   * Returns the alternate code for part of a string, which
+   * is the same as the code.
+   * 
+   * @param str the string
+   * @param start the index of the first character of the word
+   * @param end the index after the last character of the word
+   * @param ignoreCase not used, since the code always ignores case
+   * @return the packed code, or 0 if the word has no code
+   */
+  public int encodeAlternate(final CharSequence str,
+                             final int start,
+                             final int end,
+                             final boolean ignoreCase)
+  {
+    return encode(str, start, end, ignoreCase);
+  }
+  
+  
+  /**
+   * Returns the NYSIIS code for a word.
+   * 
+   * @param letters the upper-case letters of the word
+   * @return the code
+   */
+  public static String getCode(final String letters)
+  {
+    if (letters.length() == 0)
+    {
+      return letters;
+    }
+    
+    // Translate the first characters of the word
+    String word = letters;
+    if (word.startsWith("MAC"))
+    {
+      word = "MCC" + word.substring(3);
+    }
+    else if (word.startsWith("KN"))
+    {
+      word = "NN" + word.substring(2);
+    }
+    else if (word.startsWith("K"))
+    {
+      word = "C" + word.substring(1);
+    }
+    else if ((word.startsWith("PH")) || (word.startsWith("PF")))
+    {
+      word = "FF" + word.substring(2);
+    }
+    else if (word.startsWith("SCH"))
+    {
+      word = "SSS" + word.substring(3);
+    }
+    
+    // Translate the last characters of the word
+    if ((word.endsWith("EE")) || (word.endsWith("IE")))
+    {
+      word = word.substring(0, word.length() - 2) + "Y";
+    }
+    else if ((word.endsWith("DT")) || (word.endsWith("RT")) ||
+             (word.endsWith("RD")) || (word.endsWith("NT")) ||
+             (word.endsWith("ND")))
+    {
+      word = word.substring(0, word.length() - 2) + "D";
+    }
+    
+    // The first character of the code is the first character
+    // of the word; translate the rest in place, and add each
+    // character that's not the same as the one before it
+    char[] chars = word.toCharArray();
+    final int len = chars.length;
+    StringBuilder key = new StringBuilder(len);
+    key.append(chars[0]);
+    for (int i = 1; i < len; ++i)
+    {
+      final char prev = chars[i - 1];
+      final char curr = chars[i];
+      final char next = ((i < len - 1) ? chars[i + 1] : ' ');
+      final char after = ((i < len - 2) ? chars[i + 2] : ' ');
+      if ((curr == 'E') && (next == 'V'))
+      {
+        chars[i] = 'A';
+        chars[i + 1] = 'F';
+      }
+      else if (isVowel(curr))
+      {
+        chars[i] = 'A';
+      }
+      else if (curr == 'Q')
+      {
+        chars[i] = 'G';
+      }
+      else if (curr == 'Z')
+      {
+        chars[i] = 'S';
+      }
+      else if (curr == 'M')
+      {
+        chars[i] = 'N';
+      }
+      else if (curr == 'K')
+      {
+        chars[i] = ((next == 'N') ? 'N' : 'C');
+      }
+      else if ((curr == 'S') && (next == 'C') && (after == 'H'))
+      {
+        chars[i] = 'S';
+        chars[i + 1] = 'S';
+        chars[i + 2] = 'S';
+      }
+      else if ((curr == 'P') && (next == 'H'))
+      {
+        chars[i] = 'F';
+        chars[i + 1] = 'F';
+      }
+      else if ((curr == 'H') && ((!isVowel(prev)) || (!isVowel(next))))
+      {
+        chars[i] = prev;
+      }
+      else if ((curr == 'W') && (isVowel(prev)))
+      {
+        chars[i] = prev;
+      }
+      
+      if (chars[i] != prev)
+      {
+        key.append(chars[i]);
+      }
+    }
+    
+    // Clean up the end of the code
+    if (key.length() > 1)
+    {
+      char last = key.charAt(key.length() - 1);
+      if (last == 'S')
+      {
+        // Drop a trailing 'S'
+        key.setLength(key.length() - 1);
+        last = key.charAt(key.length() - 1);
+      }
+      
+      if ((key.length() > 2) && (key.charAt(key.length() - 2) == 'A') &&
+          (last == 'Y'))
+      {
+        // "AY" at the end becomes 'Y'
+        key.deleteCharAt(key.length() - 2);
+      }
+      
+      if (last == 'A')
+      {
+        // Drop a trailing 'A'
+        key.setLength(key.length() - 1);
+      }
+    }
+    
+    key.setLength(Math.min(key.length(), MAX_CODE_LENGTH));
+    return key.toString();
+  }
+  
+  
+  /**
+   * Returns whether a character is a vowel.
+   * 
+   * @param ch the character
+   * @return whether the character is a vowel
+   */
+  private static boolean isVowel(final char ch)
+  {
+    return ((ch == 'A') || (ch == 'E') || (ch == 'I') ||
+            (ch == 'O') || (ch == 'U'));
+  }
+}
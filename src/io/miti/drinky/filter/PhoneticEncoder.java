@@ -0,0 +1,53 @@
+package io.miti.drinky.filter;
+
+/**
+ * An algorithm that encodes a word by how it sounds, so words
+ * that sound alike get the same code.  Codes are packed into
+ * non-zero ints, so they can be compared and indexed without
+ * building strings.  Some algorithms give a word an alternate
+ * code as well, for a second way it might be pronounced; two
+ * words sound alike if any of their codes are the same.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public interface PhoneticEncoder
+{
+  /**
+   * Returns the name of the algorithm.
+   * 
+   * @return the name of the algorithm
+   */
+  String getName();
+  
+  /**
+   * Returns the code for part of a string.
+   * 
+   * @param str the string
+   * @param start the index of the first character of the word
+   * @param end the index after the last character of the word
+   * @param ignoreCase whether to ignore the case of the word
+   * @return the packed code, or 0 if the word has no code
+   */
+  int encode(CharSequence str, int start, int end, boolean ignoreCase);
+  
+  /**
+   * Returns whether the algorithm gives words an alternate code.
+   * 
+   * @return whether encodeAlternate() is supported
+   */
+  boolean hasAlternate();
+  
+  /**
+   * Returns the alternate code for part of a string.  This is the
+   * same as the code from encode() if there's only one way the
+   * word might be pronounced.
+   * 
+   * @param str the string
+   * @param start the index of the first character of the word
+   * @param end the index after the last character of the word
+   * @param ignoreCase whether to ignore the case of the word
+   * @return the packed code, or 0 if the word has no code
+   */
+  int encodeAlternate(CharSequence str, int start, int end, boolean ignoreCase);
+}
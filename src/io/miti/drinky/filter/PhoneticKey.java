@@ -0,0 +1,89 @@
+package io.miti.drinky.filter;
+
+/**
+ * Helper methods for the phonetic encoders that build their codes
+ * as strings of upper-case letters.  A code of up to six characters
+ * is packed into an int, five bits per character, so that it can be
+ * indexed like a Soundex code.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+final class PhoneticKey
+{
+  /**
+   * The maximum number of characters in a packed code.
+   */
+  public static final int MAX_LENGTH = 6;
+  
+  /**
+   * Default constructor.
+   */
+  private PhoneticKey()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Returns the letters in part of a string, in upper case.
+   * Anything other than the letters A to Z is dropped.
+   * 
+   * @param str the string
+   * @param start the index of the first character of the word
+   * @param end the index after the last character of the word
+   * @return the upper-case letters
+   */
+  public static String getLetters(final CharSequence str,
+                                  final int start,
+                                  final int end)
+  {
+    StringBuilder sb = new StringBuilder(Math.max(end - start, 0));
+    for (int i = start; i < end; ++i)
+    {
+      final char ch = Character.toUpperCase(str.charAt(i));
+      if ((ch >= 'A') && (ch <= 'Z'))
+      {
+        sb.append(ch);
+      }
+    }
+    
+    return sb.toString();
+  }
+  
+  
+  /**
+   * Returns a code packed into an int.  Codes may hold the letters
+   * A to Z, '0' (for "th") and space; anything past the first six
+   * characters is dropped.
+   * 
+   * @param code the code
+   * @return the packed code, or 0 if the code is empty
+   */
+  public static int pack(final CharSequence code)
+  {
+    int key = 0;
+    final int len = Math.min(code.length(), MAX_LENGTH);
+    for (int i = 0; i < len; ++i)
+    {
+      final char ch = code.charAt(i);
+      final int value;
+      if (ch == '0')
+      {
+        value = 27;
+      }
+      else if (ch == ' ')
+      {
+        value = 28;
+      }
+      else
+      {
+        value = ch - 'A' + 1;
+      }
+      
+      key = (key << 5) | value;
+    }
+    
+    return key;
+  }
+}
@@ -0,0 +1,24 @@
+package io.miti.drinky.filter;
+
+/**
+ * This defines the RefinableFilter interface, for filters that
+ * can tell when they're a refinement of another filter: every
+ * term they accept is also accepted by the other one.  The matches
+ * of a refinement can then be found among the other filter's
+ * matches, instead of every term.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public interface RefinableFilter extends TermFilter
+{
+  /**
+   * Returns whether every term this filter accepts is also
+   * accepted by another filter.  This may return false when
+   * it can't tell.
+   * 
+   * @param previous the other filter
+   * @return whether this filter is a refinement of the other one
+   */
+  boolean refines(TermFilter previous);
+}
@@ -0,0 +1,628 @@
+package io.miti.drinky.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the literal text that any match of a regular expression
+ * must contain.  The result is a tree of Node objects: a sequence
+ * of runs of literal text and the gaps between them (in order), or
+ * alternatives of such sequences.  A gap is anything that isn't
+ * literal text, and holds the tree of a group that must match, so
+ * the literals inside it are required too.  Anything the analyzer
+ * can't be sure about (character classes, optional parts, back
+ * references and so on) simply adds no restriction, so the literals
+ * may be found in text that doesn't match, but are never missing
+ * from text that does.
+ * 
+ * The same tree gives the trigram query for a search (SearchEngine)
+ * and the literals that RegexFilter checks before running the regex
+ * engine (RegexLiterals).
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class RegexAnalyzer
+{
+  /**
+   * The tree of an expression that can't be analyzed.
+   */
+  private static final Node UNKNOWN = new Node(Node.ANY, null, null);
+  
+  /**
+   * The regular expression.
+   */
+  private final String regex;
+  
+  /**
+   * The current position in the expression.
+   */
+  private int pos = 0;
+  
+  /**
+   * Set if the expression uses something the analyzer
+   * can't parse.
+   */
+  private boolean failed = false;
+  
+  
+  /**
+   * Create an analyzer for an expression.
+   * 
+   * @param expr the regular expression
+   */
+  private RegexAnalyzer(final String expr)
+  {
+    super();
+    regex = expr;
+  }
+  
+  
+  /**
+   * Returns the literal tree of a compiled pattern.
+   * 
+   * @param pattern the pattern
+   * @return the tree (an ANY node if the pattern can't be analyzed)
+   */
+  public static Node analyze(final Pattern pattern)
+  {
+    if ((pattern == null) ||
+        ((pattern.flags() &
+          (Pattern.COMMENTS | Pattern.LITERAL | Pattern.CANON_EQ)) != 0))
+    {
+      return UNKNOWN;
+    }
+    
+    return analyze(pattern.pattern());
+  }
+  
+  
+  /**
+   * Returns the literal tree of a regular expression.
+   * 
+   * @param expr the regular expression
+   * @return the tree (an ANY node if the expression can't be analyzed)
+   */
+  public static Node analyze(final String expr)
+  {
+    if (expr == null)
+    {
+      return UNKNOWN;
+    }
+    
+    RegexAnalyzer analyzer = new RegexAnalyzer(expr);
+    final Node node = analyzer.parseAlternation();
+    if ((analyzer.failed) || (analyzer.pos < expr.length()))
+    {
+      return UNKNOWN;
+    }
+    
+    return node;
+  }
+  
+  
+  /**
+   * Parse alternatives separated by '|', up to a ')' or the end.
+   * 
+   * @return the sequence, or an ALTERNATION node if there's
+   *         more than one
+   */
+  private Node parseAlternation()
+  {
+    List<Node> alts = new ArrayList<Node>(2);
+    alts.add(parseSequence());
+    while ((!failed) && (pos < regex.length()) && (regex.charAt(pos) == '|'))
+    {
+      ++pos;
+      alts.add(parseSequence());
+    }
+    
+    return ((alts.size() == 1) ? alts.get(0)
+            : new Node(Node.ALTERNATION, null, alts));
+  }
+  
+  
+  /**
+   * Parse a sequence of atoms, up to a '|', a ')' or the end.
+   * 
+   * @return the SEQUENCE node
+   */
+  private Node parseSequence()
+  {
+    List<Node> parts = new ArrayList<Node>(4);
+    StringBuilder run = new StringBuilder(20);
+    final int len = regex.length();
+    while ((!failed) && (pos < len))
+    {
+      final char ch = regex.charAt(pos);
+      if ((ch == '|') || (ch == ')'))
+      {
+        break;
+      }
+      
+      // Parse the atom: either literal text, or a group's tree
+      String text = null;
+      Node sub = UNKNOWN;
+      if (ch == '(')
+      {
+        sub = parseGroup();
+      }
+      else if (ch == '[')
+      {
+        skipClass();
+      }
+      else if (ch == '\\')
+      {
+        text = parseEscape();
+      }
+      else if ((ch == '*') || (ch == '+') || (ch == '?') || (ch == '{'))
+      {
+        // A quantifier with nothing to repeat
+        failed = true;
+        break;
+      }
+      else
+      {
+        // Anything else is a literal, except '.', '^' and '$'
+        ++pos;
+        if ((ch != '.') && (ch != '^') && (ch != '$'))
+        {
+          text = String.valueOf(ch);
+        }
+      }
+      
+      // Check for a quantifier: -1 if there is none, else the minimum
+      final int min = parseQuantifier();
+      if (text != null)
+      {
+        if (min < 0)
+        {
+          // The text follows the run directly
+          run.append(text);
+        }
+        else
+        {
+          // Only the text before the last character is certain to
+          // follow the run, and if the last character is required
+          // nothing can follow it directly
+          run.append(text.substring(0, text.length() - 1));
+          if (min > 0)
+          {
+            run.append(text.charAt(text.length() - 1));
+          }
+          flush(run, parts);
+          parts.add(UNKNOWN);
+        }
+      }
+      else
+      {
+        // A gap, holding the group's tree if it must match
+        flush(run, parts);
+        parts.add((min != 0) ? sub : UNKNOWN);
+      }
+    }
+    
+    flush(run, parts);
+    return new Node(Node.SEQUENCE, null, parts);
+  }
+  
+  
+  /**
+   * Add the current run of literal text to the list of
+   * parts, and clear it.
+   * 
+   * @param run the literal text
+   * @param parts the parts of the sequence
+   */
+  private static void flush(final StringBuilder run,
+                            final List<Node> parts)
+  {
+    if (run.length() > 0)
+    {
+      parts.add(new Node(Node.LITERAL, run.toString(), null));
+      run.setLength(0);
+    }
+  }
+  
+  
+  /**
+   * Parse a group, starting at the '('.
+   * 
+   * @return the tree of the group
+   */
+  private Node parseGroup()
+  {
+    ++pos;
+    boolean keep = true;
+    if ((pos < regex.length()) && (regex.charAt(pos) == '?'))
+    {
+      ++pos;
+      final char ch = charAt(pos);
+      if (ch == ':')
+      {
+        ++pos;
+      }
+      else if ((ch == '=') || (ch == '!'))
+      {
+        // Look-ahead, which doesn't consume anything
+        ++pos;
+        keep = false;
+      }
+      else if (ch == '<')
+      {
+        final char next = charAt(pos + 1);
+        if ((next == '=') || (next == '!'))
+        {
+          // Look-behind
+          pos += 2;
+          keep = false;
+        }
+        else
+        {
+          // A named group
+          final int end = regex.indexOf('>', pos);
+          if (end < 0)
+          {
+            failed = true;
+            return UNKNOWN;
+          }
+          pos = end + 1;
+        }
+      }
+      else if (ch == '>')
+      {
+        // An independent group
+        ++pos;
+      }
+      else
+      {
+        // Flags, either on their own "(?i)" or for a group "(?i:...)"
+        while ((pos < regex.length()) &&
+               ("idmsuxU-".indexOf(regex.charAt(pos)) >= 0))
+        {
+          if (regex.charAt(pos) == 'x')
+          {
+            // Comments mode changes how the rest is parsed
+            failed = true;
+            return UNKNOWN;
+          }
+          ++pos;
+        }
+        
+        final char end = charAt(pos);
+        ++pos;
+        if (end == ')')
+        {
+          return UNKNOWN;
+        }
+        else if (end != ':')
+        {
+          failed = true;
+          return UNKNOWN;
+        }
+      }
+    }
+    
+    final Node node = parseAlternation();
+    if (charAt(pos) != ')')
+    {
+      failed = true;
+      return UNKNOWN;
+    }
+    ++pos;
+    
+    return ((keep) ? node : UNKNOWN);
+  }
+  
+  
+  /**
+   * Skip a character class, starting at the '['.
+   */
+  private void skipClass()
+  {
+    final int len = regex.length();
+    int depth = 0;
+    do
+    {
+      final char ch = regex.charAt(pos);
+      if (ch == '\\')
+      {
+        pos += 2;
+        continue;
+      }
+      else if (ch == '[')
+      {
+        ++depth;
+        ++pos;
+        
+        // A ']' (after an optional '^') at the start is a literal
+        if (charAt(pos) == '^')
+        {
+          ++pos;
+        }
+        if (charAt(pos) == ']')
+        {
+          ++pos;
+        }
+        continue;
+      }
+      else if (ch == ']')
+      {
+        --depth;
+      }
+      
+      ++pos;
+    } while ((depth > 0) && (pos < len));
+    
+    if (depth > 0)
+    {
+      failed = true;
+    }
+  }
+  
+  
+  /**
+   * Parse an escape sequence, starting at the '\'.
+   * 
+   * @return the literal text, or null if the escape is not a literal
+   */
+  private String parseEscape()
+  {
+    final char ch = charAt(pos + 1);
+    pos += 2;
+    switch (ch)
+    {
+      case 't': return "\t";
+      case 'n': return "\n";
+      case 'r': return "\r";
+      case 'f': return "\f";
+      case 'a': return "\u0007";
+      case 'e': return "\u001B";
+      
+      case 'Q':
+      {
+        // Quoted text, up to \E or the end
+        int end = regex.indexOf("\\E", pos);
+        if (end < 0)
+        {
+          end = regex.length();
+        }
+        
+        final String text = regex.substring(pos, end);
+        pos = Math.min(end + 2, regex.length());
+        return ((text.length() > 0) ? text : null);
+      }
+      
+      case 'x':
+      case 'p':
+      case 'P':
+      case 'N':
+        // \x{...}, \p{...} and \N{...} have a braced argument,
+        // while \xhh and \pL have a fixed length
+        if (charAt(pos) == '{')
+        {
+          skipTo('}');
+        }
+        else
+        {
+          pos += ((ch == 'x') ? 2 : 1);
+        }
+        return null;
+      
+      case 'u':
+        pos += 4;
+        return null;
+      
+      case 'c':
+        pos += 1;
+        return null;
+      
+      case 'k':
+        skipTo('>');
+        return null;
+      
+      case '0':
+        // Octal escapes have a variable length
+        failed = true;
+        return null;
+      
+      default:
+        if (Character.isLetterOrDigit(ch))
+        {
+          // A predefined class, boundary or back reference
+          if (Character.isDigit(ch))
+          {
+            while (Character.isDigit(charAt(pos)))
+            {
+              ++pos;
+            }
+          }
+          return null;
+        }
+        else if (ch == 0)
+        {
+          // A trailing backslash
+          failed = true;
+          return null;
+        }
+        
+        // An escaped symbol is a literal
+        return String.valueOf(ch);
+    }
+  }
+  
+  
+  /**
+   * Parse the quantifier after an atom, if there is one.
+   * 
+   * @return -1 if there is no quantifier, else the minimum
+   *         number of repeats
+   */
+  private int parseQuantifier()
+  {
+    final char ch = charAt(pos);
+    int min = -1;
+    if ((ch == '*') || (ch == '?'))
+    {
+      min = 0;
+      ++pos;
+    }
+    else if (ch == '+')
+    {
+      min = 1;
+      ++pos;
+    }
+    else if (ch == '{')
+    {
+      // {n}, {n,} or {n,m}
+      ++pos;
+      min = 0;
+      while (Character.isDigit(charAt(pos)))
+      {
+        min = Math.min((min * 10) + (charAt(pos) - '0'), 1000);
+        ++pos;
+      }
+      skipTo('}');
+    }
+    else
+    {
+      return -1;
+    }
+    
+    // Skip a lazy or possessive modifier
+    if ((charAt(pos) == '?') || (charAt(pos) == '+'))
+    {
+      ++pos;
+    }
+    
+    return min;
+  }
+  
+  
+  /**
+   * Move past the next occurrence of a character.
+   * 
+   * @param ch the character
+   */
+  private void skipTo(final char ch)
+  {
+    final int end = regex.indexOf(ch, pos);
+    if (end < 0)
+    {
+      failed = true;
+      pos = regex.length();
+    }
+    else
+    {
+      pos = end + 1;
+    }
+  }
+  
+  
+  /**
+   * Returns the character at an index, or 0 past the end.
+   * 
+   * @param index the index
+   * @return the character
+   */
+  private char charAt(final int index)
+  {
+    return ((index < regex.length()) ? regex.charAt(index) : 0);
+  }
+  
+  
+  /**
+   * A node of the literal tree of an expression.
+   */
+  public static final class Node
+  {
+    /**
+     * Node type: no known literals.
+     */
+    public static final int ANY = 0;
+    
+    /**
+     * Node type: a run of literal text.
+     */
+    public static final int LITERAL = 1;
+    
+    /**
+     * Node type: a sequence of literal runs and gaps, in order.
+     * Two runs are never next to each other; anything that isn't
+     * a LITERAL node is a gap.
+     */
+    public static final int SEQUENCE = 2;
+    
+    /**
+     * Node type: alternatives (each a SEQUENCE node).
+     */
+    public static final int ALTERNATION = 3;
+    
+    /**
+     * The type of the node.
+     */
+    private final int type;
+    
+    /**
+     * The text of a LITERAL node.
+     */
+    private final String literal;
+    
+    /**
+     * The children of a SEQUENCE or ALTERNATION node.
+     */
+    private final List<Node> children;
+    
+    
+    /**
+     * Create a node.
+     * 
+     * @param nType the type of the node
+     * @param sLiteral the text of a LITERAL node
+     * @param list the children of a SEQUENCE or ALTERNATION node
+     */
+    private Node(final int nType,
+                 final String sLiteral,
+                 final List<Node> list)
+    {
+      super();
+      type = nType;
+      literal = sLiteral;
+      children = list;
+    }
+    
+    
+    /**
+     * Returns the type of the node.
+     * 
+     * @return the node type
+     */
+    public int getType()
+    {
+      return type;
+    }
+    
+    
+    /**
+     * Returns the text of a LITERAL node.
+     * 
+     * @return the literal text (null for other nodes)
+     */
+    public String getLiteral()
+    {
+      return literal;
+    }
+    
+    
+    /**
+     * Returns the children of a SEQUENCE or ALTERNATION node.
+     * 
+     * @return the children (null for other nodes)
+     */
+    public List<Node> getChildren()
+    {
+      return children;
+    }
+  }
+}
@@ -1,23 +1,82 @@
 package io.miti.drinky.filter;
 
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Provide a filter for search terms that only
  * accepts matches where the term passed to accept()
  * matches the regular expression string passed in
- * the constructor.
+ * the constructor.  Terms without the literal text
+ * the expression requires are rejected before the
+ * regex engine runs, and each thread reuses one
+ * Matcher rather than creating one per term.
+ * 
+ * By default the term is matched with LinearRegex, which can't
+ * backtrack, so no expression can take more than linear time.
+ * Expressions it doesn't support (such as back references) are
+ * matched with java.util.regex, with a time budget for the whole
+ * search; once that's used up, no more terms match, and
+ * isTimedOut() returns true.
  * 
  * @author mwallace
  * @version 1.0
  */
 public final class RegexFilter implements TermFilter
 {
+  /**
+   * The time budget for matching with java.util.regex when the
+   * linear engine can't be used, in nanoseconds.
+   */
+  private static final long FALLBACK_BUDGET_NANOS = 2000000000L;
+  
+  /**
+   * How many characters the regex engine reads between
+   * checks of the time budget.
+   */
+  private static final int CHECK_INTERVAL = 4096;
+  
   /**
    * The pattern for the source term.
    */
   private Pattern pattern = null;
   
+  /**
+   * Whether to ignore the case.
+   */
+  private boolean ignoreCase = false;
+  
+  /**
+   * The literal text that a matching term must contain.
+   */
+  private RegexLiterals literals = null;
+  
+  /**
+   * The matcher for the pattern, one per thread.
+   */
+  private ThreadLocal<Matcher> matchers = null;
+  
+  /**
+   * The linear-time matcher, or null to use the pattern.
+   */
+  private LinearRegex linear = null;
+  
+  /**
+   * Whether matching with the pattern has a time budget.
+   */
+  private boolean budgeted = false;
+  
+  /**
+   * When the time budget runs out (System.nanoTime()), or 0
+   * if the pattern hasn't been used yet.
+   */
+  private volatile long deadline = 0L;
+  
+  /**
+   * Whether the time budget ran out.
+   */
+  private volatile boolean timedOut = false;
+  
   
   /**
    * Default constructor.
@@ -30,13 +89,35 @@ public final class RegexFilter implements TermFilter
   
   /**
    * Initializes the filter with the source term and
-   * whether to ignore case on searches.
+   * whether to ignore case on searches.  The linear-time
+   * engine is used if it supports the expression.
    * 
    * @param word the source term
    * @param bIgnoreCase whether to ignore the case of string comparisons
    */
   public RegexFilter(final String word, final boolean bIgnoreCase)
   {
+    this(word, bIgnoreCase, true);
+  }
+  
+  
+  /**
+   * Initializes the filter with the source term, whether to
+   * ignore case on searches, and whether to use the linear-time
+   * engine.
+   * 
+   * @param word the source term
+   * @param bIgnoreCase whether to ignore the case of string comparisons
+   * @param useLinearEngine whether to use the linear-time engine
+   *        (and a time budget for java.util.regex, if the linear
+   *        engine doesn't support the expression)
+   */
+  public RegexFilter(final String word,
+                     final boolean bIgnoreCase,
+                     final boolean useLinearEngine)
+  {
+    ignoreCase = bIgnoreCase;
+    
     // Check the input
     if (word == null)
     {
@@ -53,6 +134,24 @@ public final class RegexFilter implements TermFilter
       {
         pattern = Pattern.compile(word);
       }
+      
+      // The pattern is compiled even if it's not used, to
+      // report any syntax errors
+      if (useLinearEngine)
+      {
+        linear = LinearRegex.compile(word, bIgnoreCase);
+        budgeted = true;
+      }
+      
+      literals = RegexLiterals.extract(word);
+      matchers = new ThreadLocal<Matcher>()
+      {
+        @Override
+        protected Matcher initialValue()
+        {
+          return pattern.matcher("");
+        }
+      };
     }
   }
   
@@ -77,7 +176,241 @@ public final class RegexFilter implements TermFilter
       return false;
     }
     
-    // Use the regex package to compare words
-    return (pattern.matcher(word).matches());
+    // Check for the literal text first, since it's cheaper
+    // than the regex engine
+    if (!literals.mayMatch(word))
+    {
+      return false;
+    }
+    
+    if (linear != null)
+    {
+      return linear.matches(word);
+    }
+    else if (!budgeted)
+    {
+      // Use the regex package to compare words
+      return (matchers.get().reset(word).matches());
+    }
+    
+    return acceptWithBudget(word);
+  }
+  
+  
+  /**
+   * Determines if the term matches the pattern, using the
+   * regex package within the time budget.
+   * 
+   * @param word the term to compare to the source term
+   * @return whether the term matches (false once the budget
+   *         has run out)
+   */
+  private boolean acceptWithBudget(final String word)
+  {
+    if (timedOut)
+    {
+      return false;
+    }
+    
+    // Start the clock on the first term
+    if (deadline == 0L)
+    {
+      deadline = System.nanoTime() + FALLBACK_BUDGET_NANOS;
+    }
+    
+    try
+    {
+      return (matchers.get().reset(new TimedText(word, deadline)).matches());
+    }
+    catch (BudgetExceededException bee)
+    {
+      timedOut = true;
+      return false;
+    }
+  }
+  
+  
+  /**
+   * Returns whether matching with the regex package ran out of
+   * time, so some terms that match may have been rejected.
+   * 
+   * @return whether the time budget ran out
+   */
+  public boolean isTimedOut()
+  {
+    return timedOut;
+  }
+  
+  
+  /**
+   * Returns whether matching has a time budget, which is used
+   * up as terms are matched, so the filter shouldn't be reused
+   * for another search.
+   * 
+   * @return whether the pattern is matched with a time budget
+   */
+  public boolean hasTimeBudget()
+  {
+    return ((budgeted) && (linear == null));
+  }
+  
+  
+  /**
+   * Returns whether the linear-time engine is used.
+   * 
+   * @return whether the expression is matched by LinearRegex
+   */
+  public boolean isLinear()
+  {
+    return (linear != null);
+  }
+  
+  
+  /**
+   * Returns whether the filter ignores case.
+   * 
+   * @return whether the filter ignores case
+   */
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
+  }
+  
+  
+  /**
+   * Returns the literal text that a matching term must contain.
+   * 
+   * @return the literals (null if the source term was null)
+   */
+  public RegexLiterals getLiterals()
+  {
+    return literals;
+  }
+  
+  
+  /**
+   * Returns the compiled pattern.
+   * 
+   * @return the pattern (null if the source term was null)
+   */
+  public Pattern getPattern()
+  {
+    return pattern;
+  }
+  
+  
+  /**
+   * Thrown when a match runs past the time budget.
+   */
+  private static final class BudgetExceededException
+    extends RuntimeException
+  {
+    /**
+     * Default serial version ID.
+     */
+    private static final long serialVersionUID = 1L;
+    
+    
+    /**
+     * Create the exception.
+     */
+    public BudgetExceededException()
+    {
+      super();
+    }
+  }
+  
+  
+  /**
+   * A term that checks the time budget as the regex engine
+   * reads it, since a match can't be interrupted otherwise.
+   */
+  private static final class TimedText implements CharSequence
+  {
+    /**
+     * The term.
+     */
+    private final String text;
+    
+    /**
+     * When the budget runs out.
+     */
+    private final long deadline;
+    
+    /**
+     * The number of characters read since the last check.
+     */
+    private int reads = 0;
+    
+    
+    /**
+     * Create the term.
+     * 
+     * @param sText the term
+     * @param nDeadline when the budget runs out
+     */
+    public TimedText(final String sText, final long nDeadline)
+    {
+      super();
+      text = sText;
+      deadline = nDeadline;
+    }
+    
+    
+    /**
+     * Returns a character of the term.
+     * 
+     * @param index the index of the character
+     * @return the character
+     */
+    public char charAt(final int index)
+    {
+      if (++reads >= CHECK_INTERVAL)
+      {
+        reads = 0;
+        if (System.nanoTime() - deadline > 0L)
+        {
+          throw new BudgetExceededException();
+        }
+      }
+      
+      return text.charAt(index);
+    }
+    
+    
+    /**
+     * Returns the length of the term.
+     * 
+     * @return the length
+     */
+    public int length()
+    {
+      return text.length();
+    }
+    
+    
+    /**
+     * Returns part of the term.
+     * 
+     * @param start the index of the first character
+     * @param end the index after the last character
+     * @return the characters
+     */
+    public CharSequence subSequence(final int start, final int end)
+    {
+      return text.subSequence(start, end);
+    }
+    
+    
+    /**
+     * Returns the term.
+     * 
+     * @return the term
+     */
+    @Override
+    public String toString()
+    {
+      return text;
+    }
   }
 }
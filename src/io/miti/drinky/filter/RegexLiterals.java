@@ -0,0 +1,345 @@
+package io.miti.drinky.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The literal text that any string matching a regular expression
+ * must contain.  Since RegexFilter matches the whole string, the
+ * literal text at the start of the expression must be at the start
+ * of the string, the literal text at the end must be at the end, and
+ * each run of literal text in between must follow the one before it.
+ * Checking for those with a few character comparisons is much
+ * cheaper than running the regex engine, so most strings that can't
+ * match are rejected without it.
+ * 
+ * The expression is read by RegexAnalyzer, and only the top level
+ * of its literal tree is used: groups, character classes and the
+ * like are gaps between the runs of literal text, and an expression
+ * with alternatives at the top level has no required literals.  Case is
+ * ignored when comparing, so the check never rejects a string that
+ * the expression matches with or without case-insensitive flags.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class RegexLiterals
+{
+  /**
+   * The literals of an expression that has none.
+   */
+  private static final RegexLiterals NONE =
+    new RegexLiterals("", "", new ArrayList<String>(0), false);
+  
+  /**
+   * The literal text at the start of every match.
+   */
+  private final String prefix;
+  
+  /**
+   * The literal text at the end of every match.
+   */
+  private final String suffix;
+  
+  /**
+   * Whether the expression is just the prefix.
+   */
+  private final boolean exact;
+  
+  /**
+   * The case-folded prefix.
+   */
+  private final char[] foldedPrefix;
+  
+  /**
+   * The case-folded suffix.
+   */
+  private final char[] foldedSuffix;
+  
+  /**
+   * The case-folded literals between the prefix and the
+   * suffix, in order.
+   */
+  private final char[][] foldedMiddle;
+  
+  /**
+   * The total length of the literals.
+   */
+  private final int minLength;
+  
+  
+  /**
+   * Create the literals for an expression.
+   * 
+   * @param sPrefix the literal text at the start
+   * @param sSuffix the literal text at the end
+   * @param middle the literal text in between, in order
+   * @param bExact whether the expression is just the prefix
+   */
+  private RegexLiterals(final String sPrefix,
+                        final String sSuffix,
+                        final List<String> middle,
+                        final boolean bExact)
+  {
+    super();
+    prefix = sPrefix;
+    suffix = sSuffix;
+    exact = bExact;
+    foldedPrefix = fold(prefix);
+    foldedSuffix = fold(suffix);
+    foldedMiddle = new char[middle.size()][];
+    int length = prefix.length() + suffix.length();
+    for (int i = 0; i < foldedMiddle.length; ++i)
+    {
+      foldedMiddle[i] = fold(middle.get(i));
+      length += foldedMiddle[i].length;
+    }
+    minLength = length;
+  }
+  
+  
+  /**
+   * Returns the required literals of a regular expression.
+   * 
+   * @param regex the regular expression (may be null)
+   * @return the literals
+   */
+  public static RegexLiterals extract(final String regex)
+  {
+    return build(RegexAnalyzer.analyze(regex));
+  }
+  
+  
+  /**
+   * Returns the required literals of an expression from its
+   * literal tree.  Only the top-level sequence is used: its first
+   * run is the prefix if nothing comes before it, its last run is
+   * the suffix if nothing comes after it, and the runs in between
+   * are the middle literals.
+   * 
+   * @param node the literal tree
+   * @return the literals
+   */
+  private static RegexLiterals build(final RegexAnalyzer.Node node)
+  {
+    if (node.getType() != RegexAnalyzer.Node.SEQUENCE)
+    {
+      // Alternatives at the top level, or not analyzed
+      return NONE;
+    }
+    
+    final List<RegexAnalyzer.Node> parts = node.getChildren();
+    final int last = parts.size() - 1;
+    if (last < 0)
+    {
+      return NONE;
+    }
+    
+    final String prefix = getLiteral(parts.get(0));
+    if ((last == 0) && (prefix.length() > 0))
+    {
+      // The whole expression is literal text
+      return new RegexLiterals(prefix, "", new ArrayList<String>(0), true);
+    }
+    
+    final String suffix = ((last > 0) ? getLiteral(parts.get(last)) : "");
+    List<String> middle = new ArrayList<String>(4);
+    for (int i = 1; i < last; ++i)
+    {
+      final String literal = getLiteral(parts.get(i));
+      if (literal.length() > 0)
+      {
+        middle.add(literal);
+      }
+    }
+    
+    return new RegexLiterals(prefix, suffix, middle, false);
+  }
+  
+  
+  /**
+   * Returns the text of a node of a literal tree.
+   * 
+   * @param node the node
+   * @return the text of a LITERAL node, or an empty string
+   */
+  private static String getLiteral(final RegexAnalyzer.Node node)
+  {
+    return ((node.getType() == RegexAnalyzer.Node.LITERAL)
+            ? node.getLiteral() : "");
+  }
+  
+  
+  /**
+   * Returns the literal text at the start of every match.
+   * 
+   * @return the prefix (may be empty)
+   */
+  public String getPrefix()
+  {
+    return prefix;
+  }
+  
+  
+  /**
+   * Returns the literal text at the end of every match.
+   * 
+   * @return the suffix (may be empty)
+   */
+  public String getSuffix()
+  {
+    return suffix;
+  }
+  
+  
+  /**
+   * Returns whether the expression is just literal text (the
+   * prefix), so it only matches that text.
+   * 
+   * @return whether the expression is a literal
+   */
+  public boolean isExact()
+  {
+    return exact;
+  }
+  
+  
+  /**
+   * Returns whether the expression has any required literals.
+   * 
+   * @return whether mayMatch() can reject a string
+   */
+  public boolean isRestrictive()
+  {
+    return (minLength > 0);
+  }
+  
+  
+  /**
+   * Returns whether a string contains the required literals
+   * in the right places, ignoring case.  If it doesn't, it
+   * can't match the expression.
+   * 
+   * @param text the string
+   * @return whether the string may match
+   */
+  public boolean mayMatch(final CharSequence text)
+  {
+    final int len = text.length();
+    if (len < minLength)
+    {
+      return false;
+    }
+    else if (exact)
+    {
+      return ((len == foldedPrefix.length) &&
+              (matchesAt(foldedPrefix, text, 0)));
+    }
+    
+    // Check the ends, then find each literal in between
+    // at the first place it fits
+    int pos = foldedPrefix.length;
+    int limit = len - foldedSuffix.length;
+    if ((!matchesAt(foldedPrefix, text, 0)) ||
+        (!matchesAt(foldedSuffix, text, limit)))
+    {
+      return false;
+    }
+    
+    for (char[] literal : foldedMiddle)
+    {
+      final int index = indexOf(literal, text, pos, limit);
+      if (index < 0)
+      {
+        return false;
+      }
+      pos = index + literal.length;
+    }
+    
+    return true;
+  }
+  
+  
+  /**
+   * Returns the first index at which a literal matches the
+   * text, within a range.
+   * 
+   * @param literal the case-folded literal
+   * @param text the string
+   * @param from the first index to try
+   * @param limit the index the match must end by
+   * @return the index of the match, or -1 if there's none
+   */
+  private static int indexOf(final char[] literal,
+                             final CharSequence text,
+                             final int from,
+                             final int limit)
+  {
+    final int last = limit - literal.length;
+    for (int i = from; i <= last; ++i)
+    {
+      if (matchesAt(literal, text, i))
+      {
+        return i;
+      }
+    }
+    
+    return -1;
+  }
+  
+  
+  /**
+   * Returns whether a literal matches the text at an index.
+   * 
+   * @param literal the case-folded literal
+   * @param text the string, with room for the literal at the index
+   * @param index the index in the text
+   * @return whether the literal matches
+   */
+  private static boolean matchesAt(final char[] literal,
+                                   final CharSequence text,
+                                   final int index)
+  {
+    for (int i = 0; i < literal.length; ++i)
+    {
+      if (literal[i] != fold(text.charAt(index + i)))
+      {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+  
+  
+  /**
+   * Returns the case-folded form of a character.  Two characters
+   * that the regex engine considers equal when ignoring case
+   * (with or without Unicode case) have the same folded form.
+   * 
+   * @param ch the character
+   * @return the folded character
+   */
+  private static char fold(final char ch)
+  {
+    return Character.toLowerCase(Character.toUpperCase(ch));
+  }
+  
+  
+  /**
+   * Returns the case-folded form of a string.
+   * 
+   * @param str the string
+   * @return the folded characters
+   */
+  private static char[] fold(final String str)
+  {
+    char[] chars = str.toCharArray();
+    for (int i = 0; i < chars.length; ++i)
+    {
+      chars[i] = fold(chars[i]);
+    }
+    
+    return chars;
+  }
+}
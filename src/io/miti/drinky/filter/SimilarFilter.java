@@ -1,21 +1,43 @@
 package io.miti.drinky.filter;
 
+import java.util.Arrays;
+
 /**
  * Provide a filter for search terms that only
  * accepts matches where the term passed to accept()
  * is similar to the string passed in the
- * constructor.
+ * constructor: the Levenshtein (edit) distance
+ * between them is at most the maximum distance.
+ * 
+ * The distance is computed with the bit-parallel
+ * algorithm of Myers, as formulated by Hyyro, which
+ * handles a column of the edit distance table in a
+ * few operations on a long.  The bit masks for the
+ * source term are built once, in the constructor, so
+ * accept() allocates nothing.  Source terms longer
+ * than 64 characters don't fit in a long, and use a
+ * banded version of the usual table instead.
  * 
  * @author mwallace
  * @version 1.0
  */
-public final class SimilarFilter implements TermFilter
+public final class SimilarFilter implements FoldedTermFilter
 {
+  /**
+   * The longest pattern that fits in the bit masks.
+   */
+  private static final int MAX_BIT_LENGTH = 64;
+  
   /**
    * The source term.
    */
   private String term = null;
   
+  /**
+   * The source term in lower case.
+   */
+  private String lowerTerm = null;
+  
   /**
    * Whether to ignore the case.
    */
@@ -26,6 +48,28 @@ public final class SimilarFilter implements TermFilter
    */
   private int maxScore = 0;
   
+  /**
+   * The pattern the distance is computed to: the lower-case
+   * source term if ignoring case, else the source term.
+   */
+  private String pattern = null;
+  
+  /**
+   * For each ASCII character, the bit mask of the positions in
+   * the pattern that hold it.
+   */
+  private long[] asciiMasks = null;
+  
+  /**
+   * The other characters in the pattern, sorted.
+   */
+  private char[] otherChars = null;
+  
+  /**
+   * The bit mask for each of the other characters.
+   */
+  private long[] otherMasks = null;
+  
   
   /**
    * Default constructor.
@@ -51,131 +95,299 @@ public final class SimilarFilter implements TermFilter
     term = word;
     ignoreCase = bIgnoreCase;
     maxScore = maxDistance;
+    lowerTerm = ((word == null) ? null : word.toLowerCase());
+    pattern = ((ignoreCase) ? lowerTerm : term);
+    if ((pattern != null) && (pattern.length() <= MAX_BIT_LENGTH))
+    {
+      buildMasks();
+    }
   }
   
   
   /**
-   * Determines if the term matches the source term.
-   * 
-   * @param word the term to compare to the source term
-   * @return whether the terms match
+   * Build the bit mask for each character in the pattern, with
+   * bit i set if the character is at index i.
    */
-  public boolean accept(final String word)
+  private void buildMasks()
   {
-    // Check the two terms for nullness
-    if ((word == null) && (term == null))
+    asciiMasks = new long[128];
+    final int len = pattern.length();
+    
+    // Collect the distinct non-ASCII characters
+    char[] chars = new char[len];
+    int count = 0;
+    for (int i = 0; i < len; ++i)
     {
-      // They're both null
-      return true;
+      final char ch = pattern.charAt(i);
+      if (ch < 128)
+      {
+        asciiMasks[ch] |= (1L << i);
+      }
+      else
+      {
+        chars[count++] = ch;
+      }
     }
-    else if ((word == null) || (term == null))
+    
+    Arrays.sort(chars, 0, count);
+    int distinct = 0;
+    for (int i = 0; i < count; ++i)
     {
-      // One is null, the other is not
-      return false;
+      if ((distinct == 0) || (chars[distinct - 1] != chars[i]))
+      {
+        chars[distinct++] = chars[i];
+      }
     }
     
-    // Neither is null, so check how to compare the strings
-    int score = 0;
-    if (ignoreCase)
+    otherChars = Arrays.copyOf(chars, distinct);
+    otherMasks = new long[distinct];
+    for (int i = 0; i < len; ++i)
     {
-      // Ignore the case
-      score = getScore(term.toUpperCase(), word.toUpperCase());
+      final char ch = pattern.charAt(i);
+      if (ch >= 128)
+      {
+        otherMasks[Arrays.binarySearch(otherChars, ch)] |= (1L << i);
+      }
     }
-    else
+  }
+  
+  
+  /**
+   * Returns the bit mask of the positions of a character
+   * in the pattern.
+   * 
+   * @param ch the character
+   * @return the bit mask
+   */
+  private long getMask(final char ch)
+  {
+    if (ch < 128)
     {
-      // Consider the case
-      score = getScore(term, word);
+      return asciiMasks[ch];
     }
     
-    // Return whether the computed score is at or below the threshold
-    return (score <= maxScore);
+    final int index = Arrays.binarySearch(otherChars, ch);
+    return ((index < 0) ? 0L : otherMasks[index]);
+  }
+  
+  
+  /**
+   * Returns the source term.
+   * 
+   * @return the source term
+   */
+  public String getTerm()
+  {
+    return term;
   }
   
   
   /**
-   * Returns the minimum of three integers.
+   * Returns the maximum distance between matching terms.
    * 
-   * @param a the first number
-   * @param b the second number
-   * @param c the third number
-   * @return the minimum of three numbers
+   * @return the maximum distance
    */
-  private static int minimum(final int a, final int b, final int c)
+  public int getMaxScore()
   {
-    return (Math.min(a, Math.min(b, c)));
+    return maxScore;
   }
   
   
   /**
-   * Computes and returns the Levenshtein score to indicate
-   * how similar the two strings are.
+   * Determines if the term matches the source term.  When
+   * ignoring case, each character of the term is converted
+   * to lower case as it's read.
    * 
-   * @param s First string to compare
-   * @param t Second string to compare
-   * @return the Levenshtein rating
+   * @param word the term to compare to the source term
+   * @return whether the terms match
    */
-  private int getScore(final String s, final String t)
+  public boolean accept(final String word)
   {
-    // Return the Levenshtein rating
-    int[][] d; // matrix
-    int n; // length of s
-    int m; // length of t
-    int i; // iterates through s
-    int j; // iterates through t
-    char s_i; // ith character of s
-    char t_j; // jth character of t
-    int cost; // cost
+    // Check the two terms for nullness
+    if ((word == null) || (term == null))
+    {
+      // They match if they're both null
+      return ((word == null) && (term == null));
+    }
+    
+    return isWithinDistance(word, ignoreCase);
+  }
+  
+  
+  /**
+   * Returns whether the filter ignores case.
+   * 
+   * @return whether the filter ignores case
+   */
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
+  }
+  
+  
+  /**
+   * Determines if the term matches the source term, where the
+   * term is already in lower case.
+   * 
+   * @param lowerWord the lower-case term to compare to the source term
+   * @return whether the terms match
+   */
+  public boolean acceptLowerCase(final String lowerWord)
+  {
+    if ((lowerWord == null) || (lowerTerm == null))
+    {
+      return ((lowerWord == null) && (lowerTerm == null));
+    }
     
-    // Step 1
-    n = s.length();
-    m = t.length();
-    if (n == 0)
+    return isWithinDistance(lowerWord, false);
+  }
+  
+  
+  /**
+   * Returns whether the distance from the pattern to a
+   * string is at most the maximum distance.
+   * 
+   * @param str the string
+   * @param toLower whether to convert the characters of the
+   *                string to lower case
+   * @return whether the string is within the distance
+   */
+  private boolean isWithinDistance(final String str, final boolean toLower)
+  {
+    final int m = pattern.length();
+    final int n = str.length();
+    if (Math.abs(m - n) > maxScore)
     {
-      return m;
+      // Each extra character costs at least one edit
+      return false;
+    }
+    else if (maxScore >= Math.max(m, n))
+    {
+      // Any two strings are this close
+      return true;
     }
-    if (m == 0)
+    else if (m > MAX_BIT_LENGTH)
     {
-      return n;
+      return isWithinBand(str, toLower);
     }
-    d = new int[n+1][m+1];
     
-    // Step 2
-    for (i = 0; i <= n; i++)
+    // Myers' algorithm: the vertical deltas of the current
+    // column are held as bit vectors of the +1 and -1 positions,
+    // and the score is the value in the last row
+    final long last = 1L << (m - 1);
+    long pv = -1L;
+    long mv = 0L;
+    int score = m;
+    for (int j = 0; j < n; ++j)
     {
-      d[i][0] = i;
+      final char ch = str.charAt(j);
+      final long eq = getMask((toLower) ? Character.toLowerCase(ch) : ch);
+      final long xv = eq | mv;
+      final long xh = (((eq & pv) + pv) ^ pv) | eq;
+      long ph = mv | ~(xh | pv);
+      long mh = pv & xh;
+      if ((ph & last) != 0L)
+      {
+        ++score;
+      }
+      else if ((mh & last) != 0L)
+      {
+        --score;
+      }
+      
+      // Each remaining character can lower the score by at most one
+      if (score - (n - j - 1) > maxScore)
+      {
+        return false;
+      }
+      
+      // The first row goes up by one in each column
+      ph = (ph << 1) | 1L;
+      mh <<= 1;
+      pv = mh | ~(xv | ph);
+      mv = ph & xv;
     }
     
-    for (j = 0; j <= m; j++)
+    return (score <= maxScore);
+  }
+  
+  
+  /**
+   * Returns whether the distance from the pattern to a string
+   * is at most the maximum distance, using the edit distance
+   * table.  Only the cells within the maximum distance of the
+   * diagonal can be in range, so only that band of each row is
+   * computed, and any value above the maximum is stored as the
+   * maximum plus one.  The caller has checked that the lengths
+   * differ by at most the maximum, and that the maximum is less
+   * than the length of the pattern.
+   * 
+   * @param str the string
+   * @param toLower whether to convert the characters of the
+   *                string to lower case
+   * @return whether the string is within the distance
+   */
+  private boolean isWithinBand(final String str, final boolean toLower)
+  {
+    final int m = pattern.length();
+    final int n = str.length();
+    final int k = maxScore;
+    final int tooFar = k + 1;
+    final int width = (2 * k) + 1;
+    
+    // Cell d of the row for pattern index i is for string index
+    // i - k + d, so the diagonal is at d = k
+    int[] prev = new int[width];
+    int[] curr = new int[width];
+    for (int d = 0; d < width; ++d)
     {
-      d[0][j] = j;
+      prev[d] = ((d < k) ? tooFar : Math.min(d - k, tooFar));
     }
     
-    // Step 3
-    for (i = 1; i <= n; i++)
+    for (int i = 1; i <= m; ++i)
     {
-      s_i = s.charAt(i - 1);
-      
-      // Step 4
-      for (j = 1; j <= m; j++)
+      final char pc = pattern.charAt(i - 1);
+      int best = tooFar;
+      for (int d = 0; d < width; ++d)
       {
-        t_j = t.charAt(j - 1);
-        
-        // Step 5
-        if (s_i == t_j)
+        final int j = i - k + d;
+        if ((j < 0) || (j > n))
         {
-          cost = 0;
+          curr[d] = tooFar;
+          continue;
         }
-        else
+        
+        int value = ((j == 0) ? i : tooFar);
+        if (j > 0)
         {
-          cost = 1;
+          final char ch = str.charAt(j - 1);
+          final char sc = ((toLower) ? Character.toLowerCase(ch) : ch);
+          value = prev[d] + ((sc == pc) ? 0 : 1);
+          if (d + 1 < width)
+          {
+            value = Math.min(value, prev[d + 1] + 1);
+          }
+          if (d > 0)
+          {
+            value = Math.min(value, curr[d - 1] + 1);
+          }
         }
         
-        // Step 6
-        d[i][j] = minimum(d[i-1][j]+1, d[i][j-1]+1, d[i-1][j-1] + cost);
+        curr[d] = Math.min(value, tooFar);
+        best = Math.min(best, curr[d]);
       }
+      
+      if (best > k)
+      {
+        // Every path through this row is too far
+        return false;
+      }
+      
+      final int[] temp = prev;
+      prev = curr;
+      curr = temp;
     }
     
-    // Step 7
-    return d[n][m];
+    return (prev[n - m + k] <= k);
   }
 }
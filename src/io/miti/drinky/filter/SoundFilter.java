@@ -1,19 +1,44 @@
 package io.miti.drinky.filter;
 
+import java.util.Arrays;
+
 /**
  * Provide a filter for search terms that only
  * accepts matches where the term passed to accept()
  * sounds like the term passed in the constructor.
+ * Each word is compared separately: every word in
+ * the source term must have the same phonetic code
+ * as some word in the term passed to accept(), so
+ * "lagoon" matches "Blue Lagoon".  An apostrophe
+ * inside a word doesn't split it, so "d'Absinthe"
+ * and "Man's" are coded as one word, the same as
+ * when the whole name was coded.  The codes come
+ * from a phonetic encoder, Soundex by default.
  * 
  * @author mwallace
  * @version 1.0
  */
-public final class SoundFilter implements TermFilter
+public final class SoundFilter implements FoldedTermFilter
 {
   /**
-   * The soundex code for source term.
+   * The encoder for the codes.
+   */
+  private PhoneticEncoder encoder = Soundex.INSTANCE;
+  
+  /**
+   * The source term.
    */
-  private String termCode = null;
+  private String term = null;
+  
+  /**
+   * The code of each distinct word in the source term.
+   */
+  private int[] termCodes = new int[0];
+  
+  /**
+   * The alternate code of each distinct word in the source term.
+   */
+  private int[] termAlternates = new int[0];
   
   /**
    * Whether to ignore the case.
@@ -32,177 +57,276 @@ public final class SoundFilter implements TermFilter
   
   /**
    * Initializes the filter with the source term and
-   * whether to ignore case on searches.
+   * whether to ignore case on searches, using Soundex.
    * 
    * @param word the source term
    * @param bIgnoreCase whether to ignore the case of string comparisons
    */
   public SoundFilter(final String word, final boolean bIgnoreCase)
   {
-    termCode = getSoundexCode(word);
+    this(word, bIgnoreCase, Soundex.INSTANCE);
+  }
+  
+  
+  /**
+   * Initializes the filter with the source term, whether
+   * to ignore case on searches, and the phonetic encoder.
+   * 
+   * @param word the source term
+   * @param bIgnoreCase whether to ignore the case of string comparisons
+   * @param phoneticEncoder the encoder for the codes
+   */
+  public SoundFilter(final String word,
+                     final boolean bIgnoreCase,
+                     final PhoneticEncoder phoneticEncoder)
+  {
+    term = word;
     ignoreCase = bIgnoreCase;
+    encoder = phoneticEncoder;
+    setCodes();
   }
   
   
   /**
-   * Determines if the term matches the source term.
+   * Returns whether a character is part of a word.  A word is a
+   * run of letters and digits, which may have apostrophes inside
+   * it (one at a time, between two letters or digits).
    * 
-   * @param word the term to compare to the source term
-   * @return whether the terms match
+   * @param str the string
+   * @param index the index of the character
+   * @return whether the character is in a word
    */
-  public boolean accept(final String word)
+  public static boolean isWordChar(final CharSequence str, final int index)
   {
-    // Compute the soundex code
-    final String wordCode = getSoundexCode(word);
-    
-    // Neither is null, so check how to compare the strings
-    if (ignoreCase)
-    {
-      // Ignore the case
-      return (wordCode.equalsIgnoreCase(termCode));
-    }
-    else
+    final char ch = str.charAt(index);
+    if (Character.isLetterOrDigit(ch))
     {
-      // Consider the case
-      return (wordCode.equals(termCode));
+      return true;
     }
+    
+    return ((ch == '\'') && (index > 0) && (index + 1 < str.length()) &&
+            (Character.isLetterOrDigit(str.charAt(index - 1))) &&
+            (Character.isLetterOrDigit(str.charAt(index + 1))));
   }
   
   
   /**
-   * Returns the integer value for a character.
-   * 
-   * @param ch the character to get the value for
-   * @return the value for the specified character
+   * Compute the codes of the distinct words in the source term.
+   * Words without a code are skipped.
    */
-  private static int getIntValue(final char ch)
+  private void setCodes()
   {
-    int n = 0;
-    
-    switch (ch)
+    if (term == null)
     {
-      case 'b':
-      case 'f':
-      case 'p':
-      case 'v':
-      {
-        n = 1;
-        break;
-      }
-    
-      case 'c':
-      case 'g':
-      case 'j':
-      case 'k':
-      case 'q':
-      case 's':
-      case 'x':
-      case 'z':
-      {
-        n = 2;
-        break;
-      }
-    
-      case 'd':
-      case 't':
-      {
-        n = 3;
-        break;
-      }
+      return;
+    }
     
-      case 'l':
+    int[] codes = new int[8];
+    int[] alternates = new int[8];
+    int count = 0;
+    final int len = term.length();
+    int start = -1;
+    for (int i = 0; i <= len; ++i)
+    {
+      final boolean inWord = ((i < len) && (isWordChar(term, i)));
+      if ((inWord) && (start < 0))
       {
-        n = 4;
-        break;
+        start = i;
       }
-    
-      case 'm':
-      case 'n':
+      else if ((!inWord) && (start >= 0))
       {
-        n = 5;
-        break;
+        // Save the codes, if they're new
+        final int code = encoder.encode(term, start, i, ignoreCase);
+        final int alternate = ((encoder.hasAlternate())
+            ? encoder.encodeAlternate(term, start, i, ignoreCase) : code);
+        if ((code != 0) && (indexOf(codes, alternates, count, code,
+                                    alternate) < 0))
+        {
+          if (count == codes.length)
+          {
+            codes = Arrays.copyOf(codes, count * 2);
+            alternates = Arrays.copyOf(alternates, count * 2);
+          }
+          codes[count] = code;
+          alternates[count] = alternate;
+          ++count;
+        }
+        start = -1;
       }
+    }
     
-      case 'r':
+    termCodes = Arrays.copyOf(codes, count);
+    termAlternates = Arrays.copyOf(alternates, count);
+  }
+  
+  
+  /**
+   * Returns the index of a pair of codes in the first part of
+   * the arrays.
+   * 
+   * @param codes the codes
+   * @param alternates the alternate codes
+   * @param count the number of codes to check
+   * @param code the code to find
+   * @param alternate the alternate code to find
+   * @return the index, or -1 if not found
+   */
+  private static int indexOf(final int[] codes,
+                             final int[] alternates,
+                             final int count,
+                             final int code,
+                             final int alternate)
+  {
+    for (int i = 0; i < count; ++i)
+    {
+      if ((codes[i] == code) && (alternates[i] == alternate))
       {
-        n = 6;
-        break;
+        return i;
       }
-    
-      default:
-        n = 0;
     }
     
-    return n;
+    return -1;
+  }
+  
+  
+  /**
+   * Returns the source term.
+   * 
+   * @return the source term
+   */
+  public String getTerm()
+  {
+    return term;
   }
   
   
   /**
-   * Calculates the Soundex code for a string.
+   * Returns the encoder for the codes.
    * 
-   * @param sInput the input string
-   * @return the Soundex code for the string
+   * @return the phonetic encoder
    */
-  private static String getSoundexCode(final String sInput)
+  public PhoneticEncoder getEncoder()
+  {
+    return encoder;
+  }
+  
+  
+  /**
+   * Returns the number of distinct words in the source term
+   * that have a code.
+   * 
+   * @return the number of codes
+   */
+  public int getCodeCount()
+  {
+    return termCodes.length;
+  }
+  
+  
+  /**
+   * Returns the code of one of the words in the source term.
+   * 
+   * @param index the index of the word
+   * @return the packed code
+   */
+  public int getCode(final int index)
+  {
+    return termCodes[index];
+  }
+  
+  
+  /**
+   * Returns the alternate code of one of the words in the
+   * source term.
+   * 
+   * @param index the index of the word
+   * @return the packed code (the same as the code if the
+   *         encoder has no alternates)
+   */
+  public int getAlternateCode(final int index)
+  {
+    return termAlternates[index];
+  }
+  
+  
+  /**
+   * Determines if the term matches the source term.
+   * 
+   * @param word the term to compare to the source term
+   * @return whether the terms match
+   */
+  public boolean accept(final String word)
   {
     // Check the input
-    if ((sInput == null) || (sInput.length() < 1))
+    if ((word == null) || (termCodes.length == 0))
     {
-      return "";
+      return false;
     }
     
-    // Declare our string variable to hold the soundex code
-    StringBuilder buf = new StringBuilder(10);
-    
-    // The first character of the string is the start
-    // of the soundex code
-    buf.append(sInput.charAt(0));
-    
-    // Convert the string to lower case
-    final String sWord = sInput.toLowerCase();
-    
-    // Save the value of the first character, to check
-    // for duplicates later
-    int nPrevValue = getIntValue(sWord.charAt(0));
-    
-    // Initialize this variable
-    int nCurrValue = -1;
-    
-    // Save the length of the string
-    final int nLen = sWord.length();
-    
-    // Iterate over each character in the word, until
-    // we have enough to fill the soundex code (the
-    // form is A999 - a character followed by 3 digits).
-    for (int i = 1; (i < nLen) && (buf.length() < 4); ++i)
+    // Mark the words of the source term that sound like a word
+    // in the term.  Terms with more than 64 distinct words are
+    // too long to be real searches, so only the first 64 are
+    // checked.
+    final int numCodes = Math.min(termCodes.length, 64);
+    final long all = ((numCodes == 64) ? -1L : ((1L << numCodes) - 1L));
+    final boolean hasAlternate = encoder.hasAlternate();
+    long found = 0L;
+    final int len = word.length();
+    int start = -1;
+    for (int i = 0; (i <= len) && (found != all); ++i)
     {
-      // Get the integer value for the current character
-      nCurrValue = getIntValue(sWord.charAt(i));
-      
-      // Make sure the current value is not a duplicate of
-      // the previous value, and the current value is non-zero
-      if ((nCurrValue != nPrevValue) && (nCurrValue != 0))
+      final boolean inWord = ((i < len) && (isWordChar(word, i)));
+      if ((inWord) && (start < 0))
       {
-        buf.append(Integer.toString(nCurrValue));
+        start = i;
       }
-      
-      // Save the current value as the previous value
-      nPrevValue = nCurrValue;
-    }
-    
-    // Check the length of the string
-    int nSize = buf.length() - 4;
-    if (nSize < 0)
-    {
-      // The string is too short, so append zeros
-      while (nSize < 0)
+      else if ((!inWord) && (start >= 0))
       {
-        buf.append("0");
-        ++nSize;
+        final int code = encoder.encode(word, start, i, ignoreCase);
+        final int alternate = ((hasAlternate)
+            ? encoder.encodeAlternate(word, start, i, ignoreCase) : code);
+        if (code != 0)
+        {
+          for (int j = 0; j < numCodes; ++j)
+          {
+            if ((code == termCodes[j]) || (code == termAlternates[j]) ||
+                (alternate == termCodes[j]) ||
+                (alternate == termAlternates[j]))
+            {
+              found |= (1L << j);
+            }
+          }
+        }
+        start = -1;
       }
     }
     
-    // Return the generated soundex code for the input string
-    return buf.toString();
+    return (found == all);
+  }
+  
+  
+  /**
+   * Returns whether the filter ignores case.
+   * 
+   * @return whether the filter ignores case
+   */
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
+  }
+  
+  
+  /**
+   * Determines if the term matches the source term, where the
+   * term is already in lower case.
+   * 
+   * @param lowerWord the lower-case term to compare to the source term
+   * @return whether the terms match
+   */
+  public boolean acceptLowerCase(final String lowerWord)
+  {
+    // The codes are computed ignoring case, so the lower-case
+    // term matches the same way as the original
+    return accept(lowerWord);
   }
 }
@@ -0,0 +1,213 @@
+package io.miti.drinky.filter;
+
+/**
+ * Compute Soundex codes.  A Soundex code is the first character of
+ * a word followed by three digits for the consonant sounds after it
+ * (e.g., "R163" for "Robert").  The code is packed into an int, with
+ * the first character in the high bits and a digit in each of the
+ * low three nibbles, so codes can be compared and indexed without
+ * building strings.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class Soundex implements PhoneticEncoder
+{
+  /**
+   * The one instance of the encoder.
+   */
+  public static final Soundex INSTANCE = new Soundex();
+  
+  
+  /**
+   * Default constructor.
+   */
+  private Soundex()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Returns the integer value for a character.
+   * 
+   * @param ch the character to get the value for
+   * @return the value for the specified character
+   */
+  private static int getIntValue(final char ch)
+  {
+    int n = 0;
+    
+    switch (ch)
+    {
+      case 'b':
+      case 'f':
+      case 'p':
+      case 'v':
+      {
+        n = 1;
+        break;
+      }
+      
+      case 'c':
+      case 'g':
+      case 'j':
+      case 'k':
+      case 'q':
+      case 's':
+      case 'x':
+      case 'z':
+      {
+        n = 2;
+        break;
+      }
+      
+      case 'd':
+      case 't':
+      {
+        n = 3;
+        break;
+      }
+      
+      case 'l':
+      {
+        n = 4;
+        break;
+      }
+      
+      case 'm':
+      case 'n':
+      {
+        n = 5;
+        break;
+      }
+      
+      case 'r':
+      {
+        n = 6;
+        break;
+      }
+      
+      default:
+        n = 0;
+    }
+    
+    return n;
+  }
+  
+  
+  /**
+   * Returns the Soundex code for part of a string, packed into an int.
+   * 
+   * @param str the string
+   * @param start the index of the first character of the word
+   * @param end the index after the last character of the word
+   * @param ignoreCase whether to ignore the case of the first character
+   * @return the packed code, or 0 if the word is empty
+   */
+  public int encode(final CharSequence str,
+                    final int start,
+                    final int end,
+                    final boolean ignoreCase)
+  {
+    // Check the input
+    if (start >= end)
+    {
+      return 0;
+    }
+    
+    // The first character of the word is the start of the code
+    final char first = str.charAt(start);
+    int code = ((ignoreCase) ? Character.toLowerCase(first) : first);
+    
+    // Save the value of the first character, to check
+    // for duplicates later
+    int nPrevValue = getIntValue(Character.toLowerCase(first));
+    
+    // Add a digit for each consonant sound, skipping duplicates,
+    // until there are three
+    int digits = 0;
+    for (int i = start + 1; (i < end) && (digits < 3); ++i)
+    {
+      final char ch = Character.toLowerCase(str.charAt(i));
+      final int nCurrValue = getIntValue(ch);
+      if ((nCurrValue != nPrevValue) && (nCurrValue != 0))
+      {
+        code = (code << 4) | nCurrValue;
+        ++digits;
+      }
+      
+      nPrevValue = nCurrValue;
+    }
+    
+    // Pad the code with zeros
+    for (; digits < 3; ++digits)
+    {
+      code <<= 4;
+    }
+    
+    return code;
+  }
+  
+  
+  /**
+   * Returns the name of the algorithm.
+   * 
+   * @return the name of the algorithm
+   */
+  public String getName()
+  {
+    return "Soundex";
+  }
+  
+  
+  /**
+   * Returns whether the algorithm gives words an alternate code.
+   * 
+   * @return false
+   */
+  public boolean hasAlternate()
+  {
+    return false;
+  }
+  
+  
+  /**
+   * Returns the alternate code for part of a string, which
+   * is the same as the code.
+   * 
+   * @param str the string
+   * @param start the index of the first character of the word
+   * @param end the index after the last character of the word
+   * @param ignoreCase whether to ignore the case of the first character
+   * @return the packed code, or 0 if the word is empty
+   */
+  public int encodeAlternate(final CharSequence str,
+                             final int start,
+                             final int end,
+                             final boolean ignoreCase)
+  {
+    return encode(str, start, end, ignoreCase);
+  }
+  
+  
+  /**
+   * Returns the Soundex code as a string (e.g., "R163").
+   * 
+   * @param code the packed code
+   * @return the code as a string
+   */
+  public static String format(final int code)
+  {
+    if (code == 0)
+    {
+      return "";
+    }
+    
+    StringBuilder buf = new StringBuilder(4);
+    buf.append((char) (code >>> 12));
+    buf.append((code >>> 8) & 0xF).append((code >>> 4) & 0xF);
+    buf.append(code & 0xF);
+    return buf.toString();
+  }
+}
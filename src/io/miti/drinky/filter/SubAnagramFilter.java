@@ -0,0 +1,149 @@
+package io.miti.drinky.filter;
+
+/**
+ * Provide a filter for search terms that only
+ * accepts matches where the parameter to accept()
+ * can be spelled from the letters of the source term
+ * (passed in the constructor), using each letter no
+ * more often than it appears in the source term.
+ * Spaces are ignored.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class SubAnagramFilter implements FoldedTermFilter
+{
+  /**
+   * The sorted characters of the source term.
+   */
+  private final String term;
+  
+  /**
+   * The sorted characters of the source term in lower case.
+   */
+  private final String lowerTerm;
+  
+  /**
+   * Whether to ignore the case.
+   */
+  private final boolean ignoreCase;
+  
+  
+  /**
+   * Default constructor.
+   */
+  private SubAnagramFilter()
+  {
+    super();
+    term = null;
+    lowerTerm = null;
+    ignoreCase = false;
+  }
+  
+  
+  /**
+   * Initializes the filter with the source term and
+   * whether to ignore case on searches.
+   * 
+   * @param word the source term
+   * @param bIgnoreCase whether to ignore the case of string comparisons
+   */
+  public SubAnagramFilter(final String word, final boolean bIgnoreCase)
+  {
+    super();
+    ignoreCase = bIgnoreCase;
+    term = AnagramFilter.buildData(word, ignoreCase);
+    lowerTerm = AnagramFilter.buildData(word, true);
+  }
+  
+  
+  /**
+   * Returns the sorted characters of the source term in lower
+   * case, as used for the anagram index.
+   * 
+   * @return the lower-case signature of the source term
+   */
+  public String getLowerSignature()
+  {
+    return lowerTerm;
+  }
+  
+  
+  /**
+   * Returns whether the filter ignores case.
+   * 
+   * @return whether the filter ignores case
+   */
+  @Override
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
+  }
+  
+  
+  /**
+   * Determines if the term can be spelled from the source term.
+   * 
+   * @param word the term to compare to the source term
+   * @return whether the term can be spelled from the source term
+   */
+  @Override
+  public boolean accept(final String word)
+  {
+    return isSubset(AnagramFilter.buildData(word, ignoreCase), term);
+  }
+  
+  
+  /**
+   * Determines if the term can be spelled from the source term,
+   * where the term is already in lower case.
+   * 
+   * @param lowerWord the lower-case term to compare to the source term
+   * @return whether the term can be spelled from the source term
+   */
+  @Override
+  public boolean acceptLowerCase(final String lowerWord)
+  {
+    return isSubset(AnagramFilter.buildData(lowerWord, false), lowerTerm);
+  }
+  
+  
+  /**
+   * Returns whether every character in one sorted string
+   * is matched by a different character in another.
+   * 
+   * @param sorted the sorted characters to look for
+   * @param source the sorted characters to take them from
+   * @return whether the first string is contained in the second
+   */
+  private static boolean isSubset(final String sorted,
+                                  final String source)
+  {
+    final int len = sorted.length();
+    final int sourceLen = source.length();
+    if (len > sourceLen)
+    {
+      return false;
+    }
+    
+    // Walk both strings in order, skipping the unused
+    // characters of the source
+    int j = 0;
+    for (int i = 0; i < len; ++i)
+    {
+      final char ch = sorted.charAt(i);
+      while ((j < sourceLen) && (source.charAt(j) < ch))
+      {
+        ++j;
+      }
+      
+      if ((j >= sourceLen) || (source.charAt(j) != ch))
+      {
+        return false;
+      }
+      ++j;
+    }
+    
+    return true;
+  }
+}
@@ -13,12 +13,12 @@ import java.util.StringTokenizer;
  * @author mwallace
  * @version 1.0
  */
-public final class WildcardFilter implements TermFilter
+public final class WildcardFilter implements FoldedTermFilter
 {
   /**
-   * The list of substrings in the string with wildcards.
+   * The compiled pattern.
    */
-  private List<String> fields = new ArrayList<String>(8);
+  private WildcardMatcher matcher = null;
   
   /**
    * Whether to ignore the case.
@@ -49,6 +49,19 @@ public final class WildcardFilter implements TermFilter
   }
   
   
+  /**
+   * Initializes the filter with a pattern that's already
+   * compiled, so it can be reused across searches.
+   * 
+   * @param compiled the compiled pattern
+   */
+  public WildcardFilter(final WildcardMatcher compiled)
+  {
+    ignoreCase = compiled.isIgnoreCase();
+    matcher = compiled;
+  }
+  
+  
   /**
    * Determines if the term matches the source term.
    * 
@@ -57,19 +70,7 @@ public final class WildcardFilter implements TermFilter
    */
   public boolean accept(final String word)
   {
-    // Check the two terms for nullness
-    if ((word == null) && (fields == null))
-    {
-      // They're both null
-      return true;
-    }
-    else if ((word == null) || (fields == null))
-    {
-      // One is null, the other is not
-      return false;
-    }
-    
-    // Neither is null, so compare the strings
+    // Compare the strings
     return (matchPattern(word));
   }
   
@@ -82,404 +83,92 @@ public final class WildcardFilter implements TermFilter
    */
   public boolean matchPattern(final String target)
   {
-    if (ignoreCase)
-    {
-      // Check the inputs.  If no pattern, assume it's a match.
-      if ((fields == null) || (fields.size() == 0))
-      {
-        return true;
-      }
-      else
-      {
-        // If we reach here, pattern is non-null and non-empty.  If target
-        // is null or empty, consider it a non-match.
-        if ((target == null) || (target.length() == 0))
-        {
-          return false;
-        }
-        else
-        {
-          return matchString(target.toUpperCase());
-        }
-      }
-    }
-    else
-    {
-      return matchString(target);
-    }
-  }
-  
-  
-  /**
-   * Returns whether target fits the pattern in pat.  This
-   * method assumes a match should be case-sensitive.
-   *
-   * @param target The target string to compare against the pattern
-   * @return whether target fits the pattern in pat
-   */
-  private boolean matchString(final String target)
-  {
-    // Store whether a match was found.  The initial value
-    // doesn't matter since we handle all cases below.
-    boolean match = false;
-    
-    // Check the inputs.  If no pattern, assume it's a match.
-    if ((fields == null) || (fields.size() == 0))
-    {
-      match = true;
-    }
-    else
+    if (target == null)
     {
-      // If we reach here, pattern is non-null and non-empty.  If target
-      // is null or empty, consider it a non-match.
-      if ((target == null) || (target.length() == 0))
-      {
-        match = false;
-      }
-      else
-      {
-        // Check for just a *, or no * at all
-        if (fields.size() == 1)
-        {
-          // Just one element in the list, meaning pat was either '*' or had
-          // no wildcards.
-          final String pat = fields.get(0);
-          if (null == pat)
-          {
-            // Just a * in the input, so it matches
-            match = true;
-          }
-          else
-          {
-            // No *, so return whether they're equal
-            match = equalsWild(target, pat);
-          }
-        }
-        else
-        {
-          // OK, call the pattern finder
-          match = findMatch(0, target, 0);
-        }
-      }
+      return false;
     }
     
-    // Return whether a match was found
-    return match;
+    return matcher.matches(target, 0, target.length());
   }
   
   
   /**
-   * This is a recursive method that does the work
-   * of checking for a match.  In the unoptimized
-   * version, this should only be called by the method
-   * matchFound.
+   * Compile the pattern.  The pattern is split into the
+   * substrings between the wildcards ('*'), which are
+   * converted to lower case if we're ignoring case; see
+   * WildcardMatcher for how they're matched.
    *
-   * @param nCurrPart The current part of the list we're checking
-   * @param target The string to compare against
-   * @param nCurrIndex The current index of target
-   * @return whether the pattern matches the target string
+   * @param pat the pattern
    */
-  private boolean findMatch(final int nCurrPart,
-                            final String target,
-                            final int nCurrIndex)
+  protected void parsePattern(final String pat)
   {
-    // Default return value
-    boolean found = false;
-    
-    // Check if we're looking past the end of the list
-    if (nCurrPart >= fields.size())
-    {
-      // We hit the end, so return.  I don't think this code
-      // is ever reached, but it's here just in case.
-      return true;
-    }
-    
-    // Save the current string in its own variable
-    String part = fields.get(nCurrPart);
-    
-    // Check if we're trying to find a match past the end of target
-    if (nCurrIndex >= target.length())
-    {
-      // If 'part' is * (null), return true; else, no match.
-      return (part == null);
-    }
-    else
-    {
-      // Check if we're on a *
-      if (part == null)
-      {
-        // We hit a *, so we're either at the start of the string, or at the end
-        if (nCurrPart == 0)
-        {
-          // It starts with *, so start looking with the next element of list
-          return (findMatch(1, target, 0)); 
-        }
-        else
-        {
-          // We're at the end of the list, so assume it matches
-          // (pattern ends with '*')
-          return true;
-        }
-      }
-      else
-      {
-        // See if we're looking at the last field
-        if (nCurrPart == (fields.size() - 1))
-        {
-          // We are, so return whether the target string ends with this string
-          return (endsWithWild(target, part));
-        }
-        
-        // Save the length
-        final int nLen = part.length();
-        
-        // Find the next occurrence of s[nCurrPart], starting after
-        // the current index
-        int foundIndex = indexOfWild(target, part, nCurrIndex);
-        
-        // Keep looking until the subsequent s partitions are all found
-        while ((foundIndex >= 0) && (!found))
-        {
-          // If there was no wildcard before 'part' (nCurrPart = 0), and
-          // the string was found after the point we started looking, then
-          // return false.
-          if ((foundIndex > nCurrIndex) && (nCurrPart == 0))
-          {
-            return false;
-          }
-          
-          // Find the next occurrence of the next s elements, starting after
-          // the end of the current match
-          found = findMatch((nCurrPart + 1), target, (foundIndex + nLen));
-          
-          // If no match found, find the next occurrence of part in target
-          if (!found)
-          {
-            // Store where it was found (if at all)
-            foundIndex = indexOfWild(target, part, ++foundIndex);
-          }
-        }
-      }
-    }
-    
-    // Return whether a match was found (in target) for the current element
-    // of list and all subsequent elements of list.
-    return found;
+    matcher = WildcardMatcher.compile(pat, ignoreCase);
   }
   
   
   /**
-   * This method determines whether two strings are equal.
-   * The 'part' argument is allowed to have a '?', which
-   * is interpreted to mean any single character.
-   *
-   * @param target The target string to compare with
-   * @param part The string with zero or more '?' characters
-   * @return whether the two strings match
+   * Returns the compiled pattern.
+   * 
+   * @return the compiled pattern
    */
-  private boolean equalsWild(final String target,
-                             final String part)
+  public WildcardMatcher getMatcher()
   {
-    boolean bEquals = true;
-    
-    // Check the input strings
-    if ((target == null) || (part == null))
-    {
-      return false;
-    }
-    
-    // Check if part has a wildcard
-    if (part.indexOf("?") < 0)
-    {
-      // No wildcard, so call the String::indexOf() function
-      return target.equals(part);
-    }
-    
-    // part has a wildcard
-    // Check the length
-    if (target.length() != part.length())
-    {
-      // Lengths are different
-      return false;
-    }
-    
-    // The lengths are the same, so check each character
-    final int nLen = target.length();
-    for (int nIndex = 0; (nIndex < nLen) && (bEquals); ++nIndex)
-    {
-      // Save the current character in each string
-      char targetChar = target.charAt(nIndex);
-      char partChar = part.charAt(nIndex);
-      
-      // Check for a mismatch
-      if ((partChar != '?') && (partChar != targetChar))
-      {
-        // The characters don't match, and the current part character
-        // is not a question mark, so the strings don't match
-        bEquals = false;
-      }
-    }
-    
-    // Return whether the strings are equal
-    return bEquals;
+    return matcher;
   }
   
   
   /**
-   * This method determines whether 'target' ends with 'part'.
-   * The 'part' argument is allowed to have a '?', which is
-   * interpreted to mean any single character.
-   *
-   * @param target The target string to compare with
-   * @param part The string with zero or more '?' characters
-   * @return whether target ends with part
+   * Returns whether the filter ignores case.
+   * 
+   * @return whether the filter ignores case
    */
-  private boolean endsWithWild(final String target,
-                               final String part)
+  public boolean isIgnoreCase()
   {
-    // Check the input strings
-    if ((target == null) || (part == null))
-    {
-      return false;
-    }
-    
-    // Check if part has a wildcard
-    if (part.indexOf("?") < 0)
-    {
-      // No wildcard, so call the String::indexOf() function
-      return target.endsWith(part);
-    }
-    
-    // part has a wildcard
-    // Check the length
-    if (target.length() < part.length())
-    {
-      // The string isn't long enough
-      return false;
-    }
-    
-    // Get the end of the target string
-    String targetEnd = target.substring(target.length() - part.length());
-    
-    // Return whether targetEnd equals part
-    return equalsWild(targetEnd, part);
+    return ignoreCase;
   }
   
   
   /**
-   * This method checks for the existence of the string 'part'
-   * within the string 'target', starting at target[fromIndex].
-   * The 'part' argument is allowed to have a '?', which is
-   * interpreted to mean any single character.
-   *
-   * @param target The target string to compare with
-   * @param part The string with zero or more '?' characters
-   * @param fromIndex the starting index of target
-   * @return the index at which part exists within target
+   * Determines if the term matches the source term, where the
+   * term is already in lower case.
+   * 
+   * @param lowerWord the lower-case term to compare to the source term
+   * @return whether the terms match
    */
-  private int indexOfWild(final String target,
-                          final String part,
-                          final int fromIndex)
+  public boolean acceptLowerCase(final String lowerWord)
   {
-    // Declare needed variables
-    boolean bFound = false;
-    int nFoundIndex = fromIndex;
-    
-    // Check the input strings
-    if ((target == null) || (part == null) || (fromIndex < 0))
+    // Check the term for nullness
+    if (lowerWord == null)
     {
-      return -1;
-    }
-    
-    // Check if part has a wildcard
-    if (part.indexOf("?") < 0)
-    {
-      // No wildcard, so call the String::indexOf() function
-      return target.indexOf(part, fromIndex);
-    }
-    
-    // part has a wildcard
-    // Check the starting index
-    final int nTargetLen = target.length();
-    final int nPartLen = part.length();
-    if ((nPartLen + fromIndex) > nTargetLen)
-    {
-      // The starting index is too high
-      return -1;
-    }
-    
-    // Check for the existence of part as a substring in target
-    for (int nIndex = fromIndex; (!bFound) &&
-         ((nPartLen + nIndex) <= nTargetLen); ++nIndex)
-    {
-      String targetSub = target.substring(nIndex, (nIndex + nPartLen));
-      if (equalsWild(targetSub, part))
-      {
-        nFoundIndex = nIndex;
-        bFound = true;
-      }
-    }
-    
-    // Check if not found
-    if (!bFound)
-    {
-      return -1;
+      return false;
     }
     
-    // Return the index that part was found at in target
-    return nFoundIndex;
+    // The pattern is already in lower case
+    return matcher.matchesLowerCase(lowerWord, 0, lowerWord.length());
   }
   
   
   /**
-   * This method separates a String containing one or more
-   * wildcards ('*') into a List of substrings.  Each
-   * element of the List is the substring of 'pat' between
-   * wildcards (e.g., "ab*cd" is two elements: "ab" and "cd").
-   * Also, if pat starts with a wildcard, the first element
-   * of the list will be null.  If pat ends with a wildcard,
-   * the last element of the list will be null.
-   *
-   * @param pat the string to parse into a list
+   * Returns the literal text in the pattern: the parts between
+   * the wildcards ('*' and '?'), in order.  Every match contains
+   * all of them.
+   * 
+   * @return the literal parts of the pattern
    */
-  protected void parsePattern(final String pat)
+  public List<String> getLiterals()
   {
-    // Check the input.  If no pattern, return null.
-    if ((pat == null) || (pat.length() == 0))
-    {
-      return;
-    }
-    
-    // If pat begins with *, add null to the list.
-    if (pat.startsWith("*"))
+    final int count = matcher.getSegmentCount();
+    List<String> literals = new ArrayList<String>(count);
+    for (int i = 0; i < count; ++i)
     {
-      fields.add(null);
-    }
-    
-    // Parse the input string (skip over consecutive adjacent *)
-    StringTokenizer tokenizer = new StringTokenizer(pat, "*");
-    while (tokenizer.hasMoreTokens())
-    {
-      // Get the token.  If we're ignoring case, convert to uppercase.
-      if (ignoreCase)
-      {
-        fields.add(tokenizer.nextToken().toUpperCase());
-      }
-      else
+      StringTokenizer tokenizer =
+        new StringTokenizer(matcher.getSegment(i), "?");
+      while (tokenizer.hasMoreTokens())
       {
-        fields.add(tokenizer.nextToken());
+        literals.add(tokenizer.nextToken());
       }
     }
     
-    // If the string ends with a *, and there's at least one non-* before it,
-    // add null to the end of the list.
-    if ((fields.size() > 1) ||
-        ((fields.size() == 1) && (fields.get(0) != null)))
-    {
-      if (pat.endsWith("*"))
-      {
-        fields.add(null);
-      }
-    }
+    return literals;
   }
 }
@@ -0,0 +1,390 @@
+package io.miti.drinky.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compiled wildcard pattern, where '*' matches any number of
+ * characters and '?' matches any one character.  The pattern is
+ * split at the '*' characters into segments.  The first segment
+ * must match at the start of the text (unless the pattern starts
+ * with '*'), the last at the end (unless it ends with '*'), and
+ * each one in between is matched at the first place it fits
+ * after the previous one.  Taking the first place is always safe,
+ * since it leaves the most room for the segments after it, so the
+ * matcher never backtracks and doesn't allocate anything.
+ * 
+ * Matchers are immutable, so one can be shared between filters
+ * and threads.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class WildcardMatcher
+{
+  /**
+   * The text between the '*' characters, in order.
+   */
+  private final char[][] segments;
+  
+  /**
+   * Whether the first segment must be at the start of the text.
+   */
+  private final boolean anchorStart;
+  
+  /**
+   * Whether the last segment must be at the end of the text.
+   */
+  private final boolean anchorEnd;
+  
+  /**
+   * Whether the pattern is empty, so it matches anything.
+   */
+  private final boolean empty;
+  
+  /**
+   * The total length of the segments.
+   */
+  private final int minLength;
+  
+  /**
+   * Whether the segments are in lower case, and the text
+   * is compared ignoring case.
+   */
+  private final boolean ignoreCase;
+  
+  
+  /**
+   * Compile a pattern.
+   * 
+   * @param pattern the pattern
+   * @param bIgnoreCase whether to ignore case
+   */
+  private WildcardMatcher(final String pattern, final boolean bIgnoreCase)
+  {
+    super();
+    ignoreCase = bIgnoreCase;
+    empty = ((pattern == null) || (pattern.length() == 0));
+    
+    // Split the pattern at each run of '*' characters
+    List<char[]> list = new ArrayList<char[]>(4);
+    int length = 0;
+    final String pat = ((empty) ? "" : pattern);
+    final int len = pat.length();
+    int start = 0;
+    while (start < len)
+    {
+      int end = pat.indexOf('*', start);
+      if (end < 0)
+      {
+        end = len;
+      }
+      
+      if (end > start)
+      {
+        final String segment = pat.substring(start, end);
+        list.add(((ignoreCase) ? segment.toLowerCase() : segment)
+                 .toCharArray());
+        length += list.get(list.size() - 1).length;
+      }
+      start = end + 1;
+    }
+    
+    segments = list.toArray(new char[list.size()][]);
+    minLength = length;
+    anchorStart = ((len > 0) && (pat.charAt(0) != '*'));
+    anchorEnd = ((len > 0) && (pat.charAt(len - 1) != '*'));
+  }
+  
+  
+  /**
+   * Compile a pattern.
+   * 
+   * @param pattern the pattern (null or empty matches anything)
+   * @param bIgnoreCase whether to ignore case
+   * @return the compiled pattern
+   */
+  public static WildcardMatcher compile(final String pattern,
+                                        final boolean bIgnoreCase)
+  {
+    return new WildcardMatcher(pattern, bIgnoreCase);
+  }
+  
+  
+  /**
+   * Returns whether the matcher ignores case.
+   * 
+   * @return whether the matcher ignores case
+   */
+  public boolean isIgnoreCase()
+  {
+    return ignoreCase;
+  }
+  
+  
+  /**
+   * Returns whether the first segment must be at the start
+   * of the text (the pattern doesn't start with '*').
+   * 
+   * @return whether the pattern is anchored at the start
+   */
+  public boolean isAnchoredStart()
+  {
+    return anchorStart;
+  }
+  
+  
+  /**
+   * Returns whether the last segment must be at the end
+   * of the text (the pattern doesn't end with '*').
+   * 
+   * @return whether the pattern is anchored at the end
+   */
+  public boolean isAnchoredEnd()
+  {
+    return anchorEnd;
+  }
+  
+  
+  /**
+   * Returns the literal text that every match starts with: the
+   * first segment up to its first '?', if the pattern is anchored
+   * at the start.
+   * 
+   * @return the literal prefix (may be empty)
+   */
+  public String getLiteralPrefix()
+  {
+    if ((!anchorStart) || (segments.length == 0))
+    {
+      return "";
+    }
+    
+    final char[] segment = segments[0];
+    int len = 0;
+    while ((len < segment.length) && (segment[len] != '?'))
+    {
+      ++len;
+    }
+    
+    return new String(segment, 0, len);
+  }
+  
+  
+  /**
+   * Returns the literal text that every match ends with: the
+   * last segment after its last '?', if the pattern is anchored
+   * at the end.
+   * 
+   * @return the literal suffix (may be empty)
+   */
+  public String getLiteralSuffix()
+  {
+    if ((!anchorEnd) || (segments.length == 0))
+    {
+      return "";
+    }
+    
+    final char[] segment = segments[segments.length - 1];
+    int start = segment.length;
+    while ((start > 0) && (segment[start - 1] != '?'))
+    {
+      --start;
+    }
+    
+    return new String(segment, start, segment.length - start);
+  }
+  
+  
+  /**
+   * Returns the number of segments in the pattern.
+   * 
+   * @return the number of segments
+   */
+  public int getSegmentCount()
+  {
+    return segments.length;
+  }
+  
+  
+  /**
+   * Returns one segment of the pattern: the text between two
+   * '*' characters, in lower case if the matcher ignores case.
+   * 
+   * @param index the index of the segment
+   * @return the segment
+   */
+  public String getSegment(final int index)
+  {
+    return new String(segments[index]);
+  }
+  
+  
+  /**
+   * Returns whether part of a string matches the pattern.  An
+   * empty string only matches an empty pattern.
+   * 
+   * @param text the string
+   * @param start the index of the first character to match
+   * @param end the index after the last character to match
+   * @return whether the text matches
+   */
+  public boolean matches(final CharSequence text,
+                         final int start,
+                         final int end)
+  {
+    return match(text, start, end, ignoreCase);
+  }
+  
+  
+  /**
+   * Returns whether part of a string, which is already in lower
+   * case if the matcher ignores case, matches the pattern.
+   * 
+   * @param text the string
+   * @param start the index of the first character to match
+   * @param end the index after the last character to match
+   * @return whether the text matches
+   */
+  public boolean matchesLowerCase(final CharSequence text,
+                                  final int start,
+                                  final int end)
+  {
+    return match(text, start, end, false);
+  }
+  
+  
+  /**
+   * Returns whether part of a string matches the pattern.
+   * 
+   * @param text the string
+   * @param start the index of the first character to match
+   * @param end the index after the last character to match
+   * @param lower whether to convert the text to lower case
+   * @return whether the text matches
+   */
+  private boolean match(final CharSequence text,
+                        final int start,
+                        final int end,
+                        final boolean lower)
+  {
+    if (empty)
+    {
+      return true;
+    }
+    else if ((end <= start) || ((end - start) < minLength))
+    {
+      return false;
+    }
+    
+    final int count = segments.length;
+    if ((count == 1) && (anchorStart) && (anchorEnd))
+    {
+      // No '*', so the whole text must match
+      return (((end - start) == segments[0].length) &&
+              (matchesAt(segments[0], text, start, lower)));
+    }
+    
+    // Match the anchored segments at the ends of the text
+    int pos = start;
+    int limit = end;
+    int first = 0;
+    int last = count;
+    if (anchorStart)
+    {
+      if (!matchesAt(segments[0], text, start, lower))
+      {
+        return false;
+      }
+      pos += segments[0].length;
+      ++first;
+    }
+    if (anchorEnd)
+    {
+      limit = end - segments[count - 1].length;
+      if ((limit < pos) ||
+          (!matchesAt(segments[count - 1], text, limit, lower)))
+      {
+        return false;
+      }
+      --last;
+    }
+    
+    // Put each remaining segment at the first place it fits
+    for (int i = first; i < last; ++i)
+    {
+      final int index = indexOf(segments[i], text, pos, limit, lower);
+      if (index < 0)
+      {
+        return false;
+      }
+      pos = index + segments[i].length;
+    }
+    
+    return true;
+  }
+  
+  
+  /**
+   * Returns the first index at which a segment matches the
+   * text, within a range.
+   * 
+   * @param segment the segment
+   * @param text the string
+   * @param from the first index to try
+   * @param limit the index the match must end by
+   * @param lower whether to convert the text to lower case
+   * @return the index of the match, or -1 if there's none
+   */
+  private static int indexOf(final char[] segment,
+                             final CharSequence text,
+                             final int from,
+                             final int limit,
+                             final boolean lower)
+  {
+    final int last = limit - segment.length;
+    for (int i = from; i <= last; ++i)
+    {
+      if (matchesAt(segment, text, i, lower))
+      {
+        return i;
+      }
+    }
+    
+    return -1;
+  }
+  
+  
+  /**
+   * Returns whether a segment matches the text at an index.
+   * 
+   * @param segment the segment
+   * @param text the string, with room for the segment at the index
+   * @param index the index in the text
+   * @param lower whether to convert the text to lower case
+   * @return whether the segment matches
+   */
+  private static boolean matchesAt(final char[] segment,
+                                   final CharSequence text,
+                                   final int index,
+                                   final boolean lower)
+  {
+    for (int i = 0; i < segment.length; ++i)
+    {
+      final char ch = segment[i];
+      if (ch == '?')
+      {
+        continue;
+      }
+      
+      final char textChar = text.charAt(index + i);
+      if ((ch != textChar) &&
+          ((!lower) || (ch != Character.toLowerCase(textChar))))
+      {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+}
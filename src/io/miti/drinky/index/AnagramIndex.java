@@ -0,0 +1,282 @@
+package io.miti.drinky.index;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.miti.drinky.data.SearchText;
+import io.miti.drinky.filter.AnagramFilter;
+
+/**
+ * An index of the drink names by their letters, for anagram
+ * searches.  The signature of a name is its non-space characters
+ * in lower case, sorted, so two names are anagrams if they have
+ * the same signature.  The index maps each signature to the
+ * drinks with it.
+ * 
+ * For sub-anagram searches (names that can be spelled from the
+ * letters of the search term), each signature is also stored as
+ * a vector of how often each character occurs in it, with a mask
+ * of the characters it uses.  The signatures are kept in order of
+ * length, so a search stops at the first one longer than the term.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class AnagramIndex
+{
+  /**
+   * The drinks with each signature.
+   */
+  private final Map<String, int[]> drinksBySignature;
+  
+  /**
+   * The characters used in any signature, sorted.  The position
+   * of a character in this array is its slot in the vectors.
+   */
+  private final char[] alphabet;
+  
+  /**
+   * The length of each signature, in ascending order.
+   */
+  private final int[] lengths;
+  
+  /**
+   * The mask of the slots used by each signature, with
+   * slot i stored in bit (i % 64).
+   */
+  private final long[] masks;
+  
+  /**
+   * The index of the first entry of each signature's vector in
+   * vectorSlots and vectorCounts, plus one more for the end of
+   * the last vector.
+   */
+  private final int[] vectorStarts;
+  
+  /**
+   * The slot of each entry in the vectors.
+   */
+  private final int[] vectorSlots;
+  
+  /**
+   * The number of times the character of each entry in the
+   * vectors occurs in the signature.
+   */
+  private final int[] vectorCounts;
+  
+  /**
+   * The drinks with each signature, in the order of lengths.
+   */
+  private final int[][] drinks;
+  
+  
+  /**
+   * Build the index of the drink names.
+   * 
+   * @param text the search text
+   */
+  private AnagramIndex(final SearchText text)
+  {
+    super();
+    
+    // Collect the drinks with each signature; a missing
+    // name has the same (empty) signature as a blank one
+    Map<String, IntList> map = new HashMap<String, IntList>(8192);
+    final int numDrinks = text.size();
+    for (int id = 0; id < numDrinks; ++id)
+    {
+      final String signature =
+        AnagramFilter.buildData(text.getLowerName(id), false);
+      IntList list = map.get(signature);
+      if (list == null)
+      {
+        list = new IntList(1);
+        map.put(signature, list);
+      }
+      list.add(id);
+    }
+    
+    // Order the signatures by length
+    String[] signatures = map.keySet().toArray(new String[map.size()]);
+    Arrays.sort(signatures, new Comparator<String>()
+    {
+      public int compare(final String s1, final String s2)
+      {
+        final int diff = s1.length() - s2.length();
+        return ((diff != 0) ? diff : s1.compareTo(s2));
+      }
+    });
+    
+    // Collect the characters used
+    boolean[] used = new boolean[Character.MAX_VALUE + 1];
+    int numChars = 0;
+    for (String signature : signatures)
+    {
+      final int len = signature.length();
+      for (int i = 0; i < len; ++i)
+      {
+        final char ch = signature.charAt(i);
+        if (!used[ch])
+        {
+          used[ch] = true;
+          ++numChars;
+        }
+      }
+    }
+    alphabet = new char[numChars];
+    int slot = 0;
+    for (int ch = 0; ch < used.length; ++ch)
+    {
+      if (used[ch])
+      {
+        alphabet[slot++] = (char) ch;
+      }
+    }
+    
+    // Store the vector of each signature; since the characters
+    // are sorted, each run of one character is one entry
+    final int count = signatures.length;
+    drinksBySignature = new HashMap<String, int[]>(count * 2);
+    lengths = new int[count];
+    masks = new long[count];
+    vectorStarts = new int[count + 1];
+    drinks = new int[count][];
+    IntList slots = new IntList(count * 8);
+    IntList counts = new IntList(count * 8);
+    for (int i = 0; i < count; ++i)
+    {
+      final String signature = signatures[i];
+      final int len = signature.length();
+      lengths[i] = len;
+      vectorStarts[i] = slots.size();
+      drinks[i] = map.get(signature).toArray();
+      drinksBySignature.put(signature, drinks[i]);
+      
+      int j = 0;
+      while (j < len)
+      {
+        final char ch = signature.charAt(j);
+        int end = j + 1;
+        while ((end < len) && (signature.charAt(end) == ch))
+        {
+          ++end;
+        }
+        
+        final int charSlot = findSlot(ch);
+        slots.add(charSlot);
+        counts.add(end - j);
+        masks[i] |= (1L << (charSlot & 63));
+        j = end;
+      }
+    }
+    vectorStarts[count] = slots.size();
+    vectorSlots = slots.toArray();
+    vectorCounts = counts.toArray();
+  }
+  
+  
+  /**
+   * Build the index of the drink names.
+   * 
+   * @param text the search text
+   * @return the index
+   */
+  public static AnagramIndex build(final SearchText text)
+  {
+    return new AnagramIndex(text);
+  }
+  
+  
+  /**
+   * Returns the number of distinct signatures.
+   * 
+   * @return the number of signatures
+   */
+  public int getSignatureCount()
+  {
+    return lengths.length;
+  }
+  
+  
+  /**
+   * Returns the drinks whose name is an anagram of a term.
+   * 
+   * @param lowerSignature the lower-case signature of the term
+   * @return the drink IDs, in ascending order
+   */
+  public int[] findAnagrams(final String lowerSignature)
+  {
+    final int[] list = drinksBySignature.get(lowerSignature);
+    return ((list == null) ? Postings.EMPTY : list);
+  }
+  
+  
+  /**
+   * Returns the drinks whose name can be spelled from the
+   * letters of a term.
+   * 
+   * @param lowerSignature the lower-case signature of the term
+   * @return the drink IDs, in ascending order
+   */
+  public int[] findSubAnagrams(final String lowerSignature)
+  {
+    // Count the characters of the term; any that aren't
+    // in the alphabet can't be used by a name
+    int[] termCounts = new int[alphabet.length];
+    long termMask = 0L;
+    final int termLength = lowerSignature.length();
+    for (int i = 0; i < termLength; ++i)
+    {
+      final int slot = findSlot(lowerSignature.charAt(i));
+      if (slot >= 0)
+      {
+        ++termCounts[slot];
+        termMask |= (1L << (slot & 63));
+      }
+    }
+    
+    IntList matches = new IntList(64);
+    for (int i = 0; (i < lengths.length) && (lengths[i] <= termLength); ++i)
+    {
+      if ((masks[i] & ~termMask) != 0L)
+      {
+        continue;
+      }
+      
+      boolean fits = true;
+      final int end = vectorStarts[i + 1];
+      for (int j = vectorStarts[i]; (j < end) && (fits); ++j)
+      {
+        fits = (vectorCounts[j] <= termCounts[vectorSlots[j]]);
+      }
+      
+      if (fits)
+      {
+        for (int id : drinks[i])
+        {
+          matches.add(id);
+        }
+      }
+    }
+    
+    // Each drink has one signature, so there are no duplicates
+    int[] result = matches.toArray();
+    Arrays.sort(result);
+    return result;
+  }
+  
+  
+  /**
+   * Returns the slot of a character in the vectors.
+   * 
+   * @param ch the character
+   * @return the slot, or -1 if no signature uses the character
+   */
+  private int findSlot(final char ch)
+  {
+    final int slot = Arrays.binarySearch(alphabet, ch);
+    return ((slot < 0) ? -1 : slot);
+  }
+}
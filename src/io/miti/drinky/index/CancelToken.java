@@ -0,0 +1,62 @@
+package io.miti.drinky.index;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * A flag that lets one thread ask another to stop a search.
+ * The search checks the token as it goes, and throws a
+ * CancellationException once the token is cancelled.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class CancelToken
+{
+  /**
+   * Whether the search should stop.
+   */
+  private volatile boolean cancelled = false;
+  
+  
+  /**
+   * Create a token that isn't cancelled.
+   */
+  public CancelToken()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Ask the search to stop.
+   */
+  public void cancel()
+  {
+    cancelled = true;
+  }
+  
+  
+  /**
+   * Returns whether the search should stop.
+   * 
+   * @return whether the token was cancelled
+   */
+  public boolean isCancelled()
+  {
+    return cancelled;
+  }
+  
+  
+  /**
+   * Stop the search if the token was cancelled.
+   * 
+   * @throws CancellationException if the token was cancelled
+   */
+  public void check()
+  {
+    if (cancelled)
+    {
+      throw new CancellationException("The search was cancelled");
+    }
+  }
+}
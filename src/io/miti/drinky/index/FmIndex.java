@@ -0,0 +1,1288 @@
+package io.miti.drinky.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import io.miti.drinky.app.DrinkNode;
+import io.miti.drinky.app.Utility;
+import io.miti.drinky.data.Corpus;
+import io.miti.drinky.data.SearchText;
+
+/**
+ * An FM-index of all the text of the drinks (the names, the
+ * ingredients and the instructions, in lower case), for finding any
+ * substring without scanning the text.  The text is stored as its
+ * Burrows-Wheeler transform in a wavelet matrix, which takes a few
+ * bits per character; counting the occurrences of a pattern takes
+ * two rank queries per character of the pattern, and finding where
+ * each one is walks back to the nearest sampled suffix array entry.
+ * 
+ * Each field of each drink is a separate document in the text, so
+ * an occurrence maps back to a drink and a field.  Fields are
+ * numbered as in SearchText, with FIELD_INSTRUCTIONS added.  The
+ * index can be written to a file next to the data file (drinks.fmi)
+ * and read back instead of being built again; the file holds a
+ * checksum of the text, so a stale file can be detected.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class FmIndex
+{
+  /**
+   * The field ID for the instructions.
+   */
+  public static final int FIELD_INSTRUCTIONS = 2;
+  
+  /**
+   * The extension of an index file.
+   */
+  public static final String FILE_EXTENSION = ".fmi";
+  
+  /**
+   * The number of fields per drink.
+   */
+  private static final int NUM_FIELDS = 3;
+  
+  /**
+   * The magic number at the start of an index file ("DFMI").
+   */
+  private static final int MAGIC = 0x44464D49;
+  
+  /**
+   * The version of the file format.
+   */
+  private static final int VERSION = 1;
+  
+  /**
+   * The code for the end of the text.
+   */
+  private static final int CODE_END = 0;
+  
+  /**
+   * The code for the end of a document.
+   */
+  private static final int CODE_SEPARATOR = 1;
+  
+  /**
+   * The first code for a character of the text.
+   */
+  private static final int FIRST_CHAR_CODE = 2;
+  
+  /**
+   * One suffix array entry is kept for every this many
+   * positions in the text.
+   */
+  private static final int SAMPLE_RATE = 16;
+  
+  /**
+   * The most array elements to allocate ahead of reading them, so
+   * a bad length in a truncated or corrupt file ends in an
+   * IOException rather than running out of memory.
+   */
+  private static final int READ_CHUNK = 65536;
+  
+  /**
+   * The checksum of the text.
+   */
+  private final int checksum;
+  
+  /**
+   * The length of the text, including the end code.
+   */
+  private final int length;
+  
+  /**
+   * The characters of the text, sorted; the code of
+   * alphabet[i] is FIRST_CHAR_CODE + i.
+   */
+  private final char[] alphabet;
+  
+  /**
+   * For each code, the number of positions in the text
+   * with a smaller code.
+   */
+  private final int[] counts;
+  
+  /**
+   * The Burrows-Wheeler transform of the text.
+   */
+  private final WaveletMatrix bwt;
+  
+  /**
+   * Which rows of the suffix array are sampled.
+   */
+  private final BitVector sampled;
+  
+  /**
+   * The text position of each sampled row, in row order.
+   */
+  private final int[] samples;
+  
+  /**
+   * The text position where each document starts.  Document
+   * (id * 3 + field) is the field of drink id.
+   */
+  private final int[] docStarts;
+  
+  
+  /**
+   * Build the index of a text.
+   * 
+   * @param text the codes of the text, ending with CODE_END
+   * @param chars the characters of the text, sorted
+   * @param starts the position where each document starts
+   * @param crc the checksum of the text
+   */
+  private FmIndex(final int[] text,
+                  final char[] chars,
+                  final int[] starts,
+                  final int crc)
+  {
+    super();
+    checksum = crc;
+    length = text.length;
+    alphabet = chars;
+    docStarts = starts;
+    
+    // Count the codes
+    final int numCodes = FIRST_CHAR_CODE + alphabet.length;
+    counts = new int[numCodes + 1];
+    for (int code : text)
+    {
+      ++counts[code + 1];
+    }
+    for (int i = 1; i <= numCodes; ++i)
+    {
+      counts[i] += counts[i - 1];
+    }
+    
+    // Take the character before each suffix, in suffix order,
+    // and sample the suffix array
+    final int[] sa = buildSuffixArray(text, numCodes);
+    final int[] last = new int[length];
+    final long[] sampleWords = new long[(length + 63) >>> 6];
+    final IntList sampleList = new IntList(length / SAMPLE_RATE + 1);
+    for (int row = 0; row < length; ++row)
+    {
+      final int pos = sa[row];
+      last[row] = ((pos == 0) ? text[length - 1] : text[pos - 1]);
+      if ((pos % SAMPLE_RATE) == 0)
+      {
+        sampleWords[row >>> 6] |= (1L << (row & 63));
+        sampleList.add(pos);
+      }
+    }
+    
+    bwt = new WaveletMatrix(last, numCodes);
+    sampled = new BitVector(sampleWords, length);
+    samples = sampleList.toArray();
+  }
+  
+  
+  /**
+   * Read an index from a stream.
+   * 
+   * @param in the stream, after the magic number and version
+   * @throws IOException on a read error
+   */
+  private FmIndex(final DataInputStream in) throws IOException
+  {
+    super();
+    checksum = in.readInt();
+    length = readLength(in, 1, Integer.MAX_VALUE);
+    alphabet = new char[readLength(in, 0, Character.MAX_VALUE + 1)];
+    for (int i = 0; i < alphabet.length; ++i)
+    {
+      alphabet[i] = in.readChar();
+    }
+    
+    // The counts must add up to the length of the text
+    final int numCodes = FIRST_CHAR_CODE + alphabet.length;
+    counts = readInts(in, numCodes + 1, numCodes + 1);
+    checkValues(counts, 0, length);
+    for (int i = 1; i <= numCodes; ++i)
+    {
+      if (counts[i] < counts[i - 1])
+      {
+        throw new IOException("Corrupt index file");
+      }
+    }
+    if (counts[numCodes] != length)
+    {
+      throw new IOException("Corrupt index file");
+    }
+    
+    final int numWords = (int) ((length + 63L) >>> 6);
+    bwt = new WaveletMatrix(in, length, numCodes);
+    sampled = new BitVector(readLongs(in, numWords, numWords), length);
+    samples = readInts(in, 0, length);
+    checkValues(samples, 0, length - 1);
+    docStarts = readInts(in, 0, length);
+    checkValues(docStarts, 0, length - 1);
+  }
+  
+  
+  /**
+   * Build the index of the text of a corpus.
+   * 
+   * @param text the search text of the corpus
+   * @param corpus the corpus
+   * @return the index
+   */
+  public static FmIndex build(final SearchText text, final Corpus corpus)
+  {
+    final String[] docs = getDocuments(text, corpus);
+    
+    // Find the characters used
+    boolean[] used = new boolean[Character.MAX_VALUE + 1];
+    int textLength = 1;
+    for (String doc : docs)
+    {
+      final int len = doc.length();
+      for (int i = 0; i < len; ++i)
+      {
+        used[doc.charAt(i)] = true;
+      }
+      textLength += len + 1;
+    }
+    
+    int numChars = 0;
+    for (boolean flag : used)
+    {
+      numChars += ((flag) ? 1 : 0);
+    }
+    char[] chars = new char[numChars];
+    int[] codes = new int[used.length];
+    int next = 0;
+    for (int ch = 0; ch < used.length; ++ch)
+    {
+      if (used[ch])
+      {
+        codes[ch] = FIRST_CHAR_CODE + next;
+        chars[next++] = (char) ch;
+      }
+    }
+    
+    // Join the documents, each followed by a separator
+    int[] codeText = new int[textLength];
+    int[] starts = new int[docs.length];
+    int pos = 0;
+    for (int d = 0; d < docs.length; ++d)
+    {
+      starts[d] = pos;
+      final String doc = docs[d];
+      final int len = doc.length();
+      for (int i = 0; i < len; ++i)
+      {
+        codeText[pos++] = codes[doc.charAt(i)];
+      }
+      codeText[pos++] = CODE_SEPARATOR;
+    }
+    codeText[pos] = CODE_END;
+    
+    return new FmIndex(codeText, chars, starts, getChecksum(docs));
+  }
+  
+  
+  /**
+   * Returns the checksum of the text of a corpus, to check
+   * whether a saved index is for the same text.
+   * 
+   * @param text the search text of the corpus
+   * @param corpus the corpus
+   * @return the checksum
+   */
+  public static int getChecksum(final SearchText text, final Corpus corpus)
+  {
+    return getChecksum(getDocuments(text, corpus));
+  }
+  
+  
+  /**
+   * Returns the documents of the index: the name, ingredients and
+   * instructions of each drink, in lower case, using the forms in
+   * the search text for the first two.
+   * 
+   * @param text the search text of the corpus
+   * @param corpus the corpus
+   * @return the documents
+   */
+  private static String[] getDocuments(final SearchText text,
+                                       final Corpus corpus)
+  {
+    final int size = text.size();
+    String[] docs = new String[size * NUM_FIELDS];
+    for (int id = 0; id < size; ++id)
+    {
+      final DrinkNode drink = corpus.getDrink(id);
+      final String instructions = ((drink == null) ? null
+                                   : drink.getInstructions());
+      final int base = id * NUM_FIELDS;
+      docs[base + SearchText.FIELD_NAME] = nonNull(text.getLowerName(id));
+      docs[base + SearchText.FIELD_INGREDIENTS] =
+        nonNull(text.getLowerIngredients(id));
+      docs[base + FIELD_INSTRUCTIONS] = ((instructions == null) ? ""
+          : Utility.foldAccents(instructions).toLowerCase());
+    }
+    
+    return docs;
+  }
+  
+  
+  /**
+   * Returns a string, or an empty string if it's null.
+   * 
+   * @param str the string
+   * @return the string (never null)
+   */
+  private static String nonNull(final String str)
+  {
+    return ((str == null) ? "" : str);
+  }
+  
+  
+  /**
+   * Returns the checksum of the documents.
+   * 
+   * @param docs the documents
+   * @return the checksum
+   */
+  private static int getChecksum(final String[] docs)
+  {
+    CRC32 crc = new CRC32();
+    byte[] buf = new byte[1024];
+    for (String doc : docs)
+    {
+      final int len = doc.length();
+      int n = 0;
+      for (int i = 0; i < len; ++i)
+      {
+        if (n >= (buf.length - 1))
+        {
+          crc.update(buf, 0, n);
+          n = 0;
+        }
+        final char ch = doc.charAt(i);
+        buf[n++] = (byte) (ch >>> 8);
+        buf[n++] = (byte) ch;
+      }
+      
+      // Mark the end of the document
+      crc.update(buf, 0, n);
+      crc.update(0xFF);
+    }
+    
+    return (int) crc.getValue();
+  }
+  
+  
+  /**
+   * Build the suffix array of a text by prefix doubling: sort the
+   * suffixes by their first character, then by their first 2, 4, 8
+   * characters and so on, using the ranks from the last round as
+   * the keys, until every suffix has its own rank.
+   * 
+   * @param text the codes of the text, ending with a unique
+   *             smallest code
+   * @param numCodes the number of codes
+   * @return the suffix array
+   */
+  private static int[] buildSuffixArray(final int[] text, final int numCodes)
+  {
+    final int n = text.length;
+    int[] sa = new int[n];
+    int[] rank = new int[n];
+    int[] tmp = new int[n];
+    int[] bucket = new int[Math.max(n, numCodes) + 1];
+    
+    // Sort by the first character
+    for (int i = 0; i < n; ++i)
+    {
+      ++bucket[text[i] + 1];
+    }
+    for (int i = 1; i <= numCodes; ++i)
+    {
+      bucket[i] += bucket[i - 1];
+    }
+    for (int i = 0; i < n; ++i)
+    {
+      sa[bucket[text[i]]++] = i;
+    }
+    int numRanks = 0;
+    for (int i = 0; i < n; ++i)
+    {
+      if ((i > 0) && (text[sa[i]] != text[sa[i - 1]]))
+      {
+        ++numRanks;
+      }
+      rank[sa[i]] = numRanks;
+    }
+    ++numRanks;
+    
+    for (int k = 1; numRanks < n; k <<= 1)
+    {
+      // Order the suffixes by the rank of the suffix k further
+      // on; the ones with nothing k further on come first
+      int j = 0;
+      for (int i = n - k; i < n; ++i)
+      {
+        tmp[j++] = i;
+      }
+      for (int i = 0; i < n; ++i)
+      {
+        if (sa[i] >= k)
+        {
+          tmp[j++] = sa[i] - k;
+        }
+      }
+      
+      // Then stable sort them by their own rank
+      Arrays.fill(bucket, 0, numRanks + 1, 0);
+      for (int i = 0; i < n; ++i)
+      {
+        ++bucket[rank[i] + 1];
+      }
+      for (int i = 1; i <= numRanks; ++i)
+      {
+        bucket[i] += bucket[i - 1];
+      }
+      for (int i = 0; i < n; ++i)
+      {
+        sa[bucket[rank[tmp[i]]]++] = tmp[i];
+      }
+      
+      // Compute the new ranks from the pairs of old ones
+      tmp[sa[0]] = 0;
+      numRanks = 1;
+      for (int i = 1; i < n; ++i)
+      {
+        final int a = sa[i - 1];
+        final int b = sa[i];
+        if ((rank[a] != rank[b]) ||
+            (getRank(rank, a + k) != getRank(rank, b + k)))
+        {
+          ++numRanks;
+        }
+        tmp[b] = numRanks - 1;
+      }
+      
+      final int[] swap = rank;
+      rank = tmp;
+      tmp = swap;
+    }
+    
+    return sa;
+  }
+  
+  
+  /**
+   * Returns the rank of a suffix, or -1 past the end of the text.
+   * 
+   * @param rank the rank of each suffix
+   * @param index the start of the suffix
+   * @return the rank
+   */
+  private static int getRank(final int[] rank, final int index)
+  {
+    return ((index < rank.length) ? rank[index] : -1);
+  }
+  
+  
+  /**
+   * Returns the name of the index file for a data file: the
+   * data file name with its extension replaced by ".fmi".
+   * 
+   * @param dataFileName the name (or path) of the data file
+   * @return the name of the index file
+   */
+  public static String getIndexFileName(final String dataFileName)
+  {
+    final int dot = dataFileName.lastIndexOf('.');
+    final int slash = Math.max(dataFileName.lastIndexOf('/'),
+                               dataFileName.lastIndexOf('\\'));
+    return (((dot > slash) ? dataFileName.substring(0, dot) : dataFileName)
+            + FILE_EXTENSION);
+  }
+  
+  
+  /**
+   * Read an index from a file.
+   * 
+   * @param inFile the input file
+   * @return the index
+   * @throws IOException on a read error or if it's not an index file
+   */
+  public static FmIndex readFile(final File inFile) throws IOException
+  {
+    InputStream is = null;
+    try
+    {
+      is = new FileInputStream(inFile);
+      return read(is);
+    }
+    finally
+    {
+      if (is != null)
+      {
+        is.close();
+      }
+    }
+  }
+  
+  
+  /**
+   * Read an index from a stream.  The stream is not closed.
+   * 
+   * @param is the input stream
+   * @return the index
+   * @throws IOException on a read error or if it's not an index file
+   */
+  public static FmIndex read(final InputStream is) throws IOException
+  {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+    if ((in.readInt() != MAGIC) || (in.readShort() != VERSION))
+    {
+      throw new IOException("Unrecognized index file format");
+    }
+    
+    return new FmIndex(in);
+  }
+  
+  
+  /**
+   * Write the index to a file.
+   * 
+   * @param outFile the output file
+   * @throws IOException on a write error
+   */
+  public void writeFile(final File outFile) throws IOException
+  {
+    OutputStream os = null;
+    try
+    {
+      os = new FileOutputStream(outFile);
+      write(os);
+      os.close();
+      os = null;
+    }
+    finally
+    {
+      if (os != null)
+      {
+        os.close();
+      }
+    }
+  }
+  
+  
+  /**
+   * Write the index to a stream.  The stream is not closed.
+   * 
+   * @param os the output stream
+   * @throws IOException on a write error
+   */
+  public void write(final OutputStream os) throws IOException
+  {
+    DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(os));
+    out.writeInt(MAGIC);
+    out.writeShort(VERSION);
+    out.writeInt(checksum);
+    out.writeInt(length);
+    out.writeInt(alphabet.length);
+    for (char ch : alphabet)
+    {
+      out.writeChar(ch);
+    }
+    writeInts(out, counts);
+    bwt.write(out);
+    writeLongs(out, sampled.words);
+    writeInts(out, samples);
+    writeInts(out, docStarts);
+    out.flush();
+  }
+  
+  
+  /**
+   * Write an array of ints, with its length first.
+   * 
+   * @param out the output stream
+   * @param values the array
+   * @throws IOException on a write error
+   */
+  private static void writeInts(final DataOutputStream out,
+                                final int[] values)
+    throws IOException
+  {
+    out.writeInt(values.length);
+    for (int value : values)
+    {
+      out.writeInt(value);
+    }
+  }
+  
+  
+  /**
+   * Write an array of longs, with its length first.
+   * 
+   * @param out the output stream
+   * @param values the array
+   * @throws IOException on a write error
+   */
+  private static void writeLongs(final DataOutputStream out,
+                                 final long[] values)
+    throws IOException
+  {
+    out.writeInt(values.length);
+    for (long value : values)
+    {
+      out.writeLong(value);
+    }
+  }
+  
+  
+  /**
+   * Read an array of ints written by writeInts().
+   * 
+   * @param in the input stream
+   * @param minLength the fewest values the array may have
+   * @param maxLength the most values the array may have
+   * @return the array
+   * @throws IOException on a read error, or a bad length
+   */
+  private static int[] readInts(final DataInputStream in,
+                                final int minLength,
+                                final int maxLength)
+    throws IOException
+  {
+    final int n = readLength(in, minLength, maxLength);
+    int[] values = new int[Math.min(n, READ_CHUNK)];
+    for (int i = 0; i < n; ++i)
+    {
+      if (i == values.length)
+      {
+        values = Arrays.copyOf(values, (int) Math.min(n, 2L * i));
+      }
+      values[i] = in.readInt();
+    }
+    
+    return values;
+  }
+  
+  
+  /**
+   * Read an array of longs written by writeLongs().
+   * 
+   * @param in the input stream
+   * @param minLength the fewest values the array may have
+   * @param maxLength the most values the array may have
+   * @return the array
+   * @throws IOException on a read error, or a bad length
+   */
+  private static long[] readLongs(final DataInputStream in,
+                                  final int minLength,
+                                  final int maxLength)
+    throws IOException
+  {
+    final int n = readLength(in, minLength, maxLength);
+    long[] values = new long[Math.min(n, READ_CHUNK)];
+    for (int i = 0; i < n; ++i)
+    {
+      if (i == values.length)
+      {
+        values = Arrays.copyOf(values, (int) Math.min(n, 2L * i));
+      }
+      values[i] = in.readLong();
+    }
+    
+    return values;
+  }
+  
+  
+  /**
+   * Read a length, and check that it's in range.
+   * 
+   * @param in the input stream
+   * @param min the smallest length allowed
+   * @param max the largest length allowed
+   * @return the length
+   * @throws IOException on a read error, or a bad length
+   */
+  private static int readLength(final DataInputStream in,
+                                final int min,
+                                final int max)
+    throws IOException
+  {
+    final int n = in.readInt();
+    if ((n < min) || (n > max))
+    {
+      throw new IOException("Corrupt index file (bad length " + n + ")");
+    }
+    
+    return n;
+  }
+  
+  
+  /**
+   * Check that the values read from a file are in range.
+   * 
+   * @param values the values
+   * @param min the smallest value allowed
+   * @param max the largest value allowed
+   * @throws IOException if a value is out of range
+   */
+  private static void checkValues(final int[] values,
+                                  final int min,
+                                  final int max)
+    throws IOException
+  {
+    for (int value : values)
+    {
+      if ((value < min) || (value > max))
+      {
+        throw new IOException("Corrupt index file");
+      }
+    }
+  }
+  
+  
+  /**
+   * Returns the checksum of the text the index was built from.
+   * 
+   * @return the checksum
+   */
+  public int getChecksum()
+  {
+    return checksum;
+  }
+  
+  
+  /**
+   * Returns the length of the indexed text.
+   * 
+   * @return the number of characters, including the separators
+   */
+  public int getLength()
+  {
+    return length;
+  }
+  
+  
+  /**
+   * Returns the number of times a string occurs in the text.
+   * 
+   * @param lowerPattern the string, in lower case
+   * @return the number of occurrences
+   */
+  public int count(final String lowerPattern)
+  {
+    final int[] range = findRange(lowerPattern);
+    return ((range == null) ? 0 : (range[1] - range[0]));
+  }
+  
+  
+  /**
+   * Returns where a string occurs in the text.  Use getDrink(),
+   * getField() and getOffset() to map a position to a drink.
+   * 
+   * @param lowerPattern the string, in lower case
+   * @return the text position of each occurrence, in no order
+   */
+  public int[] locate(final String lowerPattern)
+  {
+    final int[] range = findRange(lowerPattern);
+    if (range == null)
+    {
+      return Postings.EMPTY;
+    }
+    
+    int[] positions = new int[range[1] - range[0]];
+    for (int row = range[0]; row < range[1]; ++row)
+    {
+      positions[row - range[0]] = getPosition(row);
+    }
+    
+    return positions;
+  }
+  
+  
+  /**
+   * Returns the drinks with a field that contains a string at
+   * least a number of times (counting overlapping occurrences).
+   * 
+   * @param lowerPattern the string, in lower case
+   * @param field the field ID, or -1 for any field
+   * @param minOccurrences the minimum number of occurrences
+   * @return the drink IDs, in ascending order
+   */
+  public int[] findDrinks(final String lowerPattern,
+                          final int field,
+                          final int minOccurrences)
+  {
+    // Get the document of each occurrence in the field
+    final int[] positions = locate(lowerPattern);
+    int[] docs = new int[positions.length];
+    int count = 0;
+    for (int pos : positions)
+    {
+      final int doc = getDocument(pos);
+      if ((field < 0) || ((doc % NUM_FIELDS) == field))
+      {
+        docs[count++] = doc;
+      }
+    }
+    Arrays.sort(docs, 0, count);
+    
+    // Keep the drinks with enough occurrences in a document
+    IntList drinks = new IntList(Math.min(count, 100));
+    int i = 0;
+    while (i < count)
+    {
+      int j = i + 1;
+      while ((j < count) && (docs[j] == docs[i]))
+      {
+        ++j;
+      }
+      
+      final int id = docs[i] / NUM_FIELDS;
+      if (((j - i) >= minOccurrences) &&
+          ((drinks.size() == 0) || (drinks.getLast() != id)))
+      {
+        drinks.add(id);
+      }
+      i = j;
+    }
+    
+    return drinks.toArray();
+  }
+  
+  
+  /**
+   * Returns the drink of a text position.
+   * 
+   * @param position the position
+   * @return the drink ID
+   */
+  public int getDrink(final int position)
+  {
+    return (getDocument(position) / NUM_FIELDS);
+  }
+  
+  
+  /**
+   * Returns the field of a text position.
+   * 
+   * @param position the position
+   * @return the field ID
+   */
+  public int getField(final int position)
+  {
+    return (getDocument(position) % NUM_FIELDS);
+  }
+  
+  
+  /**
+   * Returns the offset of a text position in its field.
+   * 
+   * @param position the position
+   * @return the offset from the start of the field
+   */
+  public int getOffset(final int position)
+  {
+    return (position - docStarts[getDocument(position)]);
+  }
+  
+  
+  /**
+   * Returns the document that holds a text position.
+   * 
+   * @param position the position
+   * @return the document index
+   */
+  private int getDocument(final int position)
+  {
+    final int index = Arrays.binarySearch(docStarts, position);
+    return ((index >= 0) ? index : (-index - 2));
+  }
+  
+  
+  /**
+   * Returns the rows of the suffix array whose suffixes start
+   * with a string, by backward search.
+   * 
+   * @param lowerPattern the string, in lower case
+   * @return the first row and the row after the last, or null
+   *         if the string doesn't occur
+   */
+  private int[] findRange(final String lowerPattern)
+  {
+    int start = 0;
+    int end = length;
+    for (int i = lowerPattern.length() - 1; (i >= 0) && (start < end); --i)
+    {
+      final int index = Arrays.binarySearch(alphabet,
+                                            lowerPattern.charAt(i));
+      if (index < 0)
+      {
+        return null;
+      }
+      
+      final int code = FIRST_CHAR_CODE + index;
+      start = counts[code] + bwt.rank(code, start);
+      end = counts[code] + bwt.rank(code, end);
+    }
+    
+    return ((start < end) ? new int[] {start, end} : null);
+  }
+  
+  
+  /**
+   * Returns the text position of a row of the suffix array,
+   * by stepping back through the text to a sampled row.
+   * 
+   * @param row the row
+   * @return the position of the row's suffix in the text
+   */
+  private int getPosition(final int row)
+  {
+    int r = row;
+    int steps = 0;
+    while (!sampled.get(r))
+    {
+      r = bwt.lastToFirst(r, counts);
+      ++steps;
+    }
+    
+    return (samples[sampled.rank1(r)] + steps);
+  }
+  
+  
+  /**
+   * A fixed-length bit vector that counts the 1 bits before
+   * any position in constant time.
+   */
+  private static final class BitVector
+  {
+    /**
+     * The bits, 64 per word.
+     */
+    private final long[] words;
+    
+    /**
+     * The number of 1 bits before each block of four words.
+     */
+    private final int[] blockRanks;
+    
+    
+    /**
+     * Create the bit vector.
+     * 
+     * @param bits the bits, 64 per word
+     * @param size the number of bits
+     */
+    public BitVector(final long[] bits, final int size)
+    {
+      super();
+      words = bits;
+      blockRanks = new int[(words.length >>> 2) + 1];
+      int total = 0;
+      for (int i = 0; i <= words.length; ++i)
+      {
+        if ((i & 3) == 0)
+        {
+          blockRanks[i >>> 2] = total;
+        }
+        if (i < words.length)
+        {
+          total += Long.bitCount(words[i]);
+        }
+      }
+    }
+    
+    
+    /**
+     * Returns a bit.
+     * 
+     * @param index the position of the bit
+     * @return whether the bit is set
+     */
+    public boolean get(final int index)
+    {
+      return ((words[index >>> 6] & (1L << (index & 63))) != 0L);
+    }
+    
+    
+    /**
+     * Returns the number of 1 bits before a position.
+     * 
+     * @param index the position
+     * @return the number of 1 bits in [0, index)
+     */
+    public int rank1(final int index)
+    {
+      final int word = index >>> 6;
+      int rank = blockRanks[word >>> 2];
+      for (int i = word & ~3; i < word; ++i)
+      {
+        rank += Long.bitCount(words[i]);
+      }
+      
+      final int bit = index & 63;
+      if (bit != 0)
+      {
+        rank += Long.bitCount(words[word] & (-1L >>> (64 - bit)));
+      }
+      
+      return rank;
+    }
+  }
+  
+  
+  /**
+   * A wavelet matrix: a sequence of codes stored as one bit vector
+   * per bit of the codes, which can return the code at a position
+   * and count the occurrences of a code before a position, each in
+   * one step per bit.  At each level the sequence is reordered so
+   * the codes with a 0 in that bit come first.
+   */
+  private static final class WaveletMatrix
+  {
+    /**
+     * The bit vector for each level, from the high bit down.
+     */
+    private final BitVector[] levels;
+    
+    /**
+     * The number of 0 bits in each level.
+     */
+    private final int[] zeros;
+    
+    /**
+     * Where the first occurrence of each code ends up after
+     * the last level.
+     */
+    private final int[] codeStarts;
+    
+    
+    /**
+     * Build the matrix for a sequence of codes.
+     * 
+     * @param codes the codes (the array is reordered)
+     * @param numCodes the number of distinct codes
+     */
+    public WaveletMatrix(final int[] codes, final int numCodes)
+    {
+      super();
+      final int numLevels = Math.max(1,
+          32 - Integer.numberOfLeadingZeros(numCodes - 1));
+      levels = new BitVector[numLevels];
+      zeros = new int[numLevels];
+      
+      final int n = codes.length;
+      int[] current = codes;
+      int[] next = new int[n];
+      for (int level = 0; level < numLevels; ++level)
+      {
+        final int shift = numLevels - 1 - level;
+        long[] words = new long[(n + 63) >>> 6];
+        int numZeros = 0;
+        for (int i = 0; i < n; ++i)
+        {
+          if (((current[i] >>> shift) & 1) == 0)
+          {
+            ++numZeros;
+          }
+          else
+          {
+            words[i >>> 6] |= (1L << (i & 63));
+          }
+        }
+        
+        // Stable partition: the 0s, then the 1s
+        int z = 0;
+        int o = numZeros;
+        for (int i = 0; i < n; ++i)
+        {
+          if (((current[i] >>> shift) & 1) == 0)
+          {
+            next[z++] = current[i];
+          }
+          else
+          {
+            next[o++] = current[i];
+          }
+        }
+        
+        levels[level] = new BitVector(words, n);
+        zeros[level] = numZeros;
+        final int[] swap = current;
+        current = next;
+        next = swap;
+      }
+      
+      codeStarts = getCodeStarts();
+    }
+    
+    
+    /**
+     * Read a matrix written by write().
+     * 
+     * @param in the input stream
+     * @param n the length of the sequence
+     * @param numCodes the number of distinct codes
+     * @throws IOException on a read error, or a corrupt matrix
+     */
+    public WaveletMatrix(final DataInputStream in,
+                         final int n,
+                         final int numCodes)
+      throws IOException
+    {
+      super();
+      final int numLevels = in.readInt();
+      if (numLevels != Math.max(1,
+              32 - Integer.numberOfLeadingZeros(numCodes - 1)))
+      {
+        throw new IOException("Corrupt index file (bad number of levels)");
+      }
+      
+      final int numWords = (int) ((n + 63L) >>> 6);
+      levels = new BitVector[numLevels];
+      zeros = new int[numLevels];
+      for (int level = 0; level < numLevels; ++level)
+      {
+        zeros[level] = readLength(in, 0, n);
+        levels[level] = new BitVector(readLongs(in, numWords, numWords), n);
+      }
+      
+      codeStarts = getCodeStarts();
+    }
+    
+    
+    /**
+     * Returns where the first occurrence of each code ends up
+     * after the last level: the codes are ordered by their bits
+     * reversed, so this is the number of codes before it in that
+     * order.
+     * 
+     * @return the start of each code
+     */
+    private int[] getCodeStarts()
+    {
+      final int numLevels = levels.length;
+      int[] starts = new int[1 << numLevels];
+      for (int code = 0; code < starts.length; ++code)
+      {
+        int start = 0;
+        for (int level = 0; level < numLevels; ++level)
+        {
+          final BitVector bits = levels[level];
+          if (((code >>> (numLevels - 1 - level)) & 1) == 0)
+          {
+            start -= bits.rank1(start);
+          }
+          else
+          {
+            start = zeros[level] + bits.rank1(start);
+          }
+        }
+        starts[code] = start;
+      }
+      
+      return starts;
+    }
+    
+    
+    /**
+     * Write the matrix.
+     * 
+     * @param out the output stream
+     * @throws IOException on a write error
+     */
+    public void write(final DataOutputStream out) throws IOException
+    {
+      out.writeInt(levels.length);
+      for (int level = 0; level < levels.length; ++level)
+      {
+        out.writeInt(zeros[level]);
+        writeLongs(out, levels[level].words);
+      }
+    }
+    
+    
+    /**
+     * Returns counts[code] plus the number of times the code at a
+     * position occurs before it, for the code at that position.
+     * This is one step of the last-to-first mapping of a BWT, and
+     * takes one pass down the levels instead of get() and rank().
+     * 
+     * @param index the position
+     * @param counts the number of codes smaller than each code
+     * @return the mapped position
+     */
+    public int lastToFirst(final int index, final int[] counts)
+    {
+      int code = 0;
+      int i = index;
+      for (int level = 0; level < levels.length; ++level)
+      {
+        final BitVector bits = levels[level];
+        if (bits.get(i))
+        {
+          code = (code << 1) | 1;
+          i = zeros[level] + bits.rank1(i);
+        }
+        else
+        {
+          code <<= 1;
+          i -= bits.rank1(i);
+        }
+      }
+      
+      // The occurrences of a code are contiguous after the
+      // last level, and keep their order
+      return (counts[code] + (i - codeStarts[code]));
+    }
+    
+    
+    /**
+     * Returns the number of times a code occurs before a position.
+     * 
+     * @param code the code
+     * @param index the position
+     * @return the number of occurrences in [0, index)
+     */
+    public int rank(final int code, final int index)
+    {
+      int start = 0;
+      int end = index;
+      final int numLevels = levels.length;
+      for (int level = 0; level < numLevels; ++level)
+      {
+        final BitVector bits = levels[level];
+        if (((code >>> (numLevels - 1 - level)) & 1) == 0)
+        {
+          start -= bits.rank1(start);
+          end -= bits.rank1(end);
+        }
+        else
+        {
+          start = zeros[level] + bits.rank1(start);
+          end = zeros[level] + bits.rank1(end);
+        }
+      }
+      
+      return (end - start);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package io.miti.drinky.index;
+
+import java.io.File;
+
+import io.miti.drinky.data.Corpus;
+import io.miti.drinky.data.CorpusLoader;
+import io.miti.drinky.data.SearchText;
+
+/**
+ * Command-line tool to build the FM-index of a data file's text
+ * and write it next to the data file (e.g., drinks.fmi for
+ * drinks.dky), where the application will find it.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class FmIndexBuilder
+{
+  /**
+   * Default constructor.
+   */
+  private FmIndexBuilder()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Build the index of the input file and write it out.
+   * 
+   * @param args the data file, and optionally the index file
+   */
+  public static void main(final String[] args)
+  {
+    if ((args.length < 1) || (args.length > 2))
+    {
+      System.err.println("Usage: FmIndexBuilder <data file> [<index file>]");
+      System.exit(1);
+    }
+    
+    try
+    {
+      final File inFile = new File(args[0]);
+      final File outFile = new File((args.length > 1) ? args[1]
+                                    : FmIndex.getIndexFileName(args[0]));
+      final Corpus corpus = CorpusLoader.open(inFile);
+      final SearchText text = SearchText.build(corpus);
+      
+      final long start = System.nanoTime();
+      final FmIndex index = FmIndex.build(text, corpus);
+      final long buildMillis = (System.nanoTime() - start) / 1000000L;
+      index.writeFile(outFile);
+      
+      // Read it back to make sure it matches the data
+      final FmIndex check = FmIndex.readFile(outFile);
+      if ((check.getChecksum() != FmIndex.getChecksum(text, corpus)) ||
+          (check.getLength() != index.getLength()))
+      {
+        System.err.println("Verification failed: the index doesn't match");
+        System.exit(1);
+      }
+      
+      System.out.println("Indexed " + index.getLength() + " characters of " +
+          corpus.size() + " drinks in " + buildMillis + " ms; wrote " +
+          outFile.getPath() + " (" + outFile.length() + " bytes)");
+    }
+    catch (Exception e)
+    {
+      System.err.println("Exception: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+}
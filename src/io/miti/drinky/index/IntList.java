@@ -0,0 +1,136 @@
+package io.miti.drinky.index;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of ints, used to build posting lists
+ * without boxing each drink ID.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class IntList
+{
+  /**
+   * The values.
+   */
+  private int[] data;
+  
+  /**
+   * The number of values in the list.
+   */
+  private int size = 0;
+  
+  
+  /**
+   * Default constructor.
+   */
+  public IntList()
+  {
+    this(8);
+  }
+  
+  
+  /**
+   * Create a list with an initial capacity.
+   * 
+   * @param capacity the initial capacity
+   */
+  public IntList(final int capacity)
+  {
+    super();
+    data = new int[Math.max(capacity, 1)];
+  }
+  
+  
+  /**
+   * Add a value to the end of the list.
+   * 
+   * @param value the value to add
+   */
+  public void add(final int value)
+  {
+    if (size == data.length)
+    {
+      data = Arrays.copyOf(data, size * 2);
+    }
+    
+    data[size++] = value;
+  }
+  
+  
+  /**
+   * Returns a value.
+   * 
+   * @param index the index of the value
+   * @return the value
+   */
+  public int get(final int index)
+  {
+    if (index >= size)
+    {
+      throw new IndexOutOfBoundsException("Index: " + index);
+    }
+    
+    return data[index];
+  }
+  
+  
+  /**
+   * Replace a value.
+   * 
+   * @param index the index of the value
+   * @param value the new value
+   */
+  public void set(final int index, final int value)
+  {
+    if (index >= size)
+    {
+      throw new IndexOutOfBoundsException("Index: " + index);
+    }
+    
+    data[index] = value;
+  }
+  
+  
+  /**
+   * Returns the last value in the list.
+   * 
+   * @return the last value, or -1 if the list is empty
+   */
+  public int getLast()
+  {
+    return ((size == 0) ? -1 : data[size - 1]);
+  }
+  
+  
+  /**
+   * Returns the number of values in the list.
+   * 
+   * @return the size of the list
+   */
+  public int size()
+  {
+    return size;
+  }
+  
+  
+  /**
+   * Remove all values from the list.
+   */
+  public void clear()
+  {
+    size = 0;
+  }
+  
+  
+  /**
+   * Returns the values as an array.
+   * 
+   * @return a new array holding the values
+   */
+  public int[] toArray()
+  {
+    return Arrays.copyOf(data, size);
+  }
+}
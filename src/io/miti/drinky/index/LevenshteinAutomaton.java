@@ -0,0 +1,145 @@
+package io.miti.drinky.index;
+
+/**
+ * A Levenshtein automaton: it reads a string one character at a
+ * time, and says whether the string read so far is within a maximum
+ * edit distance of the query, and whether any string that starts
+ * with it could be.  Walking it down a trie visits only the names
+ * that could still match, instead of computing the distance to
+ * every name.
+ * 
+ * A state is a row of the edit distance table: the distance from
+ * each prefix of the query to the string read so far.  Distances
+ * above the maximum are all stored as the maximum plus one, and
+ * only the cells within the maximum distance of the diagonal are
+ * computed, since the others can't be in range.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class LevenshteinAutomaton
+{
+  /**
+   * The query.
+   */
+  private final String query;
+  
+  /**
+   * The maximum edit distance.
+   */
+  private final int maxDistance;
+  
+  /**
+   * The value stored for any distance above the maximum.
+   */
+  private final int tooFar;
+  
+  
+  /**
+   * Create the automaton for a query.
+   * 
+   * @param str the query
+   * @param distance the maximum edit distance (at least 0)
+   */
+  public LevenshteinAutomaton(final String str, final int distance)
+  {
+    super();
+    query = str;
+    maxDistance = distance;
+    tooFar = distance + 1;
+  }
+  
+  
+  /**
+   * Returns the number of values in a state.
+   * 
+   * @return the size of a state
+   */
+  public int getStateSize()
+  {
+    return (query.length() + 1);
+  }
+  
+  
+  /**
+   * Set the start state, before any characters are read.
+   * 
+   * @param state the state to set
+   */
+  public void start(final int[] state)
+  {
+    for (int j = 0; j < state.length; ++j)
+    {
+      state[j] = Math.min(j, tooFar);
+    }
+  }
+  
+  
+  /**
+   * Compute the state after reading one more character.
+   * 
+   * @param state the current state
+   * @param length the length of the string read, including the
+   *               new character
+   * @param ch the new character
+   * @param next the state to set
+   */
+  public void step(final int[] state,
+                   final int length,
+                   final char ch,
+                   final int[] next)
+  {
+    final int lo = length - maxDistance;
+    final int hi = length + maxDistance;
+    next[0] = Math.min(length, tooFar);
+    final int size = query.length();
+    for (int j = 1; j <= size; ++j)
+    {
+      if ((j < lo) || (j > hi))
+      {
+        next[j] = tooFar;
+        continue;
+      }
+      
+      final int cost = ((query.charAt(j - 1) == ch) ? 0 : 1);
+      int value = state[j - 1] + cost;
+      value = Math.min(value, state[j] + 1);
+      value = Math.min(value, next[j - 1] + 1);
+      next[j] = Math.min(value, tooFar);
+    }
+  }
+  
+  
+  /**
+   * Returns whether the string read is within the maximum
+   * distance of the query.
+   * 
+   * @param state the state
+   * @return whether the state accepts
+   */
+  public boolean isMatch(final int[] state)
+  {
+    return (state[query.length()] <= maxDistance);
+  }
+  
+  
+  /**
+   * Returns whether any string that starts with the string
+   * read could be within the maximum distance of the query.
+   * 
+   * @param state the state
+   * @return whether the state can still reach a match
+   */
+  public boolean canMatch(final int[] state)
+  {
+    for (int value : state)
+    {
+      if (value <= maxDistance)
+      {
+        return true;
+      }
+    }
+    
+    return false;
+  }
+}
@@ -0,0 +1,238 @@
+package io.miti.drinky.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.miti.drinky.data.SearchText;
+
+/**
+ * A trie of the lower-case drink names.  Each node is one character
+ * of a name, names with the same prefix share the nodes for it, and
+ * the node at the end of a name holds the drinks with that name.
+ * The nodes are stored in arrays, with the children of a node in a
+ * linked list in character order.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class NameTrie
+{
+  /**
+   * The character of each node (the root has none).
+   */
+  private final char[] labels;
+  
+  /**
+   * The first child of each node, or -1 if it has none.
+   */
+  private final int[] firstChild;
+  
+  /**
+   * The next sibling of each node, or -1 if it's the last child.
+   */
+  private final int[] nextSibling;
+  
+  /**
+   * The drinks whose name ends at each node, or null if none do.
+   */
+  private final int[][] drinks;
+  
+  /**
+   * The length of the longest name.
+   */
+  private final int maxDepth;
+  
+  
+  /**
+   * Build the trie of the drink names.
+   * 
+   * @param text the search text
+   */
+  private NameTrie(final SearchText text)
+  {
+    super();
+    
+    // Collect the drinks with each name
+    Map<String, IntList> map = new HashMap<String, IntList>(8192);
+    final int numDrinks = text.size();
+    for (int id = 0; id < numDrinks; ++id)
+    {
+      final String name = text.getLowerName(id);
+      if (name == null)
+      {
+        continue;
+      }
+      
+      IntList list = map.get(name);
+      if (list == null)
+      {
+        list = new IntList(1);
+        map.put(name, list);
+      }
+      list.add(id);
+    }
+    
+    // Add the names in sorted order, so each new node is the
+    // last child of its parent, and the nodes for the prefix
+    // shared with the previous name are already on the path
+    String[] names = map.keySet().toArray(new String[map.size()]);
+    Arrays.sort(names);
+    int longest = 0;
+    for (String name : names)
+    {
+      longest = Math.max(longest, name.length());
+    }
+    
+    IntList nodeLabels = new IntList(8192);
+    IntList nodeFirst = new IntList(8192);
+    IntList nodeNext = new IntList(8192);
+    IntList nodeLast = new IntList(8192);
+    nodeLabels.add(0);
+    nodeFirst.add(-1);
+    nodeNext.add(-1);
+    nodeLast.add(-1);
+    
+    int[] path = new int[longest + 1];
+    int[] ends = new int[names.length];
+    String prev = "";
+    for (int i = 0; i < names.length; ++i)
+    {
+      final String name = names[i];
+      final int len = name.length();
+      int depth = 0;
+      while ((depth < len) && (depth < prev.length()) &&
+             (name.charAt(depth) == prev.charAt(depth)))
+      {
+        ++depth;
+      }
+      
+      for (; depth < len; ++depth)
+      {
+        final int parent = path[depth];
+        final int node = nodeLabels.size();
+        nodeLabels.add(name.charAt(depth));
+        nodeFirst.add(-1);
+        nodeNext.add(-1);
+        nodeLast.add(-1);
+        if (nodeLast.get(parent) < 0)
+        {
+          nodeFirst.set(parent, node);
+        }
+        else
+        {
+          nodeNext.set(nodeLast.get(parent), node);
+        }
+        nodeLast.set(parent, node);
+        path[depth + 1] = node;
+      }
+      
+      ends[i] = path[len];
+      prev = name;
+    }
+    
+    final int count = nodeLabels.size();
+    labels = new char[count];
+    for (int i = 0; i < count; ++i)
+    {
+      labels[i] = (char) nodeLabels.get(i);
+    }
+    firstChild = nodeFirst.toArray();
+    nextSibling = nodeNext.toArray();
+    drinks = new int[count][];
+    for (int i = 0; i < names.length; ++i)
+    {
+      drinks[ends[i]] = map.get(names[i]).toArray();
+    }
+    maxDepth = longest;
+  }
+  
+  
+  /**
+   * Build the trie of the drink names.
+   * 
+   * @param text the search text
+   * @return the trie
+   */
+  public static NameTrie build(final SearchText text)
+  {
+    return new NameTrie(text);
+  }
+  
+  
+  /**
+   * Returns the number of nodes.
+   * 
+   * @return the number of nodes, including the root
+   */
+  public int getNodeCount()
+  {
+    return labels.length;
+  }
+  
+  
+  /**
+   * Returns the drinks whose name is within an edit distance
+   * of a string.
+   * 
+   * @param lowerTerm the lower-case string
+   * @param maxDistance the maximum edit distance
+   * @return the drink IDs, in ascending order
+   */
+  public int[] findSimilar(final String lowerTerm, final int maxDistance)
+  {
+    if (maxDistance < 0)
+    {
+      return Postings.EMPTY;
+    }
+    
+    // Walk the automaton down the trie, with one state per depth
+    LevenshteinAutomaton automaton =
+      new LevenshteinAutomaton(lowerTerm, maxDistance);
+    int[][] states = new int[maxDepth + 1][automaton.getStateSize()];
+    automaton.start(states[0]);
+    IntList matches = new IntList(16);
+    collect(automaton, 0, 0, states, matches);
+    
+    int[] result = matches.toArray();
+    Arrays.sort(result);
+    return result;
+  }
+  
+  
+  /**
+   * Add the drinks under a node whose names are accepted by the
+   * automaton, skipping any child the automaton can't match.
+   * 
+   * @param automaton the automaton
+   * @param node the node
+   * @param depth the depth of the node
+   * @param states the automaton state at each depth on the path
+   * @param matches the list to add the drinks to
+   */
+  private void collect(final LevenshteinAutomaton automaton,
+                       final int node,
+                       final int depth,
+                       final int[][] states,
+                       final IntList matches)
+  {
+    if ((drinks[node] != null) && (automaton.isMatch(states[depth])))
+    {
+      for (int id : drinks[node])
+      {
+        matches.add(id);
+      }
+    }
+    
+    for (int child = firstChild[node]; child >= 0;
+         child = nextSibling[child])
+    {
+      automaton.step(states[depth], depth + 1, labels[child],
+                     states[depth + 1]);
+      if (automaton.canMatch(states[depth + 1]))
+      {
+        collect(automaton, child, depth + 1, states, matches);
+      }
+    }
+  }
+}
@@ -0,0 +1,327 @@
+package io.miti.drinky.index;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import io.miti.drinky.filter.TermFilter;
+
+/**
+ * Checks a list of drinks against the filters on several threads.
+ * The drinks are split into chunks of CHUNK_SIZE, which are checked
+ * by a fork/join pool, and the matches are put back together in
+ * chunk order, so the results are the same as checking the drinks
+ * one at a time: the first matches (up to the limit) in ascending
+ * order.
+ * 
+ * With a limit, the chunks past the ones that hold the first
+ * matches don't need checking.  Once a chunk finds the limit by
+ * itself, or the finished chunks at the start of the list hold
+ * that many matches between them, the chunks after them are
+ * skipped, and any that are being checked stop early.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+final class ParallelScan
+{
+  /**
+   * The number of drinks in a chunk.
+   */
+  static final int CHUNK_SIZE = 1024;
+  
+  /**
+   * How often a chunk checks whether it's still needed (and
+   * whether the search was cancelled): every time the number
+   * of drinks checked is a multiple of this mask plus one.
+   */
+  private static final int STOP_CHECK_MASK = 0xFF;
+  
+  /**
+   * The pool that checks the chunks, with a thread per core.
+   */
+  private static final ForkJoinPool POOL = new ForkJoinPool();
+  
+  /**
+   * The engine that checks each drink.
+   */
+  private final SearchEngine engine;
+  
+  /**
+   * The drinks to check, in ascending order (null for all of them).
+   */
+  private final int[] ids;
+  
+  /**
+   * The number of drinks to check.
+   */
+  private final int count;
+  
+  /**
+   * The filter for the name (null for any).
+   */
+  private final TermFilter nameFilter;
+  
+  /**
+   * The filter for the ingredients (null for any).
+   */
+  private final TermFilter ingFilter;
+  
+  /**
+   * The maximum number of results.
+   */
+  private final int limit;
+  
+  /**
+   * The token to check for cancellation (null for none).
+   */
+  private final CancelToken token;
+  
+  /**
+   * The matches in each chunk (null until the chunk is done).
+   */
+  private final int[][] chunkMatches;
+  
+  /**
+   * The last chunk that may hold one of the first matches; the
+   * chunks after it aren't needed.
+   */
+  private volatile int lastNeeded;
+  
+  /**
+   * The number of chunks at the start that are done.
+   */
+  private int donePrefix = 0;
+  
+  /**
+   * The number of matches in the chunks at the start that are done.
+   */
+  private int prefixMatches = 0;
+  
+  
+  /**
+   * Create a scan.
+   * 
+   * @param searchEngine the engine that checks each drink
+   * @param drinks the drinks to check (null for all of them)
+   * @param size the number of drinks to check
+   * @param name the filter for the name (null for any)
+   * @param ing the filter for the ingredients (null for any)
+   * @param max the maximum number of results
+   * @param cancel the token to check for cancellation (null for none)
+   */
+  private ParallelScan(final SearchEngine searchEngine,
+                       final int[] drinks,
+                       final int size,
+                       final TermFilter name,
+                       final TermFilter ing,
+                       final int max,
+                       final CancelToken cancel)
+  {
+    super();
+    engine = searchEngine;
+    ids = drinks;
+    count = size;
+    nameFilter = name;
+    ingFilter = ing;
+    limit = max;
+    token = cancel;
+    chunkMatches = new int[(size + CHUNK_SIZE - 1) / CHUNK_SIZE][];
+    lastNeeded = chunkMatches.length - 1;
+  }
+  
+  
+  /**
+   * Returns the drinks that match both filters.
+   * 
+   * @param searchEngine the engine that checks each drink
+   * @param drinks the drinks to check, in ascending order
+   *        (null for all of them)
+   * @param size the number of drinks to check
+   * @param name the filter for the name (null for any)
+   * @param ing the filter for the ingredients (null for any)
+   * @param max the maximum number of results
+   * @param cancel the token to check for cancellation (null for none)
+   * @return the IDs of the matching drinks, in ascending order
+   * @throws java.util.concurrent.CancellationException if the
+   *         token is cancelled
+   */
+  static int[] search(final SearchEngine searchEngine,
+                      final int[] drinks,
+                      final int size,
+                      final TermFilter name,
+                      final TermFilter ing,
+                      final int max,
+                      final CancelToken cancel)
+  {
+    final ParallelScan scan = new ParallelScan(searchEngine, drinks, size,
+                                               name, ing, max, cancel);
+    POOL.invoke(scan.new ChunkTask(0, scan.chunkMatches.length));
+    return scan.getMatches();
+  }
+  
+  
+  /**
+   * Check the drinks in a chunk, unless the chunk isn't needed.
+   * 
+   * @param chunk the index of the chunk
+   */
+  private void checkChunk(final int chunk)
+  {
+    if (chunk > lastNeeded)
+    {
+      return;
+    }
+    
+    final int start = chunk * CHUNK_SIZE;
+    final int end = Math.min(count, start + CHUNK_SIZE);
+    IntList matches = new IntList(100);
+    for (int i = start; (i < end) && (matches.size() < limit); ++i)
+    {
+      if (((i - start) & STOP_CHECK_MASK) == 0)
+      {
+        if (token != null)
+        {
+          token.check();
+        }
+        
+        if (chunk > lastNeeded)
+        {
+          // An earlier chunk found enough matches
+          return;
+        }
+      }
+      
+      final int id = ((ids == null) ? i : ids[i]);
+      if (engine.matches(nameFilter, ingFilter, id))
+      {
+        matches.add(id);
+      }
+    }
+    
+    chunkDone(chunk, matches.toArray());
+  }
+  
+  
+  /**
+   * Save the matches in a chunk, and update which chunks are
+   * still needed.
+   * 
+   * @param chunk the index of the chunk
+   * @param matches the matches in the chunk
+   */
+  private synchronized void chunkDone(final int chunk, final int[] matches)
+  {
+    chunkMatches[chunk] = matches;
+    if (matches.length >= limit)
+    {
+      // This chunk holds enough matches by itself
+      lastNeeded = Math.min(lastNeeded, chunk);
+    }
+    
+    // Count the matches in the chunks at the start that are done
+    while ((donePrefix < chunkMatches.length) &&
+           (chunkMatches[donePrefix] != null) &&
+           (prefixMatches < limit))
+    {
+      prefixMatches += chunkMatches[donePrefix].length;
+      ++donePrefix;
+    }
+    
+    if (prefixMatches >= limit)
+    {
+      lastNeeded = Math.min(lastNeeded, donePrefix - 1);
+    }
+  }
+  
+  
+  /**
+   * Returns the first matches (up to the limit), once all the
+   * chunks that are needed are done.
+   * 
+   * @return the IDs of the matching drinks, in ascending order
+   */
+  private synchronized int[] getMatches()
+  {
+    // Every chunk up to the last one needed was checked, since
+    // a chunk is only skipped once it's past that one
+    int total = 0;
+    for (int i = 0; (i <= lastNeeded) && (total < limit); ++i)
+    {
+      total += chunkMatches[i].length;
+    }
+    
+    int[] result = new int[Math.min(total, limit)];
+    int size = 0;
+    for (int i = 0; size < result.length; ++i)
+    {
+      final int n = Math.min(chunkMatches[i].length, result.length - size);
+      System.arraycopy(chunkMatches[i], 0, result, size, n);
+      size += n;
+    }
+    
+    return result;
+  }
+  
+  
+  /**
+   * A task that checks a range of chunks, by splitting it in half
+   * until there's one chunk left.
+   */
+  private final class ChunkTask extends RecursiveAction
+  {
+    /**
+     * Default serial version ID.
+     */
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * The first chunk in the range.
+     */
+    private final int from;
+    
+    /**
+     * The chunk after the last one in the range.
+     */
+    private final int to;
+    
+    
+    /**
+     * Create a task for a range of chunks.
+     * 
+     * @param first the first chunk in the range
+     * @param end the chunk after the last one in the range
+     */
+    ChunkTask(final int first, final int end)
+    {
+      super();
+      from = first;
+      to = end;
+    }
+    
+    
+    /**
+     * Check the chunks in the range.
+     */
+    @Override
+    protected void compute()
+    {
+      if (from > lastNeeded)
+      {
+        // None of these chunks are needed
+        return;
+      }
+      
+      if (to - from <= 1)
+      {
+        if (from < to)
+        {
+          checkChunk(from);
+        }
+        return;
+      }
+      
+      final int mid = (from + to) >>> 1;
+      invokeAll(new ChunkTask(from, mid), new ChunkTask(mid, to));
+    }
+  }
+}
@@ -0,0 +1,216 @@
+package io.miti.drinky.index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.miti.drinky.data.SearchText;
+import io.miti.drinky.filter.PhoneticEncoder;
+import io.miti.drinky.filter.SoundFilter;
+
+/**
+ * An index from the phonetic code of each word in a field to
+ * the drinks with a word that has that code.  The words are split
+ * the same way SoundFilter splits them, so an apostrophe inside a
+ * word doesn't split it (unlike the tokens of a TokenIndex).  The
+ * distinct words are collected once for all the encoders, so each
+ * one is only encoded once per encoder.  If the encoder gives
+ * alternate codes, a word is indexed under both of its codes.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class PhoneticIndex
+{
+  /**
+   * The encoder for the codes.
+   */
+  private final PhoneticEncoder encoder;
+  
+  /**
+   * The codes, sorted.
+   */
+  private final int[] codes;
+  
+  /**
+   * The posting list of each code.
+   */
+  private final int[][] postings;
+  
+  
+  /**
+   * Build the index from the distinct words of a field.
+   * 
+   * @param words the lower-case words
+   * @param wordPostings the posting list of each word
+   * @param phoneticEncoder the encoder for the codes
+   */
+  private PhoneticIndex(final String[] words,
+                        final int[][] wordPostings,
+                        final PhoneticEncoder phoneticEncoder)
+  {
+    super();
+    encoder = phoneticEncoder;
+    
+    // Merge the posting lists of the words with the same code
+    Map<Integer, int[]> map = new HashMap<Integer, int[]>(2048);
+    final boolean hasAlternate = encoder.hasAlternate();
+    for (int i = 0; i < words.length; ++i)
+    {
+      final String word = words[i];
+      final int code = encoder.encode(word, 0, word.length(), true);
+      if (code == 0)
+      {
+        continue;
+      }
+      
+      addPostings(map, code, wordPostings[i]);
+      if (hasAlternate)
+      {
+        final int alternate = encoder.encodeAlternate(word, 0,
+                                                      word.length(), true);
+        if (alternate != code)
+        {
+          addPostings(map, alternate, wordPostings[i]);
+        }
+      }
+    }
+    
+    // Sort the codes, for the binary search
+    codes = new int[map.size()];
+    int index = 0;
+    for (Integer code : map.keySet())
+    {
+      codes[index++] = code.intValue();
+    }
+    Arrays.sort(codes);
+    
+    postings = new int[codes.length][];
+    for (int i = 0; i < codes.length; ++i)
+    {
+      postings[i] = map.get(Integer.valueOf(codes[i]));
+    }
+  }
+  
+  
+  /**
+   * Build an index of one field for each of several encoders.
+   * 
+   * @param text the search text
+   * @param field the field ID in the search text
+   * @param encoders the encoders
+   * @return the index for each encoder
+   */
+  public static PhoneticIndex[] build(final SearchText text,
+                                      final int field,
+                                      final PhoneticEncoder[] encoders)
+  {
+    // Collect the drinks with each distinct word, in drink order
+    Map<String, IntList> map = new HashMap<String, IntList>(4096);
+    final int size = text.size();
+    for (int id = 0; id < size; ++id)
+    {
+      final String str = text.getLowerText(field, id);
+      if (str == null)
+      {
+        continue;
+      }
+      
+      final int len = str.length();
+      int start = -1;
+      for (int i = 0; i <= len; ++i)
+      {
+        final boolean inWord = ((i < len) && (SoundFilter.isWordChar(str, i)));
+        if ((inWord) && (start < 0))
+        {
+          start = i;
+        }
+        else if ((!inWord) && (start >= 0))
+        {
+          final String word = str.substring(start, i);
+          IntList list = map.get(word);
+          if (list == null)
+          {
+            list = new IntList(4);
+            map.put(word, list);
+          }
+          
+          // Only add each drink once
+          if (list.getLast() != id)
+          {
+            list.add(id);
+          }
+          start = -1;
+        }
+      }
+    }
+    
+    final String[] words = map.keySet().toArray(new String[map.size()]);
+    int[][] wordPostings = new int[words.length][];
+    for (int i = 0; i < words.length; ++i)
+    {
+      wordPostings[i] = map.get(words[i]).toArray();
+    }
+    
+    PhoneticIndex[] indexes = new PhoneticIndex[encoders.length];
+    for (int i = 0; i < encoders.length; ++i)
+    {
+      indexes[i] = new PhoneticIndex(words, wordPostings, encoders[i]);
+    }
+    
+    return indexes;
+  }
+  
+  
+  /**
+   * Add the drinks for a word to the posting list of a code.
+   * 
+   * @param map the posting list of each code
+   * @param code the code
+   * @param list the drinks with the word
+   */
+  private static void addPostings(final Map<Integer, int[]> map,
+                                  final int code,
+                                  final int[] list)
+  {
+    final Integer key = Integer.valueOf(code);
+    final int[] current = map.get(key);
+    map.put(key, ((current == null) ? list
+                  : Postings.union(current, list)));
+  }
+  
+  
+  /**
+   * Returns the encoder for the codes.
+   * 
+   * @return the phonetic encoder
+   */
+  public PhoneticEncoder getEncoder()
+  {
+    return encoder;
+  }
+  
+  
+  /**
+   * Returns the number of distinct codes.
+   * 
+   * @return the number of codes
+   */
+  public int getCodeCount()
+  {
+    return codes.length;
+  }
+  
+  
+  /**
+   * Returns the drinks with a word that has a code.
+   * 
+   * @param code the packed code (computed ignoring case)
+   * @return the posting list
+   */
+  public int[] getPostings(final int code)
+  {
+    final int index = Arrays.binarySearch(codes, code);
+    return ((index < 0) ? Postings.EMPTY : postings[index]);
+  }
+}
@@ -0,0 +1,189 @@
+package io.miti.drinky.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Helper methods for posting lists.  A posting list is a sorted
+ * array of distinct drink IDs.  A null list means there is no
+ * restriction (every drink is a candidate), so null is the
+ * identity for intersect() and absorbs everything in union().
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class Postings
+{
+  /**
+   * The empty posting list.
+   */
+  public static final int[] EMPTY = new int[0];
+  
+  
+  /**
+   * Default constructor.
+   */
+  private Postings()
+  {
+    super();
+  }
+  
+  
+  /**
+   * Returns the drinks in both lists.
+   * 
+   * @param a the first list (null for all drinks)
+   * @param b the second list (null for all drinks)
+   * @return the intersection of the lists
+   */
+  public static int[] intersect(final int[] a, final int[] b)
+  {
+    if (a == null)
+    {
+      return b;
+    }
+    else if (b == null)
+    {
+      return a;
+    }
+    
+    final int[] out = new int[Math.min(a.length, b.length)];
+    int i = 0;
+    int j = 0;
+    int n = 0;
+    while ((i < a.length) && (j < b.length))
+    {
+      if (a[i] < b[j])
+      {
+        ++i;
+      }
+      else if (a[i] > b[j])
+      {
+        ++j;
+      }
+      else
+      {
+        out[n++] = a[i];
+        ++i;
+        ++j;
+      }
+    }
+    
+    return ((n == out.length) ? out : Arrays.copyOf(out, n));
+  }
+  
+  
+  /**
+   * Returns the drinks in either list.
+   * 
+   * @param a the first list (null for all drinks)
+   * @param b the second list (null for all drinks)
+   * @return the union of the lists
+   */
+  public static int[] union(final int[] a, final int[] b)
+  {
+    if ((a == null) || (b == null))
+    {
+      return null;
+    }
+    else if (a.length == 0)
+    {
+      return b;
+    }
+    else if (b.length == 0)
+    {
+      return a;
+    }
+    
+    final int[] out = new int[a.length + b.length];
+    int i = 0;
+    int j = 0;
+    int n = 0;
+    while ((i < a.length) || (j < b.length))
+    {
+      if ((j >= b.length) || ((i < a.length) && (a[i] < b[j])))
+      {
+        out[n++] = a[i++];
+      }
+      else if ((i >= a.length) || (b[j] < a[i]))
+      {
+        out[n++] = b[j++];
+      }
+      else
+      {
+        out[n++] = a[i];
+        ++i;
+        ++j;
+      }
+    }
+    
+    return ((n == out.length) ? out : Arrays.copyOf(out, n));
+  }
+  
+  
+  /**
+   * Returns the set bits as a posting list.
+   * 
+   * @param bits the drink IDs
+   * @return the posting list
+   */
+  public static int[] fromBits(final BitSet bits)
+  {
+    final int[] out = new int[bits.cardinality()];
+    int n = 0;
+    for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1))
+    {
+      out[n++] = i;
+    }
+    
+    return out;
+  }
+  
+  
+  /**
+   * Returns whether a character is part of a token.
+   * 
+   * @param ch the character
+   * @return whether the character is a letter or digit
+   */
+  public static boolean isTokenChar(final char ch)
+  {
+    return Character.isLetterOrDigit(ch);
+  }
+  
+  
+  /**
+   * Split a string into tokens (runs of letters and digits).
+   * 
+   * @param text the string to split
+   * @return the tokens, in order
+   */
+  public static List<String> tokenize(final String text)
+  {
+    List<String> list = new ArrayList<String>(8);
+    if (text == null)
+    {
+      return list;
+    }
+    
+    final int len = text.length();
+    int start = -1;
+    for (int i = 0; i <= len; ++i)
+    {
+      final boolean inToken = ((i < len) && (isTokenChar(text.charAt(i))));
+      if ((inToken) && (start < 0))
+      {
+        start = i;
+      }
+      else if ((!inToken) && (start >= 0))
+      {
+        list.add(text.substring(start, i));
+        start = -1;
+      }
+    }
+    
+    return list;
+  }
+}
@@ -0,0 +1,228 @@
+package io.miti.drinky.index;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import io.miti.drinky.data.SearchText;
+
+/**
+ * A sorted array of the lower-case drink names, with the drink
+ * of each one.  The names that start with a prefix are next to
+ * each other in the array, so two binary searches find them all,
+ * and an exact name is found with one.  A reversed index stores
+ * each name backwards, so the names that end with a suffix are
+ * found the same way.  Drinks with no name aren't indexed.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class PrefixIndex
+{
+  /**
+   * The lower-case names (reversed if this is a reversed
+   * index), sorted.
+   */
+  private final String[] keys;
+  
+  /**
+   * The drink of each key.  Drinks with the same key are in
+   * ascending order.
+   */
+  private final int[] drinks;
+  
+  /**
+   * Whether the keys are the names reversed.
+   */
+  private final boolean reversed;
+  
+  
+  /**
+   * Build the index of the drink names.
+   * 
+   * @param text the search text
+   * @param reverse whether to index the names reversed
+   */
+  private PrefixIndex(final SearchText text, final boolean reverse)
+  {
+    super();
+    reversed = reverse;
+    
+    // Get the key of each named drink
+    final int numDrinks = text.size();
+    final String[] names = new String[numDrinks];
+    int count = 0;
+    for (int id = 0; id < numDrinks; ++id)
+    {
+      final String name = text.getLowerName(id);
+      names[id] = (((name == null) || (!reversed)) ? name
+                   : new StringBuilder(name).reverse().toString());
+      if (name != null)
+      {
+        ++count;
+      }
+    }
+    
+    // Sort the drinks by key, then by ID
+    Integer[] order = new Integer[count];
+    int index = 0;
+    for (int id = 0; id < numDrinks; ++id)
+    {
+      if (names[id] != null)
+      {
+        order[index++] = Integer.valueOf(id);
+      }
+    }
+    Arrays.sort(order, new Comparator<Integer>()
+    {
+      public int compare(final Integer id1, final Integer id2)
+      {
+        final int diff = names[id1.intValue()].compareTo(
+                              names[id2.intValue()]);
+        return ((diff != 0) ? diff : id1.compareTo(id2));
+      }
+    });
+    
+    keys = new String[count];
+    drinks = new int[count];
+    for (int i = 0; i < count; ++i)
+    {
+      drinks[i] = order[i].intValue();
+      keys[i] = names[drinks[i]];
+    }
+  }
+  
+  
+  /**
+   * Build the index of the drink names, stored forwards for
+   * prefix searches.
+   * 
+   * @param text the search text
+   * @return the index
+   */
+  public static PrefixIndex build(final SearchText text)
+  {
+    return new PrefixIndex(text, false);
+  }
+  
+  
+  /**
+   * Build the index of the drink names, stored reversed for
+   * suffix searches.
+   * 
+   * @param text the search text
+   * @return the index
+   */
+  public static PrefixIndex buildReversed(final SearchText text)
+  {
+    return new PrefixIndex(text, true);
+  }
+  
+  
+  /**
+   * Returns whether the names are indexed reversed.
+   * 
+   * @return whether this is a reversed index
+   */
+  public boolean isReversed()
+  {
+    return reversed;
+  }
+  
+  
+  /**
+   * Returns the drinks whose name starts with a string, or ends
+   * with it if this is a reversed index.
+   * 
+   * @param lowerTerm the string, in lower case
+   * @return the drink IDs, in ascending order
+   */
+  public int[] findPrefix(final String lowerTerm)
+  {
+    final String key = getKey(lowerTerm);
+    final int start = lowerBound(key);
+    
+    // The keys that start with the prefix are all before the
+    // first one after start that doesn't
+    int lo = start;
+    int hi = keys.length;
+    while (lo < hi)
+    {
+      final int mid = (lo + hi) >>> 1;
+      if (keys[mid].startsWith(key))
+      {
+        lo = mid + 1;
+      }
+      else
+      {
+        hi = mid;
+      }
+    }
+    
+    int[] result = Arrays.copyOfRange(drinks, start, lo);
+    Arrays.sort(result);
+    return result;
+  }
+  
+  
+  /**
+   * Returns the drinks whose name is a string.
+   * 
+   * @param lowerTerm the string, in lower case
+   * @return the drink IDs, in ascending order
+   */
+  public int[] findExact(final String lowerTerm)
+  {
+    final String key = getKey(lowerTerm);
+    final int start = lowerBound(key);
+    int end = start;
+    while ((end < keys.length) && (keys[end].equals(key)))
+    {
+      ++end;
+    }
+    
+    // Drinks with the same key are already sorted
+    return ((end == start) ? Postings.EMPTY
+            : Arrays.copyOfRange(drinks, start, end));
+  }
+  
+  
+  /**
+   * Returns the key to look up for a string.
+   * 
+   * @param lowerTerm the string, in lower case
+   * @return the string, reversed if this is a reversed index
+   */
+  private String getKey(final String lowerTerm)
+  {
+    return ((reversed) ? new StringBuilder(lowerTerm).reverse().toString()
+            : lowerTerm);
+  }
+  
+  
+  /**
+   * Returns the index of the first key that isn't less than
+   * a string.
+   * 
+   * @param key the string
+   * @return the index (the number of keys if there's none)
+   */
+  private int lowerBound(final String key)
+  {
+    int lo = 0;
+    int hi = keys.length;
+    while (lo < hi)
+    {
+      final int mid = (lo + hi) >>> 1;
+      if (keys[mid].compareTo(key) < 0)
+      {
+        lo = mid + 1;
+      }
+      else
+      {
+        hi = mid;
+      }
+    }
+    
+    return lo;
+  }
+}
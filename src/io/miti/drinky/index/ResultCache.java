@@ -0,0 +1,265 @@
+package io.miti.drinky.index;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of search results, so a repeated search doesn't run
+ * again.  The results are keyed by the query (the search terms,
+ * modes and case flag, as built by getQueryKey()) and the limit on
+ * the number of results.  Each entry is weighed by roughly how many
+ * bytes it holds, and the least recently used entries are dropped
+ * when the total is over the limit.
+ * 
+ * The results are for one search engine's data: when the cache is
+ * used with a different engine (after the data is loaded again),
+ * the old results are dropped.  The result arrays are shared with
+ * the callers, so they must not be changed.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class ResultCache
+{
+  /**
+   * The estimated bytes used by an entry, besides its key and results.
+   */
+  private static final int ENTRY_OVERHEAD = 96;
+  
+  /**
+   * The separator between the parts of a query key.
+   */
+  private static final char KEY_SEPARATOR = '\u0000';
+  
+  /**
+   * The results, least recently used first.
+   */
+  private final LinkedHashMap<String, int[]> results =
+    new LinkedHashMap<String, int[]>(64, 0.75f, true);
+  
+  /**
+   * The most bytes the entries may use.
+   */
+  private final long maxWeight;
+  
+  /**
+   * The bytes used by the entries.
+   */
+  private long weight = 0L;
+  
+  /**
+   * The version of the engine the results are for (0 for none).
+   */
+  private long version = 0L;
+  
+  /**
+   * The number of searches found in the cache.
+   */
+  private long hits = 0L;
+  
+  /**
+   * The number of searches not found in the cache.
+   */
+  private long misses = 0L;
+  
+  
+  /**
+   * Create a cache.
+   * 
+   * @param nMaxWeight the most bytes the entries may use
+   */
+  public ResultCache(final long nMaxWeight)
+  {
+    super();
+    maxWeight = nMaxWeight;
+  }
+  
+  
+  /**
+   * Returns the key for a query, from the keys of its name and
+   * ingredient filters.
+   * 
+   * @param nameKey the key of the name filter (null for none)
+   * @param ingKey the key of the ingredient filter (null for none)
+   * @return the key
+   */
+  public static String getQueryKey(final String nameKey,
+                                   final String ingKey)
+  {
+    StringBuilder sb = new StringBuilder(64);
+    if (nameKey != null)
+    {
+      sb.append(nameKey);
+    }
+    sb.append(KEY_SEPARATOR);
+    if (ingKey != null)
+    {
+      sb.append(ingKey);
+    }
+    
+    return sb.toString();
+  }
+  
+  
+  /**
+   * Returns the results of a search, if they're in the cache.
+   * 
+   * @param engine the search engine
+   * @param queryKey the key of the query
+   * @param limit the maximum number of results
+   * @return the drink IDs, or null if they're not cached
+   */
+  public synchronized int[] get(final SearchEngine engine,
+                                final String queryKey,
+                                final int limit)
+  {
+    checkVersion(engine);
+    final int[] ids = results.get(getKey(queryKey, limit));
+    if (ids == null)
+    {
+      ++misses;
+    }
+    else
+    {
+      ++hits;
+    }
+    
+    return ids;
+  }
+  
+  
+  /**
+   * Add the results of a search to the cache.
+   * 
+   * @param engine the search engine that returned the results
+   * @param queryKey the key of the query
+   * @param limit the maximum number of results
+   * @param ids the drink IDs
+   */
+  public synchronized void put(final SearchEngine engine,
+                               final String queryKey,
+                               final int limit,
+                               final int[] ids)
+  {
+    checkVersion(engine);
+    final String key = getKey(queryKey, limit);
+    final long entryWeight = getWeight(key, ids);
+    if (entryWeight > maxWeight)
+    {
+      // This would push out everything else
+      return;
+    }
+    
+    final int[] old = results.put(key, ids);
+    if (old != null)
+    {
+      weight -= getWeight(key, old);
+    }
+    weight += entryWeight;
+    
+    // Drop the least recently used entries until it fits
+    Iterator<Map.Entry<String, int[]>> iter = results.entrySet().iterator();
+    while ((weight > maxWeight) && (iter.hasNext()))
+    {
+      final Map.Entry<String, int[]> entry = iter.next();
+      weight -= getWeight(entry.getKey(), entry.getValue());
+      iter.remove();
+    }
+  }
+  
+  
+  /**
+   * Remove all the results.
+   */
+  public synchronized void clear()
+  {
+    results.clear();
+    weight = 0L;
+  }
+  
+  
+  /**
+   * Returns the number of searches found in the cache.
+   * 
+   * @return the number of hits
+   */
+  public synchronized long getHits()
+  {
+    return hits;
+  }
+  
+  
+  /**
+   * Returns the number of searches not found in the cache.
+   * 
+   * @return the number of misses
+   */
+  public synchronized long getMisses()
+  {
+    return misses;
+  }
+  
+  
+  /**
+   * Returns the estimated bytes used by the entries.
+   * 
+   * @return the weight of the cache
+   */
+  public synchronized long getWeight()
+  {
+    return weight;
+  }
+  
+  
+  /**
+   * Returns the number of searches in the cache.
+   * 
+   * @return the number of entries
+   */
+  public synchronized int size()
+  {
+    return results.size();
+  }
+  
+  
+  /**
+   * Drop the results if they're for a different engine's data.
+   * 
+   * @param engine the search engine being used
+   */
+  private void checkVersion(final SearchEngine engine)
+  {
+    if (engine.getVersion() != version)
+    {
+      clear();
+      version = engine.getVersion();
+    }
+  }
+  
+  
+  /**
+   * Returns the cache key for a query and limit.
+   * 
+   * @param queryKey the key of the query
+   * @param limit the maximum number of results
+   * @return the key
+   */
+  private static String getKey(final String queryKey, final int limit)
+  {
+    return (Integer.toString(limit) + KEY_SEPARATOR + queryKey);
+  }
+  
+  
+  /**
+   * Returns the estimated bytes used by an entry.
+   * 
+   * @param key the key
+   * @param ids the results
+   * @return the weight of the entry
+   */
+  private static long getWeight(final String key, final int[] ids)
+  {
+    return (ENTRY_OVERHEAD + (2L * key.length()) + (4L * ids.length));
+  }
+}
@@ -0,0 +1,1092 @@
+package io.miti.drinky.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.miti.drinky.data.Corpus;
+import io.miti.drinky.data.SearchText;
+import io.miti.drinky.filter.AnagramFilter;
+import io.miti.drinky.filter.ContainsAllFilter;
+import io.miti.drinky.filter.ContainsFilter;
+import io.miti.drinky.filter.ContainsSomeFilter;
+import io.miti.drinky.filter.DoubleMetaphone;
+import io.miti.drinky.filter.EndsWithFilter;
+import io.miti.drinky.filter.ExactMatchFilter;
+import io.miti.drinky.filter.FilterUtility;
+import io.miti.drinky.filter.FoldedTermFilter;
+import io.miti.drinky.filter.Metaphone;
+import io.miti.drinky.filter.Nysiis;
+import io.miti.drinky.filter.PhoneticEncoder;
+import io.miti.drinky.filter.RegexAnalyzer;
+import io.miti.drinky.filter.RegexFilter;
+import io.miti.drinky.filter.RegexLiterals;
+import io.miti.drinky.filter.SimilarFilter;
+import io.miti.drinky.filter.Soundex;
+import io.miti.drinky.filter.SoundFilter;
+import io.miti.drinky.filter.StartsWithFilter;
+import io.miti.drinky.filter.SubAnagramFilter;
+import io.miti.drinky.filter.TermFilter;
+import io.miti.drinky.filter.WildcardFilter;
+import io.miti.drinky.filter.WildcardMatcher;
+
+/**
+ * Runs searches against a corpus.  The engine holds the search
+ * text and the indexes built from it: a token index and a trigram
+ * index for each of the names and the ingredients (the ingredient
+ * token index is built from the corpus's ingredient IDs), an index of
+ * the codes of the words in the names for each phonetic encoder, a
+ * trie of the names for similar-name searches, an index of the
+ * letters of the names for anagram searches, and the sorted names
+ * (forwards and reversed) for prefix, suffix and exact searches.
+ * It can also be given an FM-index of all the drink text, which
+ * answers substring searches and phrases the token index can't
+ * (when they don't occur too often to locate them all).  When the
+ * filters can be answered from an index, only the candidate drinks
+ * from the index are checked against the filters (and if the index
+ * answer is exact, none are); otherwise every drink is scanned.
+ * Either way, the results are the matching drink IDs in ascending
+ * order.
+ * 
+ * The engine is read-only once built, so it is safe to share
+ * between threads.  Its one setting, whether long lists of drinks
+ * are checked on several threads, doesn't change the results.
+ * Each engine has its own version number, so anything cached from
+ * one engine's searches can tell when the data has been loaded
+ * again.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class SearchEngine
+{
+  /**
+   * The phonetic encoders with an index of the drink names.
+   */
+  private static final PhoneticEncoder[] ENCODERS = {Soundex.INSTANCE,
+    Metaphone.INSTANCE, DoubleMetaphone.INSTANCE, Nysiis.INSTANCE};
+  
+  /**
+   * The most occurrences of a string to locate with the FM-index;
+   * each one takes about a microsecond, so beyond this the other
+   * indexes (or a scan) are faster.
+   */
+  private static final int MAX_FM_OCCURRENCES = 1000;
+  
+  /**
+   * The version of the last engine built.
+   */
+  private static final AtomicLong LAST_VERSION = new AtomicLong(0L);
+  
+  /**
+   * How often to check whether a search was cancelled: every
+   * time the number of drinks checked is a multiple of this
+   * mask plus one.
+   */
+  private static final int CANCEL_CHECK_MASK = 0xFF;
+  
+  /**
+   * The fewest drinks to check in parallel; for fewer, handing
+   * the chunks to other threads costs more than it saves.
+   */
+  private static final int MIN_PARALLEL_DRINKS = 4 * ParallelScan.CHUNK_SIZE;
+  
+  /**
+   * The corpus.
+   */
+  private final Corpus corpus;
+  
+  /**
+   * The search forms of the drink names and ingredients.
+   */
+  private final SearchText text;
+  
+  /**
+   * The token index of the drink names.
+   */
+  private final TokenIndex nameTokens;
+  
+  /**
+   * The token index of the ingredients.
+   */
+  private final TokenIndex ingredientTokens;
+  
+  /**
+   * The trigram index of the drink names.
+   */
+  private final TrigramIndex nameTrigrams;
+  
+  /**
+   * The trigram index of the ingredients.
+   */
+  private final TrigramIndex ingredientTrigrams;
+  
+  /**
+   * The phonetic indexes of the words in the drink names, one
+   * for each encoder.
+   */
+  private final PhoneticIndex[] nameSounds;
+  
+  /**
+   * The trie of the drink names.
+   */
+  private final NameTrie nameTrie;
+  
+  /**
+   * The anagram index of the drink names.
+   */
+  private final AnagramIndex nameAnagrams;
+  
+  /**
+   * The sorted drink names, for prefix and exact searches.
+   */
+  private final PrefixIndex namePrefixes;
+  
+  /**
+   * The sorted reversed drink names, for suffix searches.
+   */
+  private final PrefixIndex nameSuffixes;
+  
+  /**
+   * The FM-index of the drink text (null if there's none).
+   */
+  private final FmIndex fmIndex;
+  
+  /**
+   * The version of this engine's data.
+   */
+  private final long version;
+  
+  /**
+   * Whether to check long lists of drinks on several threads.
+   */
+  private volatile boolean parallel = false;
+  
+  
+  /**
+   * Build the search text and indexes for a corpus.
+   * 
+   * @param source the corpus
+   * @param textIndex the FM-index of the corpus text (may be null)
+   */
+  private SearchEngine(final Corpus source, final FmIndex textIndex)
+  {
+    super();
+    version = LAST_VERSION.incrementAndGet();
+    corpus = source;
+    text = SearchText.build(source);
+    nameTokens = TokenIndex.build(text, SearchText.FIELD_NAME);
+    ingredientTokens = TokenIndex.buildIngredients(source);
+    nameTrigrams = TrigramIndex.build(text, SearchText.FIELD_NAME);
+    ingredientTrigrams = TrigramIndex.build(text,
+                                            SearchText.FIELD_INGREDIENTS);
+    nameSounds = PhoneticIndex.build(text, SearchText.FIELD_NAME, ENCODERS);
+    nameTrie = NameTrie.build(text);
+    nameAnagrams = AnagramIndex.build(text);
+    namePrefixes = PrefixIndex.build(text);
+    nameSuffixes = PrefixIndex.buildReversed(text);
+    
+    // Only use the FM-index if it was built from this text
+    if ((textIndex != null) &&
+        (textIndex.getChecksum() != FmIndex.getChecksum(text, source)))
+    {
+      System.err.println("The text index doesn't match the data; " +
+          "not using it");
+      fmIndex = null;
+    }
+    else
+    {
+      fmIndex = textIndex;
+    }
+  }
+  
+  
+  /**
+   * Build the search text and indexes for a corpus.
+   * 
+   * @param source the corpus
+   * @return the search engine
+   */
+  public static SearchEngine build(final Corpus source)
+  {
+    return new SearchEngine(source, null);
+  }
+  
+  
+  /**
+   * Build the search text and indexes for a corpus, using an
+   * FM-index of its text that was built (or read) separately.
+   * The FM-index is ignored if it's for different text.
+   * 
+   * @param source the corpus
+   * @param textIndex the FM-index of the corpus text (may be null)
+   * @return the search engine
+   */
+  public static SearchEngine build(final Corpus source,
+                                   final FmIndex textIndex)
+  {
+    return new SearchEngine(source, textIndex);
+  }
+  
+  
+  /**
+   * Returns the FM-index of the drink text.
+   * 
+   * @return the FM-index, or null if there's none
+   */
+  public FmIndex getFmIndex()
+  {
+    return fmIndex;
+  }
+  
+  
+  /**
+   * Returns the version of the engine's data, which is different
+   * for every engine built (even from the same corpus).
+   * 
+   * @return the version (at least 1)
+   */
+  public long getVersion()
+  {
+    return version;
+  }
+  
+  
+  /**
+   * Set whether long lists of drinks (a scan of every drink, or
+   * many candidates from the indexes) are checked on several
+   * threads.  The results are the same either way.
+   * 
+   * @param useThreads whether to check drinks in parallel
+   */
+  public void setParallel(final boolean useThreads)
+  {
+    parallel = useThreads;
+  }
+  
+  
+  /**
+   * Returns whether long lists of drinks are checked on
+   * several threads.
+   * 
+   * @return whether drinks are checked in parallel
+   */
+  public boolean isParallel()
+  {
+    return parallel;
+  }
+  
+  
+  /**
+   * Returns the corpus.
+   * 
+   * @return the corpus
+   */
+  public Corpus getCorpus()
+  {
+    return corpus;
+  }
+  
+  
+  /**
+   * Returns the search text.
+   * 
+   * @return the search text
+   */
+  public SearchText getSearchText()
+  {
+    return text;
+  }
+  
+  
+  /**
+   * Find the drinks that match both filters, using the
+   * indexes when possible.
+   * 
+   * @param nameFilter the filter for the name (null for any)
+   * @param ingFilter the filter for the ingredients (null for any)
+   * @param limit the maximum number of results
+   * @return the IDs of the matching drinks, in ascending order
+   */
+  public int[] search(final TermFilter nameFilter,
+                      final TermFilter ingFilter,
+                      final int limit)
+  {
+    return search(nameFilter, ingFilter, limit, null);
+  }
+  
+  
+  /**
+   * Find the drinks that match both filters, using the
+   * indexes when possible, stopping if the search is cancelled.
+   * 
+   * @param nameFilter the filter for the name (null for any)
+   * @param ingFilter the filter for the ingredients (null for any)
+   * @param limit the maximum number of results
+   * @param token the token to check for cancellation (null for none)
+   * @return the IDs of the matching drinks, in ascending order
+   * @throws java.util.concurrent.CancellationException if the
+   *         token is cancelled
+   */
+  public int[] search(final TermFilter nameFilter,
+                      final TermFilter ingFilter,
+                      final int limit,
+                      final CancelToken token)
+  {
+    if (limit < 1)
+    {
+      return Postings.EMPTY;
+    }
+    
+    // Get the candidates from the indexes
+    final int[] candidates = Postings.intersect(
+        getCandidates(SearchText.FIELD_NAME, nameFilter),
+        getCandidates(SearchText.FIELD_INGREDIENTS, ingFilter));
+    if (token != null)
+    {
+      token.check();
+    }
+    
+    if (candidates == null)
+    {
+      // Neither filter could use an index
+      return scan(nameFilter, ingFilter, limit, token);
+    }
+    
+    if ((isExact(SearchText.FIELD_NAME, nameFilter)) &&
+        (isExact(SearchText.FIELD_INGREDIENTS, ingFilter)))
+    {
+      // The candidates are the answer
+      return Arrays.copyOf(candidates, Math.min(candidates.length, limit));
+    }
+    
+    // Check each candidate against the filters
+    return checkDrinks(candidates, nameFilter, ingFilter, limit, token);
+  }
+  
+  
+  /**
+   * Find the drinks among some earlier results that match both
+   * filters.  If each filter is a refinement of the filter (or no
+   * filter) that found the earlier results, and those results
+   * weren't cut off by a limit, this returns the same drinks as
+   * search(), but only checks the earlier results.
+   * 
+   * @param previous the earlier results, in ascending order
+   * @param nameFilter the filter for the name (null for any)
+   * @param ingFilter the filter for the ingredients (null for any)
+   * @param limit the maximum number of results
+   * @return the IDs of the matching drinks, in ascending order
+   */
+  public int[] refine(final int[] previous,
+                      final TermFilter nameFilter,
+                      final TermFilter ingFilter,
+                      final int limit)
+  {
+    return checkDrinks(previous, nameFilter, ingFilter, limit, null);
+  }
+  
+  
+  /**
+   * Find the drinks among some earlier results that match both
+   * filters (see the other refine()), stopping if the search is
+   * cancelled.
+   * 
+   * @param previous the earlier results, in ascending order
+   * @param nameFilter the filter for the name (null for any)
+   * @param ingFilter the filter for the ingredients (null for any)
+   * @param limit the maximum number of results
+   * @param token the token to check for cancellation (null for none)
+   * @return the IDs of the matching drinks, in ascending order
+   * @throws java.util.concurrent.CancellationException if the
+   *         token is cancelled
+   */
+  public int[] refine(final int[] previous,
+                      final TermFilter nameFilter,
+                      final TermFilter ingFilter,
+                      final int limit,
+                      final CancelToken token)
+  {
+    return checkDrinks(previous, nameFilter, ingFilter, limit, token);
+  }
+  
+  
+  /**
+   * Find the drinks that match both filters by checking
+   * every drink, without the indexes.
+   * 
+   * @param nameFilter the filter for the name (null for any)
+   * @param ingFilter the filter for the ingredients (null for any)
+   * @param limit the maximum number of results
+   * @return the IDs of the matching drinks, in ascending order
+   */
+  public int[] scan(final TermFilter nameFilter,
+                    final TermFilter ingFilter,
+                    final int limit)
+  {
+    return scan(nameFilter, ingFilter, limit, null);
+  }
+  
+  
+  /**
+   * Find the drinks that match both filters by checking
+   * every drink, stopping if the search is cancelled.
+   * 
+   * @param nameFilter the filter for the name (null for any)
+   * @param ingFilter the filter for the ingredients (null for any)
+   * @param limit the maximum number of results
+   * @param token the token to check for cancellation (null for none)
+   * @return the IDs of the matching drinks, in ascending order
+   * @throws java.util.concurrent.CancellationException if the
+   *         token is cancelled
+   */
+  public int[] scan(final TermFilter nameFilter,
+                    final TermFilter ingFilter,
+                    final int limit,
+                    final CancelToken token)
+  {
+    final int size = text.size();
+    if ((parallel) && (size >= MIN_PARALLEL_DRINKS))
+    {
+      return ParallelScan.search(this, null, size, nameFilter, ingFilter,
+                                 limit, token);
+    }
+    
+    IntList matches = new IntList(100);
+    for (int id = 0; (id < size) && (matches.size() < limit); ++id)
+    {
+      if ((token != null) && ((id & CANCEL_CHECK_MASK) == 0))
+      {
+        token.check();
+      }
+      
+      if (matches(nameFilter, ingFilter, id))
+      {
+        matches.add(id);
+      }
+    }
+    
+    return matches.toArray();
+  }
+  
+  
+  /**
+   * Returns the drinks in a list that match both filters.
+   * 
+   * @param ids the drinks to check, in ascending order
+   * @param nameFilter the filter for the name (null for any)
+   * @param ingFilter the filter for the ingredients (null for any)
+   * @param limit the maximum number of results
+   * @param token the token to check for cancellation (null for none)
+   * @return the IDs of the matching drinks, in ascending order
+   */
+  private int[] checkDrinks(final int[] ids,
+                            final TermFilter nameFilter,
+                            final TermFilter ingFilter,
+                            final int limit,
+                            final CancelToken token)
+  {
+    if ((parallel) && (ids.length >= MIN_PARALLEL_DRINKS))
+    {
+      return ParallelScan.search(this, ids, ids.length, nameFilter,
+                                 ingFilter, limit, token);
+    }
+    
+    IntList matches = new IntList(Math.min(ids.length, 100));
+    for (int i = 0; (i < ids.length) && (matches.size() < limit); ++i)
+    {
+      if ((token != null) && ((i & CANCEL_CHECK_MASK) == 0))
+      {
+        token.check();
+      }
+      
+      if (matches(nameFilter, ingFilter, ids[i]))
+      {
+        matches.add(ids[i]);
+      }
+    }
+    
+    return matches.toArray();
+  }
+  
+  
+  /**
+   * Returns whether a drink matches both filters.
+   * 
+   * @param nameFilter the filter for the name (null for any)
+   * @param ingFilter the filter for the ingredients (null for any)
+   * @param id the drink ID
+   * @return whether the drink matches
+   */
+  public boolean matches(final TermFilter nameFilter,
+                         final TermFilter ingFilter,
+                         final int id)
+  {
+    // Check the drink name filter, using the precomputed
+    // accent-folded form of the name
+    if ((nameFilter != null) &&
+        (!accept(nameFilter, SearchText.FIELD_NAME, id)))
+    {
+      return false;
+    }
+    
+    // Check the ingredient filter
+    return ((ingFilter == null) ||
+            (accept(ingFilter, SearchText.FIELD_INGREDIENTS, id)));
+  }
+  
+  
+  /**
+   * Run a filter on one field of a drink, passing it the
+   * lower-case text if it ignores case and supports it.
+   * 
+   * @param filter the filter
+   * @param field the field ID (FIELD_NAME or FIELD_INGREDIENTS)
+   * @param id the drink ID
+   * @return whether the filter accepts the text
+   */
+  private boolean accept(final TermFilter filter,
+                         final int field,
+                         final int id)
+  {
+    if (FilterUtility.takesLowerCase(filter))
+    {
+      return ((FoldedTermFilter) filter).acceptLowerCase(
+          text.getLowerText(field, id));
+    }
+    
+    return filter.accept(text.getText(field, id));
+  }
+  
+  
+  /**
+   * Returns the candidate drinks for a filter from the indexes
+   * of a field.  Contains searches use the token index, and
+   * literal, wildcard and regex searches use the trigram index.
+   * Sound-alike, similar-name, anagram, prefix, suffix and exact
+   * searches use the indexes that only exist for the names, and
+   * wildcard and regex searches on the names also use the literal
+   * text at the start and end of the pattern.
+   * 
+   * @param field the field ID in the search text
+   * @param filter the filter (may be null)
+   * @return the candidates, or null if the indexes can't narrow them
+   */
+  private int[] getCandidates(final int field, final TermFilter filter)
+  {
+    final boolean isName = (field == SearchText.FIELD_NAME);
+    final TokenIndex index = ((isName) ? nameTokens : ingredientTokens);
+    if (filter instanceof ContainsAllFilter)
+    {
+      // Every phrase must be present
+      final ContainsAllFilter all = (ContainsAllFilter) filter;
+      int[] result = null;
+      final int count = all.getPhraseCount();
+      for (int i = 0; i < count; ++i)
+      {
+        final int[] list = getPhraseCandidates(field, index,
+            all.getPhrase(i), all.getOccurrences(i));
+        result = Postings.intersect(result, list);
+        if ((result != null) && (result.length == 0))
+        {
+          break;
+        }
+      }
+      
+      return result;
+    }
+    else if (filter instanceof ContainsSomeFilter)
+    {
+      // At least one phrase must be present
+      final ContainsSomeFilter some = (ContainsSomeFilter) filter;
+      int[] result = Postings.EMPTY;
+      final int count = some.getPhraseCount();
+      for (int i = 0; (i < count) && (result != null); ++i)
+      {
+        final int[] list = getPhraseCandidates(field, index,
+            some.getPhrase(i), 1);
+        result = Postings.union(result, list);
+      }
+      
+      return result;
+    }
+    else if ((filter instanceof ContainsFilter) &&
+             (usesFmIndex(((ContainsFilter) filter).getTerm())))
+    {
+      return fmIndex.findDrinks(
+          ((ContainsFilter) filter).getTerm().toLowerCase(), field, 1);
+    }
+    else if (filter instanceof SoundFilter)
+    {
+      final PhoneticIndex phonetic = findPhoneticIndex(field,
+          ((SoundFilter) filter).getEncoder());
+      return ((phonetic == null) ? null
+              : getSoundCandidates(phonetic, (SoundFilter) filter));
+    }
+    else if (filter instanceof SimilarFilter)
+    {
+      // Names within the distance, ignoring case
+      final SimilarFilter similar = (SimilarFilter) filter;
+      if ((!isName) || (similar.getTerm() == null))
+      {
+        return null;
+      }
+      
+      return nameTrie.findSimilar(similar.getTerm().toLowerCase(),
+                                  similar.getMaxScore());
+    }
+    else if (filter instanceof AnagramFilter)
+    {
+      // Names with the same letters, ignoring case
+      return ((isName) ? nameAnagrams.findAnagrams(
+          ((AnagramFilter) filter).getLowerSignature()) : null);
+    }
+    else if (filter instanceof SubAnagramFilter)
+    {
+      // Names spelled from the letters, ignoring case
+      return ((isName) ? nameAnagrams.findSubAnagrams(
+          ((SubAnagramFilter) filter).getLowerSignature()) : null);
+    }
+    else if (filter instanceof StartsWithFilter)
+    {
+      final String term = ((StartsWithFilter) filter).getLowerTerm();
+      return (((isName) && (term != null))
+              ? namePrefixes.findPrefix(term) : null);
+    }
+    else if (filter instanceof EndsWithFilter)
+    {
+      final String term = ((EndsWithFilter) filter).getLowerTerm();
+      return (((isName) && (term != null))
+              ? nameSuffixes.findPrefix(term) : null);
+    }
+    else if (filter instanceof ExactMatchFilter)
+    {
+      final String term = ((ExactMatchFilter) filter).getLowerTerm();
+      return (((isName) && (term != null))
+              ? namePrefixes.findExact(term) : null);
+    }
+    
+    int[] affixes = null;
+    if ((isName) && (filter instanceof WildcardFilter))
+    {
+      // If the pattern is one literal, it's all in the prefix or
+      // suffix, so the trigrams can't narrow the candidates more
+      final WildcardMatcher matcher = ((WildcardFilter) filter).getMatcher();
+      affixes = getWildcardCandidates(matcher);
+      if ((affixes != null) && (isLiteral(matcher)))
+      {
+        return affixes;
+      }
+    }
+    else if ((isName) && (filter instanceof RegexFilter))
+    {
+      // Likewise for the literal text at the ends of a regex
+      final RegexLiterals literals = ((RegexFilter) filter).getLiterals();
+      affixes = getRegexCandidates(literals);
+      if ((affixes != null) && (literals.isExact()))
+      {
+        return affixes;
+      }
+    }
+    
+    return Postings.intersect(affixes, getTrigramQuery(filter).evaluate(
+        (isName) ? nameTrigrams : ingredientTrigrams));
+  }
+  
+  
+  /**
+   * Returns the candidate drinks for a regex search of the
+   * names from the literal text that every match starts and
+   * ends with.  An expression that's all literal text is an
+   * exact search.
+   * 
+   * @param literals the literals of the expression (may be null)
+   * @return the candidates, or null if the expression has no
+   *         literal text at either end
+   */
+  private int[] getRegexCandidates(final RegexLiterals literals)
+  {
+    if (literals == null)
+    {
+      return null;
+    }
+    
+    final String prefix = literals.getPrefix().toLowerCase();
+    if (literals.isExact())
+    {
+      return namePrefixes.findExact(prefix);
+    }
+    
+    final String suffix = literals.getSuffix().toLowerCase();
+    int[] result = null;
+    if (prefix.length() > 0)
+    {
+      result = namePrefixes.findPrefix(prefix);
+    }
+    if (suffix.length() > 0)
+    {
+      result = Postings.intersect(result, nameSuffixes.findPrefix(suffix));
+    }
+    
+    return result;
+  }
+  
+  
+  /**
+   * Returns the candidate drinks for a wildcard search of the
+   * names from the literal text at the start and end of the
+   * pattern.  A pattern with no '*' or '?' is an exact search.
+   * 
+   * @param matcher the compiled pattern
+   * @return the candidates, or null if the pattern starts and
+   *         ends with a wildcard
+   */
+  private int[] getWildcardCandidates(final WildcardMatcher matcher)
+  {
+    final String prefix = matcher.getLiteralPrefix().toLowerCase();
+    if (isLiteral(matcher) && (matcher.isAnchoredStart()) &&
+        (matcher.isAnchoredEnd()))
+    {
+      return namePrefixes.findExact(prefix);
+    }
+    
+    final String suffix = matcher.getLiteralSuffix().toLowerCase();
+    int[] result = null;
+    if (prefix.length() > 0)
+    {
+      result = namePrefixes.findPrefix(prefix);
+    }
+    if (suffix.length() > 0)
+    {
+      result = Postings.intersect(result, nameSuffixes.findPrefix(suffix));
+    }
+    
+    return result;
+  }
+  
+  
+  /**
+   * Returns whether a wildcard pattern is a single segment with
+   * no '?', so it's all literal text apart from a leading or
+   * trailing '*'.
+   * 
+   * @param matcher the compiled pattern
+   * @return whether the pattern has one literal segment
+   */
+  private static boolean isLiteral(final WildcardMatcher matcher)
+  {
+    return ((matcher.getSegmentCount() == 1) &&
+            (matcher.getSegment(0).indexOf('?') < 0));
+  }
+  
+  
+  /**
+   * Returns the phonetic index of a field for an encoder.
+   * 
+   * @param field the field ID in the search text
+   * @param encoder the encoder
+   * @return the index, or null if there's none for the encoder
+   */
+  private PhoneticIndex findPhoneticIndex(final int field,
+                                          final PhoneticEncoder encoder)
+  {
+    if (field != SearchText.FIELD_NAME)
+    {
+      return null;
+    }
+    
+    for (PhoneticIndex index : nameSounds)
+    {
+      if (index.getEncoder() == encoder)
+      {
+        return index;
+      }
+    }
+    
+    return null;
+  }
+  
+  
+  /**
+   * Returns the candidate drinks for a sound-alike search: those
+   * with a word that sounds like each word in the search term.
+   * The codes are always looked up ignoring case.
+   * 
+   * @param index the phonetic index for the field
+   * @param filter the filter
+   * @return the candidates
+   */
+  private static int[] getSoundCandidates(final PhoneticIndex index,
+                                          final SoundFilter filter)
+  {
+    final SoundFilter lookup = ((filter.isIgnoreCase()) ? filter
+        : new SoundFilter(filter.getTerm(), true, filter.getEncoder()));
+    final int count = lookup.getCodeCount();
+    if (count == 0)
+    {
+      return Postings.EMPTY;
+    }
+    
+    int[] result = null;
+    for (int i = 0; (i < count) &&
+                    ((result == null) || (result.length > 0)); ++i)
+    {
+      final int code = lookup.getCode(i);
+      final int alternate = lookup.getAlternateCode(i);
+      int[] list = index.getPostings(code);
+      if (alternate != code)
+      {
+        list = Postings.union(list, index.getPostings(alternate));
+      }
+      result = Postings.intersect(result, list);
+    }
+    
+    return result;
+  }
+  
+  
+  /**
+   * Returns the trigram query for a filter: the literal text
+   * that every match must contain.
+   * 
+   * @param filter the filter (may be null)
+   * @return the query (ANY if the filter can't use the index)
+   */
+  private static TrigramQuery getTrigramQuery(final TermFilter filter)
+  {
+    if (filter instanceof RegexFilter)
+    {
+      return TrigramQuery.forRegex(
+          RegexAnalyzer.analyze(((RegexFilter) filter).getPattern()));
+    }
+    else if (filter instanceof WildcardFilter)
+    {
+      // Every literal part of the pattern must be present
+      final List<String> literals = ((WildcardFilter) filter).getLiterals();
+      List<TrigramQuery> parts = new ArrayList<TrigramQuery>(literals.size());
+      for (String literal : literals)
+      {
+        parts.add(TrigramQuery.literal(literal));
+      }
+      
+      return TrigramQuery.and(parts);
+    }
+    else if (filter instanceof ContainsFilter)
+    {
+      return TrigramQuery.literal(((ContainsFilter) filter).getTerm());
+    }
+    
+    return TrigramQuery.ANY;
+  }
+  
+  
+  /**
+   * Returns the candidate drinks for one phrase.  If the phrase
+   * is more than one token or must occur more than once, and
+   * there's an FM-index, these are the drinks where the phrase
+   * occurs often enough.  Otherwise, each run of letters and
+   * digits in the phrase must be inside a token of the drink.
+   * 
+   * @param field the field ID in the search text
+   * @param index the token index for the field
+   * @param phrase the phrase
+   * @param occurrences the number of times the phrase must occur
+   * @return the candidates, or null if the phrase has no letters
+   *         or digits
+   */
+  private int[] getPhraseCandidates(final int field,
+                                    final TokenIndex index,
+                                    final String phrase,
+                                    final int occurrences)
+  {
+    if (usesFmIndex(phrase, occurrences))
+    {
+      return fmIndex.findDrinks(phrase.toLowerCase(), field, occurrences);
+    }
+    
+    int[] result = null;
+    final List<String> words = Postings.tokenize(phrase.toLowerCase());
+    for (String word : words)
+    {
+      result = Postings.intersect(result, index.findContaining(word));
+    }
+    
+    return result;
+  }
+  
+  
+  /**
+   * Returns whether a phrase is looked up in the FM-index rather
+   * than the token index: if it's more than one token or must
+   * occur more than once, and it can be looked up there.
+   * 
+   * @param phrase the phrase
+   * @param occurrences the number of times the phrase must occur
+   * @return whether to use the FM-index
+   */
+  private boolean usesFmIndex(final String phrase, final int occurrences)
+  {
+    return (((occurrences > 1) || (!isSingleToken(phrase))) &&
+            (usesFmIndex(phrase)));
+  }
+  
+  
+  /**
+   * Returns whether a string can be looked up in the FM-index:
+   * there is one, the string isn't empty, and it doesn't occur
+   * too often.
+   * 
+   * @param str the string
+   * @return whether to use the FM-index
+   */
+  private boolean usesFmIndex(final String str)
+  {
+    return ((fmIndex != null) && (str != null) && (str.length() > 0) &&
+            (fmIndex.count(str.toLowerCase()) <= MAX_FM_OCCURRENCES));
+  }
+  
+  
+  /**
+   * Returns whether the candidates from the index are exactly the
+   * drinks the filter accepts, so they don't need to be checked.
+   * That's the case if the filter ignores case and each phrase is
+   * a single run of letters and digits that only has to occur once
+   * or is looked up in the FM-index, for a substring search that
+   * ignores case and uses the FM-index, or for a sound-alike,
+   * similar-name, anagram, prefix, suffix or exact search that
+   * ignores case and has an index, including a wildcard search
+   * that's one of the last three.
+   * 
+   * @param field the field ID in the search text
+   * @param filter the filter (may be null)
+   * @return whether the index answer is exact
+   */
+  private boolean isExact(final int field, final TermFilter filter)
+  {
+    if (filter == null)
+    {
+      return true;
+    }
+    else if (filter instanceof ContainsAllFilter)
+    {
+      final ContainsAllFilter all = (ContainsAllFilter) filter;
+      if (!all.isIgnoreCase())
+      {
+        return false;
+      }
+      
+      final int count = all.getPhraseCount();
+      for (int i = 0; i < count; ++i)
+      {
+        final String phrase = all.getPhrase(i);
+        final int occurrences = all.getOccurrences(i);
+        if ((!usesFmIndex(phrase, occurrences)) &&
+            ((occurrences != 1) || (!isSingleToken(phrase))))
+        {
+          return false;
+        }
+      }
+      
+      return true;
+    }
+    else if (filter instanceof ContainsFilter)
+    {
+      final ContainsFilter contains = (ContainsFilter) filter;
+      return ((contains.isIgnoreCase()) &&
+              (usesFmIndex(contains.getTerm())));
+    }
+    else if (filter instanceof SoundFilter)
+    {
+      final SoundFilter sound = (SoundFilter) filter;
+      return ((sound.isIgnoreCase()) &&
+              (findPhoneticIndex(field, sound.getEncoder()) != null));
+    }
+    else if (filter instanceof SimilarFilter)
+    {
+      final SimilarFilter similar = (SimilarFilter) filter;
+      return ((similar.isIgnoreCase()) && (similar.getTerm() != null) &&
+              (field == SearchText.FIELD_NAME));
+    }
+    else if ((filter instanceof AnagramFilter) ||
+             (filter instanceof SubAnagramFilter))
+    {
+      return ((((FoldedTermFilter) filter).isIgnoreCase()) &&
+              (field == SearchText.FIELD_NAME));
+    }
+    else if (filter instanceof StartsWithFilter)
+    {
+      final StartsWithFilter starts = (StartsWithFilter) filter;
+      return ((starts.isIgnoreCase()) && (starts.getLowerTerm() != null) &&
+              (field == SearchText.FIELD_NAME));
+    }
+    else if (filter instanceof EndsWithFilter)
+    {
+      final EndsWithFilter ends = (EndsWithFilter) filter;
+      return ((ends.isIgnoreCase()) && (ends.getLowerTerm() != null) &&
+              (field == SearchText.FIELD_NAME));
+    }
+    else if (filter instanceof ExactMatchFilter)
+    {
+      final ExactMatchFilter exact = (ExactMatchFilter) filter;
+      return ((exact.isIgnoreCase()) && (exact.getLowerTerm() != null) &&
+              (field == SearchText.FIELD_NAME));
+    }
+    else if (filter instanceof WildcardFilter)
+    {
+      final WildcardMatcher matcher = ((WildcardFilter) filter).getMatcher();
+      return ((matcher.isIgnoreCase()) && (isLiteral(matcher)) &&
+              ((matcher.isAnchoredStart()) || (matcher.isAnchoredEnd())) &&
+              (field == SearchText.FIELD_NAME));
+    }
+    else if (filter instanceof ContainsSomeFilter)
+    {
+      final ContainsSomeFilter some = (ContainsSomeFilter) filter;
+      if (!some.isIgnoreCase())
+      {
+        return false;
+      }
+      
+      final int count = some.getPhraseCount();
+      for (int i = 0; i < count; ++i)
+      {
+        final String phrase = some.getPhrase(i);
+        if ((!usesFmIndex(phrase, 1)) && (!isSingleToken(phrase)))
+        {
+          return false;
+        }
+      }
+      
+      return true;
+    }
+    
+    return false;
+  }
+  
+  
+  /**
+   * Returns whether a phrase is a single, non-empty run of
+   * letters and digits.
+   * 
+   * @param phrase the phrase
+   * @return whether the phrase is one token
+   */
+  private static boolean isSingleToken(final String phrase)
+  {
+    final int len = phrase.length();
+    if (len < 1)
+    {
+      return false;
+    }
+    
+    for (int i = 0; i < len; ++i)
+    {
+      if (!Postings.isTokenChar(phrase.charAt(i)))
+      {
+        return false;
+      }
+    }
+    
+    return true;
+  }
+}
@@ -0,0 +1,334 @@
+package io.miti.drinky.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.miti.drinky.data.Corpus;
+import io.miti.drinky.data.IngredientDictionary;
+import io.miti.drinky.data.SearchText;
+
+/**
+ * An inverted index over one field of the drinks.  The lower-case
+ * text of the field is split into tokens, and each distinct token
+ * has a posting list of the drinks that contain it.
+ * 
+ * The index of the ingredients can also be built from the corpus's
+ * ingredient and measure IDs.  Each distinct ingredient name and
+ * measure is only split into tokens once, rather than once for each
+ * drink it's in, and the tokens are the same since an ingredient line
+ * is its measure and name separated by a space.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class TokenIndex
+{
+  /**
+   * The number of drinks.
+   */
+  private final int numDrinks;
+  
+  /**
+   * The distinct tokens, sorted.
+   */
+  private final String[] tokens;
+  
+  /**
+   * The posting list of each token.
+   */
+  private final int[][] postings;
+  
+  
+  /**
+   * Build the index for one field.
+   * 
+   * @param text the search text
+   * @param field the field ID in the search text
+   */
+  private TokenIndex(final SearchText text, final int field)
+  {
+    super();
+    numDrinks = text.size();
+    
+    // Collect the drinks for each token, in drink order
+    Map<String, IntList> map = new HashMap<String, IntList>(4096);
+    for (int id = 0; id < numDrinks; ++id)
+    {
+      final String str = text.getLowerText(field, id);
+      final List<String> words = Postings.tokenize(str);
+      for (String word : words)
+      {
+        IntList list = map.get(word);
+        if (list == null)
+        {
+          list = new IntList(4);
+          map.put(word, list);
+        }
+        
+        // Only add each drink once
+        if (list.getLast() != id)
+        {
+          list.add(id);
+        }
+      }
+    }
+    
+    // Sort the tokens, for the binary search
+    tokens = map.keySet().toArray(new String[map.size()]);
+    Arrays.sort(tokens);
+    postings = new int[tokens.length][];
+    for (int i = 0; i < tokens.length; ++i)
+    {
+      postings[i] = map.get(tokens[i]).toArray();
+    }
+  }
+  
+  
+  /**
+   * Build the index of the ingredients from their IDs.
+   * 
+   * @param corpus the corpus
+   */
+  private TokenIndex(final Corpus corpus)
+  {
+    super();
+    numDrinks = corpus.size();
+    
+    // Give each distinct token an ID, and split each ingredient
+    // name and measure into token IDs
+    Map<String, Integer> tokenIds = new HashMap<String, Integer>(4096);
+    List<String> tokenList = new ArrayList<String>(4096);
+    final IngredientDictionary dictionary = corpus.getIngredientDictionary();
+    int[][] nameTokens = new int[dictionary.getNameCount()][];
+    for (int i = 0; i < nameTokens.length; ++i)
+    {
+      nameTokens[i] = getTokenIds(dictionary.getName(i), tokenIds, tokenList);
+    }
+    int[][] measureTokens = new int[dictionary.getMeasureCount()][];
+    for (int i = 0; i < measureTokens.length; ++i)
+    {
+      measureTokens[i] = getTokenIds(dictionary.getMeasure(i), tokenIds,
+                                     tokenList);
+    }
+    
+    // Collect the drinks for each token, in drink order
+    IntList[] lists = new IntList[tokenList.size()];
+    for (int i = 0; i < lists.length; ++i)
+    {
+      lists[i] = new IntList(4);
+    }
+    for (int id = 0; id < numDrinks; ++id)
+    {
+      final int numIngs = corpus.getIngredientCount(id);
+      for (int i = 0; i < numIngs; ++i)
+      {
+        addDrink(lists, measureTokens[corpus.getMeasureId(id, i)], id);
+        addDrink(lists, nameTokens[corpus.getIngredientId(id, i)], id);
+      }
+    }
+    
+    // Sort the tokens, for the binary search
+    tokens = tokenList.toArray(new String[tokenList.size()]);
+    Arrays.sort(tokens);
+    postings = new int[tokens.length][];
+    for (int i = 0; i < tokens.length; ++i)
+    {
+      postings[i] = lists[tokenIds.get(tokens[i]).intValue()].toArray();
+    }
+  }
+  
+  
+  /**
+   * Split a string into lower-case tokens, and return their IDs,
+   * giving new tokens the next ID.
+   * 
+   * @param str the string
+   * @param tokenIds map of each token to its ID
+   * @param tokenList the tokens, indexed by ID
+   * @return the token IDs
+   */
+  private static int[] getTokenIds(final String str,
+                                   final Map<String, Integer> tokenIds,
+                                   final List<String> tokenList)
+  {
+    final List<String> words = Postings.tokenize(str.toLowerCase());
+    int[] ids = new int[words.size()];
+    for (int i = 0; i < ids.length; ++i)
+    {
+      final String word = words.get(i);
+      Integer tokenId = tokenIds.get(word);
+      if (tokenId == null)
+      {
+        tokenId = Integer.valueOf(tokenList.size());
+        tokenList.add(word);
+        tokenIds.put(word, tokenId);
+      }
+      ids[i] = tokenId.intValue();
+    }
+    
+    return ids;
+  }
+  
+  
+  /**
+   * Add a drink to the posting lists of some tokens.
+   * 
+   * @param lists the posting list of each token ID
+   * @param ids the token IDs
+   * @param id the drink ID
+   */
+  private static void addDrink(final IntList[] lists,
+                               final int[] ids,
+                               final int id)
+  {
+    for (int tokenId : ids)
+    {
+      // Only add each drink once
+      if (lists[tokenId].getLast() != id)
+      {
+        lists[tokenId].add(id);
+      }
+    }
+  }
+  
+  
+  /**
+   * Build the index for one field.
+   * 
+   * @param text the search text
+   * @param field the field ID in the search text
+   * @return the index
+   */
+  public static TokenIndex build(final SearchText text, final int field)
+  {
+    return new TokenIndex(text, field);
+  }
+  
+  
+  /**
+   * Build the index of the ingredients of a corpus from its
+   * ingredient and measure IDs.
+   * 
+   * @param corpus the corpus
+   * @return the index
+   */
+  public static TokenIndex buildIngredients(final Corpus corpus)
+  {
+    return new TokenIndex(corpus);
+  }
+  
+  
+  /**
+   * Returns the number of distinct tokens.
+   * 
+   * @return the number of tokens
+   */
+  public int getTokenCount()
+  {
+    return tokens.length;
+  }
+  
+  
+  /**
+   * Returns one of the tokens.
+   * 
+   * @param index the index of the token, in sorted order
+   * @return the token
+   */
+  public String getToken(final int index)
+  {
+    return tokens[index];
+  }
+  
+  
+  /**
+   * Returns the drinks that contain one of the tokens.
+   * 
+   * @param index the index of the token, in sorted order
+   * @return the posting list
+   */
+  public int[] getTokenPostings(final int index)
+  {
+    return postings[index];
+  }
+  
+  
+  /**
+   * Returns the drinks that contain a token.
+   * 
+   * @param token the lower-case token
+   * @return the posting list (empty if the token is not indexed)
+   */
+  public int[] getPostings(final String token)
+  {
+    final int index = Arrays.binarySearch(tokens, token);
+    return ((index < 0) ? Postings.EMPTY : postings[index]);
+  }
+  
+  
+  /**
+   * Returns the drinks with a token that contains a string.  The
+   * string must only hold token characters (letters and digits), so
+   * every place it occurs in the text is inside a single token.
+   * 
+   * @param fragment the lower-case string to look for
+   * @return the posting list
+   */
+  public int[] findContaining(final String fragment)
+  {
+    int first = -1;
+    BitSet bits = null;
+    for (int i = 0; i < tokens.length; ++i)
+    {
+      if (tokens[i].indexOf(fragment) < 0)
+      {
+        continue;
+      }
+      
+      if (first < 0)
+      {
+        first = i;
+      }
+      else
+      {
+        // More than one token matches, so merge the lists
+        if (bits == null)
+        {
+          bits = new BitSet(numDrinks);
+          setBits(bits, postings[first]);
+        }
+        setBits(bits, postings[i]);
+      }
+    }
+    
+    if (first < 0)
+    {
+      return Postings.EMPTY;
+    }
+    else if (bits == null)
+    {
+      return postings[first];
+    }
+    
+    return Postings.fromBits(bits);
+  }
+  
+  
+  /**
+   * Set the bits for the drinks in a posting list.
+   * 
+   * @param bits the bit set
+   * @param list the posting list
+   */
+  private static void setBits(final BitSet bits, final int[] list)
+  {
+    for (int id : list)
+    {
+      bits.set(id);
+    }
+  }
+}
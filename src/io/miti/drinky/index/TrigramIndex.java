@@ -0,0 +1,298 @@
+package io.miti.drinky.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import io.miti.drinky.data.SearchText;
+
+/**
+ * A trigram index over one field of the drinks.  Every run of
+ * three characters in the lower-case text of the field (including
+ * spaces and punctuation) has a posting list of the drinks that
+ * contain it, so the drinks that may contain a literal string are
+ * the intersection of the lists for the trigrams in the string.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class TrigramIndex
+{
+  /**
+   * The trigram keys, sorted.
+   */
+  private final long[] keys;
+  
+  /**
+   * The posting list of each trigram.
+   */
+  private final int[][] postings;
+  
+  
+  /**
+   * Build the index for one field.
+   * 
+   * @param text the search text
+   * @param field the field ID in the search text
+   */
+  private TrigramIndex(final SearchText text, final int field)
+  {
+    super();
+    
+    // Collect the drinks for each trigram, in drink order
+    final int numDrinks = text.size();
+    KeyTable table = new KeyTable();
+    List<IntList> lists = new ArrayList<IntList>(4096);
+    for (int id = 0; id < numDrinks; ++id)
+    {
+      final String str = text.getLowerText(field, id);
+      final int last = ((str == null) ? 0 : str.length() - 2);
+      for (int i = 0; i < last; ++i)
+      {
+        final int index = table.add(getKey(str, i));
+        if (index == lists.size())
+        {
+          lists.add(new IntList(4));
+        }
+        
+        // Only add each drink once
+        final IntList list = lists.get(index);
+        if (list.getLast() != id)
+        {
+          list.add(id);
+        }
+      }
+    }
+    
+    // Sort the keys, for the binary search
+    keys = table.getKeys();
+    Arrays.sort(keys);
+    postings = new int[keys.length][];
+    for (int i = 0; i < keys.length; ++i)
+    {
+      postings[i] = lists.get(table.get(keys[i])).toArray();
+    }
+  }
+  
+  
+  /**
+   * Build the index for one field.
+   * 
+   * @param text the search text
+   * @param field the field ID in the search text
+   * @return the index
+   */
+  public static TrigramIndex build(final SearchText text, final int field)
+  {
+    return new TrigramIndex(text, field);
+  }
+  
+  
+  /**
+   * Returns the key for the trigram starting at an index.
+   * 
+   * @param str the string
+   * @param index the start of the trigram
+   * @return the key
+   */
+  private static long getKey(final String str, final int index)
+  {
+    return ((((long) str.charAt(index)) << 32) |
+            (((long) str.charAt(index + 1)) << 16) |
+            ((long) str.charAt(index + 2)));
+  }
+  
+  
+  /**
+   * Returns the number of distinct trigrams.
+   * 
+   * @return the number of trigrams
+   */
+  public int getTrigramCount()
+  {
+    return keys.length;
+  }
+  
+  
+  /**
+   * Returns the drinks that may contain a literal string: those
+   * that have every trigram in the string.
+   * 
+   * @param literal the lower-case string
+   * @return the candidates, or null if the string is too short
+   *         to have a trigram
+   */
+  public int[] findLiteral(final String literal)
+  {
+    final int count = literal.length() - 2;
+    if (count < 1)
+    {
+      return null;
+    }
+    
+    // Look up the lists, and intersect them shortest first
+    int[][] lists = new int[count][];
+    for (int i = 0; i < count; ++i)
+    {
+      final int index = Arrays.binarySearch(keys, getKey(literal, i));
+      if (index < 0)
+      {
+        return Postings.EMPTY;
+      }
+      
+      lists[i] = postings[index];
+    }
+    
+    Arrays.sort(lists, new Comparator<int[]>()
+    {
+      public int compare(final int[] a, final int[] b)
+      {
+        return (a.length - b.length);
+      }
+    });
+    
+    int[] result = lists[0];
+    for (int i = 1; (i < count) && (result.length > 0); ++i)
+    {
+      result = Postings.intersect(result, lists[i]);
+    }
+    
+    return result;
+  }
+  
+  
+  /**
+   * A hash table that numbers the distinct trigram keys in the
+   * order they're added, without boxing them.  It uses open
+   * addressing with linear probing, and is kept at most half full.
+   */
+  private static final class KeyTable
+  {
+    /**
+     * The key in each slot.
+     */
+    private long[] slotKeys = new long[1 << 12];
+    
+    /**
+     * The number of the key in each slot, or -1 if the slot is empty.
+     */
+    private int[] slotIds = newSlots(slotKeys.length);
+    
+    /**
+     * The keys, in the order they were added.
+     */
+    private long[] keys = new long[1 << 11];
+    
+    /**
+     * The number of keys.
+     */
+    private int size = 0;
+    
+    
+    /**
+     * Default constructor.
+     */
+    public KeyTable()
+    {
+      super();
+    }
+    
+    
+    /**
+     * Returns a new array of empty slots.
+     * 
+     * @param count the number of slots
+     * @return the slots
+     */
+    private static int[] newSlots(final int count)
+    {
+      int[] slots = new int[count];
+      Arrays.fill(slots, -1);
+      return slots;
+    }
+    
+    
+    /**
+     * Returns the slot for a key: the slot holding it, or the
+     * empty slot where it belongs.
+     * 
+     * @param key the key
+     * @return the slot
+     */
+    private int findSlot(final long key)
+    {
+      final int mask = slotKeys.length - 1;
+      int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+      while ((slotIds[slot] >= 0) && (slotKeys[slot] != key))
+      {
+        slot = (slot + 1) & mask;
+      }
+      
+      return slot;
+    }
+    
+    
+    /**
+     * Returns the number of a key.
+     * 
+     * @param key the key
+     * @return the number of the key, or -1 if it's not in the table
+     */
+    public int get(final long key)
+    {
+      return slotIds[findSlot(key)];
+    }
+    
+    
+    /**
+     * Add a key, if it's new.
+     * 
+     * @param key the key
+     * @return the number of the key
+     */
+    public int add(final long key)
+    {
+      final int slot = findSlot(key);
+      if (slotIds[slot] >= 0)
+      {
+        return slotIds[slot];
+      }
+      
+      slotKeys[slot] = key;
+      slotIds[slot] = size;
+      if (size == keys.length)
+      {
+        keys = Arrays.copyOf(keys, size * 2);
+      }
+      keys[size] = key;
+      ++size;
+      
+      if ((size * 2) > slotKeys.length)
+      {
+        // Double the table and add the keys back in
+        slotKeys = new long[slotKeys.length * 2];
+        slotIds = newSlots(slotKeys.length);
+        for (int i = 0; i < size; ++i)
+        {
+          final int s = findSlot(keys[i]);
+          slotKeys[s] = keys[i];
+          slotIds[s] = i;
+        }
+      }
+      
+      return (size - 1);
+    }
+    
+    
+    /**
+     * Returns the keys, in the order they were added.
+     * 
+     * @return a new array holding the keys
+     */
+    public long[] getKeys()
+    {
+      return Arrays.copyOf(keys, size);
+    }
+  }
+}
@@ -0,0 +1,282 @@
+package io.miti.drinky.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.miti.drinky.filter.RegexAnalyzer;
+
+/**
+ * A boolean expression over literal strings, evaluated against a
+ * trigram index to get the drinks that may match a search.  A
+ * query is either ANY (no restriction), a literal that must occur
+ * in the text, or the AND or OR of other queries.
+ * 
+ * @author mwallace
+ * @version 1.0
+ */
+public final class TrigramQuery
+{
+  /**
+   * The operator for ANY.
+   */
+  private static final int OP_ANY = 0;
+  
+  /**
+   * The operator for a literal.
+   */
+  private static final int OP_LITERAL = 1;
+  
+  /**
+   * The operator for AND.
+   */
+  private static final int OP_AND = 2;
+  
+  /**
+   * The operator for OR.
+   */
+  private static final int OP_OR = 3;
+  
+  /**
+   * The query that matches every drink.
+   */
+  public static final TrigramQuery ANY = new TrigramQuery(OP_ANY, null, null);
+  
+  /**
+   * The operator.
+   */
+  private final int op;
+  
+  /**
+   * The lower-case literal, for OP_LITERAL.
+   */
+  private final String literal;
+  
+  /**
+   * The sub-queries, for OP_AND and OP_OR.
+   */
+  private final List<TrigramQuery> children;
+  
+  
+  /**
+   * Create a query.
+   * 
+   * @param nOp the operator
+   * @param sLiteral the literal
+   * @param list the sub-queries
+   */
+  private TrigramQuery(final int nOp,
+                       final String sLiteral,
+                       final List<TrigramQuery> list)
+  {
+    super();
+    op = nOp;
+    literal = sLiteral;
+    children = list;
+  }
+  
+  
+  /**
+   * Returns a query for a literal string.  Strings shorter than
+   * a trigram don't restrict the search.
+   * 
+   * @param str the literal
+   * @return the query
+   */
+  public static TrigramQuery literal(final String str)
+  {
+    if ((str == null) || (str.length() < 3))
+    {
+      return ANY;
+    }
+    
+    return new TrigramQuery(OP_LITERAL, str.toLowerCase(), null);
+  }
+  
+  
+  /**
+   * Returns the AND of some queries.
+   * 
+   * @param list the queries
+   * @return the query
+   */
+  public static TrigramQuery and(final List<TrigramQuery> list)
+  {
+    List<TrigramQuery> terms = new ArrayList<TrigramQuery>(list.size());
+    for (TrigramQuery query : list)
+    {
+      if (query.op != OP_ANY)
+      {
+        terms.add(query);
+      }
+    }
+    
+    if (terms.isEmpty())
+    {
+      return ANY;
+    }
+    else if (terms.size() == 1)
+    {
+      return terms.get(0);
+    }
+    
+    return new TrigramQuery(OP_AND, null, terms);
+  }
+  
+  
+  /**
+   * Returns the OR of some queries.
+   * 
+   * @param list the queries
+   * @return the query
+   */
+  public static TrigramQuery or(final List<TrigramQuery> list)
+  {
+    if (list.isEmpty())
+    {
+      return ANY;
+    }
+    
+    for (TrigramQuery query : list)
+    {
+      if (query.op == OP_ANY)
+      {
+        return ANY;
+      }
+    }
+    
+    if (list.size() == 1)
+    {
+      return list.get(0);
+    }
+    
+    return new TrigramQuery(OP_OR, null, new ArrayList<TrigramQuery>(list));
+  }
+  
+  
+  /**
+   * Returns the query for the literal tree of a regular expression
+   * (from RegexAnalyzer): the AND of the runs and required groups
+   * in a sequence, and the OR of alternatives.
+   * 
+   * @param node the literal tree
+   * @return the query
+   */
+  public static TrigramQuery forRegex(final RegexAnalyzer.Node node)
+  {
+    switch (node.getType())
+    {
+      case RegexAnalyzer.Node.LITERAL:
+        return literal(node.getLiteral());
+      
+      case RegexAnalyzer.Node.SEQUENCE:
+      case RegexAnalyzer.Node.ALTERNATION:
+      {
+        final List<RegexAnalyzer.Node> nodes = node.getChildren();
+        List<TrigramQuery> list = new ArrayList<TrigramQuery>(nodes.size());
+        for (RegexAnalyzer.Node child : nodes)
+        {
+          list.add(forRegex(child));
+        }
+        
+        return ((node.getType() == RegexAnalyzer.Node.SEQUENCE)
+                ? and(list) : or(list));
+      }
+      
+      default:
+        return ANY;
+    }
+  }
+  
+  
+  /**
+   * Returns whether the query restricts the search.
+   * 
+   * @return whether the query is not ANY
+   */
+  public boolean isRestrictive()
+  {
+    return (op != OP_ANY);
+  }
+  
+  
+  /**
+   * Evaluate the query against an index.
+   * 
+   * @param index the trigram index
+   * @return the candidates, or null if the query can't narrow them
+   */
+  public int[] evaluate(final TrigramIndex index)
+  {
+    switch (op)
+    {
+      case OP_LITERAL:
+        return index.findLiteral(literal);
+      
+      case OP_AND:
+      {
+        int[] result = null;
+        for (TrigramQuery query : children)
+        {
+          result = Postings.intersect(result, query.evaluate(index));
+          if ((result != null) && (result.length == 0))
+          {
+            break;
+          }
+        }
+        return result;
+      }
+      
+      case OP_OR:
+      {
+        int[] result = Postings.EMPTY;
+        for (TrigramQuery query : children)
+        {
+          result = Postings.union(result, query.evaluate(index));
+          if (result == null)
+          {
+            break;
+          }
+        }
+        return result;
+      }
+      
+      default:
+        return null;
+    }
+  }
+  
+  
+  /**
+   * Returns the query as a string, for debugging.
+   * 
+   * @return the query as a string
+   */
+  @Override
+  public String toString()
+  {
+    switch (op)
+    {
+      case OP_LITERAL:
+        return ("\"" + literal + "\"");
+      
+      case OP_AND:
+      case OP_OR:
+      {
+        StringBuilder sb = new StringBuilder(100);
+        sb.append('(');
+        for (int i = 0; i < children.size(); ++i)
+        {
+          if (i > 0)
+          {
+            sb.append((op == OP_AND) ? " AND " : " OR ");
+          }
+          sb.append(children.get(i).toString());
+        }
+        return sb.append(')').toString();
+      }
+      
+      default:
+        return "ANY";
+    }
+  }
+}